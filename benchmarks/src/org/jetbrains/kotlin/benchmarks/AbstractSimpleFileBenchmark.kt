@@ -13,6 +13,7 @@ import com.intellij.psi.PsiFileFactory
 import com.intellij.psi.impl.PsiFileFactoryImpl
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.testFramework.LightVirtualFile
+import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.analyzer.ModuleInfo
 import org.jetbrains.kotlin.asJava.finder.JavaElementFinder
 import org.jetbrains.kotlin.builtins.jvm.JvmBuiltIns
@@ -132,6 +133,14 @@ abstract class AbstractSimpleFileBenchmark {
     }
 
     private fun analyzeGreenFileFrontend(bh: Blackhole) {
+        val result = analyzeFileFrontend()
+
+        assert(result.bindingContext.diagnostics.none { it.severity == Severity.ERROR })
+
+        bh.consume(result.shouldGenerateCode)
+    }
+
+    protected fun analyzeFileFrontend(): AnalysisResult {
         val tracker = ExceptionTracker()
         val storageManager: StorageManager =
                 LockBasedStorageManager.createWithExceptionHandling("benchmarks", tracker)
@@ -144,17 +153,13 @@ abstract class AbstractSimpleFileBenchmark {
                 )
         val moduleContext = context.withProject(env.project).withModule(module)
 
-        val result = TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+        return TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
                 moduleContext.project,
                 listOf(file),
                 NoScopeRecordCliBindingTrace(),
                 env.configuration,
                 { scope -> JvmPackagePartProvider(LANGUAGE_FEATURE_SETTINGS, scope) }
         )
-
-        assert(result.bindingContext.diagnostics.none { it.severity == Severity.ERROR })
-
-        bh.consume(result.shouldGenerateCode)
     }
 
     private fun analyzeGreenFileIr(bh: Blackhole) {
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares heap retained after analysis of a large file with the default sliced map of the binding context
+ * and with CompactSlicedMapImpl. The footprint is reported as the "retainedKilobytes" secondary result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class BindingContextFootprintBenchmark : AbstractSimpleFileBenchmark() {
+
+    @Param("1000")
+    private var size: Int = 0
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    open class Footprint {
+        @JvmField
+        var retainedKilobytes: Long = 0
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = ["-Dkotlin.binding.context.compact=false"])
+    fun slicedMap(footprint: Footprint, bh: Blackhole) {
+        measureFootprint(footprint, bh)
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = ["-Dkotlin.binding.context.compact=true"])
+    fun compactSlicedMap(footprint: Footprint, bh: Blackhole) {
+        measureFootprint(footprint, bh)
+    }
+
+    private fun measureFootprint(footprint: Footprint, bh: Blackhole) {
+        if (isIR) error("Binding context is not used with FIR")
+
+        val before = usedMemory()
+        val result = analyzeFileFrontend()
+        footprint.retainedKilobytes = (usedMemory() - before) / 1024
+        bh.consume(result.bindingContext)
+    }
+
+    private fun usedMemory(): Long {
+        repeat(3) { System.gc() }
+        val runtime = Runtime.getRuntime()
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    override fun buildText() =
+            """
+            |class A(val x: Int) {
+            |    fun foo(a: A): Int = a.x + x
+            |}
+            |
+            |fun bar(list: List<A>): Int {
+            |    var result = 0
+            |${(1..size).joinToString("\n") { "    result += list.map { it.foo(A($it)) }.filter { it > $it }.sumBy { it * 2 } + listOf($it).size" }}
+            |    return result
+            |}
+            """.trimMargin()
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.jetbrains.kotlin.metadata.ProtoBuf
+import org.jetbrains.kotlin.metadata.jvm.JvmProtoBuf
+import org.jetbrains.kotlin.metadata.jvm.deserialization.BitEncoding
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmNameResolver
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmProtoBufUtil
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.util.concurrent.TimeUnit
+import java.util.jar.JarFile
+
+/**
+ * Reads metadata of all classes and file facades of the standard library, to compare decoding of the `@Metadata.d1` strings
+ * through a combined byte array and an input stream with decoding to a reused buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class MetadataDecodingBenchmark {
+    private class ClassMetadata(val kind: Int, val data: Array<String>, val strings: Array<String>)
+
+    private lateinit var metadata: List<ClassMetadata>
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        val stdlib = File(Unit::class.java.protectionDomain.codeSource.location.toURI())
+        val classLoader = Unit::class.java.classLoader
+        metadata = JarFile(stdlib).use { jar ->
+            jar.entries().asSequence()
+                .filter { it.name.endsWith(".class") && it.name != "module-info.class" }
+                .mapNotNull { entry ->
+                    val className = entry.name.removeSuffix(".class").replace('/', '.')
+                    val annotation = Class.forName(className, false, classLoader).getAnnotation(Metadata::class.java)
+                    annotation?.takeIf { it.kind == CLASS_KIND || it.kind == FILE_FACADE_KIND }?.let {
+                        ClassMetadata(it.kind, it.data1, it.data2)
+                    }
+                }
+                .toList()
+        }
+    }
+
+    @Benchmark
+    fun decodeBytes(bh: Blackhole) {
+        for (m in metadata) {
+            val input = ByteArrayInputStream(BitEncoding.decodeBytes(m.data))
+            val types = JvmProtoBuf.StringTableTypes.parseDelimitedFrom(input, JvmProtoBufUtil.EXTENSION_REGISTRY)
+            bh.consume(JvmNameResolver(types, m.strings))
+            bh.consume(
+                if (m.kind == CLASS_KIND) ProtoBuf.Class.parseFrom(input, JvmProtoBufUtil.EXTENSION_REGISTRY)
+                else ProtoBuf.Package.parseFrom(input, JvmProtoBufUtil.EXTENSION_REGISTRY)
+            )
+        }
+    }
+
+    @Benchmark
+    fun decodeToBuffer(bh: Blackhole) {
+        for (m in metadata) {
+            bh.consume(
+                if (m.kind == CLASS_KIND) JvmProtoBufUtil.readClassDataFrom(m.data, m.strings)
+                else JvmProtoBufUtil.readPackageDataFrom(m.data, m.strings)
+            )
+        }
+    }
+
+    companion object {
+        private const val CLASS_KIND = 1
+        private const val FILE_FACADE_KIND = 2
+    }
+}
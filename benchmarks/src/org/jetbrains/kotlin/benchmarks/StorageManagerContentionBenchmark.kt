@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.jetbrains.kotlin.storage.ConcurrentStorageManager
+import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.storage.MemoizedFunctionToNotNull
+import org.jetbrains.kotlin.storage.StorageManager
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Computes the same set of memoized values (each depending on lazy values and on other memoized values, like descriptors do)
+ * on [threads] threads at once, to compare how storage managers scale under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class StorageManagerContentionBenchmark {
+
+    @Param("lockBased", "concurrent")
+    private var storageManagerKind: String = ""
+
+    @Param("1", "2", "4", "8")
+    private var threads: Int = 0
+
+    @Param("10000")
+    private var size: Int = 0
+
+    private lateinit var executor: ExecutorService
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        executor = Executors.newFixedThreadPool(threads)
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Benchmark
+    fun benchmark(bh: Blackhole) {
+        val storageManager = createStorageManager()
+        lateinit var function: MemoizedFunctionToNotNull<Int, Long>
+        function = storageManager.createMemoizedFunction { key: Int ->
+            val lazyValue = storageManager.createLazyValue { work(key) }
+            if (key % 2 == 0) lazyValue() else lazyValue() + function(key - 1)
+        }
+
+        val tasks = (0 until threads).map { thread ->
+            executor.submit(Runnable {
+                // Threads traverse the keys starting at different offsets, so they compete for the same values
+                for (i in 0 until size) {
+                    bh.consume(function((i + thread * size / threads) % size))
+                }
+            })
+        }
+        tasks.forEach { it.get() }
+    }
+
+    private fun createStorageManager(): StorageManager = when (storageManagerKind) {
+        "lockBased" -> LockBasedStorageManager("benchmark")
+        "concurrent" -> ConcurrentStorageManager("benchmark")
+        else -> error("Unknown storage manager: $storageManagerKind")
+    }
+
+    private fun work(key: Int): Long {
+        var result = key.toLong()
+        repeat(100) { result = result * 31 + it }
+        return result
+    }
+}
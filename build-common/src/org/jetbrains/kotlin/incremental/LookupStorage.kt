@@ -37,25 +37,42 @@ open class LookupStorage(
     companion object {
         private val DELETED_TO_SIZE_TRESHOLD = 0.5
         private val MINIMUM_GARBAGE_COLLECTIBLE_SIZE = 10000
+
+        /**
+         * Version of the on-disk format of lookups, it depends on the storage of lookups.
+         * Lookups stored in another format can't be read, so the caches which contain them should be rebuilt.
+         */
+        val FORMAT_VERSION = if (isMappedLookupStorageEnabled) 3 else 2
     }
 
     private val countersFile = "counters".storageFile
     private val idToFile = registerMap(IdToFileMap("id-to-file".storageFile, pathConverter))
     private val fileToId = registerMap(FileToIdMap("file-to-id".storageFile, pathConverter))
     private val lookupMap = registerMap(LookupMap("lookups".storageFile))
+    private val idToLookups = registerMap(IdToLookupsMap("id-to-lookups".storageFile))
 
+    // the next file id, ids of removed files are not reused until the ids are renumbered by [forceGC]
     @Volatile
     private var size: Int = 0
 
+    @Volatile
+    private var fileCount: Int = 0
+
+    // the number of removed files, which ids are still present in lookups
     @Volatile
     private var deletedCount: Int = 0
 
+    @Volatile
+    private var formatVersion: Int? = FORMAT_VERSION
+
     init {
         try {
             if (countersFile.exists()) {
                 val lines = countersFile.readLines()
                 size = lines[0].toInt()
                 deletedCount = lines[1].toInt()
+                fileCount = lines.getOrNull(2)?.toInt() ?: 0
+                formatVersion = lines.getOrNull(3)?.toInt()
             }
         } catch (e: Exception) {
             throw IOException("Could not read $countersFile", e)
@@ -65,6 +82,8 @@ open class LookupStorage(
 
     @Synchronized
     fun get(lookupSymbol: LookupSymbol): Collection<String> {
+        checkFormatVersion()
+
         val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
         val fileIds = lookupMap[key] ?: return emptySet()
 
@@ -76,23 +95,36 @@ open class LookupStorage(
 
     @Synchronized
     fun addAll(lookups: MultiMap<LookupSymbol, String>, allPaths: Set<String>) {
+        checkFormatVersion()
+
         val pathToId = allPaths.sorted().keysToMap { addFileIfNeeded(File(it)) }
+        val lookupsByFileId = TreeMap<Int, MutableList<LookupSymbolKey>>()
 
         for (lookupSymbol in lookups.keySet().sorted()) {
             val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
             val paths = lookups[lookupSymbol]!!
             val fileIds = paths.mapTo(TreeSet()) { pathToId[it]!! }
-            fileIds.addAll(lookupMap[key] ?: emptySet())
-            lookupMap[key] = fileIds
+            lookupMap.addAll(key, fileIds)
+
+            for (fileId in fileIds) {
+                lookupsByFileId.getOrPut(fileId) { ArrayList() }.add(key)
+            }
+        }
+
+        for ((fileId, keys) in lookupsByFileId) {
+            idToLookups.addAll(fileId, keys)
         }
     }
 
     @Synchronized
     fun removeLookupsFrom(files: Sequence<File>) {
+        checkFormatVersion()
+
         for (file in files) {
             val id = fileToId[file] ?: continue
             idToFile.remove(id)
             fileToId.remove(file)
+            fileCount--
             deletedCount++
         }
     }
@@ -104,7 +136,9 @@ open class LookupStorage(
         }
 
         size = 0
+        fileCount = 0
         deletedCount = 0
+        formatVersion = FORMAT_VERSION
 
         super.clean()
     }
@@ -112,6 +146,9 @@ open class LookupStorage(
     @Synchronized
     override fun flush(memoryCachesOnly: Boolean) {
         try {
+            // lookups in another format are never modified, see [checkFormatVersion]
+            if (formatVersion != FORMAT_VERSION) return
+
             removeGarbageIfNeeded()
 
             if (size > 0) {
@@ -120,7 +157,7 @@ open class LookupStorage(
                     countersFile.createNewFile()
                 }
 
-                countersFile.writeText("$size\n$deletedCount")
+                countersFile.writeText("$size\n$deletedCount\n$fileCount\n$FORMAT_VERSION")
             }
         }
         finally {
@@ -128,6 +165,12 @@ open class LookupStorage(
         }
     }
 
+    private fun checkFormatVersion() {
+        if (formatVersion != FORMAT_VERSION) {
+            throw IOException("Lookups in $cachesDir are stored in format ${formatVersion ?: "<unknown>"}, but $FORMAT_VERSION is expected")
+        }
+    }
+
     private fun addFileIfNeeded(file: File): Int {
         val existing = fileToId[file]
         if (existing != null) return existing
@@ -135,25 +178,57 @@ open class LookupStorage(
         val id = size++
         fileToId[file] = id
         idToFile[id] = file
+        fileCount++
         return id
     }
 
-    private fun removeGarbageIfNeeded(force: Boolean = false) {
-        if (force || (size > MINIMUM_GARBAGE_COLLECTIBLE_SIZE && deletedCount.toDouble() / size > DELETED_TO_SIZE_TRESHOLD)) {
+    private fun removeGarbageIfNeeded() {
+        val totalCount = fileCount + deletedCount
+        if (totalCount > MINIMUM_GARBAGE_COLLECTIBLE_SIZE && deletedCount.toDouble() / totalCount > DELETED_TO_SIZE_TRESHOLD) {
             doRemoveGarbage()
         }
     }
 
+    /**
+     * Drops the ids of removed files from lookups. Only the lookups of removed files are rewritten,
+     * so the amount of work depends on the amount of garbage, not on the size of the storage.
+     */
     private fun doRemoveGarbage() {
-        for (hash in lookupMap.keys) {
-            lookupMap[hash] = lookupMap[hash]!!.filter { it in idToFile }.toSet()
+        val removedIds = idToLookups.keys.filterTo(HashSet()) { it !in idToFile }
+        val dirtyKeys = TreeSet<LookupSymbolKey>()
+
+        for (id in removedIds) {
+            idToLookups[id]?.let { dirtyKeys.addAll(it) }
+            idToLookups.remove(id)
+        }
+
+        for (key in dirtyKeys) {
+            val fileIds = lookupMap[key] ?: continue
+            val actualFileIds = fileIds.filterNotTo(TreeSet()) { it in removedIds }
+
+            if (actualFileIds.isEmpty()) {
+                lookupMap.remove(key)
+            }
+            else if (actualFileIds.size != fileIds.size) {
+                lookupMap[key] = actualFileIds
+            }
         }
 
+        deletedCount = 0
+    }
+
+    /**
+     * Renumbers the ids of files by their paths and rewrites all lookups, so that the storage doesn't depend on the history of changes.
+     */
+    private fun renumberFiles() {
+        // Ids of removed files are dropped from the lookups below, as they are absent in oldIdToNewId
         val oldFileToId = fileToId.toMap()
         val oldIdToNewId = HashMap<Int, Int>(oldFileToId.size)
         idToFile.clean()
         fileToId.clean()
+        idToLookups.clean()
         size = 0
+        fileCount = 0
         deletedCount = 0
 
         for ((file, oldId) in oldFileToId.entries.sortedBy { it.key.path }) {
@@ -161,20 +236,31 @@ open class LookupStorage(
             oldIdToNewId[oldId] = newId
         }
 
+        val lookupsByFileId = TreeMap<Int, MutableList<LookupSymbolKey>>()
+
         for (lookup in lookupMap.keys) {
-            val fileIds = lookupMap[lookup]!!.mapNotNull { oldIdToNewId[it] }.toSet()
+            val fileIds = lookupMap[lookup]!!.mapNotNullTo(TreeSet()) { oldIdToNewId[it] }
 
             if (fileIds.isEmpty()) {
                 lookupMap.remove(lookup)
             }
             else {
                 lookupMap[lookup] = fileIds
+
+                for (fileId in fileIds) {
+                    lookupsByFileId.getOrPut(fileId) { ArrayList() }.add(lookup)
+                }
             }
         }
+
+        for ((fileId, keys) in lookupsByFileId) {
+            idToLookups.addAll(fileId, keys)
+        }
     }
 
     @TestOnly fun forceGC() {
-        removeGarbageIfNeeded(force = true)
+        checkFormatVersion()
+        renumberFiles()
         flush(false)
     }
 
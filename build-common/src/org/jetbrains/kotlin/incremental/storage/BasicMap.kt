@@ -24,20 +24,13 @@ import org.jetbrains.kotlin.utils.Printer
 import java.io.File
 
 abstract class BasicMap<K : Comparable<K>, V>(
-        storageFile: File,
-        keyDescriptor: KeyDescriptor<K>,
-        valueExternalizer: DataExternalizer<V>
+        protected val storage: LazyStorage<K, V>
 ) {
-    protected val storage: LazyStorage<K, V>
-    private val nonCachingStorage = System.getProperty("kotlin.jps.non.caching.storage")?.toBoolean() ?: false
-
-    init {
-        storage = if (nonCachingStorage) {
-            NonCachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
-        } else {
-            CachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
-        }
-    }
+    constructor(
+            storageFile: File,
+            keyDescriptor: KeyDescriptor<K>,
+            valueExternalizer: DataExternalizer<V>
+    ) : this(createLazyStorage(storageFile, keyDescriptor, valueExternalizer))
 
     fun clean() {
         storage.clean()
@@ -76,6 +69,20 @@ abstract class BasicMap<K : Comparable<K>, V>(
     protected abstract fun dumpValue(value: V): String
 }
 
+internal fun <K, V> createLazyStorage(
+        storageFile: File,
+        keyDescriptor: KeyDescriptor<K>,
+        valueExternalizer: DataExternalizer<V>
+): LazyStorage<K, V> {
+    val nonCachingStorage = System.getProperty("kotlin.jps.non.caching.storage")?.toBoolean() ?: false
+
+    return if (nonCachingStorage) {
+        NonCachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
+    } else {
+        CachingLazyStorage(storageFile, keyDescriptor, valueExternalizer)
+    }
+}
+
 abstract class BasicStringMap<V>(
         storageFile: File,
         keyDescriptor: KeyDescriptor<String>,
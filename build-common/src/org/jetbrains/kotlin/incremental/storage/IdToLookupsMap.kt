@@ -0,0 +1,33 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.io.ExternalIntegerKeyDescriptor
+import java.io.File
+import java.util.*
+
+/**
+ * Lookups of each file id, the reverse of [LookupMap]. Allows to clean the lookups of removed files without a rescan of all lookups.
+ */
+internal class IdToLookupsMap(file: File) :
+    BasicMap<Int, Collection<LookupSymbolKey>>(file, ExternalIntegerKeyDescriptor(), LookupSymbolKeyCollectionExternalizer) {
+    override fun dumpKey(key: Int): String = key.toString()
+
+    override fun dumpValue(value: Collection<LookupSymbolKey>): String = value.sorted().toString()
+
+    operator fun get(id: Int): Collection<LookupSymbolKey>? = storage[id]
+
+    fun addAll(id: Int, lookups: Collection<LookupSymbolKey>) {
+        storage[id] = TreeSet(lookups).apply { addAll(storage[id] ?: emptySet()) }
+    }
+
+    fun remove(id: Int) {
+        storage.remove(id)
+    }
+
+    val keys: Collection<Int>
+        get() = storage.keys
+}
@@ -17,8 +17,18 @@
 package org.jetbrains.kotlin.incremental.storage
 
 import java.io.File
+import java.util.*
+
+internal class LookupMap private constructor(
+    storage: LazyStorage<LookupSymbolKey, Collection<Int>>,
+    private val isAppendFriendly: Boolean
+) : BasicMap<LookupSymbolKey, Collection<Int>>(storage) {
+    constructor(storage: File) : this(
+        if (isMappedLookupStorageEnabled) MappedLookupStorage(storage)
+        else createLazyStorage(storage, LookupSymbolKeyDescriptor, IntCollectionExternalizer),
+        isAppendFriendly = isMappedLookupStorageEnabled
+    )
 
-internal class LookupMap(storage: File) : BasicMap<LookupSymbolKey, Collection<Int>>(storage, LookupSymbolKeyDescriptor, IntCollectionExternalizer) {
     override fun dumpKey(key: LookupSymbolKey): String = key.toString()
 
     override fun dumpValue(value: Collection<Int>): String = value.toString()
@@ -33,6 +43,18 @@ internal class LookupMap(storage: File) : BasicMap<LookupSymbolKey, Collection<I
         storage[key] = fileIds
     }
 
+    /**
+     * Adds [fileIds] to the file ids of [key]. Appends them if the storage supports cheap appends,
+     * otherwise rewrites the whole value.
+     */
+    fun addAll(key: LookupSymbolKey, fileIds: Set<Int>) {
+        if (isAppendFriendly) {
+            storage.append(key, fileIds)
+        } else {
+            storage[key] = TreeSet(fileIds).apply { addAll(storage[key] ?: emptySet()) }
+        }
+    }
+
     fun remove(key: LookupSymbolKey) {
         storage.remove(key)
     }
@@ -40,3 +62,5 @@ internal class LookupMap(storage: File) : BasicMap<LookupSymbolKey, Collection<I
     val keys: Collection<LookupSymbolKey>
         get() = storage.keys
 }
+
+internal val isMappedLookupStorageEnabled = System.getProperty("kotlin.incremental.mapped.lookup.storage")?.toBoolean() ?: false
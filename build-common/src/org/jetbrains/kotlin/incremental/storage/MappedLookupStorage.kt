@@ -0,0 +1,357 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+/**
+ * Lookup storage which keeps file ids of each lookup symbol in an append-only memory-mapped file of posting lists.
+ *
+ * A posting list of a symbol is a chain of chunks, each chunk holds a sorted delta- and varint-encoded list of file ids
+ * and the offset of the previous chunk of the chain. Appending file ids writes a new chunk at the end of the file,
+ * so existing values are never rewritten. Chains which grow too long are merged into a single chunk on append,
+ * and the file is compacted on flush when most of it is occupied by unreachable chunks.
+ *
+ * The offsets of chain heads are kept in memory and are written to [indexFile] on flush.
+ * Both files are replaced by renaming temporary files, the index is replaced last.
+ */
+class MappedLookupStorage(private val indexFile: File) : LazyStorage<LookupSymbolKey, Collection<Int>> {
+    private class Chain(val head: Long, val length: Int, val bytes: Long)
+
+    private val postingsFile = File(indexFile.path + POSTINGS_FILE_SUFFIX)
+
+    private var chains: HashMap<LookupSymbolKey, Chain>? = null
+    private var channel: FileChannel? = null
+    private var segments = arrayOfNulls<MappedByteBuffer>(0)
+    private var dataLength: Long = 0
+    private var garbageLength: Long = 0
+    private var isDirty = false
+
+    private fun getChains(): HashMap<LookupSymbolKey, Chain> {
+        chains?.let { return it }
+
+        val loaded = if (indexFile.exists()) loadIndex() else HashMap()
+        chains = loaded
+        return loaded
+    }
+
+    private fun getChannel(): FileChannel {
+        channel?.let { return it }
+
+        getChains()
+        postingsFile.parentFile?.mkdirs()
+        val newChannel = FileChannel.open(
+            postingsFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        )
+        val size = newChannel.size()
+        if (size < dataLength) {
+            newChannel.close()
+            throw IOException("$postingsFile is shorter than expected: $size < $dataLength")
+        }
+        if (size > dataLength) {
+            // Chunks written after the last flush are not referenced by the index
+            newChannel.truncate(dataLength)
+        }
+        channel = newChannel
+        return newChannel
+    }
+
+    override val keys: Collection<LookupSymbolKey>
+        @Synchronized get() = ArrayList(getChains().keys)
+
+    @Synchronized
+    override fun contains(key: LookupSymbolKey): Boolean = key in getChains()
+
+    @Synchronized
+    override fun get(key: LookupSymbolKey): Collection<Int>? {
+        val chain = getChains()[key] ?: return null
+        val result = HashSet<Int>()
+        readChain(chain) { result.add(it) }
+        return result
+    }
+
+    @Synchronized
+    override fun set(key: LookupSymbolKey, value: Collection<Int>) {
+        val chains = getChains()
+        val old = chains[key]
+        if (old != null) {
+            garbageLength += old.bytes
+        }
+        isDirty = true
+
+        chains[key] = writeChunk(value.toSortedIntArray(), previous = null)
+    }
+
+    @Synchronized
+    override fun remove(key: LookupSymbolKey) {
+        val old = getChains().remove(key) ?: return
+        garbageLength += old.bytes
+        isDirty = true
+    }
+
+    @Synchronized
+    override fun append(key: LookupSymbolKey, value: Collection<Int>) {
+        val chains = getChains()
+        val old = chains[key]
+        isDirty = true
+        if (old == null || old.length < MAX_CHAIN_LENGTH) {
+            chains[key] = writeChunk(value.toSortedIntArray(), previous = old)
+            return
+        }
+
+        val merged = HashSet<Int>(value)
+        readChain(old) { merged.add(it) }
+        garbageLength += old.bytes
+        chains[key] = writeChunk(merged.toSortedIntArray(), previous = null)
+    }
+
+    @Synchronized
+    override fun clean() {
+        closeChannel()
+        chains = HashMap()
+        dataLength = 0
+        garbageLength = 0
+        isDirty = false
+
+        postingsFile.delete()
+        indexFile.delete()
+    }
+
+    @Synchronized
+    override fun flush(memoryCachesOnly: Boolean) {
+        // The index is the only memory cache, and it can't be dropped without losing the data
+        if (memoryCachesOnly || !isDirty) return
+
+        if (dataLength >= MINIMUM_COMPACTIBLE_LENGTH && garbageLength > dataLength * GARBAGE_TO_LENGTH_THRESHOLD) {
+            compact(chains!!)
+        } else {
+            channel?.force(false)
+            val temporaryIndexFile = temporaryFile(indexFile)
+            saveIndex(temporaryIndexFile, chains!!, dataLength, garbageLength)
+            replace(indexFile, temporaryIndexFile)
+        }
+        isDirty = false
+    }
+
+    @Synchronized
+    override fun close() {
+        flush(memoryCachesOnly = false)
+        closeChannel()
+    }
+
+    private fun closeChannel() {
+        channel?.close()
+        channel = null
+        segments = arrayOfNulls(0)
+    }
+
+    private fun writeChunk(fileIds: IntArray, previous: Chain?): Chain {
+        val output = ByteArrayOutputStream(CHUNK_HEADER_SIZE + fileIds.size * 2)
+        DataOutputStream(output).writeLong(previous?.head ?: NO_CHUNK)
+        output.writeVarInt(fileIds.size)
+        var last = 0
+        for (id in fileIds) {
+            output.writeVarInt(id - last)
+            last = id
+        }
+
+        val bytes = output.toByteArray()
+        val channel = getChannel()
+        val head = dataLength
+        val buffer = ByteBuffer.wrap(bytes)
+        var position = head
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position)
+        }
+        dataLength += bytes.size
+
+        return Chain(head, (previous?.length ?: 0) + 1, (previous?.bytes ?: 0L) + bytes.size)
+    }
+
+    private inline fun readChain(chain: Chain, consumer: (Int) -> Unit) {
+        var chunk = chain.head
+        while (chunk != NO_CHUNK) {
+            var position = chunk
+            var previous = 0L
+            for (i in 0 until 8) {
+                previous = (previous shl 8) or (byteAt(position++).toLong() and 0xFF)
+            }
+
+            var count = 0
+            var shift = 0
+            while (true) {
+                val byte = byteAt(position++).toInt()
+                count = count or ((byte and 0x7F) shl shift)
+                if (byte and 0x80 == 0) break
+                shift += 7
+            }
+
+            var id = 0
+            for (i in 0 until count) {
+                var delta = 0
+                shift = 0
+                while (true) {
+                    val byte = byteAt(position++).toInt()
+                    delta = delta or ((byte and 0x7F) shl shift)
+                    if (byte and 0x80 == 0) break
+                    shift += 7
+                }
+                id += delta
+                consumer(id)
+            }
+
+            chunk = previous
+        }
+    }
+
+    private fun byteAt(position: Long): Byte {
+        val index = (position ushr SEGMENT_BITS).toInt()
+        val offset = (position and SEGMENT_MASK).toInt()
+        var segment = segments.getOrNull(index)
+        if (segment == null || offset >= segment.limit()) {
+            segment = mapSegment(index)
+        }
+        return segment.get(offset)
+    }
+
+    private fun mapSegment(index: Int): MappedByteBuffer {
+        val start = index.toLong() shl SEGMENT_BITS
+        val size = minOf(SEGMENT_SIZE, dataLength - start)
+        val segment = getChannel().map(FileChannel.MapMode.READ_ONLY, start, size)
+
+        if (index >= segments.size) {
+            segments = segments.copyOf(index + 1)
+        }
+        segments[index] = segment
+        return segment
+    }
+
+    /**
+     * Rewrites all reachable chains to a new file, one chunk per chain, and saves the index of the new file.
+     */
+    private fun compact(chains: HashMap<LookupSymbolKey, Chain>) {
+        val compactedFile = temporaryFile(postingsFile)
+        val compacted = HashMap<LookupSymbolKey, Chain>(chains.size)
+        var compactedLength = 0L
+
+        DataOutputStream(BufferedOutputStream(FileOutputStream(compactedFile))).use { output ->
+            val chunk = ByteArrayOutputStream()
+            for (key in chains.keys.sorted()) {
+                val fileIds = HashSet<Int>()
+                readChain(chains[key]!!) { fileIds.add(it) }
+                val sorted = fileIds.toSortedIntArray()
+
+                chunk.reset()
+                chunk.writeVarInt(sorted.size)
+                var last = 0
+                for (id in sorted) {
+                    chunk.writeVarInt(id - last)
+                    last = id
+                }
+
+                output.writeLong(NO_CHUNK)
+                chunk.writeTo(output)
+                val bytes = CHUNK_HEADER_SIZE + chunk.size().toLong()
+                compacted[key] = Chain(compactedLength, 1, bytes)
+                compactedLength += bytes
+            }
+        }
+
+        val compactedIndexFile = temporaryFile(indexFile)
+        saveIndex(compactedIndexFile, compacted, compactedLength, garbageLength = 0)
+
+        closeChannel()
+        replace(postingsFile, compactedFile)
+        replace(indexFile, compactedIndexFile)
+
+        this.chains = compacted
+        dataLength = compactedLength
+        garbageLength = 0
+    }
+
+    private fun loadIndex(): HashMap<LookupSymbolKey, Chain> {
+        DataInputStream(BufferedInputStream(FileInputStream(indexFile))).use { input ->
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION) {
+                throw IOException("Unsupported format of $indexFile")
+            }
+
+            dataLength = input.readLong()
+            garbageLength = input.readLong()
+
+            val size = input.readInt()
+            val result = HashMap<LookupSymbolKey, Chain>(size)
+            repeat(size) {
+                val key = LookupSymbolKey(input.readInt(), input.readInt())
+                result[key] = Chain(input.readLong(), input.readInt(), input.readLong())
+            }
+            return result
+        }
+    }
+
+    private fun saveIndex(file: File, chains: HashMap<LookupSymbolKey, Chain>, dataLength: Long, garbageLength: Long) {
+        DataOutputStream(BufferedOutputStream(FileOutputStream(file))).use { output ->
+            output.writeInt(INDEX_MAGIC)
+            output.writeInt(INDEX_VERSION)
+            output.writeLong(dataLength)
+            output.writeLong(garbageLength)
+
+            output.writeInt(chains.size)
+            for ((key, chain) in chains) {
+                output.writeInt(key.nameHash)
+                output.writeInt(key.scopeHash)
+                output.writeLong(chain.head)
+                output.writeInt(chain.length)
+                output.writeLong(chain.bytes)
+            }
+        }
+    }
+
+    private fun temporaryFile(file: File): File {
+        file.parentFile?.mkdirs()
+        return File(file.path + TEMPORARY_FILE_SUFFIX)
+    }
+
+    private fun replace(file: File, replacement: File) {
+        Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    private fun Collection<Int>.toSortedIntArray(): IntArray = toIntArray().apply { sort() }
+
+    private fun OutputStream.writeVarInt(value: Int) {
+        var remaining = value
+        while (remaining and 0x7F.inv() != 0) {
+            write((remaining and 0x7F) or 0x80)
+            remaining = remaining ushr 7
+        }
+        write(remaining)
+    }
+
+    companion object {
+        const val POSTINGS_FILE_SUFFIX = ".postings"
+        private const val TEMPORARY_FILE_SUFFIX = ".tmp"
+
+        private const val INDEX_MAGIC = 0x4C4B5550
+        private const val INDEX_VERSION = 1
+
+        private const val NO_CHUNK = -1L
+        private const val CHUNK_HEADER_SIZE = 8
+
+        private const val MAX_CHAIN_LENGTH = 16
+
+        private const val GARBAGE_TO_LENGTH_THRESHOLD = 0.5
+        private const val MINIMUM_COMPACTIBLE_LENGTH = 1L shl 20
+
+        private const val SEGMENT_BITS = 30
+        private const val SEGMENT_SIZE = 1L shl SEGMENT_BITS
+        private const val SEGMENT_MASK = SEGMENT_SIZE - 1
+    }
+}
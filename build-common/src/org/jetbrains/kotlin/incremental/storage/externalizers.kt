@@ -200,3 +200,5 @@ open class CollectionExternalizer<T>(
 object StringCollectionExternalizer : CollectionExternalizer<String>(EnumeratorStringDescriptor(), { HashSet() })
 
 object IntCollectionExternalizer : CollectionExternalizer<Int>(IntExternalizer, { HashSet() })
+
+object LookupSymbolKeyCollectionExternalizer : CollectionExternalizer<LookupSymbolKey>(LookupSymbolKeyDescriptor, { HashSet() })
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import com.intellij.util.containers.MultiMap
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.jetbrains.kotlin.incremental.LookupStorage
+import org.jetbrains.kotlin.incremental.LookupSymbol
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+
+class LookupStorageGarbageTest : TestWithWorkingDir() {
+    private val storageRoot: File
+        get() = workingDir.resolve("storage")
+
+    private fun path(i: Int): String = workingDir.resolve("src/File$i.kt").canonicalPath
+
+    private fun symbol(i: Int) = LookupSymbol(name = "Class$i", scope = "pkg")
+
+    @Test
+    fun testRemovedFilesAreCollected() {
+        val storage = LookupStorage(storageRoot, FileToCanonicalPathConverter)
+        storage.addAll(lookups(0 until FILES), (0 until FILES).mapTo(LinkedHashSet()) { path(it) })
+        storage.flush(memoryCachesOnly = false)
+
+        // more than a half of the files is removed, so that the garbage is collected on flush
+        storage.removeLookupsFrom((0 until REMOVED).asSequence().map { File(path(it)) })
+        storage.flush(memoryCachesOnly = false)
+
+        // only the lookups of live files are left in the reverse map
+        assertEquals(FILES - REMOVED, idToLookupsEntries(storage))
+        assertLookups(storage)
+
+        storage.close()
+        val reopened = LookupStorage(storageRoot, FileToCanonicalPathConverter)
+        assertLookups(reopened)
+
+        // full collection renumbers the files and keeps the reverse map in sync
+        reopened.forceGC()
+        assertEquals(FILES - REMOVED, idToLookupsEntries(reopened))
+        assertLookups(reopened)
+        reopened.close()
+    }
+
+    @Test
+    fun testLookupsInAnotherFormatAreNotRead() {
+        val storage = LookupStorage(storageRoot, FileToCanonicalPathConverter)
+        storage.addAll(lookups(0 until 10), (0 until 10).mapTo(LinkedHashSet()) { path(it) })
+        storage.flush(memoryCachesOnly = false)
+        storage.close()
+
+        // counters of the previous format have no format version
+        val countersFile = storageRoot.resolve("counters.tab")
+        countersFile.writeText(countersFile.readLines().take(2).joinToString("\n"))
+
+        val reopened = LookupStorage(storageRoot, FileToCanonicalPathConverter)
+        try {
+            reopened.get(symbol(0))
+            fail("Lookups in another format should not be read")
+        } catch (e: IOException) {
+            // expected
+        }
+
+        reopened.clean()
+        reopened.addAll(lookups(0 until 1), setOf(path(0)))
+        assertEquals(listOf(path(0)), reopened.get(symbol(0)).toList())
+        reopened.close()
+    }
+
+    // each file looks up its own class and the class of the first file
+    private fun lookups(files: IntRange): MultiMap<LookupSymbol, String> {
+        val lookups = MultiMap.createOrderedSet<LookupSymbol, String>()
+        for (i in files) {
+            lookups.putValue(symbol(i), path(i))
+            lookups.putValue(symbol(0), path(i))
+        }
+        return lookups
+    }
+
+    private fun assertLookups(storage: LookupStorage) {
+        assertEquals((REMOVED until FILES).map { path(it) }.toSet(), storage.get(symbol(0)).toSet())
+        for (i in listOf(1, REMOVED - 1, REMOVED, FILES - 1)) {
+            val expected = if (i < REMOVED) emptySet() else setOf(path(i))
+            assertEquals(expected, storage.get(symbol(i)).toSet())
+        }
+    }
+
+    private fun idToLookupsEntries(storage: LookupStorage): Int =
+        storage.dump().substringAfter(IdToLookupsMap::class.java.simpleName).substringBefore("\n\n").lines().count { "->" in it }
+
+    companion object {
+        private const val FILES = 12000
+        private const val REMOVED = 7000
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Test
+
+class MappedLookupStorageTest : TestWithWorkingDir() {
+    private val storageFile
+        get() = workingDir.resolve("lookups.tab")
+
+    @Test
+    fun testAppendAndReopen() {
+        val storage = MappedLookupStorage(storageFile)
+        storage.append(KEY_A, listOf(3, 1))
+        storage.append(KEY_A, listOf(2, 3))
+        storage[KEY_B] = setOf(100000)
+        storage.close()
+
+        val reopened = MappedLookupStorage(storageFile)
+        assertEquals(setOf(1, 2, 3), reopened[KEY_A]!!.toSet())
+        assertEquals(setOf(100000), reopened[KEY_B]!!.toSet())
+        assertEquals(setOf(KEY_A, KEY_B), reopened.keys.toSet())
+        reopened.close()
+    }
+
+    @Test
+    fun testLongChainIsMerged() {
+        val storage = MappedLookupStorage(storageFile)
+        for (id in 0 until 100) {
+            storage.append(KEY_A, listOf(id))
+        }
+
+        assertEquals((0 until 100).toSet(), storage[KEY_A]!!.toSet())
+        storage.close()
+    }
+
+    @Test
+    fun testUnflushedChangesAreDropped() {
+        val storage = MappedLookupStorage(storageFile)
+        storage[KEY_A] = setOf(1)
+        storage.flush(memoryCachesOnly = false)
+        storage.append(KEY_A, listOf(2))
+        storage.remove(KEY_A)
+
+        val reopened = MappedLookupStorage(storageFile)
+        assertEquals(setOf(1), reopened[KEY_A]!!.toSet())
+        reopened.append(KEY_A, listOf(3))
+        assertEquals(setOf(1, 3), reopened[KEY_A]!!.toSet())
+        reopened.close()
+    }
+
+    @Test
+    fun testRemoveAndClean() {
+        val storage = MappedLookupStorage(storageFile)
+        storage[KEY_A] = setOf(1)
+        storage[KEY_B] = setOf(2)
+        storage.remove(KEY_A)
+
+        assertFalse(KEY_A in storage)
+        assertNull(storage[KEY_A])
+
+        storage.clean()
+        assertTrue(storage.keys.isEmpty())
+        storage.close()
+    }
+
+    @Test
+    fun testCompaction() {
+        val storage = MappedLookupStorage(storageFile)
+        storage[KEY_B] = setOf(7)
+        // every value is about 300 KB, so the postings file exceeds the compaction threshold and is mostly garbage
+        for (i in 0 until 5) {
+            storage[KEY_A] = (i until 300000 + i).toSet()
+        }
+        storage.flush(memoryCachesOnly = false)
+
+        val postingsFile = workingDir.resolve(storageFile.name + MappedLookupStorage.POSTINGS_FILE_SUFFIX)
+        assertTrue(postingsFile.length() < 1 shl 20)
+        assertEquals(setOf(storageFile.name, postingsFile.name), workingDir.list()!!.toSet())
+        storage.append(KEY_B, listOf(8))
+        storage.close()
+
+        val reopened = MappedLookupStorage(storageFile)
+        assertEquals((4 until 300004).toSet(), reopened[KEY_A]!!.toSet())
+        assertEquals(setOf(7, 8), reopened[KEY_B]!!.toSet())
+        reopened.close()
+    }
+
+    companion object {
+        private val KEY_A = LookupSymbolKey("A", "a")
+        private val KEY_B = LookupSymbolKey("B", "b")
+    }
+}
@@ -57,12 +57,17 @@ import static org.jetbrains.kotlin.codegen.JvmCodegenUtil.getMappingFileName;
 public class ClassFileFactory implements OutputFileCollection {
     private final GenerationState state;
     private final ClassBuilderFactory builderFactory;
-    private final Map<String, OutAndSourceFileList> generators = new LinkedHashMap<>();
+    private final Map<String, OutAndSourceFileList> generators = Collections.synchronizedMap(new LinkedHashMap<>());
 
-    private boolean isDone = false;
+    private volatile boolean isDone = false;
 
-    private final Set<File> sourceFiles = new HashSet<>();
-    private final PackagePartRegistry packagePartRegistry = new PackagePartRegistry();
+    private final Set<File> sourceFiles = Collections.synchronizedSet(new HashSet<>());
+    private final PackagePartRegistry packagePartRegistry = new PackagePartRegistry(this::getCurrentUnit);
+
+    // Index of the independent part of the module (package or multifile class) being generated on the current thread.
+    // Recorded for every output so that the order of sequential generation can be restored after parallel codegen.
+    private final ThreadLocal<Integer> currentUnit = new ThreadLocal<>();
+    private final Map<String, Integer> outputUnits = new HashMap<>();
 
     public ClassFileFactory(@NotNull GenerationState state, @NotNull ClassBuilderFactory builderFactory) {
         this.state = state;
@@ -93,7 +98,7 @@ public class ClassFileFactory implements OutputFileCollection {
             @NotNull Collection<? extends PsiFile> sourceFiles
     ) {
         ClassBuilder answer = builderFactory.newClassBuilder(origin);
-        generators.put(
+        registerOutput(
                 asmType.getInternalName() + ".class",
                 new ClassBuilderAndSourceFileList(answer, toIoFilesIgnoringNonPhysical(sourceFiles))
         );
@@ -107,13 +112,63 @@ public class ClassFileFactory implements OutputFileCollection {
             @NotNull List<File> sourceFiles
     ) {
         ClassBuilder answer = builderFactory.newClassBuilder(origin);
-        generators.put(
+        registerOutput(
                 asmType.getInternalName() + ".class",
                 new ClassBuilderAndSourceFileList(answer, sourceFiles)
         );
         return answer;
     }
 
+    private void registerOutput(@NotNull String relativePath, @NotNull OutAndSourceFileList output) {
+        synchronized (generators) {
+            generators.put(relativePath, output);
+            Integer unit = currentUnit.get();
+            if (unit != null) {
+                outputUnits.put(relativePath, unit);
+            }
+        }
+    }
+
+    int getCurrentUnit() {
+        Integer unit = currentUnit.get();
+        return unit != null ? unit : 0;
+    }
+
+    /**
+     * Runs generation of an independent part of the module, possibly on a worker thread. Outputs produced by {@code generation}
+     * are ordered by {@code unitIndex} once {@link #restoreUnitOrder()} is called, so that parallel codegen stays reproducible.
+     */
+    public void generateUnit(int unitIndex, @NotNull Runnable generation) {
+        Integer previous = currentUnit.get();
+        currentUnit.set(unitIndex);
+        try {
+            generation.run();
+        }
+        finally {
+            if (previous != null) {
+                currentUnit.set(previous);
+            }
+            else {
+                currentUnit.remove();
+            }
+        }
+    }
+
+    public void restoreUnitOrder() {
+        synchronized (generators) {
+            if (outputUnits.isEmpty()) return;
+
+            List<Map.Entry<String, OutAndSourceFileList>> entries = new ArrayList<>(generators.entrySet());
+            // Stable sort: outputs of the same unit keep the order in which they were generated
+            entries.sort(Comparator.comparingInt(entry -> outputUnits.getOrDefault(entry.getKey(), Integer.MAX_VALUE)));
+            generators.clear();
+            for (Map.Entry<String, OutAndSourceFileList> entry : entries) {
+                generators.put(entry.getKey(), entry.getValue());
+            }
+            outputUnits.clear();
+        }
+    }
+
     public void done() {
         if (!isDone) {
             isDone = true;
@@ -122,7 +177,10 @@ public class ClassFileFactory implements OutputFileCollection {
     }
 
     public void releaseGeneratedOutput() {
-        generators.clear();
+        synchronized (generators) {
+            generators.clear();
+            outputUnits.clear();
+        }
     }
 
     private void writeModuleMappings() {
@@ -140,7 +198,12 @@ public class ClassFileFactory implements OutputFileCollection {
 
         JvmModuleProtoBuf.Module moduleProto = builder.build();
 
-        generators.put(outputFilePath, new OutAndSourceFileList(CollectionsKt.toList(sourceFiles)) {
+        List<File> moduleSourceFiles;
+        synchronized (sourceFiles) {
+            moduleSourceFiles = CollectionsKt.toList(sourceFiles);
+        }
+
+        generators.put(outputFilePath, new OutAndSourceFileList(moduleSourceFiles) {
             @Override
             public byte[] asBytes(ClassBuilderFactory factory) {
                 int flags = 0;
@@ -189,7 +252,9 @@ public class ClassFileFactory implements OutputFileCollection {
 
     @NotNull
     public List<OutputFile> getCurrentOutput() {
-        return CollectionsKt.map(generators.keySet(), OutputClassFile::new);
+        synchronized (generators) {
+            return CollectionsKt.map(generators.keySet(), OutputClassFile::new);
+        }
     }
 
     @Override
@@ -367,8 +432,11 @@ public class ClassFileFactory implements OutputFileCollection {
     }
 
     public void removeClasses(Set<String> classNamesToRemove) {
-        for (String classInternalName : classNamesToRemove) {
-            generators.remove(classInternalName + ".class");
+        synchronized (generators) {
+            for (String classInternalName : classNamesToRemove) {
+                generators.remove(classInternalName + ".class");
+                outputUnits.remove(classInternalName + ".class");
+            }
         }
     }
 
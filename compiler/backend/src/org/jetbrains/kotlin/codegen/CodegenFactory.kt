@@ -22,6 +22,7 @@ import org.jetbrains.kotlin.fileClasses.JvmFileClassUtil
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus
 import org.jetbrains.kotlin.psi.KtFile
+import java.util.concurrent.ForkJoinPool
 
 interface CodegenFactory {
     fun generateModule(state: GenerationState, files: Collection<KtFile>, errorHandler: CompilationErrorHandler)
@@ -55,17 +56,47 @@ object DefaultCodegenFactory : CodegenFactory {
             }
         }
 
+        val units = arrayListOf<() -> Unit>()
+
         val obsoleteMultifileClasses = HashSet(state.obsoleteMultifileClasses)
         for (multifileClassFqName in filesInMultifileClasses.keySet() + obsoleteMultifileClasses) {
-            CodegenFactory.doCheckCancelled(state)
-            generateMultifileClass(state, multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName), errorHandler)
+            units.add { generateMultifileClass(state, multifileClassFqName, filesInMultifileClasses.get(multifileClassFqName), errorHandler) }
         }
 
         val packagesWithObsoleteParts = HashSet(state.packagesWithObsoleteParts)
         for (packageFqName in packagesWithObsoleteParts + filesInPackages.keySet()) {
-            CodegenFactory.doCheckCancelled(state)
-            generatePackage(state, packageFqName, filesInPackages.get(packageFqName), errorHandler)
+            units.add { generatePackage(state, packageFqName, filesInPackages.get(packageFqName), errorHandler) }
+        }
+
+        if (state.parallelBackendThreads > 1 && state.classBuilderMode.generateBodies && units.size > 1) {
+            generateUnitsInParallel(state, units)
+        } else {
+            for (unit in units) {
+                CodegenFactory.doCheckCancelled(state)
+                unit()
+            }
+        }
+    }
+
+    // Packages and multifile classes are generated independently of each other, so they can be processed on separate threads.
+    // Class files are reordered afterwards to match the sequential generation order, which keeps the output reproducible.
+    private fun generateUnitsInParallel(state: GenerationState, units: List<() -> Unit>) {
+        val pool = ForkJoinPool(state.parallelBackendThreads)
+        try {
+            val tasks = units.mapIndexed { index, unit ->
+                pool.submit(Runnable {
+                    CodegenFactory.doCheckCancelled(state)
+                    state.withTaskGlobalInlineContext { state.factory.generateUnit(index, unit) }
+                })
+            }
+            for (task in tasks) {
+                task.join()
+            }
+        } finally {
+            pool.shutdownNow()
         }
+
+        state.factory.restoreUnitOrder()
     }
 
     override fun createPackageCodegen(state: GenerationState, files: Collection<KtFile>, fqName: FqName) =
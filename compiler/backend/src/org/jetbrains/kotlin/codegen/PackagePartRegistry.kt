@@ -19,10 +19,24 @@ package org.jetbrains.kotlin.codegen
 import org.jetbrains.kotlin.metadata.jvm.deserialization.PackageParts
 import org.jetbrains.kotlin.name.FqName
 
-class PackagePartRegistry {
-    val parts = mutableMapOf<FqName, PackageParts>()
+class PackagePartRegistry(private val currentUnit: () -> Int = { 0 }) {
+    private class Registration(val unit: Int, val packageFqName: FqName, val partInternalName: String, val facadeInternalName: String?)
 
+    private val registrations = arrayListOf<Registration>()
+
+    // Parts are ordered by the codegen unit that registered them, so the result does not depend on thread scheduling in parallel codegen
+    val parts: Map<FqName, PackageParts>
+        @Synchronized get() {
+            val result = linkedMapOf<FqName, PackageParts>()
+            for (registration in registrations.sortedBy { it.unit }) {
+                result.computeIfAbsent(registration.packageFqName) { PackageParts(it.asString()) }
+                    .addPart(registration.partInternalName, registration.facadeInternalName)
+            }
+            return result
+        }
+
+    @Synchronized
     fun addPart(packageFqName: FqName, partInternalName: String, facadeInternalName: String?) {
-        parts.computeIfAbsent(packageFqName) { PackageParts(it.asString()) }.addPart(partInternalName, facadeInternalName)
+        registrations.add(Registration(currentUnit(), packageFqName, partInternalName, facadeInternalName))
     }
 }
@@ -65,11 +65,28 @@ abstract class TransformationMethodVisitor(
 
         super.visitEnd()
 
-        try {
+        onMethodNodeCompleted()
+    }
+
+    /**
+     * Called when the whole method has been visited. Transforms the method node and writes it to the delegate right away,
+     * subclasses may postpone this by calling [transform] and [emit] later.
+     */
+    protected open fun onMethodNodeCompleted() {
+        transform()
+        emit()
+    }
+
+    protected fun transform() {
+        rethrowAsCompilationException {
             if (shouldBeTransformed(methodNode)) {
                 performTransformations(methodNode)
             }
+        }
+    }
 
+    protected fun emit() {
+        rethrowAsCompilationException {
             methodNode.accept(EndIgnoringMethodVisitorDecorator(Opcodes.API_VERSION, delegate))
 
 
@@ -88,6 +105,12 @@ abstract class TransformationMethodVisitor(
             }
 
             delegate.visitEnd()
+        }
+    }
+
+    private inline fun rethrowAsCompilationException(block: () -> Unit) {
+        try {
+            block()
         } catch (t: Throwable) {
             throw CompilationException("Couldn't transform method node:\n" + methodNode.nodeText, t, null)
         }
@@ -19,19 +19,23 @@ package org.jetbrains.kotlin.codegen.inline
 import com.intellij.util.containers.SLRUMap
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.org.objectweb.asm.commons.Method
+import java.util.concurrent.ConcurrentHashMap
 
 data class MethodId(val ownerInternalName: String, val method: Method)
 
 class InlineCache {
     val classBytes: SLRUMap<ClassId, ByteArray> = SLRUMap(30, 20)
     val methodNodeById: SLRUMap<MethodId, SMAPAndMethodNode> = SLRUMap(60, 50)
+    val classContentHashes: ConcurrentHashMap<ClassId, SharedInlineCache.ContentHash> = ConcurrentHashMap()
 }
 
+// SLRUMap is not thread-safe (even `get` reorders entries), so accesses are synchronized for parallel code generation.
+// The value is computed outside of the lock, which may lead to a duplicate computation but never blocks other threads.
 inline fun <K, V> SLRUMap<K, V>.getOrPut(key: K, defaultValue: () -> V): V {
-    val value = get(key)
+    val value = synchronized(this) { get(key) }
     return if (value == null) {
         val answer = defaultValue()
-        put(key, answer)
+        synchronized(this) { put(key, answer) }
         answer
     } else {
         value
@@ -17,6 +17,7 @@ import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicArrayConstructors
 import org.jetbrains.kotlin.codegen.state.GenerationState
 import org.jetbrains.kotlin.codegen.state.KotlinTypeMapper
 import org.jetbrains.kotlin.descriptors.*
+import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.renderer.DescriptorRenderer
 import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils
@@ -577,7 +578,9 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
                 result ?: throw IllegalStateException("Couldn't obtain compiled function body for $functionDescriptor")
             }
 
-            return resultInCache.copyWithNewNode(cloneMethodNode(resultInCache.node))
+            // Cached nodes may be shared with other threads and compilations, and cloning resets their labels
+            val clone = synchronized(resultInCache.node) { cloneMethodNode(resultInCache.node) }
+            return resultInCache.copyWithNewNode(clone)
         }
 
         private fun createDefaultFakeSMAP() = SMAPParser.parseOrCreateDefault(null, null, "fake", -1, -1)
@@ -625,11 +628,29 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
 
             val containerId = containingClasses.implClassId
 
-            val bytes = state.inlineCache.classBytes.getOrPut(containerId) {
+            fun classBytes() = state.inlineCache.classBytes.getOrPut(containerId) {
                 findVirtualFile(state, containerId)?.contentsToByteArray()
                     ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
             }
 
+            if (state.sharedInlineCacheSize > 0) {
+                // Hashes are kept for the whole compilation, so the class file is read and hashed only on the first lookup of its methods
+                val contentHash = state.inlineCache.classContentHashes.getOrPut(containerId) { SharedInlineCache.contentHash(classBytes()) }
+                val methodId = MethodId(AsmUtil.asmTypeByClassId(containerId).internalName, asmMethod)
+                return SharedInlineCache.getOrPut(contentHash, methodId, state.sharedInlineCacheSize) {
+                    doCreateMethodNodeFromClassBytes(callableDescriptor, containerId, asmMethod, classBytes())
+                }
+            }
+
+            return doCreateMethodNodeFromClassBytes(callableDescriptor, containerId, asmMethod, classBytes())
+        }
+
+        private fun doCreateMethodNodeFromClassBytes(
+            callableDescriptor: CallableMemberDescriptor,
+            containerId: ClassId,
+            asmMethod: Method,
+            bytes: ByteArray
+        ): SMAPAndMethodNode? {
             val methodNode =
                 getMethodNode(bytes, asmMethod.name, asmMethod.descriptor, AsmUtil.asmTypeByClassId(containerId)) ?: return null
 
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.inline
+
+import org.jetbrains.kotlin.util.PerformanceCounter
+import java.security.MessageDigest
+import java.util.*
+
+/**
+ * Method nodes of inline functions from binary dependencies, shared between all compilations in the same process (e.g. in the daemon).
+ * Entries are keyed by a digest of the contents of the class file they were read from, so that a changed library is never served
+ * from the cache, even if its time stamp and length are unchanged. Cached nodes must not be modified, see [InlineCodegen] which
+ * clones them before inlining.
+ */
+object SharedInlineCache {
+    const val MAX_SIZE = 10000
+
+    class ContentHash(private val digest: ByteArray) {
+        override fun equals(other: Any?): Boolean = other is ContentHash && Arrays.equals(digest, other.digest)
+
+        override fun hashCode(): Int = Arrays.hashCode(digest)
+    }
+
+    private data class Key(val contentHash: ContentHash, val methodId: MethodId)
+
+    private val hits = PerformanceCounter.create("Shared inline cache hits")
+    private val misses = PerformanceCounter.create("Shared inline cache misses")
+
+    private var maxSize = 0
+
+    private val methodNodes = object : LinkedHashMap<Key, SMAPAndMethodNode>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, SMAPAndMethodNode>): Boolean = size > maxSize
+    }
+
+    fun contentHash(classBytes: ByteArray): ContentHash = ContentHash(MessageDigest.getInstance("MD5").digest(classBytes))
+
+    /**
+     * Returns the cached method node for [methodId] from the class file with the given [contentHash], or computes it outside of the lock
+     * and caches it. The cache keeps the most recently used entries up to the largest [maxSize] requested in this process (but no more
+     * than [MAX_SIZE]), so that compilations with a smaller limit don't evict entries of other compilations.
+     */
+    fun getOrPut(contentHash: ContentHash, methodId: MethodId, maxSize: Int, compute: () -> SMAPAndMethodNode?): SMAPAndMethodNode? {
+        val key = Key(contentHash, methodId)
+
+        synchronized(this) {
+            methodNodes[key]?.let {
+                hits.increment()
+                return it
+            }
+        }
+
+        misses.increment()
+        val result = compute() ?: return null
+
+        synchronized(this) {
+            growMaxSize(maxSize)
+            methodNodes[key] = result
+        }
+        return result
+    }
+
+    private fun growMaxSize(maxSize: Int) {
+        this.maxSize = maxOf(this.maxSize, maxSize.coerceIn(0, MAX_SIZE))
+    }
+
+    val size: Int
+        @Synchronized get() = methodNodes.size
+
+    @Synchronized
+    fun clear() {
+        methodNodes.clear()
+        maxSize = 0
+    }
+}
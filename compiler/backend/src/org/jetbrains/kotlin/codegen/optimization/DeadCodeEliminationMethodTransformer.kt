@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.codegen.optimization
 
 import org.jetbrains.kotlin.codegen.inline.remove
 import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.codegen.optimization.common.SparseFrames
 import org.jetbrains.kotlin.codegen.optimization.common.removeEmptyCatchBlocks
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer
 import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode
@@ -31,17 +32,23 @@ class DeadCodeEliminationMethodTransformer : MethodTransformer() {
     }
 
     fun transformWithResult(internalClassName: String, methodNode: MethodNode): Result {
-        val frames = analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
-        return removeDeadCodeByFrames(methodNode, frames)
+        val frames = analyzeFrames(internalClassName, methodNode, OptimizationBasicInterpreter())
+        return if (frames is SparseFrames)
+            removeDeadCode(methodNode, frames::isReachable)
+        else
+            removeDeadCode(methodNode) { frames[it] != null }
     }
 
-    fun removeDeadCodeByFrames(methodNode: MethodNode, frames: Array<out Any?>): Result {
+    fun removeDeadCodeByFrames(methodNode: MethodNode, frames: Array<out Any?>): Result =
+        removeDeadCode(methodNode) { frames[it] != null }
+
+    private fun removeDeadCode(methodNode: MethodNode, isReachable: (Int) -> Boolean): Result {
         val insnsToRemove = ArrayList<AbstractInsnNode>()
 
         val insns = methodNode.instructions.toArray()
         for (i in insns.indices) {
             val insn = insns[i]
-            if (shouldRemove(insn, i, frames)) {
+            if (shouldRemove(insn, i, isReachable)) {
                 insnsToRemove.add(insn)
             }
         }
@@ -54,18 +61,18 @@ class DeadCodeEliminationMethodTransformer : MethodTransformer() {
         return Result(insnsToRemove.toSet())
     }
 
-    private fun shouldRemove(insn: AbstractInsnNode, index: Int, frames: Array<out Any?>): Boolean =
+    private fun shouldRemove(insn: AbstractInsnNode, index: Int, isReachable: (Int) -> Boolean): Boolean =
         when (insn) {
             is LabelNode ->
                 // Do not remove label nodes because they can be referred by try/catch blocks or local variables table
                 false
             is LineNumberNode ->
-                isDeadLineNumber(insn, index, frames)
+                isDeadLineNumber(insn, index, isReachable)
             else ->
-                frames[index] == null
+                !isReachable(index)
         }
 
-    private fun isDeadLineNumber(insn: LineNumberNode, index: Int, frames: Array<out Any?>): Boolean {
+    private fun isDeadLineNumber(insn: LineNumberNode, index: Int, isReachable: (Int) -> Boolean): Boolean {
         // Line number node is "dead" if the corresponding line number interval
         // contains at least one "dead" meaningful instruction and no "live" meaningful instructions.
         var finger: AbstractInsnNode = insn
@@ -80,7 +87,7 @@ class DeadCodeEliminationMethodTransformer : MethodTransformer() {
                 is LineNumberNode ->
                     if (finger.line != insn.line) return hasDeadInsn
                 else -> {
-                    if (frames[fingerIndex] != null) return false
+                    if (isReachable(fingerIndex)) return false
                     hasDeadInsn = true
                 }
             }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+
+/**
+ * Runs method transformations of a single class on background threads, while the methods are written to the class
+ * in the order they were generated, on the thread that calls [flush].
+ */
+class MethodOptimizationQueue(private val executor: ExecutorService) {
+    private class PendingMethod(val transformation: Future<*>, val emit: () -> Unit)
+
+    private val pending = arrayListOf<PendingMethod>()
+
+    fun schedule(transform: () -> Unit, emit: () -> Unit) {
+        pending.add(PendingMethod(executor.submit(transform), emit))
+    }
+
+    fun flush() {
+        if (pending.isEmpty()) return
+
+        val methods = pending.toList()
+        pending.clear()
+
+        for (method in methods) {
+            try {
+                method.transformation.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+            method.emit()
+        }
+    }
+}
@@ -27,10 +27,21 @@ import org.jetbrains.org.objectweb.asm.MethodVisitor;
 public class OptimizationClassBuilder extends DelegatingClassBuilder {
     private final ClassBuilder delegate;
     private final GenerationState generationState;
+    @Nullable
+    private final MethodOptimizationQueue optimizationQueue;
 
     public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull GenerationState generationState) {
+        this(delegate, generationState, null);
+    }
+
+    public OptimizationClassBuilder(
+            @NotNull ClassBuilder delegate,
+            @NotNull GenerationState generationState,
+            @Nullable MethodOptimizationQueue optimizationQueue
+    ) {
         this.delegate = delegate;
         this.generationState = generationState;
+        this.optimizationQueue = optimizationQueue;
     }
 
     @NotNull
@@ -51,7 +62,19 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
     ) {
         return new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
-                generationState, access, name, desc, signature, exceptions
+                generationState, access, name, desc, signature, exceptions, optimizationQueue
         );
     }
+
+    public void flushOptimizedMethods() {
+        if (optimizationQueue != null) {
+            optimizationQueue.flush();
+        }
+    }
+
+    @Override
+    public void done() {
+        flushOptimizedMethods();
+        super.done();
+    }
 }
@@ -17,22 +17,70 @@
 package org.jetbrains.kotlin.codegen.optimization;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.codegen.ClassBuilder;
 import org.jetbrains.kotlin.codegen.ClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.DelegatingClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class OptimizationClassBuilderFactory extends DelegatingClassBuilderFactory {
     private final GenerationState generationState;
+    @Nullable
+    private final ExecutorService optimizationExecutor;
 
     public OptimizationClassBuilderFactory(ClassBuilderFactory delegate, @NotNull GenerationState generationState) {
         super(delegate);
         this.generationState = generationState;
+        this.optimizationExecutor = createOptimizationExecutor(generationState.getMethodOptimizationThreads());
+    }
+
+    @Nullable
+    private static ExecutorService createOptimizationExecutor(int threads) {
+        if (threads <= 0) return null;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Kotlin method optimization " + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @NotNull
     @Override
     public OptimizationClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState);
+        MethodOptimizationQueue queue = optimizationExecutor != null ? new MethodOptimizationQueue(optimizationExecutor) : null;
+        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState, queue);
+    }
+
+    @Nullable
+    @Override
+    public byte[] asBytes(@Nullable ClassBuilder builder) {
+        if (builder instanceof OptimizationClassBuilder) {
+            ((OptimizationClassBuilder) builder).flushOptimizedMethods();
+        }
+        return super.asBytes(builder);
+    }
+
+    @Nullable
+    @Override
+    public String asText(@Nullable ClassBuilder builder) {
+        if (builder instanceof OptimizationClassBuilder) {
+            ((OptimizationClassBuilder) builder).flushOptimizedMethods();
+        }
+        return super.asText(builder);
+    }
+
+    @Override
+    public void close() {
+        if (optimizationExecutor != null) {
+            optimizationExecutor.shutdownNow();
+        }
+        super.close();
     }
 }
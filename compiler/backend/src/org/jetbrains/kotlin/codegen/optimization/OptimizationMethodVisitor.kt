@@ -20,6 +20,8 @@ import org.jetbrains.kotlin.codegen.TransformationMethodVisitor
 import org.jetbrains.kotlin.codegen.optimization.boxing.PopBackwardPropagationTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantBoxingMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.boxing.StackPeepholeOptimizationsTransformer
+import org.jetbrains.kotlin.codegen.optimization.common.canBeOptimized
+import org.jetbrains.kotlin.codegen.optimization.common.canBeOptimizedUsingSparseFrames
 import org.jetbrains.kotlin.codegen.optimization.common.prepareForEmitting
 import org.jetbrains.kotlin.codegen.optimization.nullCheck.RedundantNullCheckMethodTransformer
 import org.jetbrains.kotlin.codegen.optimization.transformer.CompositeMethodTransformer
@@ -34,7 +36,8 @@ class OptimizationMethodVisitor(
     name: String,
     desc: String,
     signature: String?,
-    exceptions: Array<String>?
+    exceptions: Array<String>?,
+    private val optimizationQueue: MethodOptimizationQueue? = null
 ) : TransformationMethodVisitor(delegate, access, name, desc, signature, exceptions) {
     private val constructorCallNormalizationTransformer =
         UninitializedStoresMethodTransformer(generationState.constructorCallNormalizationMode)
@@ -58,32 +61,39 @@ class OptimizationMethodVisitor(
         MethodVerifier("AFTER optimizations")
     )
 
+    // Transformers which get frames via MethodTransformer.analyzeFrames, and thus can also process methods that are too big for
+    // a frame per instruction
+    private val largeMethodOptimizationTransformer = CompositeMethodTransformer(
+        RedundantCheckCastEliminationMethodTransformer(),
+        RedundantBoxingMethodTransformer(generationState),
+        StackPeepholeOptimizationsTransformer(),
+        DeadCodeEliminationMethodTransformer(),
+        RedundantGotoMethodTransformer(),
+        RedundantNopsCleanupMethodTransformer()
+    )
+
+    override fun onMethodNodeCompleted() {
+        if (optimizationQueue != null) {
+            optimizationQueue.schedule(this::transform, this::emit)
+        } else {
+            super.onMethodNodeCompleted()
+        }
+    }
+
     override fun performTransformations(methodNode: MethodNode) {
         normalizationMethodTransformer.transform("fake", methodNode)
         constructorCallNormalizationTransformer.transform("fake", methodNode)
 
-        if (canBeOptimized(methodNode) && !generationState.disableOptimization) {
-            optimizationTransformer.transform("fake", methodNode)
+        if (!generationState.disableOptimization) {
+            if (canBeOptimized(methodNode)) {
+                optimizationTransformer.transform("fake", methodNode)
+            } else if (canBeOptimizedUsingSparseFrames(methodNode)) {
+                largeMethodOptimizationTransformer.transform("fake", methodNode)
+            }
         }
 
         DeadCodeEliminationMethodTransformer().transform("fake", methodNode)
 
         methodNode.prepareForEmitting()
     }
-
-    companion object {
-        private val MEMORY_LIMIT_BY_METHOD_MB = 50
-
-        fun canBeOptimized(node: MethodNode): Boolean {
-            val totalFramesSizeMb = node.instructions.size() * (node.maxLocals + node.maxStack) / (1024 * 1024)
-            return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
-        }
-
-        fun canBeOptimizedUsingSourceInterpreter(node: MethodNode): Boolean {
-            val frameSize = node.maxLocals + node.maxStack
-            val methodSize = node.instructions.size().toLong()
-            val totalFramesSizeMb = methodSize * methodSize * frameSize / (1024 * 1024)
-            return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
-        }
-    }
 }
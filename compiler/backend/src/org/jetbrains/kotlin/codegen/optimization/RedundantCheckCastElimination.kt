@@ -32,23 +32,22 @@ class RedundantCheckCastEliminationMethodTransformer : MethodTransformer() {
 
         val redundantCheckCasts = ArrayList<TypeInsnNode>()
 
-        val frames = analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
+        val frames = analyzeFrames(internalClassName, methodNode, OptimizationBasicInterpreter())
         for (i in insns.indices) {
-            val valueType = frames[i]?.top()?.type ?: continue
             val insn = insns[i]
+            if (insn !is TypeInsnNode) continue
+            val valueType = frames[i]?.top()?.type ?: continue
             if (ReifiedTypeInliner.isOperationReifiedMarker(insn.previous)) continue
 
-            if (insn is TypeInsnNode) {
-                val insnType = Type.getObjectType(insn.desc)
-                if (!isTrivialSubtype(insnType, valueType)) continue
+            val insnType = Type.getObjectType(insn.desc)
+            if (!isTrivialSubtype(insnType, valueType)) continue
 
-                //Keep casts to multiarray types cause dex doesn't recognize ANEWARRAY [Ljava/lang/Object; as Object [][], but Object [] type
-                //It's not clear is it bug in dex or not and maybe best to distinguish such types from MULTINEWARRRAY ones in method analyzer
-                if (isMultiArrayType(insnType)) continue
+            //Keep casts to multiarray types cause dex doesn't recognize ANEWARRAY [Ljava/lang/Object; as Object [][], but Object [] type
+            //It's not clear is it bug in dex or not and maybe best to distinguish such types from MULTINEWARRRAY ones in method analyzer
+            if (isMultiArrayType(insnType)) continue
 
-                if (insn.opcode == Opcodes.CHECKCAST) {
-                    redundantCheckCasts.add(insn)
-                }
+            if (insn.opcode == Opcodes.CHECKCAST) {
+                redundantCheckCasts.add(insn)
             }
         }
 
@@ -39,7 +39,7 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
 
     override fun transform(internalClassName: String, node: MethodNode) {
         val interpreter = RedundantBoxingInterpreter(node.instructions, generationState)
-        val frames = MethodTransformer.analyze(internalClassName, node, interpreter)
+        val frames = MethodTransformer.analyzeFrames(internalClassName, node, interpreter)
 
         interpretPopInstructionsForBoxedValues(interpreter, node, frames)
 
@@ -60,7 +60,7 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
     private fun interpretPopInstructionsForBoxedValues(
         interpreter: RedundantBoxingInterpreter,
         node: MethodNode,
-        frames: Array<out Frame<BasicValue>?>
+        frames: List<Frame<BasicValue>?>
     ) {
         for (i in frames.indices) {
             val insn = node.instructions[i]
@@ -82,7 +82,7 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
     private fun removeValuesClashingWithVariables(
         values: RedundantBoxedValuesCollection,
         node: MethodNode,
-        frames: Array<Frame<BasicValue>>
+        frames: List<Frame<BasicValue>?>
     ) {
         while (removeValuesClashingWithVariablesPass(values, node, frames)) {
             // do nothing
@@ -92,7 +92,7 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
     private fun removeValuesClashingWithVariablesPass(
         values: RedundantBoxedValuesCollection,
         node: MethodNode,
-        frames: Array<out Frame<BasicValue>?>
+        frames: List<Frame<BasicValue>?>
     ): Boolean {
         var needToRepeat = false
 
@@ -131,7 +131,7 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
             !descriptor.isSafeToRemove || descriptor.unboxedType != unboxedType
         }
 
-    private fun adaptLocalVariableTableForBoxedValues(node: MethodNode, frames: Array<Frame<BasicValue>>) {
+    private fun adaptLocalVariableTableForBoxedValues(node: MethodNode, frames: List<Frame<BasicValue>?>) {
         for (localVariableNode in node.localVariables) {
             if (Type.getType(localVariableNode.desc).sort != Type.OBJECT) {
                 continue
@@ -150,7 +150,7 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
     private fun getValuesStoredOrLoadedToVariable(
         localVariableNode: LocalVariableNode,
         node: MethodNode,
-        frames: Array<out Frame<BasicValue>?>
+        frames: List<Frame<BasicValue>?>
     ): List<BasicValue> {
         val values = ArrayList<BasicValue>()
         val insnList = node.instructions
@@ -165,10 +165,10 @@ class RedundantBoxingMethodTransformer(private val generationState: GenerationSt
 
         for (i in localVariableStart until localVariableEnd) {
             if (i < 0 || i >= insnList.size()) continue
-            val frame = frames[i] ?: continue
             val insn = insnList[i]
             if ((insn.opcode == Opcodes.ASTORE || insn.opcode == Opcodes.ALOAD) &&
                 (insn as VarInsnNode).`var` == localVariableNode.index) {
+                val frame = frames[i] ?: continue
                 if (insn.getOpcode() == Opcodes.ASTORE) {
                     values.add(frame.top()!!)
                 } else {
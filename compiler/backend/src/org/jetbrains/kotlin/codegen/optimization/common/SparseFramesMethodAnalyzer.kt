@@ -0,0 +1,244 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.kotlin.codegen.inline.insnText
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.tree.*
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value
+import java.util.*
+
+/**
+ * Data flow analyzer which computes the same frames as [MethodAnalyzer], but keeps them only at the beginning of basic blocks.
+ * Frames for the other instructions are recomputed on demand by [SparseFrames], so the memory needed for frames is proportional
+ * to the number of basic blocks rather than to the number of instructions.
+ *
+ * Note that instructions are interpreted again each time a frame is recomputed. This is fine for interpreters used in the fixed point
+ * iteration, because they are already required to tolerate repeated interpretation of the same instruction.
+ */
+class SparseFramesMethodAnalyzer<V : Value>(
+    private val owner: String,
+    private val method: MethodNode,
+    private val interpreter: Interpreter<V>
+) {
+    private val insns: Array<AbstractInsnNode> = method.instructions.toArray()
+    private val nInsns: Int = insns.size
+
+    private val handlers: Array<MutableList<TryCatchBlockNode>?> = arrayOfNulls(nInsns)
+
+    // Sorted indices of the first instructions of basic blocks
+    private lateinit var blockStarts: IntArray
+    private lateinit var blockFrames: Array<Frame<V>?>
+
+    private lateinit var queued: BooleanArray
+    private lateinit var queue: IntArray
+    private var top: Int = 0
+
+    fun analyze(): SparseFrames<V> {
+        if (nInsns == 0) return SparseFrames(insns, intArrayOf(), arrayOf(), interpreter)
+
+        computeExceptionHandlersForEachInsn()
+        blockStarts = computeBlockStarts()
+
+        val nBlocks = blockStarts.size
+        @Suppress("UNCHECKED_CAST")
+        blockFrames = arrayOfNulls<Frame<*>>(nBlocks) as Array<Frame<V>?>
+        queued = BooleanArray(nBlocks)
+        queue = IntArray(nBlocks)
+
+        mergeControlFlowEdge(0, createEntryFrame())
+
+        val current = Frame<V>(method.maxLocals, method.maxStack)
+        val handler = Frame<V>(method.maxLocals, method.maxStack)
+        while (top > 0) {
+            val block = queue[--top]
+            queued[block] = false
+            interpretBlock(block, current, handler)
+        }
+
+        return SparseFrames(insns, blockStarts, blockFrames, interpreter)
+    }
+
+    private fun interpretBlock(block: Int, current: Frame<V>, handler: Frame<V>) {
+        current.init(blockFrames[block]!!)
+
+        val start = blockStarts[block]
+        val end = blockEnd(blockStarts, block, nInsns)
+        for (insn in start until end) {
+            val insnNode = insns[insn]
+            try {
+                handlers[insn]?.forEach { tcb ->
+                    val exnType = Type.getObjectType(tcb.type ?: "java/lang/Throwable")
+                    handler.init(current)
+                    handler.clearStack()
+                    handler.push(interpreter.newValue(exnType))
+                    mergeControlFlowEdge(method.instructions.indexOf(tcb.handler), handler)
+                }
+
+                if (insnNode.isMeaningful) {
+                    current.execute(insnNode, interpreter)
+                }
+
+                when (insnNode) {
+                    is JumpInsnNode ->
+                        mergeControlFlowEdge(method.instructions.indexOf(insnNode.label), current)
+                    is LookupSwitchInsnNode -> {
+                        mergeControlFlowEdge(method.instructions.indexOf(insnNode.dflt), current)
+                        insnNode.labels.forEach { mergeControlFlowEdge(method.instructions.indexOf(it), current) }
+                    }
+                    is TableSwitchInsnNode -> {
+                        mergeControlFlowEdge(method.instructions.indexOf(insnNode.dflt), current)
+                        insnNode.labels.forEach { mergeControlFlowEdge(method.instructions.indexOf(it), current) }
+                    }
+                }
+            } catch (e: AnalyzerException) {
+                throw AnalyzerException(e.node, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+            } catch (e: Exception) {
+                throw AnalyzerException(insnNode, "Error at instruction #$insn ${insnNode.insnText}: ${e.message}", e)
+            }
+        }
+
+        if (end < nInsns && insns[end - 1].canFallThrough) {
+            mergeControlFlowEdge(end, current)
+        }
+    }
+
+    private fun createEntryFrame(): Frame<V> {
+        val frame = Frame<V>(method.maxLocals, method.maxStack)
+        frame.setReturn(interpreter.newValue(Type.getReturnType(method.desc)))
+        var local = 0
+        if ((method.access and Opcodes.ACC_STATIC) == 0) {
+            frame.setLocal(local++, interpreter.newValue(Type.getObjectType(owner)))
+        }
+        for (arg in Type.getArgumentTypes(method.desc)) {
+            frame.setLocal(local++, interpreter.newValue(arg))
+            if (arg.size == 2) {
+                frame.setLocal(local++, interpreter.newValue(null))
+            }
+        }
+        while (local < method.maxLocals) {
+            frame.setLocal(local++, interpreter.newValue(null))
+        }
+        return frame
+    }
+
+    private fun computeBlockStarts(): IntArray {
+        val isBlockStart = BooleanArray(nInsns)
+        isBlockStart[0] = true
+        for (tcb in method.tryCatchBlocks) {
+            isBlockStart[method.instructions.indexOf(tcb.handler)] = true
+        }
+        for (i in 0 until nInsns) {
+            val insn = insns[i]
+            when (insn) {
+                is JumpInsnNode ->
+                    isBlockStart[method.instructions.indexOf(insn.label)] = true
+                is LookupSwitchInsnNode -> {
+                    isBlockStart[method.instructions.indexOf(insn.dflt)] = true
+                    insn.labels.forEach { isBlockStart[method.instructions.indexOf(it)] = true }
+                }
+                is TableSwitchInsnNode -> {
+                    isBlockStart[method.instructions.indexOf(insn.dflt)] = true
+                    insn.labels.forEach { isBlockStart[method.instructions.indexOf(it)] = true }
+                }
+            }
+            if (i + 1 < nInsns && (insn is JumpInsnNode || insn is LookupSwitchInsnNode || insn is TableSwitchInsnNode || !insn.canFallThrough)) {
+                isBlockStart[i + 1] = true
+            }
+        }
+        return (0 until nInsns).filter { isBlockStart[it] }.toIntArray()
+    }
+
+    private fun computeExceptionHandlersForEachInsn() {
+        for (tcb in method.tryCatchBlocks) {
+            val begin = method.instructions.indexOf(tcb.start)
+            val end = method.instructions.indexOf(tcb.end)
+            for (j in begin until end) {
+                val insnHandlers = handlers[j] ?: ArrayList<TryCatchBlockNode>().also { handlers[j] = it }
+                insnHandlers.add(tcb)
+            }
+        }
+    }
+
+    private fun mergeControlFlowEdge(insn: Int, frame: Frame<V>) {
+        val block = Arrays.binarySearch(blockStarts, insn)
+        assert(block >= 0) { "Control flow edge to the middle of a basic block: $insn" }
+
+        val oldFrame = blockFrames[block]
+        val changes =
+            if (oldFrame != null)
+                oldFrame.merge(frame, interpreter)
+            else {
+                blockFrames[block] = Frame(frame)
+                true
+            }
+        if (changes && !queued[block]) {
+            queued[block] = true
+            queue[top++] = block
+        }
+    }
+}
+
+/**
+ * Frames computed by [SparseFramesMethodAnalyzer]. Each call to [get] returns a new frame, recomputed from the frame at the beginning
+ * of the corresponding basic block. Sequential access to the instructions of a block is amortized to a single interpretation of the block.
+ */
+class SparseFrames<V : Value> internal constructor(
+    private val insns: Array<AbstractInsnNode>,
+    private val blockStarts: IntArray,
+    private val blockFrames: Array<Frame<V>?>,
+    private val interpreter: Interpreter<V>
+) : AbstractList<Frame<V>?>() {
+    private var cachedFrame: Frame<V>? = null
+    private var cachedBlock: Int = -1
+    private var cachedIndex: Int = -1
+
+    override val size: Int
+        get() = insns.size
+
+    fun isReachable(index: Int): Boolean =
+        blockFrames[blockOf(index)] != null
+
+    override fun get(index: Int): Frame<V>? {
+        if (index < 0 || index >= insns.size) throw IndexOutOfBoundsException("Index: $index, size: ${insns.size}")
+
+        val block = blockOf(index)
+        val blockFrame = blockFrames[block] ?: return null
+
+        var frame = cachedFrame
+        if (frame == null || cachedBlock != block || cachedIndex > index) {
+            frame = Frame(blockFrame)
+            cachedFrame = frame
+            cachedBlock = block
+            cachedIndex = blockStarts[block]
+        }
+
+        while (cachedIndex < index) {
+            val insn = insns[cachedIndex++]
+            if (insn.isMeaningful) {
+                frame.execute(insn, interpreter)
+            }
+        }
+
+        return Frame(frame)
+    }
+
+    private fun blockOf(index: Int): Int {
+        val position = Arrays.binarySearch(blockStarts, index)
+        return if (position >= 0) position else -position - 2
+    }
+}
+
+private fun blockEnd(blockStarts: IntArray, block: Int, nInsns: Int): Int =
+    if (block + 1 < blockStarts.size) blockStarts[block + 1] else nInsns
+
+private val AbstractInsnNode.canFallThrough: Boolean
+    get() = opcode != Opcodes.GOTO && opcode != Opcodes.ATHROW && opcode !in Opcodes.IRETURN..Opcodes.RETURN &&
+            this !is LookupSwitchInsnNode && this !is TableSwitchInsnNode
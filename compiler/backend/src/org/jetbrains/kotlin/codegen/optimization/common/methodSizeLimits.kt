@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common
+
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.tree.*
+
+// Methods whose frames computed by an analyzer would take more memory than this are not optimized
+private const val MEMORY_LIMIT_BY_METHOD_MB = 50
+
+fun canBeOptimized(node: MethodNode): Boolean {
+    val totalFramesSizeMb = node.instructions.size() * (node.maxLocals + node.maxStack) / (1024 * 1024)
+    return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
+}
+
+fun canBeOptimizedUsingSparseFrames(node: MethodNode): Boolean {
+    // Sparse frames are kept only at the beginning of basic blocks, each of which starts with a label (jump target or
+    // exception handler) or follows a control flow instruction
+    val maxBasicBlocks = 1L + node.instructions.toArray().count {
+        it is LabelNode || it is JumpInsnNode || it is LookupSwitchInsnNode || it is TableSwitchInsnNode ||
+                it.opcode == Opcodes.ATHROW || it.opcode in Opcodes.IRETURN..Opcodes.RETURN
+    }
+    val totalFramesSizeMb = maxBasicBlocks * (node.maxLocals + node.maxStack) / (1024 * 1024)
+    return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
+}
+
+fun canBeOptimizedUsingSourceInterpreter(node: MethodNode): Boolean {
+    val frameSize = node.maxLocals + node.maxStack
+    val methodSize = node.instructions.size().toLong()
+    val totalFramesSizeMb = methodSize * methodSize * frameSize / (1024 * 1024)
+    return totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB
+}
@@ -17,9 +17,15 @@
 package org.jetbrains.kotlin.codegen.optimization.transformer;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.codegen.optimization.common.MethodSizeLimitsKt;
+import org.jetbrains.kotlin.codegen.optimization.common.SparseFrames;
+import org.jetbrains.kotlin.codegen.optimization.common.SparseFramesMethodAnalyzer;
 import org.jetbrains.org.objectweb.asm.tree.MethodNode;
 import org.jetbrains.org.objectweb.asm.tree.analysis.*;
 
+import java.util.Arrays;
+import java.util.List;
+
 public abstract class MethodTransformer {
     @NotNull
     protected static <V extends Value> Frame<V>[] runAnalyzer(
@@ -44,5 +50,27 @@ public abstract class MethodTransformer {
         return runAnalyzer(new Analyzer<>(interpreter), internalClassName, node);
     }
 
+    /**
+     * Same as {@link #analyze}, but for methods that are too big for a frame per instruction, returns {@link SparseFrames}
+     * which are recomputed from the beginning of the basic block on each access.
+     */
+    @NotNull
+    public static <V extends Value> List<Frame<V>> analyzeFrames(
+            @NotNull String internalClassName,
+            @NotNull MethodNode node,
+            @NotNull Interpreter<V> interpreter
+    ) {
+        if (MethodSizeLimitsKt.canBeOptimized(node)) {
+            return Arrays.asList(analyze(internalClassName, node, interpreter));
+        }
+
+        try {
+            return new SparseFramesMethodAnalyzer<>(internalClassName, node, interpreter).analyze();
+        }
+        catch (AnalyzerException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public abstract void transform(@NotNull String internalClassName, @NotNull MethodNode methodNode);
 }
@@ -147,6 +147,8 @@ class GenerationState private constructor(
 
     val inlineCache: InlineCache = InlineCache()
 
+    val sharedInlineCacheSize: Int = configuration.get(JVMConfigurationKeys.SHARED_INLINE_CACHE_SIZE, 0)
+
     val incrementalCacheForThisTarget: IncrementalCache?
     val packagesWithObsoleteParts: Set<FqName>
     val obsoleteMultifileClasses: List<FqName>
@@ -178,8 +180,19 @@ class GenerationState private constructor(
         }
     }
 
+    val parallelBackendThreads: Int = configuration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1)
+
+    val methodOptimizationThreads: Int = configuration.get(JVMConfigurationKeys.METHOD_OPTIMIZATION_THREADS, 0)
+
+    // Besides threads of parallel code generation, traces are read and written by method optimizations running in background,
+    // e.g. when the unboxed type of an inline class is mapped
+    private val isTraceShared = parallelBackendThreads > 1 || methodOptimizationThreads > 0
+
     val extraJvmDiagnosticsTrace: BindingTrace =
-        DelegatingBindingTrace(bindingContext, "For extra diagnostics in ${this::class.java}", false)
+        if (isTraceShared)
+            SynchronizedBindingTrace(bindingContext, "For extra diagnostics in ${this::class.java}", false)
+        else
+            DelegatingBindingTrace(bindingContext, "For extra diagnostics in ${this::class.java}", false)
     private val interceptedBuilderFactory: ClassBuilderFactory
     private var used = false
 
@@ -195,10 +208,13 @@ class GenerationState private constructor(
 
     val moduleName: String = moduleName ?: JvmCodegenUtil.getModuleName(module)
     val classBuilderMode: ClassBuilderMode = builderFactory.classBuilderMode
-    val bindingTrace: BindingTrace = DelegatingBindingTrace(
-        bindingContext, "trace in GenerationState",
-        filter = if (wantsDiagnostics) BindingTraceFilter.ACCEPT_ALL else BindingTraceFilter.NO_DIAGNOSTICS
-    )
+    val bindingTrace: BindingTrace = run {
+        val filter = if (wantsDiagnostics) BindingTraceFilter.ACCEPT_ALL else BindingTraceFilter.NO_DIAGNOSTICS
+        if (isTraceShared)
+            SynchronizedBindingTrace(bindingContext, "trace in GenerationState", filter = filter)
+        else
+            DelegatingBindingTrace(bindingContext, "trace in GenerationState", filter = filter)
+    }
     val bindingContext: BindingContext = bindingTrace.bindingContext
     val mainFunctionDetector = MainFunctionDetector(bindingContext, languageVersionSettings)
     val typeMapper: KotlinTypeMapper = KotlinTypeMapper(
@@ -217,7 +233,21 @@ class GenerationState private constructor(
         IntrinsicMethods(target, canReplaceStdlibRuntimeApiBehavior, shouldUseConsistentEquals)
     }
     val samWrapperClasses: SamWrapperClasses = SamWrapperClasses(this)
-    val globalInlineContext: GlobalInlineContext = GlobalInlineContext(diagnostics)
+    // The context keeps the stack of functions being inlined, so each task of parallel code generation needs its own one
+    private val mainGlobalInlineContext = GlobalInlineContext(diagnostics)
+    private val taskGlobalInlineContexts = ThreadLocal<GlobalInlineContext>()
+    val globalInlineContext: GlobalInlineContext
+        get() = taskGlobalInlineContexts.get() ?: mainGlobalInlineContext
+
+    // The context is removed when the task finishes, so that pooled threads don't retain it after the compilation
+    fun <T> withTaskGlobalInlineContext(block: () -> T): T {
+        taskGlobalInlineContexts.set(GlobalInlineContext(diagnostics))
+        try {
+            return block()
+        } finally {
+            taskGlobalInlineContexts.remove()
+        }
+    }
     val mappingsClassesForWhenByEnum: MappingsClassesForWhenByEnum = MappingsClassesForWhenByEnum(this)
     val jvmRuntimeTypes: JvmRuntimeTypes = JvmRuntimeTypes(module, configuration.languageVersionSettings)
     val factory: ClassFileFactory
@@ -191,6 +191,12 @@ abstract class CommonCompilerArguments : CommonToolArguments() {
     )
     var dumpPerf: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xprofile-lazy-computations",
+        description = "Include time of lazy computations of the frontend into performance statistics, grouped by call site"
+    )
+    var profileLazyComputations: Boolean by FreezableVar(false)
+
     @Argument(
         value = "-Xmetadata-version",
         description = "Change metadata version of the generated binary files"
@@ -289,6 +295,26 @@ abstract class CommonCompilerArguments : CommonToolArguments() {
     )
     var profilePhases: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xprofile-phases-output",
+        valueDescription = "<path>",
+        description = "Profile backend phases and write the profile to the given file instead of stdout"
+    )
+    var profilePhasesOutput: String? by FreezableVar(null)
+
+    @Argument(
+        value = "-Xprofile-phases-format",
+        valueDescription = "{json|trace}",
+        description = "Format of the profile of backend phases: statistics of phases (json, default) or Chrome trace events (trace)"
+    )
+    var profilePhasesFormat: String? by FreezableVar(null)
+
+    @Argument(
+        value = "-Xprofile-phases-ir-elements",
+        description = "Count IR elements before and after each backend phase in the profile (makes compilation noticeably slower)"
+    )
+    var profilePhasesIrElements: Boolean by FreezableVar(false)
+
     @Argument(
         value = "-Xcheck-phase-conditions",
         description = "Check pre- and postconditions on phases"
@@ -125,6 +125,12 @@ class K2JSCompilerArguments : CommonCompilerArguments() {
     @Argument(value = "-Xir-only", description = "Disables pre-IR backend")
     var irOnly: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xir-deserialization-statistics",
+        description = "Report how much IR is deserialized from libraries and which declarations pulled it in"
+    )
+    var irDeserializationStatistics: Boolean by FreezableVar(false)
+
     @GradleOption(DefaultValues.BooleanTrueDefault::class)
     @Argument(value = "-Xtyped-arrays", description = "Translate primitive arrays to JS typed arrays")
     var typedArrays: Boolean by FreezableVar(true)
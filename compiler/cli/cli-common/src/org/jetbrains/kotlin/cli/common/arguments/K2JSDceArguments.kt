@@ -42,6 +42,13 @@ class K2JSDceArguments : CommonToolArguments() {
     )
     var printReachabilityInfo: Boolean by FreezableVar(false)
 
+    @Argument(
+            value = "-Xparallel-threads",
+            valueDescription = "<N>",
+            description = "Parse and print files on N threads (0 means the number of available processors)"
+    )
+    var parallelThreads: String? by NullableStringFreezableVar(null)
+
     @Argument(
             value = "-dev-mode",
             description = "Development mode: don't strip out any code, just copy dependencies"
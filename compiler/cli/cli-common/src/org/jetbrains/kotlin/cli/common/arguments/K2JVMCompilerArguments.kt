@@ -115,6 +115,47 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     @Argument(value = "-Xno-optimize", description = "Disable optimizations")
     var noOptimize: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xparallel-backend-threads",
+        valueDescription = "<N>",
+        description = "Generate packages and multifile classes on N threads (0 means the number of available processors) [experimental]"
+    )
+    var parallelBackendThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xparallel-lowering-threads",
+        valueDescription = "<N>",
+        description = "Lower IR files on N threads with the IR backend (0 means the number of available processors) [experimental]"
+    )
+    var parallelLoweringThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xsequential-phases",
+        description = "Never run these IR backend phases on several files in parallel"
+    )
+    var sequentialPhases: Array<String>? by FreezableVar(null)
+
+    @Argument(
+        value = "-Xparallel-parsing-threads",
+        valueDescription = "<N>",
+        description = "Load and parse source files on N threads before analysis (0 means the number of available processors) [experimental]"
+    )
+    var parallelParsingThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xmethod-optimization-threads",
+        valueDescription = "<N>",
+        description = "Optimize bytecode of generated methods on N background threads (0 means the number of available processors) [experimental]"
+    )
+    var methodOptimizationThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xshared-inline-cache-size",
+        valueDescription = "<N>",
+        description = "Keep up to N bodies of inline functions from libraries in memory to reuse them in subsequent compilations in the same process"
+    )
+    var sharedInlineCacheSize: String? by NullableStringFreezableVar(null)
+
     @Argument(
         value = "-Xnormalize-constructor-calls",
         valueDescription = "{disable|enable}",
@@ -169,6 +210,13 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var declarationsOutputPath: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xclasspath-package-index",
+        valueDescription = "<path>",
+        description = "Path to the file where packages of classpath jars are stored between compilations to speed up class lookup"
+    )
+    var classpathPackageIndexPath: String? by NullableStringFreezableVar(null)
+
     @Argument(value = "-Xsingle-module", description = "Combine modules for source files and binary dependencies into a single module")
     var singleModule: Boolean by FreezableVar(false)
 
@@ -114,8 +114,6 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
         doMain(new K2JSCompiler(), args);
     }
 
-    private final K2JSCompilerPerformanceManager performanceManager = new K2JSCompilerPerformanceManager();
-
     @NotNull
     @Override
     public K2JSCompilerArguments createArguments() {
@@ -568,8 +566,8 @@ public class K2JSCompiler extends CLICompiler<K2JSCompilerArguments> {
 
     @NotNull
     @Override
-    protected CommonCompilerPerformanceManager getPerformanceManager() {
-        return performanceManager;
+    protected CommonCompilerPerformanceManager createPerformanceManager() {
+        return new K2JSCompilerPerformanceManager();
     }
 
     private static MainCallParameters createMainCallParameters(String main) {
@@ -8,6 +8,7 @@ package org.jetbrains.kotlin.cli.js
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.util.io.FileUtil
 import com.intellij.openapi.util.text.StringUtil
+import org.jetbrains.kotlin.backend.common.serialization.IrDeserializationStatistics
 import org.jetbrains.kotlin.cli.common.*
 import org.jetbrains.kotlin.cli.common.ExitCode.*
 import org.jetbrains.kotlin.cli.common.arguments.K2JSCompilerArguments
@@ -56,7 +57,7 @@ enum class ProduceKind {
 
 class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
 
-    override val performanceManager: CommonCompilerPerformanceManager =
+    override fun createPerformanceManager(): CommonCompilerPerformanceManager =
         object : CommonCompilerPerformanceManager("Kotlin to JS (IR) Compiler") {}
 
     override fun createArguments(): K2JSCompilerArguments {
@@ -195,6 +196,7 @@ class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
 
         if (arguments.irProduceJs) {
             val phaseConfig = createPhaseConfig(jsPhases, arguments, messageCollector)
+            val deserializationStatistics = if (arguments.irDeserializationStatistics) IrDeserializationStatistics() else null
 
             val compiledModule = compile(
                 projectJs,
@@ -203,9 +205,14 @@ class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
                 phaseConfig,
                 allDependencies = resolvedLibraries,
                 friendDependencies = friendDependencies,
-                mainArguments = mainCallArguments
+                mainArguments = mainCallArguments,
+                deserializationStatistics = deserializationStatistics
             )
 
+            if (deserializationStatistics != null) {
+                messageCollector.report(INFO, deserializationStatistics.render(), null)
+            }
+
             outputFile.writeText(compiledModule.jsCode)
         }
 
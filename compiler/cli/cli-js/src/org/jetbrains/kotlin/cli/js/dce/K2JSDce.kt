@@ -80,7 +80,8 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
             messageCollector.report(severity, message)
         }
 
-        val dceResult = DeadCodeElimination.run(files, includedDeclarations, logConsumer)
+        val threads = computeThreads(arguments.parallelThreads, messageCollector) ?: return ExitCode.COMPILATION_ERROR
+        val dceResult = DeadCodeElimination.run(files, includedDeclarations, logConsumer, threads)
         if (dceResult.status == DeadCodeEliminationStatus.FAILED) return ExitCode.COMPILATION_ERROR
         val nodes = dceResult.reachableNodes.filterTo(mutableSetOf()) { it.reachable }
 
@@ -96,6 +97,16 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
         return ExitCode.OK
     }
 
+    private fun computeThreads(value: String?, messageCollector: MessageCollector): Int? {
+        if (value == null) return 1
+        val threads = value.toIntOrNull()
+        if (threads == null || threads < 0) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, "number of parallel threads should be a non-negative integer: $value")
+            return null
+        }
+        return if (threads == 0) Runtime.getRuntime().availableProcessors() else threads
+    }
+
     private fun copyFiles(files: List<InputFile>) {
         for (file in files) {
             copyResource(file.resource, File(file.outputPath))
@@ -26,8 +26,10 @@ import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments
 import org.jetbrains.kotlin.cli.common.environment.setIdeaIoUseFallback
 import org.jetbrains.kotlin.cli.common.messages.*
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.INFO
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.STRONG_WARNING
 import org.jetbrains.kotlin.cli.jvm.plugins.PluginCliParser
 import org.jetbrains.kotlin.compiler.plugin.ComponentRegistrar
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
@@ -42,7 +44,8 @@ import java.util.ArrayList
 
 abstract class CLICompiler<A : CommonCompilerArguments> : CLITool<A>() {
 
-    protected abstract val performanceManager: CommonCompilerPerformanceManager
+    // compiler instances are reused by the daemon, possibly in parallel, so the measurements are collected per compilation
+    protected abstract fun createPerformanceManager(): CommonCompilerPerformanceManager
 
     // Used in CompilerRunnerUtil#invokeExecMethod, in Eclipse plugin (KotlinCLICompiler) and in kotlin-gradle-plugin (GradleCompilerRunner)
     fun execAndOutputXml(errStream: PrintStream, services: Services, vararg args: String): ExitCode {
@@ -55,17 +58,28 @@ abstract class CLICompiler<A : CommonCompilerArguments> : CLITool<A>() {
     }
 
     public override fun execImpl(messageCollector: MessageCollector, services: Services, arguments: A): ExitCode {
-        val performanceManager = performanceManager
-        if (arguments.reportPerf || arguments.dumpPerf != null) {
-            performanceManager.enableCollectingPerformanceStatistics()
-        }
-
+        val performanceManager = createPerformanceManager()
         val configuration = CompilerConfiguration()
 
         val collector = GroupingMessageCollector(messageCollector, arguments.allWarningsAsErrors).also {
             configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, it)
         }
 
+        val isPerformanceReported = arguments.reportPerf || arguments.dumpPerf != null
+        if (isPerformanceReported) {
+            performanceManager.enableCollectingPerformanceStatistics()
+        }
+        if (arguments.profileLazyComputations) {
+            if (isPerformanceReported) {
+                configuration.put(CommonConfigurationKeys.STORAGE_MANAGER_PROFILER, performanceManager.enableLazyComputationsProfiling())
+            } else {
+                collector.report(
+                    STRONG_WARNING,
+                    "The '-Xprofile-lazy-computations' option is ignored because neither '-Xreport-perf' nor '-Xdump-perf' is specified"
+                )
+            }
+        }
+
         configuration.put(CLIConfigurationKeys.PERF_MANAGER, performanceManager)
         try {
             setupCommonArguments(configuration, arguments)
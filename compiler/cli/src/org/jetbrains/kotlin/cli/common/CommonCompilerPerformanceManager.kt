@@ -5,6 +5,8 @@
 
 package org.jetbrains.kotlin.cli.common
 
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.storage.StorageManagerProfiler
 import org.jetbrains.kotlin.util.PerformanceCounter
 import java.io.File
 import java.lang.management.ManagementFactory
@@ -17,6 +19,7 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
     private var initStartNanos = PerformanceCounter.currentTime()
     private var analysisStart: Long = 0
     private var generationStart: Long = 0
+    private var lazyComputationsProfiler: StorageManagerProfiler? = null
 
     fun getMeasurementResults(): List<PerformanceMeasurement> = measurements
 
@@ -25,16 +28,25 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         PerformanceCounter.setTimeCounterEnabled(true)
     }
 
+    /**
+     * Returns the profiler to be passed to the storage managers of the compilation, see [CommonConfigurationKeys.STORAGE_MANAGER_PROFILER].
+     */
+    fun enableLazyComputationsProfiling(): StorageManagerProfiler =
+        StorageManagerProfiler().also { lazyComputationsProfiler = it }
+
     open fun notifyCompilerInitialized() {
-        if (!isEnabled) return
         recordInitializationTime()
     }
 
     open fun notifyCompilationFinished() {
-        if (!isEnabled) return
-        recordGcTime()
-        recordJitCompilationTime()
-        recordPerfCountersMeasurements()
+        if (isEnabled) {
+            recordGcTime()
+            recordJitCompilationTime()
+            recordPerfCountersMeasurements()
+            recordLazyComputationsMeasurements()
+        }
+
+        measurementsListener?.invoke(measurements.toList())
     }
 
     open fun notifyAnalysisStarted() {
@@ -83,8 +95,25 @@ abstract class CommonCompilerPerformanceManager(private val presentableName: Str
         PerformanceCounter.report { s -> measurements += PerformanceCounterMeasurement(s) }
     }
 
+    private fun recordLazyComputationsMeasurements() {
+        val profiler = lazyComputationsProfiler ?: return
+        profiler.report(LAZY_COMPUTATIONS_REPORT_LIMIT) { s -> measurements += LazyComputationMeasurement(s) }
+    }
+
     private fun createPerformanceReport(): ByteArray = buildString {
         appendln("$presentableName performance report")
         measurements.map { it.render() }.sorted().forEach { appendln(it) }
     }.toByteArray()
+
+    companion object {
+        private const val LAZY_COMPUTATIONS_REPORT_LIMIT = 100
+
+        /**
+         * Receives measurements of every compilation finished in this process, e.g. to aggregate them over the lifetime of the daemon.
+         * The times of compiler phases are always measured, the other measurements only if collecting performance statistics is enabled.
+         * Compilations may run in parallel, so the listener should be thread-safe.
+         */
+        @Volatile
+        var measurementsListener: ((List<PerformanceMeasurement>) -> Unit)? = null
+    }
 }
@@ -8,8 +8,10 @@ package org.jetbrains.kotlin.cli.common
 import org.jetbrains.kotlin.backend.common.phaser.AnyNamedPhase
 import org.jetbrains.kotlin.backend.common.phaser.CompilerPhase
 import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.backend.common.phaser.PhaseProfileFormat
 import org.jetbrains.kotlin.backend.common.phaser.toPhaseMap
 import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments
+import org.jetbrains.kotlin.cli.common.arguments.K2JVMCompilerArguments
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 
@@ -39,10 +41,18 @@ fun createPhaseConfig(
 
     val namesOfElementsExcludedFromDumping = arguments.namesExcludedFromDumping?.toSet() ?: emptySet()
 
-    val needProfiling = arguments.profilePhases
+    val profileOutput = arguments.profilePhasesOutput
+    val profileFormat = computeProfileFormat(arguments.profilePhasesFormat, ::report)
+    val needProfiling = arguments.profilePhases || profileOutput != null
+    val profileIrElements = arguments.profilePhasesIrElements
     val checkConditions = arguments.checkPhaseConditions
     val checkStickyConditions = arguments.checkStickyPhaseConditions
 
+    // Only the JVM IR backend lowers files by performByIrFile
+    val jvmArguments = arguments as? K2JVMCompilerArguments
+    val fileLoweringThreads = computeFileLoweringThreads(jvmArguments?.parallelLoweringThreads, ::report)
+    val sequentialPhases = phaseSetFromArguments(phases, jvmArguments?.sequentialPhases, ::report)
+
     return PhaseConfig(
         compoundPhase,
         phases,
@@ -57,7 +67,12 @@ fun createPhaseConfig(
         namesOfElementsExcludedFromDumping,
         needProfiling,
         checkConditions,
-        checkStickyConditions
+        checkStickyConditions,
+        fileLoweringThreads,
+        sequentialPhases,
+        profileOutput,
+        profileFormat,
+        profileIrElements
     ).also {
         if (arguments.listPhases) {
             it.list()
@@ -74,6 +89,26 @@ private fun computeEnabled(
     return phases.values.toSet() - disabledPhases
 }
 
+private fun computeFileLoweringThreads(value: String?, report: (String) -> Unit): Int {
+    if (value == null) return 1
+    val threads = value.toIntOrNull()
+    if (threads == null || threads < 0) {
+        report("number of parallel lowering threads should be a non-negative integer: $value")
+        return 1
+    }
+    return if (threads == 0) Runtime.getRuntime().availableProcessors() else threads
+}
+
+private fun computeProfileFormat(value: String?, report: (String) -> Unit): PhaseProfileFormat =
+    when (value) {
+        null, "json" -> PhaseProfileFormat.JSON
+        "trace" -> PhaseProfileFormat.TRACE
+        else -> {
+            report("unknown format of the phase profile: $value, should be json or trace")
+            PhaseProfileFormat.JSON
+        }
+    }
+
 private fun phaseSetFromArguments(
     phases: MutableMap<String, AnyNamedPhase>,
     names: Array<String>?,
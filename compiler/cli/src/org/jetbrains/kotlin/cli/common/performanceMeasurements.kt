@@ -15,12 +15,12 @@ class JitCompilationMeasurement(private val milliseconds: Long) : PerformanceMea
 }
 
 
-class CompilerInitializationMeasurement(private val milliseconds: Long) : PerformanceMeasurement {
+class CompilerInitializationMeasurement(val milliseconds: Long) : PerformanceMeasurement {
     override fun render(): String = "INIT: Compiler initialized in $milliseconds ms"
 }
 
 
-class CodeAnalysisMeasurement(private val files: Int, val lines: Int, private val milliseconds: Long, private val description: String?) :
+class CodeAnalysisMeasurement(private val files: Int, val lines: Int, val milliseconds: Long, private val description: String?) :
     PerformanceMeasurement {
 
     private val speed: Double = lines.toDouble() * 1000 / milliseconds
@@ -30,7 +30,7 @@ class CodeAnalysisMeasurement(private val files: Int, val lines: Int, private va
 }
 
 
-class CodeGenerationMeasurement(private val files: Int, val lines: Int, private val milliseconds: Long, private val description: String?) :
+class CodeGenerationMeasurement(private val files: Int, val lines: Int, val milliseconds: Long, private val description: String?) :
     PerformanceMeasurement {
 
     private val speed: Double = lines.toDouble() * 1000 / milliseconds
@@ -48,3 +48,7 @@ class GarbageCollectionMeasurement(private val garbageCollectionKind: String, pr
 class PerformanceCounterMeasurement(private val counterReport: String) : PerformanceMeasurement {
     override fun render(): String = counterReport
 }
+
+class LazyComputationMeasurement(private val computationReport: String) : PerformanceMeasurement {
+    override fun render(): String = computationReport
+}
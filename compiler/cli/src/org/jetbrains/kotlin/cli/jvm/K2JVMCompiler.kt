@@ -54,7 +54,7 @@ import java.util.*
 
 class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
 
-    override val performanceManager = K2JVMCompilerPerformanceManager()
+    override fun createPerformanceManager(): CommonCompilerPerformanceManager = K2JVMCompilerPerformanceManager()
 
     override fun doExecute(
         arguments: K2JVMCompilerArguments,
@@ -220,7 +220,7 @@ class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
 
         val environment = KotlinCoreEnvironment.createForProduction(rootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
 
-        performanceManager.notifyCompilerInitialized()
+        configuration.get(CLIConfigurationKeys.PERF_MANAGER)?.notifyCompilerInitialized()
 
         return if (messageCollector.hasErrors()) null else environment
     }
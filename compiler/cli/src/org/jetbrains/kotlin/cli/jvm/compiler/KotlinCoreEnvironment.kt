@@ -107,6 +107,7 @@ import org.jetbrains.kotlin.resolve.lazy.declarations.CliDeclarationProviderFact
 import org.jetbrains.kotlin.resolve.lazy.declarations.DeclarationProviderFactoryService
 import org.jetbrains.kotlin.utils.PathUtil
 import java.io.File
+import java.io.IOException
 import java.lang.reflect.Field
 import java.lang.reflect.Modifier
 import java.util.zip.ZipFile
@@ -230,9 +231,18 @@ class KotlinCoreEnvironment private constructor(
         val (roots, singleJavaFileRoots) =
                 initialRoots.partition { (file) -> file.isDirectory || file.extension != JavaFileType.DEFAULT_EXTENSION }
 
+        val classpathPackageIndex = configuration.get(JVMConfigurationKeys.CLASSPATH_PACKAGE_INDEX_PATH)?.let { path ->
+            try {
+                ClasspathPackageIndex.loadOrUpdate(File(path), roots)
+            } catch (e: IOException) {
+                report(STRONG_WARNING, "Cannot update classpath package index $path: ${e.message}")
+                null
+            }
+        }
+
         // REPL and kapt2 update classpath dynamically
         rootsIndex = JvmDependenciesDynamicCompoundIndex().apply {
-            addIndex(JvmDependenciesIndexImpl(roots))
+            addIndex(JvmDependenciesIndexImpl(roots, classpathPackageIndex))
             updateClasspathFromRootsIndex(this)
         }
 
@@ -401,8 +411,16 @@ class KotlinCoreEnvironment private constructor(
 
     fun getSourceFiles(): List<KtFile> = sourceFiles
 
-    private fun createKtFiles(project: Project): List<KtFile> =
-        createSourceFilesFromSourceRoots(configuration, project, getSourceRootsCheckingForDuplicates())
+    private fun createKtFiles(project: Project): List<KtFile> {
+        val ktFiles = createSourceFilesFromSourceRoots(configuration, project, getSourceRootsCheckingForDuplicates())
+
+        val parsingThreads = configuration.get(JVMConfigurationKeys.PARALLEL_PARSING_THREADS, 1)
+        if (parsingThreads > 1 && ktFiles.size > 1) {
+            parseSourceFilesInParallel(ktFiles, parsingThreads)
+        }
+
+        return ktFiles
+    }
 
     internal fun report(severity: CompilerMessageSeverity, message: String) = configuration.report(severity, message)
 
@@ -553,10 +553,18 @@ object KotlinToJVMBytecodeCompiler {
             // To support partial and incremental compilation, we add the scope which contains binaries from output directories
             // of the compiled modules (.class) to the list of scopes of the source module
             val scope = if (moduleOutputs.isEmpty()) sourcesOnly else sourcesOnly.uniteWith(DirectoriesScope(project, moduleOutputs))
+            val trace = NoScopeRecordCliBindingTrace()
+            if (environment.configuration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1) > 1 ||
+                environment.configuration.get(JVMConfigurationKeys.METHOD_OPTIMIZATION_THREADS, 0) > 0
+            ) {
+                // Declarations which are not resolved yet are resolved lazily by the threads of code generation
+                // and method optimization
+                trace.makeThreadSafe()
+            }
             TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
                 project,
                 sourceFiles,
-                NoScopeRecordCliBindingTrace(),
+                trace,
                 environment.configuration,
                 environment::createPackagePartProvider,
                 sourceModuleSearchScope = scope
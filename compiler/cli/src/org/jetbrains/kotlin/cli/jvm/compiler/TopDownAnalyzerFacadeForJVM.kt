@@ -278,7 +278,8 @@ object TopDownAnalyzerFacadeForJVM {
     }
 
     private fun createModuleContext(project: Project, configuration: CompilerConfiguration, platform: TargetPlatform?): MutableModuleContext {
-        val projectContext = ProjectContext(project, "TopDownAnalyzer for JVM")
+        val projectContext =
+            ProjectContext(project, "TopDownAnalyzer for JVM", configuration.get(CommonConfigurationKeys.STORAGE_MANAGER_PROFILER))
         val builtIns = JvmBuiltIns(projectContext.storageManager, JvmBuiltIns.Kind.FROM_DEPENDENCIES)
         return ContextForNewModule(
             projectContext, Name.special("<${configuration.getNotNull(CommonConfigurationKeys.MODULE_NAME)}>"), builtIns, platform
@@ -11,6 +11,7 @@ import com.intellij.openapi.vfs.StandardFileSystems
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.openapi.vfs.VirtualFileManager
 import com.intellij.psi.PsiManager
+import com.intellij.psi.impl.source.tree.TreeUtil
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.cli.common.config.KotlinSourceRoot
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
@@ -22,6 +23,7 @@ import org.jetbrains.kotlin.idea.KotlinFileType
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.multiplatform.isCommonSource
 import java.io.File
+import java.util.concurrent.ForkJoinPool
 
 fun CompilerConfiguration.report(severity: CompilerMessageSeverity, message: String, location: CompilerMessageLocation? = null) {
     get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY)?.report(severity, message, location)
@@ -79,4 +81,23 @@ fun createSourceFilesFromSourceRoots(
     }
 
     return result
+}
+
+// PSI of source files is created lazily on the first access, which happens on the main thread during analysis. Files are independent
+// of each other, so their contents can be loaded and parsed on separate threads beforehand. This includes lazily parseable elements,
+// such as bodies of functions and lambdas.
+fun parseSourceFilesInParallel(ktFiles: List<KtFile>, threads: Int) {
+    val pool = ForkJoinPool(threads)
+    try {
+        val tasks = ktFiles.map { ktFile ->
+            pool.submit(Runnable {
+                TreeUtil.ensureParsed(ktFile.node)
+            })
+        }
+        for (task in tasks) {
+            task.join()
+        }
+    } finally {
+        pool.shutdownNow()
+    }
 }
\ No newline at end of file
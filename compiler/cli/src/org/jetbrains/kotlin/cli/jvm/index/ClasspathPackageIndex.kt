@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.index
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.io.URLUtil
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.*
+
+/**
+ * Packages contained in each jar of the classpath, persisted between compilations so that [JvmDependenciesIndexImpl] doesn't need
+ * to open jars which don't contain the package it is looking for.
+ *
+ * Jars are identified by their path, modification time and size, so information about a modified jar is never used.
+ * Roots which are not jars (directories, JDK modules) are not indexed and are always traversed.
+ * The index file is replaced atomically, and an index which can't be read is ignored and rebuilt.
+ */
+class ClasspathPackageIndex private constructor(private val packagesByJar: Map<JarKey, Set<String>>) {
+    /**
+     * Returns all packages (including intermediate ones, e.g. "org" and "org.jetbrains" for "org.jetbrains.kotlin") which may exist in
+     * the [root], or `null` if there's no up-to-date information about it.
+     */
+    fun packagesIn(root: JavaRoot): Set<String>? =
+        root.jarKey?.let(packagesByJar::get)
+
+    private fun covers(roots: List<JavaRoot>): Boolean =
+        roots.all { root -> root.jarKey.let { it == null || it in packagesByJar } }
+
+    private fun save(file: File) {
+        val jars = packagesByJar.keys.toList()
+        val jarsByPackage = LinkedHashMap<String, BitSet>()
+        for ((jarIndex, jar) in jars.withIndex()) {
+            for (packageFqName in packagesByJar.getValue(jar)) {
+                jarsByPackage.getOrPut(packageFqName, ::BitSet).set(jarIndex)
+            }
+        }
+
+        val directory = file.absoluteFile.parentFile
+        directory.mkdirs()
+        // Several compilations may update the index concurrently, so each one writes its own temporary file
+        val temporaryFile = File.createTempFile(file.name, ".tmp", directory)
+        try {
+            write(temporaryFile, jars, jarsByPackage)
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+        } finally {
+            temporaryFile.delete()
+        }
+    }
+
+    private fun write(file: File, jars: List<JarKey>, jarsByPackage: Map<String, BitSet>) {
+        DataOutputStream(BufferedOutputStream(FileOutputStream(file))).use { output ->
+            output.writeInt(VERSION)
+            output.writeInt(jars.size)
+            for (jar in jars) {
+                output.writeUTF(jar.path)
+                output.writeLong(jar.lastModified)
+                output.writeLong(jar.length)
+            }
+            output.writeInt(jarsByPackage.size)
+            for ((packageFqName, jarIndices) in jarsByPackage) {
+                output.writeUTF(packageFqName)
+                val bits = jarIndices.toLongArray()
+                output.writeInt(bits.size)
+                bits.forEach(output::writeLong)
+            }
+        }
+    }
+
+    private data class JarKey(val path: String, val lastModified: Long, val length: Long)
+
+    companion object {
+        private const val VERSION = 1
+
+        // Minimal sizes of a jar record (path, time stamp, length) and of a package record (name, number of bit set words)
+        private const val MIN_JAR_RECORD_SIZE = 2 + 8 + 8
+        private const val MIN_PACKAGE_RECORD_SIZE = 2 + 4
+
+        /**
+         * Loads the index from [file], and if it doesn't contain up-to-date information about some jars among [roots],
+         * computes the missing information and saves the updated index back to [file].
+         */
+        @Throws(IOException::class)
+        fun loadOrUpdate(file: File, roots: List<JavaRoot>): ClasspathPackageIndex {
+            val loaded = load(file)
+            if (loaded != null && loaded.covers(roots)) return loaded
+
+            val packagesByJar = LinkedHashMap<JarKey, Set<String>>()
+            for (root in roots) {
+                val jar = root.jarKey ?: continue
+                packagesByJar[jar] = loaded?.packagesByJar?.get(jar) ?: collectPackages(root.file)
+            }
+            return ClasspathPackageIndex(packagesByJar).also { it.save(file) }
+        }
+
+        // The index is only a cache, so an index which is corrupted or has an unknown format is rebuilt from scratch
+        private fun load(file: File): ClasspathPackageIndex? {
+            if (!file.isFile) return null
+
+            return try {
+                DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                    if (input.readInt() != VERSION) return null
+
+                    // Counts are checked against the file length before allocating arrays for them
+                    val fileLength = file.length()
+                    val jars = Array(input.readCount(fileLength / MIN_JAR_RECORD_SIZE)) {
+                        JarKey(input.readUTF(), input.readLong(), input.readLong())
+                    }
+                    val packages = Array(jars.size) { HashSet<String>() }
+                    repeat(input.readCount(fileLength / MIN_PACKAGE_RECORD_SIZE)) {
+                        val packageFqName = input.readUTF()
+                        val jarIndices = BitSet.valueOf(LongArray(input.readCount((jars.size + 63L) / 64)) { input.readLong() })
+                        var jarIndex = jarIndices.nextSetBit(0)
+                        while (jarIndex >= 0) {
+                            packages[jarIndex].add(packageFqName)
+                            jarIndex = jarIndices.nextSetBit(jarIndex + 1)
+                        }
+                    }
+                    if (input.read() != -1) return null
+
+                    ClasspathPackageIndex(jars.indices.associate { jars[it] to packages[it] })
+                }
+            } catch (e: Exception) {
+                null
+            }
+        }
+
+        private fun DataInput.readCount(max: Long): Int {
+            val count = readInt()
+            if (count < 0 || count > max) throw IOException("Invalid count: $count")
+            return count
+        }
+
+        private fun collectPackages(jarRoot: VirtualFile): Set<String> {
+            val packages = HashSet<String>()
+
+            fun collect(directory: VirtualFile, packageFqName: String) {
+                for (child in directory.children) {
+                    if (!child.isDirectory) continue
+                    val childFqName = if (packageFqName.isEmpty()) child.name else "$packageFqName.${child.name}"
+                    packages.add(childFqName)
+                    collect(child, childFqName)
+                }
+            }
+
+            collect(jarRoot, "")
+            return packages
+        }
+
+        private val JavaRoot.jarKey: JarKey?
+            get() {
+                if (prefixFqName != null || file.fileSystem.protocol != StandardFileSystems.JAR_PROTOCOL) return null
+                val jar = File(file.path.substringBefore(URLUtil.JAR_SEPARATOR))
+                return JarKey(jar.path, jar.lastModified(), jar.length())
+            }
+    }
+}
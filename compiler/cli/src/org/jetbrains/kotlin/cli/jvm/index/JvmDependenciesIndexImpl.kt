@@ -20,52 +20,83 @@ import com.intellij.ide.highlighter.JavaClassFileType
 import com.intellij.ide.highlighter.JavaFileType
 import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.VirtualFile
-import com.intellij.util.containers.IntArrayList
-import gnu.trove.THashMap
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 // speeds up finding files/classes in classpath/java source roots
-// NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
 // the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
-class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
+// thread-safe: lookups don't take locks, only adding information to the package caches is synchronized
+class JvmDependenciesIndexImpl(
+    _roots: List<JavaRoot>,
+    private val packageIndex: ClasspathPackageIndex? = null
+) : JvmDependenciesIndex {
     //these fields are computed based on _roots passed to constructor which are filled in later
     private val roots: List<JavaRoot> by lazy { _roots.toList() }
 
+    // packages which may exist in each root, null if the root is not in the persisted index and has to be traversed
+    private val packagesInRoots: Array<Set<String>?> by lazy {
+        Array(roots.size) { packageIndex?.packagesIn(roots[it]) }
+    }
+
     private val maxIndex: Int
         get() = roots.size
 
     // each "Cache" object corresponds to a package
     private class Cache {
-        private val innerPackageCaches = HashMap<String, Cache>()
-
-        operator fun get(name: String) = innerPackageCaches.getOrPut(name, ::Cache)
+        private val innerPackageCaches = ConcurrentHashMap<String, Cache>()
+
+        operator fun get(name: String): Cache = innerPackageCaches[name] ?: innerPackageCaches.computeIfAbsent(name) { Cache() }
+
+        // sorted indices of roots that are known to contain this package
+        // if this array contains [1, 3, 5] then roots with indices 1, 3 and 5 are known to contain this package, 2 and 4 are known not to (no information about roots 6 or higher)
+        // if this array contains maxIndex that means that all roots containing this package are known
+        // the array is never modified after publication, so it can be read without synchronization
+        @Volatile
+        var rootIndices: IntArray = EMPTY_ROOT_INDICES
+            private set
+
+        @Synchronized
+        fun addRootIndex(index: Int) {
+            val indices = rootIndices
+            val position = Arrays.binarySearch(indices, index)
+            if (position >= 0) return
+
+            // roots are mostly added in increasing order, but with concurrent searches they can also come in any order
+            val insertionPoint = -position - 1
+            val newIndices = IntArray(indices.size + 1)
+            System.arraycopy(indices, 0, newIndices, 0, insertionPoint)
+            newIndices[insertionPoint] = index
+            System.arraycopy(indices, insertionPoint, newIndices, insertionPoint + 1, indices.size - insertionPoint)
+            rootIndices = newIndices
+        }
 
-        // indices of roots that are known to contain this package
-        // if this list contains [1, 3, 5] then roots with indices 1, 3 and 5 are known to contain this package, 2 and 4 are known not to (no information about roots 6 or higher)
-        // if this list contains maxIndex that means that all roots containing this package are known
-        val rootIndices = IntArrayList(2)
+        @Synchronized
+        fun setRootIndices(indices: IntArray) {
+            rootIndices = indices
+        }
     }
 
     // root "Cache" object corresponds to DefaultPackage which exists in every root. Roots with non-default fqname are also listed here but
     // they will be ignored on requests with invalid fqname prefix.
     private val rootCache: Cache by lazy {
         Cache().apply {
-            roots.indices.forEach(rootIndices::add)
-            rootIndices.add(maxIndex)
-            rootIndices.trimToSize()
+            setRootIndices(IntArray(maxIndex + 1) { it })
         }
     }
 
     // holds the request and the result last time we searched for class
     // helps improve several scenarios, LazyJavaResolverContext.findClassInJava being the most important
+    // the pair is immutable, so concurrent searches can at worst overwrite each other's memo
+    @Volatile
     private var lastClassSearch: Pair<FindClassRequest, SearchResult>? = null
 
     override val indexedRoots by lazy { roots.asSequence() }
 
-    private val packageCache: Array<out MutableMap<String, VirtualFile?>> by lazy {
-        Array(roots.size) { THashMap<String, VirtualFile?>() }
+    // values are either package directories or NO_PACKAGE_DIRECTORY, since ConcurrentHashMap does not support null values
+    private val packageCache: Array<out ConcurrentHashMap<String, Any>> by lazy {
+        Array(roots.size) { ConcurrentHashMap<String, Any>() }
     }
 
     override fun traverseDirectoriesInPackage(
@@ -85,11 +116,12 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         findClassGivenDirectory: (VirtualFile, JavaRoot.RootType) -> T?
     ): T? {
         // make a decision based on information saved from last class search
+        val lastClassSearch = lastClassSearch
         if (lastClassSearch?.first?.classId != classId) {
             return search(FindClassRequest(classId, acceptedRootTypes), findClassGivenDirectory)
         }
 
-        val (cachedRequest, cachedResult) = lastClassSearch!!
+        val (cachedRequest, cachedResult) = lastClassSearch
         return when (cachedResult) {
             is SearchResult.NotFound -> {
                 val limitedRootTypes = acceptedRootTypes - cachedRequest.acceptedRootTypes
@@ -121,7 +153,7 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         // NOTE: indices manipulation instead of using caches.reversed() is here for performance reasons
         for (cacheIndex in caches.lastIndex downTo 0) {
             val cacheRootIndices = caches[cacheIndex].rootIndices
-            for (i in 0..cacheRootIndices.size() - 1) {
+            for (i in 0..cacheRootIndices.size - 1) {
                 val rootIndex = cacheRootIndices[i]
                 if (rootIndex <= processedRootsUpTo) continue // roots with those indices have been processed by now
 
@@ -137,7 +169,7 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
                     }
                 }
             }
-            processedRootsUpTo = if (cacheRootIndices.isEmpty) processedRootsUpTo else cacheRootIndices.get(cacheRootIndices.size() - 1)
+            processedRootsUpTo = if (cacheRootIndices.isEmpty()) processedRootsUpTo else cacheRootIndices[cacheRootIndices.size - 1]
         }
 
         if (request is FindClassRequest) {
@@ -158,15 +190,19 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         if (rootIndex >= maxIndex) {
             for (i in (fillCachesAfter + 1)..(cachesPath.size - 1)) {
                 // we all know roots that contain this package by now
-                cachesPath[i].rootIndices.add(maxIndex)
-                cachesPath[i].rootIndices.trimToSize()
+                cachesPath[i].addRootIndex(maxIndex)
             }
             return null
         }
 
-        return packageCache[rootIndex].getOrPut(packageFqName.asString()) {
-            doTravelPath(rootIndex, packagesPath, fillCachesAfter, cachesPath)
-        }
+        val rootPackageCache = packageCache[rootIndex]
+        val packageFqNameString = packageFqName.asString()
+        rootPackageCache[packageFqNameString]?.let { return it as? VirtualFile }
+
+        // the traversal is done outside of the map, so that a slow file system doesn't block lookups of other packages;
+        // concurrent traversals of the same package find the same directory and add the same root indices to the caches
+        val directory = doTravelPath(rootIndex, packagesPath, fillCachesAfter, cachesPath) ?: NO_PACKAGE_DIRECTORY
+        return (rootPackageCache.putIfAbsent(packageFqNameString, directory) ?: directory) as? VirtualFile
     }
 
     private fun doTravelPath(rootIndex: Int, packagesPath: List<String>, fillCachesAfter: Int, cachesPath: List<Cache>): VirtualFile? {
@@ -174,6 +210,8 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         val prefixPathSegments = pathRoot.prefixFqName?.pathSegments()
 
         var currentFile = pathRoot.file
+        val packagesInRoot = packagesInRoots[rootIndex]
+        var currentPackage = ""
 
         for (pathIndex in packagesPath.indices) {
             val subPackageName = packagesPath[pathIndex]
@@ -183,13 +221,18 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
                     return null
                 }
             } else {
+                if (packagesInRoot != null) {
+                    // Don't touch the root at all if it's known not to contain the package
+                    currentPackage = if (currentPackage.isEmpty()) subPackageName else "$currentPackage.$subPackageName"
+                    if (currentPackage !in packagesInRoot) return null
+                }
                 currentFile = currentFile.findChildPackage(subPackageName, pathRoot.type) ?: return null
             }
 
             val correspondingCacheIndex = pathIndex + 1
             if (correspondingCacheIndex > fillCachesAfter) {
                 // subPackageName exists in this root
-                cachesPath[correspondingCacheIndex].rootIndices.add(rootIndex)
+                cachesPath[correspondingCacheIndex].addRootIndex(rootIndex)
             }
         }
 
@@ -246,4 +289,10 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
 
         object NotFound : SearchResult()
     }
+
+    private companion object {
+        val EMPTY_ROOT_INDICES = IntArray(0)
+
+        val NO_PACKAGE_DIRECTORY = Any()
+    }
 }
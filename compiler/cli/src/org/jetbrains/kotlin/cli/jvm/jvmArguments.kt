@@ -13,6 +13,7 @@ import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
 import org.jetbrains.kotlin.cli.jvm.config.JvmClasspathRoot
 import org.jetbrains.kotlin.cli.jvm.config.JvmModulePathRoot
 import org.jetbrains.kotlin.cli.jvm.modules.CoreJrtFileSystem
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
 import org.jetbrains.kotlin.config.*
 import org.jetbrains.kotlin.utils.KotlinPaths
 import org.jetbrains.kotlin.utils.PathUtil
@@ -153,6 +154,22 @@ fun CompilerConfiguration.configureAdvancedJvmOptions(arguments: K2JVMCompilerAr
     )
     put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, arguments.noOptimize)
 
+    putThreadCount(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, arguments.parallelBackendThreads, "backend threads")
+    putThreadCount(JVMConfigurationKeys.PARALLEL_PARSING_THREADS, arguments.parallelParsingThreads, "parsing threads")
+    putThreadCount(JVMConfigurationKeys.METHOD_OPTIMIZATION_THREADS, arguments.methodOptimizationThreads, "method optimization threads")
+
+    arguments.sharedInlineCacheSize?.let { value ->
+        val size = value.toIntOrNull()
+        if (size == null || size < 0 || size > SharedInlineCache.MAX_SIZE) {
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                ERROR,
+                "Invalid shared inline cache size: $value, should be an integer between 0 and ${SharedInlineCache.MAX_SIZE}"
+            )
+        } else {
+            put(JVMConfigurationKeys.SHARED_INLINE_CACHE_SIZE, size)
+        }
+    }
+
     if (!JVMConstructorCallNormalizationMode.isSupportedValue(arguments.constructorCallNormalizationMode)) {
         getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
             ERROR,
@@ -197,4 +214,20 @@ fun CompilerConfiguration.configureAdvancedJvmOptions(arguments: K2JVMCompilerAr
     put(JVMConfigurationKeys.USE_SINGLE_MODULE, arguments.singleModule)
 
     arguments.declarationsOutputPath?.let { put(JVMConfigurationKeys.DECLARATIONS_JSON_PATH, it) }
+    arguments.classpathPackageIndexPath?.let { put(JVMConfigurationKeys.CLASSPATH_PACKAGE_INDEX_PATH, it) }
+}
+
+private fun CompilerConfiguration.putThreadCount(key: CompilerConfigurationKey<Int>, value: String?, description: String) {
+    if (value == null) return
+
+    val threads = value.toIntOrNull()
+    if (threads == null || threads < 0) {
+        getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+            ERROR,
+            "Invalid number of $description: $value, should be a non-negative integer"
+        )
+        return
+    }
+
+    put(key, if (threads == 0) Runtime.getRuntime().availableProcessors() else threads)
 }
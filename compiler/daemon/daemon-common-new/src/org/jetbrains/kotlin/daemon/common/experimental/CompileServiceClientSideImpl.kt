@@ -145,6 +145,11 @@ class CompileServiceClientSideImpl(
         return res
     }
 
+    override suspend fun getDaemonMetrics(): CompileService.CallResult<DaemonMetrics> {
+        val id = sendMessage(GetDaemonMetricsMessage())
+        return readMessage(id)
+    }
+
     override suspend fun registerClient(aliveFlagPath: String?): CompileService.CallResult<Nothing> {
         val id = sendMessage(RegisterClientMessage(aliveFlagPath))
         return readMessage(id)
@@ -255,6 +260,11 @@ class CompileServiceClientSideImpl(
             sendReply(server.getDaemonInfo())
     }
 
+    class GetDaemonMetricsMessage : Server.Message<CompileServiceServerSide>() {
+        override suspend fun processImpl(server: CompileServiceServerSide, sendReply: (Any?) -> Unit) =
+            sendReply(server.getDaemonMetrics())
+    }
+
     class RegisterClientMessage(val aliveFlagPath: String?) : Server.Message<CompileServiceServerSide>() {
         override suspend fun processImpl(server: CompileServiceServerSide, sendReply: (Any?) -> Unit) =
             sendReply(server.registerClient(aliveFlagPath))
@@ -50,6 +50,10 @@ class CompileServiceRMIWrapper(val server: CompileServiceServerSide, daemonOptio
         server.getDaemonJVMOptions()
     }
 
+    override fun getDaemonMetrics() = runBlocking {
+        server.getDaemonMetrics()
+    }
+
     override fun registerClient(aliveFlagPath: String?) = runBlocking {
         server.registerClient(aliveFlagPath)
     }
@@ -83,6 +83,9 @@ interface CompileService : Remote {
     @Throws(RemoteException::class)
     fun getDaemonJVMOptions(): CallResult<DaemonJVMOptions>
 
+    @Throws(RemoteException::class)
+    fun getDaemonMetrics(): CallResult<DaemonMetrics>
+
     @Throws(RemoteException::class)
     fun registerClient(aliveFlagPath: String?): CallResult<Nothing>
 
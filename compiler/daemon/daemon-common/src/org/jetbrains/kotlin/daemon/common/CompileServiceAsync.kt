@@ -22,6 +22,8 @@ interface CompileServiceAsync {
 
     suspend fun getDaemonJVMOptions(): CompileService.CallResult<DaemonJVMOptions>
 
+    suspend fun getDaemonMetrics(): CompileService.CallResult<DaemonMetrics>
+
     suspend fun registerClient(aliveFlagPath: String?): CompileService.CallResult<Nothing>
 
     // TODO: (-old-) consider adding another client alive checking mechanism, e.g. socket/socketPort
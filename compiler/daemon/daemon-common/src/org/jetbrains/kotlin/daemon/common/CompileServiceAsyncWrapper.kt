@@ -62,6 +62,9 @@ class CompileServiceAsyncWrapper(
     override suspend fun getDaemonJVMOptions() =
         rmiCompileService.getDaemonJVMOptions()
 
+    override suspend fun getDaemonMetrics() =
+        rmiCompileService.getDaemonMetrics()
+
     override suspend fun registerClient(aliveFlagPath: String?) =
         rmiCompileService.registerClient(aliveFlagPath)
 
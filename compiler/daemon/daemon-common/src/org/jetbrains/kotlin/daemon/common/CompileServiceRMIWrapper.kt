@@ -143,6 +143,10 @@ class CompileServiceClientRMIWrapper(
         asyncCompileService.getDaemonJVMOptions()
     }
 
+    override fun getDaemonMetrics() = runBlocking {
+        asyncCompileService.getDaemonMetrics()
+    }
+
     override fun registerClient(aliveFlagPath: String?) = runBlocking {
         asyncCompileService.registerClient(aliveFlagPath)
     }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon.common
+
+import java.io.Serializable
+
+/**
+ * Performance and memory metrics of a compile daemon, aggregated over its lifetime.
+ */
+class DaemonMetrics(
+    val uptimeMillis: Long,
+    val compilations: TimeMetric,
+    val compilationExceptions: Long,
+    // only compilations that waited for a free compilation slot are counted
+    val queueWait: TimeMetric,
+    // calls from the daemon to the client, e.g. to report messages or to get incremental caches data
+    val remoteCalls: TimeMetric,
+    // compiler phases by their names, e.g. ANALYZE and GENERATE
+    val compilerPhases: Map<String, TimeMetric>,
+    // number of collections and total collection time by names of the garbage collectors
+    val garbageCollections: Map<String, TimeMetric>,
+    val heap: HeapMetrics,
+    val libraryClassCacheHits: Long,
+    val libraryClassCacheMisses: Long,
+    val classpathDigestsComputed: Long,
+    val classpathDigestsSkipped: Long
+) : Serializable {
+
+    fun toJson(): String = buildString {
+        append("{")
+        append("\"uptimeMillis\": ").append(uptimeMillis)
+        append(", \"compilations\": ").append(compilations.toJson())
+        append(", \"compilationExceptions\": ").append(compilationExceptions)
+        append(", \"queueWait\": ").append(queueWait.toJson())
+        append(", \"remoteCalls\": ").append(remoteCalls.toJson())
+        append(", \"compilerPhases\": ").append(compilerPhases.toJson())
+        append(", \"garbageCollections\": ").append(garbageCollections.toJson())
+        append(", \"heap\": ").append(heap.toJson())
+        append(", \"libraryClassCacheHits\": ").append(libraryClassCacheHits)
+        append(", \"libraryClassCacheMisses\": ").append(libraryClassCacheMisses)
+        append(", \"classpathDigestsComputed\": ").append(classpathDigestsComputed)
+        append(", \"classpathDigestsSkipped\": ").append(classpathDigestsSkipped)
+        append("}")
+    }
+
+    override fun toString(): String = toJson()
+
+    companion object {
+        const val serialVersionUID: Long = 0
+
+        private fun Map<String, TimeMetric>.toJson(): String =
+            entries.joinToString(", ", "{", "}") { (name, metric) -> "\"${name.escapeJson()}\": ${metric.toJson()}" }
+
+        private fun String.escapeJson(): String = replace("\\", "\\\\").replace("\"", "\\\"")
+    }
+}
+
+/**
+ * Number of measured events with their total and maximum duration; [maxMillis] is -1 if durations of single events are unknown.
+ */
+class TimeMetric(val count: Long, val totalMillis: Long, val maxMillis: Long) : Serializable {
+    val averageMillis: Long
+        get() = if (count == 0L) 0L else totalMillis / count
+
+    fun toJson(): String = "{\"count\": $count, \"totalMillis\": $totalMillis, \"maxMillis\": $maxMillis}"
+
+    companion object {
+        const val serialVersionUID: Long = 0
+    }
+}
+
+class HeapMetrics(val usedBytes: Long, val committedBytes: Long, val maxBytes: Long, val usedAfterLastGCBytes: Long) : Serializable {
+    fun toJson(): String =
+        "{\"usedBytes\": $usedBytes, \"committedBytes\": $committedBytes, \"maxBytes\": $maxBytes, " +
+                "\"usedAfterLastGCBytes\": $usedAfterLastGCBytes}"
+
+    companion object {
+        const val serialVersionUID: Long = 0
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.logging.Logger
+
+/**
+ * Limits the number of compilations running in parallel in the daemon, see [org.jetbrains.kotlin.daemon.common.DaemonOptions.maxParallelCompilations].
+ * Compilations exceeding the limit wait in a fair queue in the order of arrival, [limit] <= 0 means no limit.
+ *
+ * A slot should be acquired before taking any daemon locks, so that waiting compilations don't block other requests.
+ * The slots also track the running compilations, so that the state shared by them is changed only when the daemon is idle, see [runWhenIdle].
+ */
+class CompilationSlots(
+    val limit: Int,
+    private val metrics: DaemonMetricsCollector,
+    private val log: Logger
+) {
+    private val semaphore: Semaphore? = if (limit > 0) Semaphore(limit, true) else null
+
+    private var runningCompilations = 0
+    private val actionsWhenIdle = LinkedHashMap<String, () -> Unit>()
+
+    val queueLength: Int
+        get() = semaphore?.queueLength ?: 0
+
+    @get:Synchronized
+    val running: Int
+        get() = runningCompilations
+
+    fun acquire() {
+        // zero timeout instead of tryAcquire() to respect the fairness of the queue
+        if (semaphore != null && !semaphore.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+            log.info("Compilation is queued: all $limit compilation slots are busy, ${semaphore.queueLength} compilations are waiting")
+            val waitStart = System.nanoTime()
+            semaphore.acquire()
+            val waitTime = System.nanoTime() - waitStart
+            metrics.recordQueueWait(waitTime)
+            log.info("Compilation is started after waiting in the queue for ${TimeUnit.NANOSECONDS.toMillis(waitTime)} ms")
+        }
+        synchronized(this) {
+            runningCompilations++
+        }
+    }
+
+    fun release() {
+        try {
+            synchronized(this) {
+                runningCompilations--
+                if (runningCompilations == 0) {
+                    // compilations starting meanwhile wait for the actions in acquire()
+                    val actions = actionsWhenIdle.values.toList()
+                    actionsWhenIdle.clear()
+                    actions.forEach { it() }
+                }
+            }
+        } finally {
+            semaphore?.release()
+        }
+    }
+
+    inline fun <R> withSlot(body: () -> R): R {
+        acquire()
+        try {
+            return body()
+        } finally {
+            release()
+        }
+    }
+
+    /**
+     * Runs [action] now if no compilation is running, otherwise after the last running compilation is finished.
+     * Actions with the same [key] requested while compilations are running are run once.
+     */
+    @Synchronized
+    fun runWhenIdle(key: String, action: () -> Unit) {
+        if (runningCompilations > 0) {
+            actionsWhenIdle[key] = action
+        } else {
+            action()
+        }
+    }
+}
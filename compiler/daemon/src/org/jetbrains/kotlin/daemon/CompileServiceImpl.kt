@@ -23,6 +23,7 @@ import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
 import org.jetbrains.kotlin.build.DEFAULT_KOTLIN_SOURCE_FILES_EXTENSIONS
 import org.jetbrains.kotlin.build.JvmSourceRoot
 import org.jetbrains.kotlin.cli.common.CLICompiler
+import org.jetbrains.kotlin.cli.common.CommonCompilerPerformanceManager
 import org.jetbrains.kotlin.cli.common.ExitCode
 import org.jetbrains.kotlin.cli.common.KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY
 import org.jetbrains.kotlin.cli.common.arguments.*
@@ -51,13 +52,17 @@ import org.jetbrains.kotlin.incremental.multiproject.ModulesApiHistoryAndroid
 import org.jetbrains.kotlin.incremental.multiproject.ModulesApiHistoryJs
 import org.jetbrains.kotlin.incremental.multiproject.ModulesApiHistoryJvm
 import org.jetbrains.kotlin.incremental.parsing.classesFqNames
+import org.jetbrains.kotlin.load.kotlin.LibraryKotlinClassCache
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.modules.Module
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
 import java.io.BufferedOutputStream
 import java.io.ByteArrayOutputStream
 import java.io.File
+import java.io.IOException
 import java.io.PrintStream
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
 import java.rmi.NoSuchObjectException
 import java.rmi.registry.Registry
 import java.rmi.server.UnicastRemoteObject
@@ -76,6 +81,14 @@ const val REMOTE_STREAM_BUFFER_SIZE = 4096
 
 fun nowSeconds() = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime())
 
+// the library class cache may take up to 10% of the heap, assuming 2 kb per class
+private const val LIBRARY_CLASS_CACHE_HEAP_FRACTION = 0.1
+private const val ESTIMATED_CACHED_CLASS_SIZE = 2048
+private const val LIBRARY_CLASS_CACHE_MEMORY_PRESSURE = 0.8
+
+internal fun heapUsedAfterLastGC(): Long =
+    ManagementFactory.getMemoryPoolMXBeans().filter { it.type == MemoryType.HEAP }.map { it.collectionUsage?.used ?: 0L }.sum()
+
 interface CompilerSelector {
     operator fun get(targetPlatform: CompileService.TargetPlatform): CLICompiler<*>
 }
@@ -106,6 +119,13 @@ abstract class CompileServiceImplBase(
 
     init {
         System.setProperty(KOTLIN_COMPILER_ENVIRONMENT_KEEPALIVE_PROPERTY, "true")
+
+        if (daemonOptions.cacheLibraryClasses) {
+            // the heap limit comes from DaemonJVMOptions.maxMemory
+            LibraryKotlinClassCache.enable(
+                (Runtime.getRuntime().maxMemory() * LIBRARY_CLASS_CACHE_HEAP_FRACTION / ESTIMATED_CACHED_CLASS_SIZE).toInt()
+            )
+        }
     }
 
     // wrapped in a class to encapsulate alive check logic
@@ -129,6 +149,26 @@ abstract class CompileServiceImplBase(
 
     protected val classpathWatcher = LazyClasspathWatcher(compilerId.compilerClasspath)
 
+    protected val metrics = DaemonMetricsCollector()
+
+    // compilations run in parallel in their own project environments, but share the application environment and the jar caches,
+    // the settings of incremental compilation are set per compilation thread (see withICInCurrentThread)
+    protected val compilationSlots = CompilationSlots(daemonOptions.maxParallelCompilations, metrics, log)
+
+    init {
+        // compilers are created by the incremental compilation runners as well, so their measurements are collected globally
+        CommonCompilerPerformanceManager.measurementsListener = metrics::recordCompilerMeasurements
+    }
+
+    protected fun dumpMetrics() {
+        if (daemonOptions.metricsFile.isBlank()) return
+        try {
+            File(daemonOptions.metricsFile).writeText(metrics.snapshot(classpathWatcher).toJson())
+        } catch (e: IOException) {
+            log.log(Level.WARNING, "Unable to write daemon metrics to ${daemonOptions.metricsFile}", e)
+        }
+    }
+
     enum class Aliveness {
         // !!! ordering of values is used in state comparison
         Dying,
@@ -316,7 +356,7 @@ abstract class CompileServiceImplBase(
         } else when (compilationOptions.compilerMode) {
             CompilerMode.JPS_COMPILER -> {
                 servicesFacade as JpsServicesFacadeT
-                withIC(enabled = servicesFacade.hasIncrementalCaches()) {
+                withICInCurrentThread(enabled = servicesFacade.hasIncrementalCaches()) {
                     doCompile(sessionId, daemonReporter, tracer = null) { eventManger, profiler ->
                         val services = createServices(servicesFacade, eventManger, profiler)
                         compiler.exec(messageCollector, services, k2PlatformArgs)
@@ -333,7 +373,7 @@ abstract class CompileServiceImplBase(
                 val gradleIncrementalServicesFacade = servicesFacade
 
                 when (targetPlatform) {
-                    CompileService.TargetPlatform.JVM -> withIC {
+                    CompileService.TargetPlatform.JVM -> withICInCurrentThread {
                         doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
                             execIncrementalCompiler(
                                 k2PlatformArgs as K2JVMCompilerArguments,
@@ -347,7 +387,7 @@ abstract class CompileServiceImplBase(
                             )
                         }
                     }
-                    CompileService.TargetPlatform.JS -> withJsIC {
+                    CompileService.TargetPlatform.JS -> withJsICInCurrentThread {
                         doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
                             execJsIncrementalCompiler(
                                 k2PlatformArgs as K2JSCompilerArguments,
@@ -379,7 +419,7 @@ abstract class CompileServiceImplBase(
         log.fine("alive!")
         withValidClientOrSessionProxy(sessionId) {
             tracer?.before("compile")
-            val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
+            val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else WallTotalProfiler()
             val eventManager = EventManagerImpl()
             try {
                 log.fine("trying get exitCode")
@@ -402,10 +442,14 @@ abstract class CompileServiceImplBase(
         rpcProfiler: Profiler,
         body: () -> R
     ): R {
+        LibraryKotlinClassCache.compilationStarted()
+        val compilationStart = System.nanoTime()
+        var succeeded = false
         try {
             val profiler = if (daemonOptions.reportPerf) WallAndThreadAndMemoryTotalProfiler(withGC = false) else DummyProfiler()
 
             val res = profiler.withMeasure(null, body)
+            succeeded = true
 
             val endMem = if (daemonOptions.reportPerf) usedMemory(withGC = false) else 0L
 
@@ -443,6 +487,19 @@ abstract class CompileServiceImplBase(
                 }"
             )
             throw e
+        } finally {
+            metrics.recordCompilation(System.nanoTime() - compilationStart, succeeded)
+            metrics.recordRemoteCalls(rpcProfiler.getTotalCounters())
+        }
+    }
+
+    // the jar caches are shared by all compilations, so they are cleared when no compilation is running
+    protected fun clearJarCacheWhenIdle() {
+        compilationSlots.runWhenIdle("clearJarCache") {
+            ZipHandler.clearFileAccessorCache()
+            (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+            // cached classes refer to the files of the cleared jar handlers
+            LibraryKotlinClassCache.clear()
         }
     }
 
@@ -643,7 +700,9 @@ class CompileServiceImpl(
     // RMI-exposed API
 
     override fun getDaemonInfo(): CompileService.CallResult<String> = ifAlive(minAliveness = Aliveness.Dying) {
-        CompileService.CallResult.Good("Kotlin daemon on port $port")
+        val libraryClassCacheInfo =
+            if (LibraryKotlinClassCache.isEnabled) "; library class cache: ${LibraryKotlinClassCache.statistics}" else ""
+        CompileService.CallResult.Good("Kotlin daemon on port $port; $classpathWatcher$libraryClassCacheInfo")
     }
 
     override fun getDaemonOptions(): CompileService.CallResult<DaemonOptions> = ifAlive {
@@ -656,6 +715,10 @@ class CompileServiceImpl(
         CompileService.CallResult.Good(daemonJVMOptions)
     }
 
+    override fun getDaemonMetrics(): CompileService.CallResult<DaemonMetrics> = ifAlive(minAliveness = Aliveness.Dying) {
+        CompileService.CallResult.Good(metrics.snapshot(classpathWatcher))
+    }
+
     override fun registerClient(aliveFlagPath: String?): CompileService.CallResult<Nothing> = ifAlive(minAliveness = Aliveness.Alive) {
         state.addClient(aliveFlagPath)
         log.info("Registered a client alive file: $aliveFlagPath")
@@ -773,18 +836,20 @@ class CompileServiceImpl(
         compilationOptions: CompilationOptions,
         servicesFacade: CompilerServicesFacadeBase,
         compilationResults: CompilationResults?
-    ) = compileImpl(
-        sessionId,
-        compilerArguments,
-        compilationOptions,
-        servicesFacade,
-        compilationResults,
-        hasIncrementalCaches = JpsCompilerServicesFacade::hasIncrementalCaches,
-        createMessageCollector = ::CompileServicesFacadeMessageCollector,
-        createReporter = ::DaemonMessageReporter,
-        createServices = this::createCompileServices,
-        getICReporter = { a, b, c -> getICReporter(a, b!!, c)}
-    )
+    ) = compilationSlots.withSlot {
+        compileImpl(
+            sessionId,
+            compilerArguments,
+            compilationOptions,
+            servicesFacade,
+            compilationResults,
+            hasIncrementalCaches = JpsCompilerServicesFacade::hasIncrementalCaches,
+            createMessageCollector = ::CompileServicesFacadeMessageCollector,
+            createReporter = ::DaemonMessageReporter,
+            createServices = this::createCompileServices,
+            getICReporter = { a, b, c -> getICReporter(a, b!!, c)}
+        )
+    }
 
     override fun leaseReplSession(
         aliveFlagPath: String?,
@@ -977,12 +1042,18 @@ class CompileServiceImpl(
 
     override fun periodicSeldomCheck() {
         ifAliveUnit(minAliveness = Aliveness.Alive) {
+            dumpMetrics()
 
             // compiler changed (seldom check) - shutdown
             if (classpathWatcher.isChanged) {
                 log.info("Compiler changed.")
                 gracefulShutdown(false)
             }
+
+            if (LibraryKotlinClassCache.isEnabled && heapUsedAfterLastGC() > Runtime.getRuntime().maxMemory() * LIBRARY_CLASS_CACHE_MEMORY_PRESSURE) {
+                log.info("Clearing library class cache on memory pressure: ${LibraryKotlinClassCache.statistics}")
+                LibraryKotlinClassCache.clear()
+            }
         }
     }
 
@@ -1066,6 +1137,8 @@ class CompileServiceImpl(
             log.info("Memory stats: total: ${totalMemory().mb()}mb, free: ${freeMemory().mb()}mb, max: ${maxMemory().mb()}mb")
         }
         state.alive.set(Aliveness.Dying.ordinal)
+        dumpMetrics()
+        classpathWatcher.close()
 
         UnicastRemoteObject.unexportObject(this, true)
         log.info("Shutdown complete")
@@ -1134,11 +1207,11 @@ class CompileServiceImpl(
         serviceOutputStreamProxy: RemoteOutputStream,
         operationsTracer: RemoteOperationsTracer?,
         body: (PrintStream, EventManager, Profiler) -> ExitCode
-    ): CompileService.CallResult<Int> =
+    ): CompileService.CallResult<Int> = compilationSlots.withSlot {
         ifAlive {
             withValidClientOrSessionProxy(sessionId) {
                 operationsTracer?.before("compile")
-                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
+                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else WallTotalProfiler()
                 val eventManger = EventManagerImpl()
                 val compilerMessagesStream = PrintStream(
                     BufferedOutputStream(
@@ -1169,6 +1242,7 @@ class CompileServiceImpl(
                 }
             }
         }
+    }
 
     init {
         // assuming logicaly synchronized
@@ -1189,8 +1263,7 @@ class CompileServiceImpl(
     }
 
     override fun clearJarCache() {
-        ZipHandler.clearFileAccessorCache()
-        (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+        clearJarCacheWhenIdle()
     }
 
     private inline fun <R> ifAlive(
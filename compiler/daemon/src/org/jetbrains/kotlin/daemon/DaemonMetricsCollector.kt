@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.cli.common.CodeAnalysisMeasurement
+import org.jetbrains.kotlin.cli.common.CodeGenerationMeasurement
+import org.jetbrains.kotlin.cli.common.CompilerInitializationMeasurement
+import org.jetbrains.kotlin.cli.common.PerformanceMeasurement
+import org.jetbrains.kotlin.daemon.common.DaemonMetrics
+import org.jetbrains.kotlin.daemon.common.HeapMetrics
+import org.jetbrains.kotlin.daemon.common.PerfCounters
+import org.jetbrains.kotlin.daemon.common.TimeMetric
+import org.jetbrains.kotlin.load.kotlin.LibraryKotlinClassCache
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Aggregates timings of compilations and compiler phases run by the daemon over its lifetime, see [DaemonMetrics].
+ */
+class DaemonMetricsCollector {
+    private val compilations = TimeMetricCollector()
+    private val compilationExceptions = AtomicLong(0)
+    private val queueWait = TimeMetricCollector()
+    private val remoteCalls = TimeMetricCollector()
+    private val compilerPhases = ConcurrentHashMap<String, TimeMetricCollector>()
+
+    fun recordCompilation(nanos: Long, succeeded: Boolean) {
+        compilations.add(TimeUnit.NANOSECONDS.toMillis(nanos))
+        if (!succeeded) {
+            compilationExceptions.incrementAndGet()
+        }
+    }
+
+    fun recordQueueWait(nanos: Long) {
+        queueWait.add(TimeUnit.NANOSECONDS.toMillis(nanos))
+    }
+
+    // durations of single calls are not measured by the profilers, so only the totals are recorded
+    fun recordRemoteCalls(counters: PerfCounters) {
+        remoteCalls.addTotal(counters.count, TimeUnit.NANOSECONDS.toMillis(counters.time))
+    }
+
+    fun recordCompilerMeasurements(measurements: List<PerformanceMeasurement>) {
+        for (measurement in measurements) {
+            when (measurement) {
+                is CompilerInitializationMeasurement -> recordCompilerPhase("INIT", measurement.milliseconds)
+                is CodeAnalysisMeasurement -> recordCompilerPhase("ANALYZE", measurement.milliseconds)
+                is CodeGenerationMeasurement -> recordCompilerPhase("GENERATE", measurement.milliseconds)
+            }
+        }
+    }
+
+    private fun recordCompilerPhase(name: String, millis: Long) {
+        compilerPhases.getOrPut(name) { TimeMetricCollector() }.add(millis)
+    }
+
+    fun snapshot(classpathWatcher: LazyClasspathWatcher): DaemonMetrics {
+        val heapUsage = ManagementFactory.getMemoryMXBean().heapMemoryUsage
+        val libraryClassCacheStatistics = LibraryKotlinClassCache.statistics
+        return DaemonMetrics(
+            uptimeMillis = ManagementFactory.getRuntimeMXBean().uptime,
+            compilations = compilations.toMetric(),
+            compilationExceptions = compilationExceptions.get(),
+            queueWait = queueWait.toMetric(),
+            remoteCalls = remoteCalls.toMetric(),
+            compilerPhases = compilerPhases.entries.sortedBy { it.key }.associate { (name, phase) -> name to phase.toMetric() },
+            garbageCollections = ManagementFactory.getGarbageCollectorMXBeans().associate {
+                it.name to TimeMetric(it.collectionCount, it.collectionTime, maxMillis = -1)
+            },
+            heap = HeapMetrics(heapUsage.used, heapUsage.committed, heapUsage.max, heapUsedAfterLastGC()),
+            libraryClassCacheHits = libraryClassCacheStatistics.hits,
+            libraryClassCacheMisses = libraryClassCacheStatistics.misses,
+            classpathDigestsComputed = classpathWatcher.computedDigests.get(),
+            classpathDigestsSkipped = classpathWatcher.skippedDigests.get()
+        )
+    }
+
+    private class TimeMetricCollector {
+        private var count = 0L
+        private var totalMillis = 0L
+        // stays -1 if only totals were added
+        private var maxMillis = -1L
+
+        @Synchronized
+        fun add(millis: Long) {
+            count++
+            totalMillis += millis
+            maxMillis = maxOf(maxMillis, millis)
+        }
+
+        @Synchronized
+        fun addTotal(count: Long, millis: Long) {
+            this.count += count
+            totalMillis += millis
+        }
+
+        @Synchronized
+        fun toMetric() = TimeMetric(count, totalMillis, maxMillis)
+    }
+}
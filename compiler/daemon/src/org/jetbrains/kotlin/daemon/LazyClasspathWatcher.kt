@@ -16,8 +16,10 @@
 
 package org.jetbrains.kotlin.daemon
 
+import java.io.Closeable
 import java.io.File
 import java.io.IOException
+import java.nio.file.*
 import java.security.DigestInputStream
 import java.security.MessageDigest
 import java.util.*
@@ -37,33 +39,61 @@ val DEFAULT_CLASSPATH_DIGEST_WATCH_PERIOD_MS = 300000L // 5 min
 
 /**
  * Class for lazy (on demand) check if any relevant file in the classpath is changed
- * poor-man watcher in the absence of NIO
- * TODO: replace with NIO watching when switching to java 7+
+ *
+ * Directories containing the classpath files are watched with a [WatchService], and only the files reported by it are checked on demand.
+ * If the watch service is not available or is implemented by polling, or if some events are lost, all files are checked by
+ * their timestamps. Every [digestCheckPeriod] ms all files are checked as a fallback for missed changes: by their timestamps while
+ * the watch service is active, and by their digests otherwise. Once a change is detected, [isChanged] stays true.
  */
 class LazyClasspathWatcher(classpath: Iterable<String>,
                            val checkPeriod: Long = DEFAULT_CLASSPATH_WATCH_PERIOD_MS,
-                           val digestCheckPeriod: Long = DEFAULT_CLASSPATH_DIGEST_WATCH_PERIOD_MS) {
+                           val digestCheckPeriod: Long = DEFAULT_CLASSPATH_DIGEST_WATCH_PERIOD_MS,
+                           useWatchService: Boolean = true) : Closeable {
 
     private data class FileId(val file: File, val lastModified: Long, val digest: ByteArray)
 
     private val fileIdsLock = Semaphore(1) // a barrier for ensuring ids are initialized, using semaphore to allow modifications from another thread
-    private var fileIds: List<FileId>? = null
+    private var fileIds: MutableMap<Path, FileId>? = null
+    @Volatile
+    private var watchService: WatchService? = null
+    @Volatile
+    private var isClosed = false
     private val lastChangedStatus = AtomicBoolean(false)
     private val lastUpdate = AtomicLong(0)
     private val lastDigestUpdate = AtomicLong(0)
     private val log by lazy { Logger.getLogger("classpath watcher") }
 
+    /**
+     * Number of file digests computed after the initial walk of the classpath
+     */
+    val computedDigests = AtomicLong(0)
+
+    /**
+     * Number of file digests skipped by the periodic digest checks, because the watch service was active and the files were not changed
+     */
+    val skippedDigests = AtomicLong(0)
+
+    val isWatchingForEvents: Boolean get() = watchService != null
+
     init {
         // locking before entering thread in order to avoid racing with isChanged
         fileIdsLock.acquire()
         thread(isDaemon = true, start = true) {
             try {
-                fileIds = classpath
+                val files = classpath
                         .map(::File)
                         .asSequence()
                         .flatMap { it.walk().filter(::isClasspathFile) }
-                        .map { FileId(it, it.lastModified(), it.md5Digest()) }
                         .toList()
+                // registering before computing the digests, so that changes made in the meantime are not lost
+                if (useWatchService) {
+                    watchService = createWatchService(files)
+                    // closed while walking the classpath
+                    if (isClosed) synchronized(this) { closeWatchService() }
+                }
+                fileIds = files.associateTo(LinkedHashMap()) {
+                    it.toPath().toAbsolutePath() to FileId(it, it.lastModified(), it.md5Digest())
+                }
                 val nowMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
                 lastUpdate.set(nowMs)
                 lastDigestUpdate.set(nowMs)
@@ -78,6 +108,36 @@ class LazyClasspathWatcher(classpath: Iterable<String>,
         }
     }
 
+    private fun createWatchService(files: List<File>): WatchService? {
+        val service = try {
+            FileSystems.getDefault().newWatchService()
+        }
+        catch (e: Exception) {
+            log.log(Level.INFO, "Watch service is not available, polling classpath files", e)
+            return null
+        }
+        // The polling implementation (e.g. on macOS) reports changes with a delay of several seconds, checking timestamps is faster
+        if (service.javaClass.simpleName == "PollingWatchService") {
+            service.close()
+            log.info("Watch service is implemented by polling, polling classpath files")
+            return null
+        }
+        try {
+            for (directory in files.mapTo(LinkedHashSet()) { it.absoluteFile.parentFile.toPath() }) {
+                directory.register(
+                        service,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY
+                )
+            }
+        }
+        catch (e: Exception) {
+            service.close()
+            log.log(Level.INFO, "Cannot watch classpath directories, polling classpath files", e)
+            return null
+        }
+        return service
+    }
+
     val isChanged: Boolean get() {
         if (lastChangedStatus.get()) return true
         val nowMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
@@ -87,30 +147,119 @@ class LazyClasspathWatcher(classpath: Iterable<String>,
         // making sure that fieldIds are initialized
         fileIdsLock.acquire()
         fileIdsLock.release()
-        val changed =
-            fileIds?.find {
-                try {
-                    if (!it.file.exists()) {
-                        log.info("cp changed: ${it.file} doesn't exist any more")
-                        true
+        val changed = synchronized(this) {
+            if (lastChangedStatus.get()) return@synchronized true
+            val ids = fileIds ?: return@synchronized false
+            // events are consumed by polling, so the result is remembered in lastChangedStatus below
+            val changedFiles = pollChangedFiles()
+            when {
+                changedFiles != null && !checkDigest ->
+                    // digests of reported files are always checked, since their contents could be modified without changing the timestamp
+                    changedFiles.any { path -> ids[path]?.let { isFileChanged(ids, it, forceDigest = true) } ?: false }
+                else -> {
+                    // the watch service reports the changes, so the periodic check of all files relies on the timestamps while it is active
+                    val watching = isWatchingForEvents
+                    val digestsBefore = computedDigests.get()
+                    val changed = ids.any { (path, id) ->
+                        isFileChanged(ids, id, forceDigest = (checkDigest && !watching) || changedFiles?.contains(path) == true)
                     }
-                    // if last modified changed or if enforced by param - checking the digest
-                    else if ((it.file.lastModified() != it.lastModified || checkDigest) && !Arrays.equals(it.digest, it.file.md5Digest())) {
-                        log.info("cp changed: ${it.file} digests differ")
-                        true
+                    if (checkDigest && watching && !changed) {
+                        skippedDigests.addAndGet(ids.size - (computedDigests.get() - digestsBefore))
                     }
-                    else false
-                }
-                catch (e: IOException) {
-                    log.log(Level.INFO, "cp changed: ${it.file} access throws the exception", e)
-                    true // io error considered as change
+                    changed
                 }
-            } != null
+            }
+        }
+        if (changed) {
+            lastChangedStatus.set(true)
+        }
         lastUpdate.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()))
         if (checkDigest) lastDigestUpdate.set(lastUpdate.get())
 
         return changed
     }
+
+    override fun close() {
+        isClosed = true
+        synchronized(this) {
+            closeWatchService()
+        }
+    }
+
+    private fun closeWatchService() {
+        val service = watchService ?: return
+        watchService = null
+        try {
+            service.close()
+        }
+        catch (e: IOException) {
+            log.log(Level.INFO, "Error on closing watch service", e)
+        }
+    }
+
+    // returns null if files should be checked by polling
+    private fun pollChangedFiles(): Set<Path>? {
+        val service = watchService ?: return null
+        val changedFiles = HashSet<Path>()
+        var eventsLost = false
+        while (true) {
+            val key = service.poll() ?: break
+            val directory = key.watchable() as Path
+            for (event in key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    eventsLost = true
+                }
+                else {
+                    changedFiles.add(directory.resolve(event.context() as Path))
+                }
+            }
+            if (!key.reset()) {
+                // the directory is not accessible any more, its files are reported as deleted by the timestamp check
+                eventsLost = true
+            }
+        }
+        if (eventsLost) {
+            log.info("Some classpath changes could not be watched, polling classpath files")
+            return null
+        }
+        return changedFiles
+    }
+
+    private fun isFileChanged(fileIds: MutableMap<Path, FileId>, fileId: FileId, forceDigest: Boolean): Boolean =
+        try {
+            val file = fileId.file
+            if (!file.exists()) {
+                log.info("cp changed: $file doesn't exist any more")
+                true
+            }
+            // if last modified changed or if enforced by param - checking the digest
+            else {
+                val lastModified = file.lastModified()
+                if (lastModified == fileId.lastModified && !forceDigest) {
+                    false
+                }
+                else {
+                    computedDigests.incrementAndGet()
+                    if (!Arrays.equals(fileId.digest, file.md5Digest())) {
+                        log.info("cp changed: $file digests differ")
+                        true
+                    }
+                    else {
+                        // the file is touched, but not changed, remembering the timestamp to avoid computing the digest again
+                        fileIds[file.toPath().toAbsolutePath()] = fileId.copy(lastModified = lastModified)
+                        false
+                    }
+                }
+            }
+        }
+        catch (e: IOException) {
+            log.log(Level.INFO, "cp changed: ${fileId.file} access throws the exception", e)
+            true // io error considered as change
+        }
+
+    override fun toString(): String =
+        "classpath watcher: ${if (isWatchingForEvents) "watching for events" else "polling"}, " +
+                "${computedDigests.get()} digests computed, ${skippedDigests.get()} digests skipped"
 }
 
 
@@ -119,10 +268,8 @@ fun isClasspathFile(file: File): Boolean = file.isFile && listOf("class", "jar")
 fun File.md5Digest(): ByteArray {
     val md = MessageDigest.getInstance(CLASSPATH_FILE_ID_DIGEST)
     DigestInputStream(inputStream(), md).use {
-        val buf = ByteArray(1024)
+        val buf = ByteArray(64 * 1024)
         while (it.read(buf) != -1) {}
-        it.close()
     }
     return md.digest()
 }
-
@@ -8,8 +8,6 @@
 package org.jetbrains.kotlin.daemon.experimental
 
 import com.intellij.openapi.util.Disposer
-import com.intellij.openapi.vfs.impl.ZipHandler
-import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
 import kotlinx.coroutines.*
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.actor
@@ -24,7 +22,6 @@ import org.jetbrains.kotlin.cli.common.repl.ReplCodeLine
 import org.jetbrains.kotlin.cli.common.repl.ReplCompileResult
 import org.jetbrains.kotlin.cli.js.K2JSCompiler
 import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
-import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
 import org.jetbrains.kotlin.cli.metadata.K2MetadataCompiler
 import org.jetbrains.kotlin.config.Services
 import org.jetbrains.kotlin.daemon.CompileServiceImplBase
@@ -242,6 +239,10 @@ class CompileServiceServerSideImpl(
         CompileService.CallResult.Good(daemonJVMOptions)
     }
 
+    override suspend fun getDaemonMetrics(): CompileService.CallResult<DaemonMetrics> = ifAlive(minAliveness = Aliveness.Dying) {
+        CompileService.CallResult.Good(metrics.snapshot(classpathWatcher))
+    }
+
     override suspend fun registerClient(aliveFlagPath: String?): CompileService.CallResult<Nothing> {
         log.fine("fun registerClient")
         return ifAlive(minAliveness = Aliveness.Alive) {
@@ -325,20 +326,30 @@ class CompileServiceServerSideImpl(
         compilationOptions: CompilationOptions,
         servicesFacade: CompilerServicesFacadeBaseAsync,
         compilationResults: CompilationResultsAsync?
-    ) = compileImpl(
-        sessionId,
-        compilerArguments,
-        compilationOptions,
-        servicesFacade,
-        compilationResults,
-        hasIncrementalCaches = { hasIncrementalCaches() },
-        createMessageCollector = ::CompileServicesFacadeMessageCollector,
-        createReporter = ::DaemonMessageReporterAsync,
-        createServices = { facade: CompilerCallbackServicesFacadeClientSide, eventMgr, profiler ->
-            createCompileServices(facade, eventMgr, profiler)
-        },
-        getICReporter = ::getICReporterAsync
-    )
+    ): CompileService.CallResult<Int> {
+        // waiting in the queue blocks the thread, so it shouldn't be done by the threads serving the requests
+        withContext(Dispatchers.IO) {
+            compilationSlots.acquire()
+        }
+        try {
+            return compileImpl(
+                sessionId,
+                compilerArguments,
+                compilationOptions,
+                servicesFacade,
+                compilationResults,
+                hasIncrementalCaches = { hasIncrementalCaches() },
+                createMessageCollector = ::CompileServicesFacadeMessageCollector,
+                createReporter = ::DaemonMessageReporterAsync,
+                createServices = { facade: CompilerCallbackServicesFacadeClientSide, eventMgr, profiler ->
+                    createCompileServices(facade, eventMgr, profiler)
+                },
+                getICReporter = ::getICReporterAsync
+            )
+        } finally {
+            compilationSlots.release()
+        }
+    }
 
     override suspend fun leaseReplSession(
         aliveFlagPath: String?,
@@ -464,6 +475,7 @@ class CompileServiceServerSideImpl(
     override fun periodicSeldomCheck() {
         GlobalScope.async {
             ifAliveUnit(minAliveness = Aliveness.Alive) {
+                dumpMetrics()
                 // compiler changed (seldom check) - shutdown
                 if (classpathWatcher.isChanged) {
                     log.info("Compiler changed.")
@@ -571,6 +583,8 @@ class CompileServiceServerSideImpl(
             log.info("Memory stats: total: ${totalMemory().mb()}mb, free: ${freeMemory().mb()}mb, max: ${maxMemory().mb()}mb")
         }
         state.alive.set(Aliveness.Dying.ordinal)
+        dumpMetrics()
+        classpathWatcher.close()
         shutdownServer()
         log.info("Shutdown complete")
         onShutdown()
@@ -671,8 +685,7 @@ class CompileServiceServerSideImpl(
     }
 
     override suspend fun clearJarCache() {
-        ZipHandler.clearFileAccessorCache()
-        (KotlinCoreEnvironment.applicationEnvironment?.jarFileSystem as? CoreJarFileSystem)?.clearHandlersCache()
+        clearJarCacheWhenIdle()
     }
 
     private suspend fun <R> ifAlive(
@@ -30,17 +30,16 @@ class LightTree2Fir(
 
     companion object {
         private val parserDefinition = KotlinParserDefinition()
-        private val lexer = KotlinLexer()
 
         fun buildLightTreeBlockExpression(code: String): FlyweightCapableTreeStructure<LighterASTNode> {
-            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, lexer, code)
+            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, KotlinLexer(), code)
             //KotlinParser.parseBlockExpression(builder)
             KotlinLightParser.parseBlockExpression(builder)
             return builder.lightTree
         }
 
         fun buildLightTreeLambdaExpression(code: String): FlyweightCapableTreeStructure<LighterASTNode> {
-            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, lexer, code)
+            val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, KotlinLexer(), code)
             //KotlinParser.parseLambdaExpression(builder)
             KotlinLightParser.parseLambdaExpression(builder)
             return builder.lightTree
@@ -57,7 +56,8 @@ class LightTree2Fir(
     }
 
     fun buildLightTree(code: String): FlyweightCapableTreeStructure<LighterASTNode> {
-        val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, lexer, code)
+        // Lexers are stateful, so a new one is created for each file to allow building files in parallel
+        val builder = PsiBuilderFactoryImpl().createBuilder(parserDefinition, KotlinLexer(), code)
         //KotlinParser(project).parse(null, builder, ktDummyFile)
         KotlinLightParser.parse(builder)
         return builder.lightTree
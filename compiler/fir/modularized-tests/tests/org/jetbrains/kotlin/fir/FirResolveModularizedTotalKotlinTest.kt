@@ -17,7 +17,9 @@ import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
 import org.jetbrains.kotlin.config.JVMConfigurationKeys
 import org.jetbrains.kotlin.fir.builder.RawFirBuilder
 import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.declarations.FirResolvePhase
 import org.jetbrains.kotlin.fir.dump.MultiModuleHtmlFirDump
+import org.jetbrains.kotlin.fir.resolve.transformers.FirParallelTotalResolveTransformer
 import org.jetbrains.kotlin.fir.resolve.transformers.FirTotalResolveTransformer
 import org.jetbrains.kotlin.fir.scopes.ProcessorAction
 import org.jetbrains.kotlin.test.ConfigurationKind
@@ -26,6 +28,7 @@ import org.jetbrains.kotlin.test.TestJdkKind
 import java.io.File
 import java.io.FileOutputStream
 import java.io.PrintStream
+import java.util.concurrent.ForkJoinPool
 
 
 private const val FAIL_FAST = true
@@ -38,6 +41,13 @@ private val DUMP_FIR = System.getProperty("fir.bench.dump", "true") == "true"
 internal val PASSES = System.getProperty("fir.bench.passes")?.toInt() ?: 3
 internal val SEPARATE_PASS_DUMP = System.getProperty("fir.bench.dump.separate_pass", "false") == "true"
 
+// Number of threads to build raw FIR with, files are built sequentially if not set
+private val PARALLEL_THREADS = System.getProperty("fir.bench.parallel.threads")?.toInt()
+// Comma-separated names of resolve phases to run in parallel, see FirParallelTotalResolveTransformer.DEFAULT_PARALLEL_PHASES
+private val PARALLEL_PHASES = System.getProperty("fir.bench.parallel.phases")
+    ?.split(',')?.filter { it.isNotBlank() }?.map { FirResolvePhase.valueOf(it.trim()) }?.toSet()
+    ?: FirParallelTotalResolveTransformer.DEFAULT_PARALLEL_PHASES
+
 class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
 
     private lateinit var dump: MultiModuleHtmlFirDump
@@ -52,14 +62,25 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
         val scope = ProjectScope.getContentScope(project)
         val librariesScope = ProjectScope.getLibrariesScope(project)
         val session = createSession(environment, scope, librariesScope)
-        val builder = RawFirBuilder(session, stubMode = false)
-
-        val totalTransformer = FirTotalResolveTransformer()
-        val firFiles = bench.buildFiles(builder, ktFiles)
 
-        println("Raw FIR up, files: ${firFiles.size}")
-
-        bench.processFiles(firFiles, totalTransformer.transformers)
+        val firFiles = if (PARALLEL_THREADS != null) {
+            val pool = ForkJoinPool(PARALLEL_THREADS)
+            try {
+                val firFiles = bench.buildFilesInParallel(session, ktFiles, pool)
+                println("Raw FIR up, files: ${firFiles.size}")
+                bench.processFilesInParallel(firFiles, FirParallelTotalResolveTransformer(pool, PARALLEL_PHASES))
+                firFiles
+            } finally {
+                pool.shutdown()
+            }
+        } else {
+            val builder = RawFirBuilder(session, stubMode = false)
+            val totalTransformer = FirTotalResolveTransformer()
+            val firFiles = bench.buildFiles(builder, ktFiles)
+            println("Raw FIR up, files: ${firFiles.size}")
+            bench.processFiles(firFiles, totalTransformer.transformers)
+            firFiles
+        }
 
         val disambiguatedName = moduleData.disambiguatedName()
         dumpFir(disambiguatedName, moduleData, firFiles)
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.builder
+
+import org.jetbrains.kotlin.fir.FirSession
+import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.psi.KtFile
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Builds raw FIR of [files] in parallel on [pool], the result is in the order of [files].
+ *
+ * Builders keep the context of the file being built, so [createBuilder] is called once per thread.
+ * The built files are not recorded to a FirProvider, as providers are not thread-safe.
+ */
+fun <F, B> buildRawFirInParallel(
+    files: List<F>,
+    pool: ForkJoinPool,
+    createBuilder: () -> B,
+    buildFile: B.(F) -> FirFile
+): List<FirFile> {
+    val builders = object : ThreadLocal<B>() {
+        override fun initialValue(): B = createBuilder()
+    }
+    val tasks = files.map { file ->
+        Callable { builders.get().buildFile(file) }
+    }
+    return pool.invokeAll(tasks).map { future ->
+        try {
+            future.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+}
+
+fun buildRawFirInParallel(session: FirSession, stubMode: Boolean, files: List<KtFile>, pool: ForkJoinPool): List<FirFile> =
+    buildRawFirInParallel(files, pool, { RawFirBuilder(session, stubMode) }, RawFirBuilder::buildFirFile)
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.builder
+
+import org.jetbrains.kotlin.fir.FirRenderer
+import org.jetbrains.kotlin.fir.FirSessionBase
+import org.jetbrains.kotlin.fir.declarations.FirFile
+import java.io.File
+import java.util.concurrent.ForkJoinPool
+
+class ParallelRawFirBuilderTest : AbstractRawFirBuilderTestCase() {
+    fun testSameAsSequential() {
+        val root = File(testDataPath)
+        val ktFiles = File(root, "compiler/fir/psi2fir/testData/rawBuilder").walkTopDown()
+            .filter { it.isFile && it.extension == "kt" }
+            .sorted()
+            .map { createKtFile(it.toRelativeString(root)) }
+            .toList()
+        assertTrue(ktFiles.size > 10)
+
+        val session = object : FirSessionBase(null) {}
+        val builder = RawFirBuilder(session, stubMode = false)
+        val expected = ktFiles.map { builder.buildFirFile(it).render() }
+
+        val pool = ForkJoinPool(4)
+        try {
+            repeat(3) {
+                val actual = buildRawFirInParallel(session, stubMode = false, files = ktFiles, pool = pool).map { it.render() }
+                assertEquals(expected, actual)
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    private fun FirFile.render(): String =
+        StringBuilder().also { FirRenderer(it).visitFile(this) }.toString()
+}
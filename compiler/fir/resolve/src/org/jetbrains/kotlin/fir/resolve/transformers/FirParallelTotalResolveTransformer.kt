@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.resolve.transformers
+
+import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.declarations.FirResolvePhase
+import org.jetbrains.kotlin.fir.visitors.FirTransformer
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Same as [FirTotalResolveTransformer], but files are transformed in parallel in the phases from [parallelPhases].
+ * All files complete a phase before any file starts the next one.
+ *
+ * A phase may run in parallel only if its transformer doesn't modify declarations of other files, and the symbol providers
+ * of the session are safe for concurrent use. Symbol providers and their caches are not thread-safe yet, so by default only
+ * the phases which don't use them run in parallel, see [DEFAULT_PARALLEL_PHASES].
+ */
+class FirParallelTotalResolveTransformer(
+    private val pool: ForkJoinPool,
+    private val parallelPhases: Set<FirResolvePhase> = DEFAULT_PARALLEL_PHASES
+) {
+    val phases: List<FirResolvePhase> = FirResolvePhase.values().drop(1) // to remove RAW_FIR phase
+
+    fun processFiles(files: List<FirFile>) {
+        for (phase in phases) {
+            processPhase(phase, files)
+        }
+    }
+
+    fun processPhase(phase: FirResolvePhase, files: List<FirFile>) {
+        if (phase !in parallelPhases || files.size < 2) {
+            val transformer = phase.createTransformerByPhase()
+            for (firFile in files) {
+                firFile.transform<FirFile, Nothing?>(transformer, null)
+            }
+            return
+        }
+
+        // Transformers keep the state of the file being transformed, so each thread needs its own instance
+        val transformers = object : ThreadLocal<FirTransformer<Nothing?>>() {
+            override fun initialValue(): FirTransformer<Nothing?> = phase.createTransformerByPhase()
+        }
+        val tasks = files.map { firFile ->
+            Callable { firFile.transform<FirFile, Nothing?>(transformers.get(), null) }
+        }
+        for (future in pool.invokeAll(tasks)) {
+            try {
+                future.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+        }
+    }
+
+    companion object {
+        // Status resolve only looks at the file being transformed. The other phases look up symbols (imports, types, bodies),
+        // or modify declarations of other files (supertypes, sealed class inheritors, implicit types)
+        val DEFAULT_PARALLEL_PHASES: Set<FirResolvePhase> = setOf(FirResolvePhase.STATUS)
+    }
+}
@@ -10,6 +10,7 @@ import org.jetbrains.kotlin.fir.declarations.FirResolvePhase.*
 import org.jetbrains.kotlin.fir.resolve.transformers.body.resolve.FirBodyResolveTransformerAdapter
 import org.jetbrains.kotlin.fir.resolve.transformers.body.resolve.FirImplicitTypeBodyResolveTransformerAdapter
 import org.jetbrains.kotlin.fir.visitors.FirTransformer
+import kotlin.reflect.KClass
 
 // TODO: add FirSession parameter
 fun FirResolvePhase.createTransformerByPhase(): FirTransformer<Nothing?> {
@@ -23,4 +24,18 @@ fun FirResolvePhase.createTransformerByPhase(): FirTransformer<Nothing?> {
         IMPLICIT_TYPES_BODY_RESOLVE -> FirImplicitTypeBodyResolveTransformerAdapter()
         BODY_RESOLVE -> FirBodyResolveTransformerAdapter()
     }
-}
\ No newline at end of file
+}
+
+// Class of the transformer created by [createTransformerByPhase], without creating it
+fun FirResolvePhase.transformerClassByPhase(): KClass<out FirTransformer<Nothing?>> {
+    return when (this) {
+        RAW_FIR -> throw AssertionError("Raw FIR building phase does not have a transformer")
+        IMPORTS -> FirImportResolveTransformer::class
+        SUPER_TYPES -> FirSupertypeResolverTransformer::class
+        SEALED_CLASS_INHERITORS -> FirSealedClassInheritorsTransformer::class
+        TYPES -> FirTypeResolveTransformer::class
+        STATUS -> FirStatusResolveTransformer::class
+        IMPLICIT_TYPES_BODY_RESOLVE -> FirImplicitTypeBodyResolveTransformerAdapter::class
+        BODY_RESOLVE -> FirBodyResolveTransformerAdapter::class
+    }
+}
@@ -7,11 +7,14 @@ package org.jetbrains.kotlin.fir
 import com.intellij.openapi.fileEditor.FileDocumentManager
 import com.intellij.psi.PsiElement
 import org.jetbrains.kotlin.fir.builder.RawFirBuilder
+import org.jetbrains.kotlin.fir.builder.buildRawFirInParallel
 import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.expressions.FirFunctionCall
 import org.jetbrains.kotlin.fir.expressions.FirQualifiedAccessExpression
 import org.jetbrains.kotlin.fir.resolve.firProvider
 import org.jetbrains.kotlin.fir.resolve.impl.FirProviderImpl
+import org.jetbrains.kotlin.fir.resolve.transformers.FirParallelTotalResolveTransformer
+import org.jetbrains.kotlin.fir.resolve.transformers.transformerClassByPhase
 import org.jetbrains.kotlin.fir.types.*
 import org.jetbrains.kotlin.fir.visitors.FirDefaultVisitorVoid
 import org.jetbrains.kotlin.fir.visitors.FirTransformer
@@ -19,6 +22,7 @@ import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.psiUtil.startOffset
 import org.jetbrains.kotlin.utils.addToStdlib.sumByLong
 import java.io.PrintStream
+import java.util.concurrent.ForkJoinPool
 import kotlin.math.max
 import kotlin.reflect.KClass
 import kotlin.system.measureNanoTime
@@ -109,10 +113,10 @@ class FirResolveBench(val withProgress: Boolean) {
         }
     }
 
-    private fun recordTime(stageClass: KClass<*>, diff: VMCounters, time: Long) {
+    private fun recordTime(stageClass: KClass<*>, diff: VMCounters, time: Long, files: Int = 1) {
         timePerTransformer.computeIfAbsent(stageClass) { Measure() }.apply {
             this.time += time
-            this.files += 1
+            this.files += files
             this.user += diff.userTime
             this.cpu += diff.cpuTime
             this.gcCollections += diff.gcInfo.values.sumBy { it.collections.toInt() }
@@ -165,90 +169,134 @@ class FirResolveBench(val withProgress: Boolean) {
                 println("ERROR!")
             }
         } finally {
+            collectTypeStatistics(firFiles)
+        }
+    }
 
+    fun buildFilesInParallel(
+        session: FirSession,
+        ktFiles: List<KtFile>,
+        pool: ForkJoinPool
+    ): List<FirFile> {
+        val before = vmStateSnapshot()
+        lateinit var firFiles: List<FirFile>
+        val time = measureNanoTime {
+            firFiles = buildRawFirInParallel(session, stubMode = false, files = ktFiles, pool = pool)
+            val provider = session.firProvider as FirProviderImpl
+            firFiles.forEach(provider::recordFile)
+        }
+        val after = vmStateSnapshot()
+        // Per-file time can't be measured when files are built concurrently, so the wall time of the whole stage is recorded
+        recordTime(RawFirBuilder::class, after - before, time, ktFiles.size)
+        totalTime = timePerTransformer.values.sumByLong { it.time }
+        return firFiles
+    }
 
-            val fileDocumentManager = FileDocumentManager.getInstance()
+    fun processFilesInParallel(
+        firFiles: List<FirFile>,
+        transformer: FirParallelTotalResolveTransformer
+    ) {
+        fileCount += firFiles.size
+        try {
+            for ((stage, phase) in transformer.phases.withIndex()) {
+                println("Starting stage #$stage. $phase")
+                val before = vmStateSnapshot()
+                val time = measureNanoTime {
+                    transformer.processPhase(phase, firFiles)
+                }
+                val after = vmStateSnapshot()
+                recordTime(phase.transformerClassByPhase(), after - before, time, firFiles.size)
+                checkFirProvidersConsistency(firFiles)
+            }
+            println("SUCCESS!")
+        } catch (e: Throwable) {
+            println("ERROR!")
+            fails += FailureInfo(FirParallelTotalResolveTransformer::class, e, "<parallel stage>")
+        } finally {
+            collectTypeStatistics(firFiles)
+        }
+    }
 
-            firFiles.forEach {
-                it.accept(object : FirDefaultVisitorVoid() {
+    private fun collectTypeStatistics(firFiles: List<FirFile>) {
+        val fileDocumentManager = FileDocumentManager.getInstance()
 
-                    fun reportProblem(problem: String, psi: PsiElement) {
-                        val document = try {
-                            fileDocumentManager.getDocument(psi.containingFile.virtualFile)
-                        } catch (t: Throwable) {
-                            throw Exception("for file ${psi.containingFile}", t)
-                        }
-                        val line = (document?.getLineNumber(psi.startOffset) ?: 0)
-                        val char = psi.startOffset - (document?.getLineStartOffset(line) ?: 0)
-                        val report = "e: ${psi.containingFile?.virtualFile?.path}: (${line + 1}:$char): $problem"
-                        errorTypesReports.getOrPut(problem) { ErrorTypeReport(report) }.count++
-                    }
+        firFiles.forEach {
+            it.accept(object : FirDefaultVisitorVoid() {
 
-                    override fun visitElement(element: FirElement) {
-                        element.acceptChildren(this)
+                fun reportProblem(problem: String, psi: PsiElement) {
+                    val document = try {
+                        fileDocumentManager.getDocument(psi.containingFile.virtualFile)
+                    } catch (t: Throwable) {
+                        throw Exception("for file ${psi.containingFile}", t)
                     }
+                    val line = (document?.getLineNumber(psi.startOffset) ?: 0)
+                    val char = psi.startOffset - (document?.getLineStartOffset(line) ?: 0)
+                    val report = "e: ${psi.containingFile?.virtualFile?.path}: (${line + 1}:$char): $problem"
+                    errorTypesReports.getOrPut(problem) { ErrorTypeReport(report) }.count++
+                }
 
-                    override fun visitFunctionCall(functionCall: FirFunctionCall) {
-                        val typeRef = functionCall.typeRef
-                        if (typeRef is FirResolvedTypeRef) {
-                            val type = typeRef.type
-                            if (type is ConeKotlinErrorType) {
-                                errorFunctionCallTypes++
-                            }
-                        }
+                override fun visitElement(element: FirElement) {
+                    element.acceptChildren(this)
+                }
 
-                        visitElement(functionCall)
+                override fun visitFunctionCall(functionCall: FirFunctionCall) {
+                    val typeRef = functionCall.typeRef
+                    if (typeRef is FirResolvedTypeRef) {
+                        val type = typeRef.type
+                        if (type is ConeKotlinErrorType) {
+                            errorFunctionCallTypes++
+                        }
                     }
 
-                    override fun visitQualifiedAccessExpression(qualifiedAccessExpression: FirQualifiedAccessExpression) {
-                        val typeRef = qualifiedAccessExpression.typeRef
-                        if (typeRef is FirResolvedTypeRef) {
-                            val type = typeRef.type
-                            if (type is ConeKotlinErrorType) {
-                                errorQualifiedAccessTypes++
-                            }
-                        }
+                    visitElement(functionCall)
+                }
 
-                        visitElement(qualifiedAccessExpression)
+                override fun visitQualifiedAccessExpression(qualifiedAccessExpression: FirQualifiedAccessExpression) {
+                    val typeRef = qualifiedAccessExpression.typeRef
+                    if (typeRef is FirResolvedTypeRef) {
+                        val type = typeRef.type
+                        if (type is ConeKotlinErrorType) {
+                            errorQualifiedAccessTypes++
+                        }
                     }
 
-                    override fun visitTypeRef(typeRef: FirTypeRef) {
-                        unresolvedTypes++
+                    visitElement(qualifiedAccessExpression)
+                }
 
-                        if (typeRef.psi != null) {
-                            val psi = typeRef.psi!!
-                            val problem = "${typeRef::class.simpleName}: ${typeRef.render()}"
-                            reportProblem(problem, psi)
-                        }
+                override fun visitTypeRef(typeRef: FirTypeRef) {
+                    unresolvedTypes++
+
+                    if (typeRef.psi != null) {
+                        val psi = typeRef.psi!!
+                        val problem = "${typeRef::class.simpleName}: ${typeRef.render()}"
+                        reportProblem(problem, psi)
                     }
+                }
 
-                    override fun visitImplicitTypeRef(implicitTypeRef: FirImplicitTypeRef) {
-                        if (implicitTypeRef is FirResolvedTypeRef) {
-                            visitResolvedTypeRef(implicitTypeRef)
-                        } else {
-                            visitTypeRef(implicitTypeRef)
-                        }
+                override fun visitImplicitTypeRef(implicitTypeRef: FirImplicitTypeRef) {
+                    if (implicitTypeRef is FirResolvedTypeRef) {
+                        visitResolvedTypeRef(implicitTypeRef)
+                    } else {
+                        visitTypeRef(implicitTypeRef)
                     }
+                }
 
-                    override fun visitResolvedTypeRef(resolvedTypeRef: FirResolvedTypeRef) {
-                        resolvedTypes++
-                        val type = resolvedTypeRef.type
-                        if (type is ConeKotlinErrorType || type is ConeClassErrorType) {
-                            if (resolvedTypeRef.psi == null) {
-                                implicitTypes++
-                            } else {
-                                errorTypes++
-                                val psi = resolvedTypeRef.psi!!
-                                val problem = "${resolvedTypeRef::class.simpleName} -> ${type::class.simpleName}: ${type.render()}"
-                                reportProblem(problem, psi)
-                            }
+                override fun visitResolvedTypeRef(resolvedTypeRef: FirResolvedTypeRef) {
+                    resolvedTypes++
+                    val type = resolvedTypeRef.type
+                    if (type is ConeKotlinErrorType || type is ConeClassErrorType) {
+                        if (resolvedTypeRef.psi == null) {
+                            implicitTypes++
+                        } else {
+                            errorTypes++
+                            val psi = resolvedTypeRef.psi!!
+                            val problem = "${resolvedTypeRef::class.simpleName} -> ${type::class.simpleName}: ${type.render()}"
+                            reportProblem(problem, psi)
                         }
                     }
-                })
-            }
+                }
+            })
         }
-
-
     }
 
     fun throwFailure() {
@@ -60,6 +60,14 @@ public class JVMConfigurationKeys {
             CompilerConfigurationKey.create("do not throw NPE on explicit 'equals' call for null receiver of platform boxed primitive type");
     public static final CompilerConfigurationKey<Boolean> DISABLE_OPTIMIZATION =
             CompilerConfigurationKey.create("disable optimization");
+    public static final CompilerConfigurationKey<Integer> PARALLEL_BACKEND_THREADS =
+            CompilerConfigurationKey.create("number of threads for parallel code generation of packages and multifile classes [experimental]");
+    public static final CompilerConfigurationKey<Integer> PARALLEL_PARSING_THREADS =
+            CompilerConfigurationKey.create("number of threads for loading and parsing of source files [experimental]");
+    public static final CompilerConfigurationKey<Integer> METHOD_OPTIMIZATION_THREADS =
+            CompilerConfigurationKey.create("number of background threads for bytecode optimization of generated methods [experimental]");
+    public static final CompilerConfigurationKey<Integer> SHARED_INLINE_CACHE_SIZE =
+            CompilerConfigurationKey.create("max number of inline function bodies cached between compilations in the same process");
     public static final CompilerConfigurationKey<Boolean> USE_TYPE_TABLE =
             CompilerConfigurationKey.create("use type table in serializer");
 
@@ -87,6 +95,9 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<String> DECLARATIONS_JSON_PATH =
             CompilerConfigurationKey.create("path to declarations output");
 
+    public static final CompilerConfigurationKey<String> CLASSPATH_PACKAGE_INDEX_PATH =
+            CompilerConfigurationKey.create("path to the persisted index of packages in classpath jars");
+
     public static final CompilerConfigurationKey<List<Module>> MODULES =
             CompilerConfigurationKey.create("module data");
 
@@ -42,6 +42,14 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
     private final KotlinClassHeader classHeader;
     private final InnerClassesInfo innerClasses;
 
+    // Recorded while reading the class header in create(), so that the class file doesn't need to be read and parsed again
+    // to load annotations and constants. Null if the class has been created in a different way, or once they have been replayed:
+    // annotations and constants are loaded once and cached by the callers, so the recorded data is not retained after that
+    @Nullable
+    private RecordedAnnotations recordedClassAnnotations;
+    @Nullable
+    private RecordedMembers recordedMembers;
+
     protected FileBasedKotlinClass(
             @NotNull ClassId classId,
             int classVersion,
@@ -92,8 +100,25 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         ReadKotlinClassHeaderAnnotationVisitor readHeaderVisitor = new ReadKotlinClassHeaderAnnotationVisitor();
         Ref<String> classNameRef = Ref.create();
         Ref<Integer> classVersion = Ref.create();
+        Ref<KotlinClassHeader> headerRef = Ref.create();
         InnerClassesInfo innerClasses = new InnerClassesInfo();
+        RecordedAnnotations classAnnotations = new RecordedAnnotations();
+        RecordedMembers members = new RecordedMembers();
         new ClassReader(fileContents).accept(new ClassVisitor(API_VERSION) {
+            private boolean isHeaderRead = false;
+
+            // Class annotations and inner classes are visited before members, so the header can be read once the first member is visited.
+            // Members of classes without a Kotlin header are not recorded, since such classes are not created
+            private boolean readHeader() {
+                if (!isHeaderRead) {
+                    isHeaderRead = true;
+                    classAnnotations.accept(readHeaderVisitor, innerClasses);
+                    readHeaderVisitor.visitEnd();
+                    headerRef.set(readHeaderVisitor.createHeader());
+                }
+                return headerRef.get() != null;
+            }
+
             @Override
             public void visit(int version, int access, @NotNull String name, String signature, String superName, String[] interfaces) {
                 classNameRef.set(name);
@@ -107,23 +132,89 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
 
             @Override
             public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
-                return convertAnnotationVisitor(readHeaderVisitor, desc, innerClasses);
+                return classAnnotations.add(desc);
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, @NotNull String name, @NotNull String desc, String signature, Object value) {
+                if (!readHeader()) return null;
+
+                FieldStructure field = new FieldStructure(name, desc, value);
+                return new FieldVisitor(API_VERSION) {
+                    @Override
+                    public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                        return field.annotations.add(desc);
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        if (field.value != null || !field.annotations.isEmpty()) {
+                            members.fields.add(field);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, @NotNull String name, @NotNull String desc, String signature, String[] exceptions) {
+                if (!readHeader()) return null;
+
+                MethodStructure method = new MethodStructure(name, desc);
+                int methodParamCount = Type.getArgumentTypes(desc).length;
+                return new MethodVisitor(API_VERSION) {
+                    private int visibleAnnotableParameterCount = methodParamCount;
+                    private int invisibleAnnotableParameterCount = methodParamCount;
+
+                    @Override
+                    public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(@NotNull String desc, boolean visible) {
+                        return method.annotations.add(desc);
+                    }
+
+                    @Override
+                    public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitParameterAnnotation(int parameter, @NotNull String desc, boolean visible) {
+                        int parameterIndex = parameter + methodParamCount - (visible ? visibleAnnotableParameterCount : invisibleAnnotableParameterCount);
+                        return method.annotations.addParameterAnnotation(parameterIndex, desc);
+                    }
+
+                    @Override
+                    public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+                        if (visible) {
+                            visibleAnnotableParameterCount = parameterCount;
+                        }
+                        else {
+                            invisibleAnnotableParameterCount = parameterCount;
+                        }
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        if (!method.annotations.isEmpty()) {
+                            members.methods.add(method);
+                        }
+                    }
+                };
             }
 
             @Override
             public void visitEnd() {
-                readHeaderVisitor.visitEnd();
+                readHeader();
             }
         }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
 
         String className = classNameRef.get();
         if (className == null) return null;
 
-        KotlinClassHeader header = readHeaderVisitor.createHeader();
+        KotlinClassHeader header = headerRef.get();
         if (header == null) return null;
 
         ClassId id = resolveNameByInternalName(className, innerClasses);
-        return factory.invoke(id, classVersion.get(), header, innerClasses);
+        T result = factory.invoke(id, classVersion.get(), header, innerClasses);
+        if (result instanceof FileBasedKotlinClass) {
+            FileBasedKotlinClass kotlinClass = (FileBasedKotlinClass) result;
+            kotlinClass.recordedClassAnnotations = classAnnotations;
+            kotlinClass.recordedMembers = members;
+        }
+        return result;
     }
 
     @NotNull
@@ -144,6 +235,14 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
 
     @Override
     public void loadClassAnnotations(@NotNull AnnotationVisitor annotationVisitor, @Nullable byte[] cachedContents) {
+        RecordedAnnotations recorded = recordedClassAnnotations;
+        if (recorded != null) {
+            recordedClassAnnotations = null;
+            recorded.accept(annotationVisitor, innerClasses);
+            annotationVisitor.visitEnd();
+            return;
+        }
+
         byte[] fileContents = cachedContents != null ? cachedContents : getFileContents();
         new ClassReader(fileContents).accept(new ClassVisitor(API_VERSION) {
             @Override
@@ -225,8 +324,20 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         };
     }
 
+    /**
+     * Note that fields without annotations and constant initializers, and methods without annotations are not visited
+     * the first time if the class has been read by {@link FileBasedKotlinClass#create}, because they are not recorded when the class file
+     * is read.
+     */
     @Override
     public void visitMembers(@NotNull MemberVisitor memberVisitor, @Nullable byte[] cachedContents) {
+        RecordedMembers recorded = recordedMembers;
+        if (recorded != null) {
+            recordedMembers = null;
+            recorded.accept(memberVisitor, innerClasses);
+            return;
+        }
+
         byte[] fileContents = cachedContents != null ? cachedContents : getFileContents();
         new ClassReader(fileContents).accept(new ClassVisitor(API_VERSION) {
             @Override
@@ -270,6 +381,7 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
                         return av == null ? null : convertAnnotationVisitor(av, innerClasses);
                     }
 
+                    @Override
                     public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
                         if (visible)
                             visibleAnnotableParameterCount = parameterCount;
@@ -287,6 +399,173 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
     }
 
+    private static class RecordedMembers {
+        final List<FieldStructure> fields = new ArrayList<>(0);
+        final List<MethodStructure> methods = new ArrayList<>(0);
+
+        void accept(@NotNull MemberVisitor memberVisitor, @NotNull InnerClassesInfo innerClasses) {
+            for (FieldStructure field : fields) {
+                AnnotationVisitor v = memberVisitor.visitField(Name.identifier(field.name), field.desc, field.value);
+                if (v == null) continue;
+
+                field.annotations.accept(v, innerClasses);
+                v.visitEnd();
+            }
+
+            for (MethodStructure method : methods) {
+                MethodAnnotationVisitor v = memberVisitor.visitMethod(Name.identifier(method.name), method.desc);
+                if (v == null) continue;
+
+                method.annotations.accept(v, innerClasses);
+                v.visitEnd();
+            }
+        }
+    }
+
+    private static class FieldStructure {
+        final String name;
+        final String desc;
+        final Object value;
+        final RecordedAnnotations annotations = new RecordedAnnotations();
+
+        FieldStructure(@NotNull String name, @NotNull String desc, @Nullable Object value) {
+            this.name = name;
+            this.desc = desc;
+            this.value = value;
+        }
+    }
+
+    private static class MethodStructure {
+        final String name;
+        final String desc;
+        final RecordedAnnotations annotations = new RecordedAnnotations();
+
+        MethodStructure(@NotNull String name, @NotNull String desc) {
+            this.name = name;
+            this.desc = desc;
+        }
+    }
+
+    private static class RecordedAnnotations {
+        private List<RecordedAnnotation> annotations = null;
+
+        @NotNull
+        RecordedAnnotation add(@NotNull String desc) {
+            return addParameterAnnotation(-1, desc);
+        }
+
+        @NotNull
+        RecordedAnnotation addParameterAnnotation(int parameterIndex, @NotNull String desc) {
+            if (annotations == null) {
+                annotations = new ArrayList<>(1);
+            }
+            RecordedAnnotation annotation = new RecordedAnnotation(desc, parameterIndex);
+            annotations.add(annotation);
+            return annotation;
+        }
+
+        boolean isEmpty() {
+            return annotations == null;
+        }
+
+        void accept(@NotNull AnnotationVisitor visitor, @NotNull InnerClassesInfo innerClasses) {
+            if (annotations == null) return;
+
+            for (RecordedAnnotation annotation : annotations) {
+                org.jetbrains.org.objectweb.asm.AnnotationVisitor av;
+                if (annotation.parameterIndex < 0) {
+                    av = convertAnnotationVisitor(visitor, annotation.desc, innerClasses);
+                }
+                else {
+                    AnnotationArgumentVisitor v = ((MethodAnnotationVisitor) visitor).visitParameterAnnotation(
+                            annotation.parameterIndex, resolveNameByDesc(annotation.desc, innerClasses), SourceElement.NO_SOURCE
+                    );
+                    av = v == null ? null : convertAnnotationVisitor(v, innerClasses);
+                }
+                if (av != null) {
+                    annotation.accept(av);
+                }
+            }
+        }
+    }
+
+    // Records the arguments exactly as they are visited by ClassReader, so that they can be replayed to the same visitors later
+    private static class RecordedAnnotation extends org.jetbrains.org.objectweb.asm.AnnotationVisitor {
+        private static final int VALUE = 0;
+        private static final int ENUM = 1;
+        private static final int ANNOTATION = 2;
+        private static final int ARRAY = 3;
+
+        final String desc;
+        final int parameterIndex;
+        private List<Object> arguments = null;
+
+        RecordedAnnotation(@Nullable String desc, int parameterIndex) {
+            super(API_VERSION);
+            this.desc = desc;
+            this.parameterIndex = parameterIndex;
+        }
+
+        private void addArgument(int kind, String name, Object value, String enumDesc) {
+            if (arguments == null) {
+                arguments = new ArrayList<>(4);
+            }
+            arguments.add(kind);
+            arguments.add(name);
+            arguments.add(value);
+            arguments.add(enumDesc);
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            addArgument(VALUE, name, value, null);
+        }
+
+        @Override
+        public void visitEnum(String name, String desc, String value) {
+            addArgument(ENUM, name, value, desc);
+        }
+
+        @Override
+        public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitAnnotation(String name, String desc) {
+            RecordedAnnotation annotation = new RecordedAnnotation(desc, -1);
+            addArgument(ANNOTATION, name, annotation, null);
+            return annotation;
+        }
+
+        @Override
+        public org.jetbrains.org.objectweb.asm.AnnotationVisitor visitArray(String name) {
+            RecordedAnnotation array = new RecordedAnnotation(null, -1);
+            addArgument(ARRAY, name, array, null);
+            return array;
+        }
+
+        void accept(@NotNull org.jetbrains.org.objectweb.asm.AnnotationVisitor av) {
+            if (arguments != null) {
+                for (int i = 0; i < arguments.size(); i += 4) {
+                    int kind = (Integer) arguments.get(i);
+                    String name = (String) arguments.get(i + 1);
+                    Object value = arguments.get(i + 2);
+                    if (kind == VALUE) {
+                        av.visit(name, value);
+                    }
+                    else if (kind == ENUM) {
+                        av.visitEnum(name, (String) arguments.get(i + 3), (String) value);
+                    }
+                    else {
+                        RecordedAnnotation nested = (RecordedAnnotation) value;
+                        org.jetbrains.org.objectweb.asm.AnnotationVisitor nestedVisitor =
+                                kind == ANNOTATION ? av.visitAnnotation(name, nested.desc) : av.visitArray(name);
+                        if (nestedVisitor != null) {
+                            nested.accept(nestedVisitor);
+                        }
+                    }
+                }
+            }
+            av.visitEnd();
+        }
+    }
+
     @NotNull
     private static ClassId resolveNameByDesc(@NotNull String desc, @NotNull InnerClassesInfo innerClasses) {
         assert desc.startsWith("L") && desc.endsWith(";") : "Not a JVM descriptor: " + desc;
@@ -70,10 +70,12 @@ class KotlinBinaryClassCache : Disposable {
                 return requestCache.result
             }
 
-            val aClass = ApplicationManager.getApplication().runReadAction(Computable {
-                @Suppress("DEPRECATION")
-                VirtualFileKotlinClass.create(file, fileContent)
-            })
+            val aClass = LibraryKotlinClassCache.getOrCompute(file) {
+                ApplicationManager.getApplication().runReadAction(Computable {
+                    @Suppress("DEPRECATION")
+                    VirtualFileKotlinClass.create(file, fileContent)
+                })
+            }
 
             return requestCache.cache(file, aClass)
         }
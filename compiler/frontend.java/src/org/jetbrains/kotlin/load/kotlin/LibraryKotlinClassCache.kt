@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.load.kotlin
+
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.io.URLUtil
+import org.jetbrains.annotations.TestOnly
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of Kotlin binary classes read from jars, shared by all compilations in the process.
+ *
+ * Reading a class header requires reading and parsing the whole class file, which is repeated by each compilation for all classes of
+ * the stdlib and other libraries. In a long-living process which keeps the application environment and the jar file system between
+ * compilations (e.g. in the compile daemon), the results can be reused. [KotlinClassFinder.Result.KotlinClass] doesn't depend on
+ * the module being compiled, so it's safe to share them between compilations.
+ *
+ * Jars are evicted in the least recently used order when the number of cached classes exceeds the limit. A jar is checked for
+ * modifications (by its timestamp and length) at most once per compilation, see [compilationStarted].
+ */
+object LibraryKotlinClassCache {
+    class Statistics(val hits: Long, val misses: Long, val evictions: Long, val jars: Int, val classes: Int) {
+        override fun toString(): String {
+            val requests = hits + misses
+            val hitRate = if (requests == 0L) 0L else hits * 100 / requests
+            return "$hits hits, $misses misses ($hitRate% hit rate), $classes classes from $jars jars, $evictions jars evicted"
+        }
+    }
+
+    private class JarClasses(val timestamp: Long, val length: Long) {
+        @Volatile
+        var checkedInGeneration = 0
+
+        val classes = ConcurrentHashMap<String, KotlinClassFinder.Result.KotlinClass>()
+    }
+
+    @Volatile
+    private var maxClasses = 0
+
+    private val generation = AtomicInteger()
+
+    // In access order, for LRU eviction
+    private val jars = LinkedHashMap<String, JarClasses>(16, 0.75f, true)
+    private var classesCount = 0
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    val isEnabled: Boolean
+        get() = maxClasses > 0
+
+    /**
+     * Enables the cache, with at most [maxClasses] classes cached at any time.
+     */
+    fun enable(maxClasses: Int) {
+        require(maxClasses > 0) { "Maximum number of cached classes should be positive: $maxClasses" }
+        this.maxClasses = maxClasses
+    }
+
+    @TestOnly
+    fun disable() {
+        maxClasses = 0
+        clear()
+        hits.set(0)
+        misses.set(0)
+        evictions.set(0)
+    }
+
+    /**
+     * Makes the cache check whether the jars have changed before they are used the next time.
+     */
+    fun compilationStarted() {
+        generation.incrementAndGet()
+    }
+
+    fun clear() {
+        synchronized(jars) {
+            jars.clear()
+            classesCount = 0
+        }
+    }
+
+    val statistics: Statistics
+        get() = synchronized(jars) {
+            Statistics(hits.get(), misses.get(), evictions.get(), jars.size, classesCount)
+        }
+
+    fun getOrCompute(file: VirtualFile, compute: () -> KotlinClassFinder.Result?): KotlinClassFinder.Result? {
+        if (!isEnabled) return compute()
+
+        val path = file.path
+        val separatorIndex = path.indexOf(URLUtil.JAR_SEPARATOR)
+        // Only classes in jars are cached, class files in directories are usually outputs which may change at any moment
+        if (separatorIndex < 0) return compute()
+
+        val jarPath = path.substring(0, separatorIndex)
+        val jarClasses = getJarClasses(jarPath) ?: return compute()
+
+        val entryPath = path.substring(separatorIndex + URLUtil.JAR_SEPARATOR.length)
+        jarClasses.classes[entryPath]?.let {
+            hits.incrementAndGet()
+            return it
+        }
+
+        val result = compute()
+        // Results with class file content retain the whole class file, so only Kotlin classes are worth caching.
+        // Other classes are not counted as misses, as they are never cached
+        if (result is KotlinClassFinder.Result.KotlinClass) {
+            misses.incrementAndGet()
+            if (jarClasses.classes.putIfAbsent(entryPath, result) == null) {
+                classAdded(jarPath, jarClasses)
+            }
+        }
+        return result
+    }
+
+    private fun getJarClasses(jarPath: String): JarClasses? {
+        val currentGeneration = generation.get()
+        synchronized(jars) {
+            val cached = jars[jarPath]
+            if (cached != null && cached.checkedInGeneration == currentGeneration) return cached
+        }
+
+        val jarFile = File(jarPath)
+        if (!jarFile.isFile) return null
+        val timestamp = jarFile.lastModified()
+        val length = jarFile.length()
+
+        synchronized(jars) {
+            val cached = jars[jarPath]
+            if (cached != null && cached.timestamp == timestamp && cached.length == length) {
+                cached.checkedInGeneration = currentGeneration
+                return cached
+            }
+            if (cached != null) {
+                classesCount -= cached.classes.size
+            }
+
+            val jarClasses = JarClasses(timestamp, length)
+            jarClasses.checkedInGeneration = currentGeneration
+            jars[jarPath] = jarClasses
+            return jarClasses
+        }
+    }
+
+    private fun classAdded(jarPath: String, jarClasses: JarClasses) {
+        synchronized(jars) {
+            // If the jar has been evicted or replaced concurrently, the class is not counted
+            if (jars[jarPath] !== jarClasses) return
+
+            classesCount++
+            if (classesCount <= maxClasses) return
+
+            val iterator = jars.values.iterator()
+            // The most recently used jar is the last one, it's never evicted
+            while (classesCount > maxClasses && jars.size > 1 && iterator.hasNext()) {
+                val eldest = iterator.next()
+                iterator.remove()
+                classesCount -= eldest.classes.size
+                evictions.incrementAndGet()
+            }
+        }
+    }
+}
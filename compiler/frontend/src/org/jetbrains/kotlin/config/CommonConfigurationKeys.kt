@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.config
 import org.jetbrains.kotlin.incremental.components.ExpectActualTracker
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.metadata.deserialization.BinaryVersion
+import org.jetbrains.kotlin.storage.StorageManagerProfiler
 
 object CommonConfigurationKeys {
     @JvmField
@@ -44,6 +45,9 @@ object CommonConfigurationKeys {
 
     @JvmField
     val USE_FIR = CompilerConfigurationKey.create<Boolean>("front-end IR")
+
+    @JvmField
+    val STORAGE_MANAGER_PROFILER = CompilerConfigurationKey.create<StorageManagerProfiler>("storage manager profiler")
 }
 
 var CompilerConfiguration.languageVersionSettings: LanguageVersionSettings
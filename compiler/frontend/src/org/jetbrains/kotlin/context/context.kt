@@ -26,6 +26,7 @@ import org.jetbrains.kotlin.platform.TargetPlatform
 import org.jetbrains.kotlin.storage.ExceptionTracker
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
 import org.jetbrains.kotlin.storage.StorageManager
+import org.jetbrains.kotlin.storage.StorageManagerProfiler
 
 interface GlobalContext {
     val storageManager: StorageManager
@@ -83,12 +84,13 @@ class MutableModuleContextImpl(
     projectContext: ProjectContext
 ) : MutableModuleContext, ProjectContext by projectContext
 
-fun GlobalContext(debugName: String): GlobalContextImpl {
+fun GlobalContext(debugName: String, profiler: StorageManagerProfiler? = null): GlobalContextImpl {
     val tracker = ExceptionTracker()
-    return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling(debugName, tracker), tracker)
+    return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling(debugName, tracker, profiler), tracker)
 }
 
-fun ProjectContext(project: Project, debugName: String): ProjectContext = ProjectContextImpl(project, GlobalContext(debugName))
+fun ProjectContext(project: Project, debugName: String, profiler: StorageManagerProfiler? = null): ProjectContext =
+    ProjectContextImpl(project, GlobalContext(debugName, profiler))
 fun ModuleContext(module: ModuleDescriptor, project: Project, debugName: String): ModuleContext =
     ModuleContextImpl(module, ProjectContext(project, debugName))
 
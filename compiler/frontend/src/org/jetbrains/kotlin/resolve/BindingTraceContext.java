@@ -29,14 +29,31 @@ import org.jetbrains.kotlin.types.expressions.KotlinTypeInfo;
 import org.jetbrains.kotlin.types.expressions.typeInfoFactory.TypeInfoFactoryKt;
 import org.jetbrains.kotlin.util.slicedMap.*;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 public class BindingTraceContext implements BindingTrace {
     // These flags are used for debugging of "Rewrite at slice..." exceptions
     /* package */ final static boolean TRACK_REWRITES = false;
     /* package */ final static boolean TRACK_WITH_STACK_TRACES = true;
 
-    private final MutableSlicedMap map;
+    // Store values of the most frequently used slices in separate tables, see CompactSlicedMapImpl
+    private final static boolean USE_COMPACT_SLICED_MAP = Boolean.getBoolean("kotlin.binding.context.compact");
+    private final static List<WritableSlice<?, ?>> COMPACT_SLICES = Arrays.asList(
+            BindingContext.EXPRESSION_TYPE_INFO,
+            BindingContext.EXPECTED_EXPRESSION_TYPE,
+            BindingContext.DATA_FLOW_INFO_BEFORE,
+            BindingContext.REFERENCE_TARGET,
+            BindingContext.CALL,
+            BindingContext.RESOLVED_CALL,
+            BindingContext.LEXICAL_SCOPE,
+            BindingContext.PROCESSED,
+            BindingContext.USED_AS_EXPRESSION
+    );
+
+    private volatile MutableSlicedMap map;
+    private volatile boolean threadSafe = false;
     @Nullable private final MutableDiagnosticsWithSuppression mutableDiagnostics;
     @NotNull private final BindingTraceFilter filter;
 
@@ -88,7 +105,14 @@ public class BindingTraceContext implements BindingTrace {
 
     public BindingTraceContext(BindingTraceFilter filter, boolean allowSliceRewrite) {
         //noinspection ConstantConditions
-        this(TRACK_REWRITES && !allowSliceRewrite ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : new SlicedMapImpl(allowSliceRewrite), filter);
+        this(TRACK_REWRITES && !allowSliceRewrite ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : createSlicedMap(allowSliceRewrite), filter);
+    }
+
+    @NotNull
+    private static MutableSlicedMap createSlicedMap(boolean allowSliceRewrite) {
+        return USE_COMPACT_SLICED_MAP
+               ? new CompactSlicedMapImpl(allowSliceRewrite, COMPACT_SLICES)
+               : new SlicedMapImpl(allowSliceRewrite);
     }
 
 
@@ -100,6 +124,16 @@ public class BindingTraceContext implements BindingTrace {
         this.filter = filter;
     }
 
+    /**
+     * Makes the trace safe for recording from several threads, e.g. when declarations are resolved lazily during parallel code
+     * generation. The trace is expected to be used from a single thread before this call.
+     */
+    public void makeThreadSafe() {
+        if (threadSafe) return;
+        map = new SynchronizedSlicedMap(map);
+        threadSafe = true;
+    }
+
     @TestOnly
     public static BindingTraceContext createTraceableBindingTrace() {
         return new BindingTraceContext(new TrackingSlicedMap(TRACK_WITH_STACK_TRACES), BindingTraceFilter.Companion.getACCEPT_ALL());
@@ -110,7 +144,14 @@ public class BindingTraceContext implements BindingTrace {
         if (mutableDiagnostics == null) {
             return;
         }
-        mutableDiagnostics.report(diagnostic);
+        if (threadSafe) {
+            synchronized (mutableDiagnostics) {
+                mutableDiagnostics.report(diagnostic);
+            }
+        }
+        else {
+            mutableDiagnostics.report(diagnostic);
+        }
     }
 
     public void clearDiagnostics() {
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.collect.ImmutableMap;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A sliced map which stores values of the given frequently used slices in separate hash tables, one per slice, with values stored
+ * directly in the table. Values of other slices are stored as in {@link SlicedMapImpl}, in a persistent map per key.
+ *
+ * Most keys of the binding context have values of only a few slices, so this saves the persistent map object and its reallocation
+ * on each put for the most common slices.
+ */
+public class CompactSlicedMapImpl extends SlicedMapImpl {
+    private final boolean alwaysAllowRewrite;
+    private final WritableSlice<?, ?>[] dedicatedSlices;
+    private final OpenAddressLinearProbingHashTable<Object, Object>[] tables;
+
+    @SuppressWarnings("unchecked")
+    public CompactSlicedMapImpl(boolean alwaysAllowRewrite, @NotNull List<? extends WritableSlice<?, ?>> dedicatedSlices) {
+        super(alwaysAllowRewrite);
+        this.alwaysAllowRewrite = alwaysAllowRewrite;
+        this.dedicatedSlices = dedicatedSlices.toArray(new WritableSlice<?, ?>[0]);
+        this.tables = new OpenAddressLinearProbingHashTable[this.dedicatedSlices.length];
+
+        for (WritableSlice<?, ?> slice : this.dedicatedSlices) {
+            assert !slice.isCollective() : "Keys of collective slices are collected by SlicedMapImpl, can't store " + slice + " separately";
+        }
+    }
+
+    private int indexOf(@NotNull ReadOnlySlice<?, ?> slice) {
+        Object sliceKey = slice.getKey();
+        // The number of dedicated slices is small, so linear search by identity is the fastest
+        for (int i = 0; i < dedicatedSlices.length; i++) {
+            if (dedicatedSlices[i] == sliceKey) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        int index = indexOf(slice);
+        if (index < 0) {
+            super.put(slice, key, value);
+            return;
+        }
+
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        OpenAddressLinearProbingHashTable<Object, Object> table = tables[index];
+        if (table == null) {
+            table = new OpenAddressLinearProbingHashTable<>();
+            tables[index] = table;
+        }
+
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (!alwaysAllowRewrite && rewritePolicy.rewriteProcessingNeeded(key)) {
+            V oldValue = (V) table.get(key);
+            if (oldValue != null) {
+                if (!rewritePolicy.processRewrite(slice, key, oldValue, value)) {
+                    return;
+                }
+            }
+        }
+
+        table.put(key, value);
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        int index = indexOf(slice);
+        if (index < 0) {
+            return super.get(slice, key);
+        }
+
+        OpenAddressLinearProbingHashTable<Object, Object> table = tables[index];
+        V value = table != null ? (V) table.get(key) : null;
+
+        return slice.computeValue(this, key, value, value == null);
+    }
+
+    @Override
+    public void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+        super.forEach(f);
+
+        for (int i = 0; i < tables.length; i++) {
+            OpenAddressLinearProbingHashTable<Object, Object> table = tables[i];
+            if (table == null) continue;
+
+            WritableSlice<?, ?> slice = dedicatedSlices[i];
+            table.forEach((key, value) -> f.invoke(slice, key, value));
+        }
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        int index = indexOf(slice);
+        if (index < 0) {
+            return super.getSliceContents(slice);
+        }
+
+        OpenAddressLinearProbingHashTable<Object, Object> table = tables[index];
+        if (table == null) return ImmutableMap.of();
+
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        table.forEach((key, value) -> builder.put((K) key, (V) value));
+        return builder.build();
+    }
+}
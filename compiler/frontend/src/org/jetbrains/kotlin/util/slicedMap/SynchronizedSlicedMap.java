@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.collect.ImmutableMap;
+import kotlin.jvm.functions.Function3;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A sliced map which can be read and written from several threads, see {@link org.jetbrains.kotlin.resolve.BindingTraceContext#makeThreadSafe()}.
+ * Keys of a slice are copied, so that they can be iterated while other threads record to the map.
+ */
+public class SynchronizedSlicedMap implements MutableSlicedMap {
+    private final MutableSlicedMap delegate;
+
+    public SynchronizedSlicedMap(@NotNull MutableSlicedMap delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        delegate.put(slice, key, value);
+    }
+
+    @Override
+    public synchronized <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        return delegate.get(slice, key);
+    }
+
+    @Override
+    public synchronized <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        return new ArrayList<>(delegate.getKeys(slice));
+    }
+
+    @Override
+    public synchronized void forEach(@NotNull Function3<WritableSlice, Object, Object, Void> f) {
+        delegate.forEach(f);
+    }
+
+    @Override
+    public synchronized void clear() {
+        delegate.clear();
+    }
+
+    @NotNull
+    @Override
+    public synchronized <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        return delegate.getSliceContents(slice);
+    }
+}
@@ -61,6 +61,20 @@ inline fun <R> withJsIC(fn: () -> R): R {
     }
 }
 
+/**
+ * Same as [withJsIC], but changes the setting only for the current thread and the threads started by it,
+ * so it can be used by compilations running in parallel in the same process.
+ */
+inline fun <R> withJsICInCurrentThread(fn: () -> R): R {
+    val previous = IncrementalCompilation.setIsEnabledForJsInCurrentThread(true)
+
+    try {
+        return fn()
+    } finally {
+        IncrementalCompilation.setIsEnabledForJsInCurrentThread(previous)
+    }
+}
+
 class IncrementalJsCompilerRunner(
     workingDir: File,
     reporter: ICReporter,
@@ -102,6 +102,21 @@ inline fun <R> withIC(enabled: Boolean = true, fn: ()->R): R {
     }
 }
 
+/**
+ * Same as [withIC], but changes the setting only for the current thread and the threads started by it,
+ * so it can be used by compilations running in parallel in the same process.
+ */
+inline fun <R> withICInCurrentThread(enabled: Boolean = true, fn: () -> R): R {
+    val previous = IncrementalCompilation.setIsEnabledForJvmInCurrentThread(enabled)
+
+    try {
+        return fn()
+    }
+    finally {
+        IncrementalCompilation.setIsEnabledForJvmInCurrentThread(previous)
+    }
+}
+
 class IncrementalJvmCompilerRunner(
     workingDir: File,
     reporter: ICReporter,
@@ -19,10 +19,16 @@ package org.jetbrains.kotlin.incremental.snapshots
 import java.io.File
 import java.util.*
 
+/**
+ * [lastModified] is not a part of the snapshot identity, it's only used to skip hashing of unchanged files.
+ * It is [NO_LAST_MODIFIED] if the timestamp can't be trusted, e.g. if the file could be modified right after it was hashed
+ * within the timestamp resolution of the file system.
+ */
 class FileSnapshot(
         val file: File,
         val length: Long,
-        val hash: ByteArray
+        val hash: ByteArray,
+        val lastModified: Long = NO_LAST_MODIFIED
 ) {
     init {
         assert(!file.isDirectory)
@@ -51,4 +57,8 @@ class FileSnapshot(
     override fun toString(): String {
         return "FileSnapshot(file=$file, length=$length, hash=${Arrays.toString(hash)})"
     }
+
+    companion object {
+        const val NO_LAST_MODIFIED = -1L
+    }
 }
@@ -20,21 +20,44 @@ import com.intellij.util.io.DataExternalizer
 import java.io.DataInput
 import java.io.DataOutput
 import java.io.File
+import java.io.IOException
 
 object FileSnapshotExternalizer : DataExternalizer<FileSnapshot> {
+    // Snapshots of the first version started with the path, which is never empty, so the marker can't be confused with it
+    private const val VERSION_MARKER = ""
+    private const val VERSION = 2
+
     override fun save(out: DataOutput, value: FileSnapshot) {
+        out.writeUTF(VERSION_MARKER)
+        out.writeInt(VERSION)
         out.writeUTF(value.file.canonicalPath)
         out.writeLong(value.length)
+        out.writeLong(value.lastModified)
         out.writeInt(value.hash.size)
         out.write(value.hash)
     }
 
     override fun read(input: DataInput): FileSnapshot {
+        val marker = input.readUTF()
+        if (marker != VERSION_MARKER) {
+            // The first version stored MD5 hashes, which have a different size and so never equal to the current hashes,
+            // the file is considered modified once and is snapshotted again
+            return readHashAndCreate(input, File(marker), input.readLong(), FileSnapshot.NO_LAST_MODIFIED)
+        }
+
+        val version = input.readInt()
+        if (version != VERSION) throw IOException("Unsupported version of file snapshot: $version")
+
         val file = File(input.readUTF())
         val length = input.readLong()
+        val lastModified = input.readLong()
+        return readHashAndCreate(input, file, length, lastModified)
+    }
+
+    private fun readHashAndCreate(input: DataInput, file: File, length: Long, lastModified: Long): FileSnapshot {
         val hashSize = input.readInt()
         val hash = ByteArray(hashSize)
         input.readFully(hash)
-        return FileSnapshot(file, length, hash)
+        return FileSnapshot(file, length, hash, lastModified)
     }
 }
\ No newline at end of file
@@ -21,6 +21,8 @@ import org.jetbrains.kotlin.incremental.storage.BasicStringMap
 import org.jetbrains.kotlin.incremental.storage.PathStringDescriptor
 import java.io.File
 import java.util.*
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 class FileSnapshotMap(storageFile: File) : BasicStringMap<FileSnapshot>(storageFile, PathStringDescriptor, FileSnapshotExternalizer) {
     override fun dumpValue(value: FileSnapshot): String =
@@ -39,17 +41,58 @@ class FileSnapshotMap(storageFile: File) : BasicStringMap<FileSnapshot>(storageF
             }
         }
 
+        val oldSnapshots = HashMap<String, FileSnapshot>()
+        val filesToHash = ArrayList<File>()
         for (path in newPaths) {
             val file = File(path)
             val oldSnapshot = storage[path]
-            val newSnapshot = snapshotProvider[file]
+
+            // Files with the same length and timestamp are considered unchanged without hashing
+            if (oldSnapshot != null &&
+                oldSnapshot.lastModified != FileSnapshot.NO_LAST_MODIFIED &&
+                oldSnapshot.lastModified == file.lastModified() &&
+                oldSnapshot.length == file.length()
+            ) continue
+
+            if (oldSnapshot != null) {
+                oldSnapshots[path] = oldSnapshot
+            }
+            filesToHash.add(file)
+        }
+
+        for (newSnapshot in snapshotProvider.getAll(filesToHash)) {
+            val path = newSnapshot.file.path
+            val oldSnapshot = oldSnapshots[path]
 
             if (oldSnapshot == null || oldSnapshot != newSnapshot) {
-                newOrModified.add(file)
-                storage[path] = newSnapshot
+                newOrModified.add(newSnapshot.file)
             }
+            // The snapshot is updated even if the contents are the same, so that the timestamp is up to date for the next time
+            storage[path] = newSnapshot
         }
 
         return ChangedFiles.Known(newOrModified, removed)
     }
-}
\ No newline at end of file
+
+    private fun FileSnapshotProvider.getAll(files: List<File>): List<FileSnapshot> {
+        if (files.size < PARALLEL_HASHING_THRESHOLD) return files.map { this[it] }
+
+        val threads = minOf(Runtime.getRuntime().availableProcessors(), files.size / PARALLEL_HASHING_THRESHOLD + 1)
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            return files.map { file -> executor.submit<FileSnapshot> { this[file] } }.map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    companion object {
+        private const val PARALLEL_HASHING_THRESHOLD = 100
+    }
+}
@@ -24,8 +24,19 @@ interface FileSnapshotProvider {
 
 class SimpleFileSnapshotProviderImpl : FileSnapshotProvider {
     override fun get(file: File): FileSnapshot {
+        val snapshotTime = System.currentTimeMillis()
+        val lastModified = file.lastModified()
         val length = file.length()
-        val hash = file.md5
-        return FileSnapshot(file, length, hash)
+        val hash = file.xxHash64.toByteArray()
+
+        // A file modified again within the timestamp resolution would keep the same timestamp, such timestamps can't be trusted
+        val trustedLastModified =
+            if (snapshotTime - lastModified > TIMESTAMP_RESOLUTION_MS) lastModified else FileSnapshot.NO_LAST_MODIFIED
+        return FileSnapshot(file, length, hash, trustedLastModified)
+    }
+
+    companion object {
+        // The coarsest resolution of the common file systems (FAT)
+        private const val TIMESTAMP_RESOLUTION_MS = 2000L
     }
 }
\ No newline at end of file
@@ -17,20 +17,75 @@
 package org.jetbrains.kotlin.incremental.snapshots
 
 import java.io.File
-import java.security.MessageDigest
-
-internal val File.md5: ByteArray
-    get() {
-        val messageDigest = MessageDigest.getInstance("MD5")
-        val buffer = ByteArray(4048)
-        inputStream().use { input ->
-            while (true) {
-                val len = input.read(buffer)
-                if (len < 0) {
-                    break
-                }
-                messageDigest.update(buffer, 0, len)
-            }
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Non-cryptographic 64-bit hash (xxHash64 with zero seed) of the file contents, used to detect changes of source files.
+ */
+internal val File.xxHash64: Long
+    get() = xxHash64(ByteBuffer.wrap(readBytes()).order(ByteOrder.LITTLE_ENDIAN))
+
+internal fun Long.toByteArray(): ByteArray =
+    ByteBuffer.allocate(8).putLong(this).array()
+
+private const val PRIME1 = -7046029288634856825L // 0x9E3779B185EBCA87
+private const val PRIME2 = -4417276706812531889L // 0xC2B2AE3D27D4EB4F
+private const val PRIME3 = 1609587929392839161L // 0x165667B19E3779F9
+private const val PRIME4 = -8796714831421723037L // 0x85EBCA77C2B2AE63
+private const val PRIME5 = 2870177450012600261L // 0x27D4EB2F165667C5
+
+internal fun xxHash64(buffer: ByteBuffer): Long {
+    val length = buffer.remaining()
+    var hash: Long
+
+    if (length >= 32) {
+        var v1 = PRIME1 + PRIME2
+        var v2 = PRIME2
+        var v3 = 0L
+        var v4 = -PRIME1
+        while (buffer.remaining() >= 32) {
+            v1 = round(v1, buffer.long)
+            v2 = round(v2, buffer.long)
+            v3 = round(v3, buffer.long)
+            v4 = round(v4, buffer.long)
         }
-        return messageDigest.digest()
+
+        hash = java.lang.Long.rotateLeft(v1, 1) + java.lang.Long.rotateLeft(v2, 7) +
+                java.lang.Long.rotateLeft(v3, 12) + java.lang.Long.rotateLeft(v4, 18)
+        hash = mergeRound(hash, v1)
+        hash = mergeRound(hash, v2)
+        hash = mergeRound(hash, v3)
+        hash = mergeRound(hash, v4)
+    } else {
+        hash = PRIME5
     }
+
+    hash += length
+
+    while (buffer.remaining() >= 8) {
+        hash = hash xor round(0, buffer.long)
+        hash = java.lang.Long.rotateLeft(hash, 27) * PRIME1 + PRIME4
+    }
+    if (buffer.remaining() >= 4) {
+        hash = hash xor ((buffer.int.toLong() and 0xFFFFFFFFL) * PRIME1)
+        hash = java.lang.Long.rotateLeft(hash, 23) * PRIME2 + PRIME3
+    }
+    while (buffer.hasRemaining()) {
+        hash = hash xor ((buffer.get().toLong() and 0xFFL) * PRIME5)
+        hash = java.lang.Long.rotateLeft(hash, 11) * PRIME1
+    }
+
+    hash = hash xor (hash ushr 33)
+    hash *= PRIME2
+    hash = hash xor (hash ushr 29)
+    hash *= PRIME3
+    hash = hash xor (hash ushr 32)
+    return hash
+}
+
+private fun round(accumulator: Long, input: Long): Long =
+    java.lang.Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1
+
+private fun mergeRound(accumulator: Long, value: Long): Long =
+    (accumulator xor round(0, value)) * PRIME1 + PRIME4
@@ -71,6 +71,56 @@ class FileSnapshotMapTest : TestWithWorkingDir() {
         )
     }
 
+    @Test
+    fun testSnapshotMapManyFiles() {
+        val src = File(workingDir, "src").apply { mkdirs() }
+        val files = (0 until 500).map { i -> File(src, "$i.txt").apply { writeText("file $i") } }
+
+        val diff1 = snapshotMap.compareAndUpdate(files)
+        assertArrayEquals("diff1.newOrModified", files.toSortedPaths(), diff1.modified.toSortedPaths())
+
+        val changed = files.filterIndexed { i, _ -> i % 7 == 0 }
+        changed.forEach { it.writeText(it.readText() + " changed") }
+
+        val diff2 = snapshotMap.compareAndUpdate(files)
+        assertArrayEquals("diff2.newOrModified", changed.toSortedPaths(), diff2.modified.toSortedPaths())
+        assertArrayEquals("diff2.removed", emptyArray<String>(), diff2.removed.toSortedPaths())
+    }
+
+    @Test
+    fun testOldTimestampIsTrusted() {
+        val src = File(workingDir, "src").apply { mkdirs() }
+        val file = File(src, "a.txt").apply { writeText("aaaa") }
+        val lastModified = System.currentTimeMillis() - 10000
+        file.setLastModified(lastModified)
+        snapshotMap.compareAndUpdate(listOf(file))
+
+        // The same length and timestamp make the file unchanged without reading it, so even a change of the contents is not noticed
+        file.writeText("bbbb")
+        file.setLastModified(lastModified)
+        val diff = snapshotMap.compareAndUpdate(listOf(file))
+        assertArrayEquals("diff.newOrModified", emptyArray<String>(), diff.modified.toSortedPaths())
+
+        // A different timestamp makes the file hashed again
+        file.setLastModified(lastModified - 10000)
+        val diff2 = snapshotMap.compareAndUpdate(listOf(file))
+        assertArrayEquals("diff2.newOrModified", listOf(file).toSortedPaths(), diff2.modified.toSortedPaths())
+    }
+
+    @Test
+    fun testRecentTimestampIsNotTrusted() {
+        val src = File(workingDir, "src").apply { mkdirs() }
+        val file = File(src, "a.txt").apply { writeText("aaaa") }
+        val lastModified = file.lastModified()
+        snapshotMap.compareAndUpdate(listOf(file))
+
+        // The file is modified within the timestamp resolution, so its timestamp and length stay the same
+        file.writeText("bbbb")
+        file.setLastModified(lastModified)
+        val diff = snapshotMap.compareAndUpdate(listOf(file))
+        assertArrayEquals("diff.newOrModified", listOf(file).toSortedPaths(), diff.modified.toSortedPaths())
+    }
+
     private fun Iterable<File>.toSortedPaths(): Array<String> =
         map { it.canonicalPath }.sorted().toTypedArray()
 
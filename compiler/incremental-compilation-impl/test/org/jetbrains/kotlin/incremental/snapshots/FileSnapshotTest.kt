@@ -72,6 +72,37 @@ class FileSnapshotTest : TestWithWorkingDir() {
         assertNotEquals(oldSnapshot, newSnapshot)
     }
 
+    @Test
+    fun testFirstVersionSnapshotIsModified() {
+        val file = File(workingDir, "1.txt").apply { writeText("file") }
+        val byteOut = ByteArrayOutputStream()
+        DataOutputStream(byteOut).use {
+            it.writeUTF(file.canonicalPath)
+            it.writeLong(file.length())
+            it.writeInt(16)
+            it.write(ByteArray(16))
+        }
+        val oldSnapshot = DataInputStream(ByteArrayInputStream(byteOut.toByteArray())).use { FileSnapshotExternalizer.read(it) }
+        assertEquals(FileSnapshot.NO_LAST_MODIFIED, oldSnapshot.lastModified)
+        assertNotEquals(oldSnapshot, fileSnapshotProvider[file])
+    }
+
+    @Test
+    fun testXxHash64() {
+        // Reference values of xxHash64 with zero seed, inputs of 39 and 43 bytes cover all the code paths
+        val expected = listOf(
+            "" to "ef46db3751d8e999",
+            "a" to "d24ec4f1a98c6e5b",
+            "abc" to "44bc2cf5ad770999",
+            "Nobody inspects the spammish repetition" to "fbcea83c8a378bf1",
+            "The quick brown fox jumps over the lazy dog" to "0b242d361fda71bc"
+        )
+        for ((text, hash) in expected) {
+            val file = File(workingDir, "1.txt").apply { writeText(text) }
+            assertEquals(text, hash, java.lang.Long.toHexString(file.xxHash64).padStart(16, '0'))
+        }
+    }
+
     private fun saveAndReadBack(snapshot: FileSnapshot): FileSnapshot {
         val byteOut = ByteArrayOutputStream()
         DataOutputStream(byteOut).use { FileSnapshotExternalizer.save(it, snapshot) }
@@ -29,6 +29,7 @@ import org.jetbrains.kotlin.resolve.calls.components.isVararg
 import org.jetbrains.kotlin.types.KotlinType
 import org.jetbrains.kotlin.util.OperatorNameConventions
 import org.jetbrains.kotlin.util.capitalizeDecapitalize.toLowerCaseAsciiOnly
+import java.util.concurrent.ConcurrentHashMap
 
 // This is what Context collects about IR.
 abstract class Ir<out T : CommonBackendContext>(val context: T, val irModule: IrModuleFragment) {
@@ -202,7 +203,8 @@ abstract class Symbols<out T : CommonBackendContext>(val context: T, private val
 
     abstract val returnIfSuspended: IrSimpleFunctionSymbol
 
-    private val binaryOperatorCache = mutableMapOf<Triple<Name, KotlinType, KotlinType>, IrSimpleFunctionSymbol>()
+    // Concurrent since files may be lowered in parallel
+    private val binaryOperatorCache = ConcurrentHashMap<Triple<Name, KotlinType, KotlinType>, IrSimpleFunctionSymbol>()
 
     fun getBinaryOperator(name: Name, lhsType: KotlinType, rhsType: KotlinType): IrSimpleFunctionSymbol {
         val key = Triple(name, lhsType, rhsType)
@@ -214,7 +216,7 @@ abstract class Symbols<out T : CommonBackendContext>(val context: T, private val
         }
     }
 
-    private val unaryOperatorCache = mutableMapOf<Pair<Name, KotlinType>, IrSimpleFunctionSymbol>()
+    private val unaryOperatorCache = ConcurrentHashMap<Pair<Name, KotlinType>, IrSimpleFunctionSymbol>()
 
     fun getUnaryOperator(name: Name, receiverType: KotlinType): IrSimpleFunctionSymbol {
         val key = name to receiverType
@@ -6,7 +6,6 @@
 package org.jetbrains.kotlin.backend.common.phaser
 
 import org.jetbrains.kotlin.backend.common.CommonBackendContext
-import kotlin.system.measureTimeMillis
 
 class PhaserState<Data>(
     val alreadyDone: MutableSet<AnyNamedPhase> = mutableSetOf(),
@@ -39,7 +38,9 @@ fun <Context: CommonBackendContext, Input, Output> CompilerPhase<Context,  Input
     phaseConfig: PhaseConfig,
     context: Context,
     input: Input
-): Output = invoke(phaseConfig, PhaserState(), context, input)
+): Output = invoke(phaseConfig, PhaserState(), context, input).also {
+    phaseConfig.writeProfile()
+}
 
 interface SameTypeCompilerPhase<in Context: CommonBackendContext, Data> : CompilerPhase<Context, Data, Data>
 
@@ -144,17 +145,12 @@ abstract class AbstractNamedPhaseWrapper<in Context : CommonBackendContext, Inpu
         }
     }
 
-    private fun runAndProfile(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, source: Input): Output {
-        var result: Output? = null
-        val msec = measureTimeMillis {
-            result = phaserState.downlevel(nlevels) {
+    private fun runAndProfile(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, source: Input): Output =
+        phaseConfig.profiler!!.profile(this, phaserState.depth, source) {
+            phaserState.downlevel(nlevels) {
                 lower.invoke(phaseConfig, phaserState, context, source)
             }
         }
-        // TODO: use a proper logger
-        println("${"\t".repeat(phaserState.depth)}$description: $msec msec")
-        return result!!
-    }
 
     private fun checkAndRun(set: Set<AnyNamedPhase>, block: () -> Unit) {
         if (this in set) block()
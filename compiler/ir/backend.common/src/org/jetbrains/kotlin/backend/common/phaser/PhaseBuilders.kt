@@ -11,6 +11,9 @@ import org.jetbrains.kotlin.backend.common.lower
 import org.jetbrains.kotlin.ir.IrElement
 import org.jetbrains.kotlin.ir.declarations.IrFile
 import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 
 // Phase composition.
 private class CompositePhase<Context : CommonBackendContext, Input, Output>(
@@ -158,6 +161,8 @@ fun <Context : CommonBackendContext> performByIrFile(
     postconditions: Set<Checker<IrModuleFragment>> = emptySet(),
     stickyPostconditions: Set<Checker<IrModuleFragment>> = emptySet(),
     actions: Set<Action<IrModuleFragment, Context>> = setOf(defaultDumper),
+    // phases of `lower` which are not safe to run on several files at the same time
+    sequentialPhases: Set<AnyNamedPhase> = emptySet(),
     lower: CompilerPhase<Context, IrFile, IrFile>
 ) = namedIrModulePhase(
     name, description, prerequisite,
@@ -173,8 +178,12 @@ fun <Context : CommonBackendContext> performByIrFile(
             context: Context,
             input: IrModuleFragment
         ): IrModuleFragment {
-            for (irFile in input.files) {
-                lower.invoke(phaseConfig, phaserState.changeType(), context, irFile)
+            if (phaseConfig.fileLoweringThreads > 1 && input.files.size > 1) {
+                lowerFilesInParallel(phaseConfig, phaserState, context, input.files, lower, sequentialPhases + phaseConfig.sequentialPhases)
+            } else {
+                for (irFile in input.files) {
+                    lower.invoke(phaseConfig, phaserState.changeType(), context, irFile)
+                }
             }
 
             // TODO: no guarantee that module identity is preserved by `lower`
@@ -183,7 +192,63 @@ fun <Context : CommonBackendContext> performByIrFile(
 
         override fun getNamedSubphases(startDepth: Int) = lower.getNamedSubphases(startDepth)
     }
-)
+).also {
+    val fileSubphases = lower.getNamedSubphases().mapTo(hashSetOf()) { (_, phase) -> phase }
+    require(fileSubphases.containsAll(sequentialPhases)) {
+        "Sequential phases are not phases of $name: ${(sequentialPhases - fileSubphases).joinToString { phase -> phase.name }}"
+    }
+}
+
+// Unlike the sequential mode, phases are performed phase by phase rather than file by file: each phase of `lower` is performed
+// on all files before the next one starts. So phases from `sequentialPhases` never run concurrently with other phases, and they
+// process files in the same order in each compilation.
+private fun <Context : CommonBackendContext> lowerFilesInParallel(
+    phaseConfig: PhaseConfig,
+    phaserState: PhaserState<IrModuleFragment>,
+    context: Context,
+    files: List<IrFile>,
+    lower: CompilerPhase<Context, IrFile, IrFile>,
+    sequentialPhases: Set<AnyNamedPhase>
+) {
+    @Suppress("UNCHECKED_CAST")
+    val phases = (lower as? CompositePhase<Context, IrFile, IrFile>)?.phases ?: listOf(lower as CompilerPhase<Context, Any?, Any?>)
+
+    // Phaser state is updated by phases, so each file needs its own copy
+    val fileStates = files.map {
+        PhaserState<Any?>(phaserState.alreadyDone.toMutableSet(), phaserState.depth, phaserState.phaseCount)
+    }
+
+    val pool = ForkJoinPool(phaseConfig.fileLoweringThreads)
+    try {
+        for ((index, phase) in phases.withIndex()) {
+            val previous = phases.getOrNull(index - 1)
+            val lowerFile = { fileIndex: Int ->
+                val state = fileStates[fileIndex]
+                if (previous != null) {
+                    state.stickyPostconditions.addAll(previous.stickyPostconditions)
+                }
+                phase.invoke(phaseConfig, state, context, files[fileIndex])
+            }
+
+            if (phase.getNamedSubphases().any { (_, subphase) -> subphase in sequentialPhases }) {
+                files.indices.forEach { lowerFile(it) }
+            } else {
+                val tasks = files.indices.map { fileIndex -> Callable { lowerFile(fileIndex) } }
+                for (future in pool.invokeAll(tasks)) {
+                    try {
+                        future.get()
+                    } catch (e: ExecutionException) {
+                        throw e.cause ?: e
+                    }
+                }
+            }
+        }
+    } finally {
+        pool.shutdownNow()
+    }
+
+    phaserState.alreadyDone.addAll(fileStates.first().alreadyDone)
+}
 
 fun <Context : CommonBackendContext> makeIrFilePhase(
     lowering: (Context) -> FileLoweringPass,
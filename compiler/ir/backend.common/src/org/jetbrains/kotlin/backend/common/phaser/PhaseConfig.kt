@@ -5,6 +5,8 @@
 
 package org.jetbrains.kotlin.backend.common.phaser
 
+import java.io.File
+
 fun CompilerPhase<*, *, *>.toPhaseMap(): MutableMap<String, AnyNamedPhase> =
     getNamedSubphases().fold(mutableMapOf()) { acc, (_, phase) ->
         check(phase.name !in acc) { "Duplicate phase name '${phase.name}'" }
@@ -26,10 +28,21 @@ class PhaseConfig(
     val namesOfElementsExcludedFromDumping: Set<String> = emptySet(),
     val needProfiling: Boolean = false,
     val checkConditions: Boolean = false,
-    val checkStickyConditions: Boolean = false
+    val checkStickyConditions: Boolean = false,
+    // files are lowered in parallel by `performByIrFile` if more than one thread is given
+    val fileLoweringThreads: Int = 1,
+    // phases that are not safe to run on several files at the same time, in addition to the ones given to `performByIrFile`
+    val sequentialPhases: Set<AnyNamedPhase> = emptySet(),
+    // profiles are printed to stdout if no output file is given
+    val profileOutput: String? = null,
+    val profileFormat: PhaseProfileFormat = PhaseProfileFormat.JSON,
+    // counting IR elements traverses the whole input and output of every phase, so it's only done on request
+    val profileIrElements: Boolean = false
 ) {
     private val enabledMut = enabled
 
+    val profiler: PhaseProfiler? = if (needProfiling) PhaseProfiler(printPhases = profileOutput == null, countIrElements = profileIrElements) else null
+
     val enabled: Set<AnyNamedPhase> get() = enabledMut
 
     fun known(name: String): String {
@@ -48,6 +61,16 @@ class PhaseConfig(
         }
     }
 
+    fun writeProfile() {
+        val profiler = profiler ?: return
+        val output = profileOutput ?: return
+        val profile = when (profileFormat) {
+            PhaseProfileFormat.JSON -> profiler.toJson(compoundPhase.getNamedSubphases())
+            PhaseProfileFormat.TRACE -> profiler.toTrace()
+        }
+        File(output).writeText(profile)
+    }
+
     fun enable(phase: AnyNamedPhase) {
         enabledMut.add(phase)
     }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.backend.common.phaser
+
+import org.jetbrains.kotlin.ir.IrElement
+import org.jetbrains.kotlin.ir.visitors.IrElementVisitorVoid
+import org.jetbrains.kotlin.ir.visitors.acceptChildrenVoid
+import org.jetbrains.kotlin.ir.visitors.acceptVoid
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+
+enum class PhaseProfileFormat {
+    // Statistics of phases aggregated over all their invocations, e.g. on different files
+    JSON,
+    // Every invocation of a phase as an event of the Chrome trace event format, see chrome://tracing
+    TRACE
+}
+
+/**
+ * Measures wall and CPU time and allocated memory of each invocation of a phase, and if [countIrElements] is set,
+ * the number of IR elements before and after it.
+ *
+ * CPU time and allocations are only measured on the thread which invokes a phase, so for a phase that lowers files in parallel
+ * they don't include the work done on other threads; the nested per-file phases account for it instead.
+ * Time and allocations spent on counting IR elements are excluded from the measurements of the enclosing phases.
+ */
+class PhaseProfiler(private val printPhases: Boolean, private val countIrElements: Boolean = false) {
+    private val threadMXBean = ManagementFactory.getThreadMXBean()
+    private val isCpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported && threadMXBean.isThreadCpuTimeEnabled
+    private val allocationMXBean = (threadMXBean as? com.sun.management.ThreadMXBean)?.takeIf {
+        it.isThreadAllocatedMemorySupported && it.isThreadAllocatedMemoryEnabled
+    }
+
+    private val startNanos = System.nanoTime()
+    private val statistics = ConcurrentHashMap<AnyNamedPhase, PhaseStatistics>()
+    private val events = ConcurrentLinkedQueue<PhaseEvent>()
+
+    private val overhead = object : ThreadLocal<Measurement>() {
+        override fun initialValue() = Measurement(0, 0, 0)
+    }
+
+    fun <Output> profile(phase: AnyNamedPhase, depth: Int, input: Any?, block: () -> Output): Output {
+        val elementsBefore = countElements(input)
+        val overheadBefore = overhead.get()
+        val start = measure()
+        val output = block()
+        val end = measure()
+        val measurement = end - start - (overhead.get() - overheadBefore)
+        val elementsAfter = countElements(output)
+
+        statistics.getOrPut(phase) { PhaseStatistics() }.add(measurement, elementsBefore, elementsAfter)
+        events.add(PhaseEvent(phase, Thread.currentThread().id, start.wallNanos - startNanos, measurement, elementsBefore, elementsAfter))
+
+        if (printPhases) {
+            // TODO: use a proper logger
+            println("${"\t".repeat(depth)}${phase.description}: ${TimeUnit.NANOSECONDS.toMillis(measurement.wallNanos)} msec")
+        }
+        return output
+    }
+
+    private fun measure(): Measurement {
+        val thread = Thread.currentThread()
+        return Measurement(
+            System.nanoTime(),
+            if (isCpuTimeSupported) threadMXBean.currentThreadCpuTime else 0,
+            allocationMXBean?.getThreadAllocatedBytes(thread.id) ?: 0
+        )
+    }
+
+    // -1 if elements are not counted or the data of a phase is not IR
+    private fun countElements(data: Any?): Int {
+        if (!countIrElements || data !is IrElement) return -1
+
+        val start = measure()
+        var count = 0
+        data.acceptVoid(object : IrElementVisitorVoid {
+            override fun visitElement(element: IrElement) {
+                count++
+                element.acceptChildrenVoid(this)
+            }
+        })
+        overhead.set(overhead.get() + (measure() - start))
+        return count
+    }
+
+    /**
+     * Statistics of the phases in the order of [phases], which are expected to be the named subphases of the top level phase
+     * with their depths.
+     */
+    fun toJson(phases: List<Pair<Int, AnyNamedPhase>>): String = buildString {
+        append("{\"phases\": [")
+        phases.filter { (_, phase) -> phase in statistics }.forEachIndexed { index, (depth, phase) ->
+            if (index > 0) append(",")
+            append("\n  {\"name\": ").append(phase.name.quoted())
+            append(", \"description\": ").append(phase.description.quoted())
+            append(", \"depth\": ").append(depth)
+            append(", ").append(statistics[phase]!!.toJson(countIrElements))
+            append("}")
+        }
+        append("\n]}\n")
+    }
+
+    fun toTrace(): String = buildString {
+        append("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [")
+        events.sortedBy { it.startNanos }.forEachIndexed { index, event ->
+            if (index > 0) append(",")
+            append("\n  ").append(event.toJson(countIrElements))
+        }
+        append("\n]}\n")
+    }
+
+    private class Measurement(val wallNanos: Long, val cpuNanos: Long, val allocatedBytes: Long) {
+        operator fun plus(other: Measurement) =
+            Measurement(wallNanos + other.wallNanos, cpuNanos + other.cpuNanos, allocatedBytes + other.allocatedBytes)
+
+        operator fun minus(other: Measurement) =
+            Measurement(wallNanos - other.wallNanos, cpuNanos - other.cpuNanos, allocatedBytes - other.allocatedBytes)
+    }
+
+    private class PhaseStatistics {
+        private var invocations = 0
+        private var wallNanos = 0L
+        private var maxWallNanos = 0L
+        private var cpuNanos = 0L
+        private var allocatedBytes = 0L
+        private var elementsBefore = 0L
+        private var elementsAfter = 0L
+
+        @Synchronized
+        fun add(measurement: Measurement, elementsBefore: Int, elementsAfter: Int) {
+            invocations++
+            wallNanos += measurement.wallNanos
+            maxWallNanos = maxOf(maxWallNanos, measurement.wallNanos)
+            cpuNanos += measurement.cpuNanos
+            allocatedBytes += measurement.allocatedBytes
+            if (elementsBefore >= 0) this.elementsBefore += elementsBefore
+            if (elementsAfter >= 0) this.elementsAfter += elementsAfter
+        }
+
+        @Synchronized
+        fun toJson(withIrElements: Boolean): String =
+            "\"invocations\": $invocations, \"wallMillis\": ${wallNanos.toMillis()}, \"maxWallMillis\": ${maxWallNanos.toMillis()}, " +
+                    "\"cpuMillis\": ${cpuNanos.toMillis()}, \"allocatedBytes\": $allocatedBytes" +
+                    (if (withIrElements) ", \"irElementsBefore\": $elementsBefore, \"irElementsAfter\": $elementsAfter" else "")
+    }
+
+    private class PhaseEvent(
+        val phase: AnyNamedPhase,
+        val threadId: Long,
+        val startNanos: Long,
+        val measurement: Measurement,
+        val elementsBefore: Int,
+        val elementsAfter: Int
+    ) {
+        // Trace event timestamps and durations are in microseconds
+        fun toJson(withIrElements: Boolean): String =
+            "{\"name\": ${phase.name.quoted()}, \"cat\": \"phase\", \"ph\": \"X\", \"pid\": 1, \"tid\": $threadId, " +
+                    "\"ts\": ${TimeUnit.NANOSECONDS.toMicros(startNanos)}, " +
+                    "\"dur\": ${TimeUnit.NANOSECONDS.toMicros(measurement.wallNanos)}, " +
+                    "\"args\": {\"cpuMillis\": ${measurement.cpuNanos.toMillis()}, \"allocatedBytes\": ${measurement.allocatedBytes}" +
+                    (if (withIrElements) ", \"irElementsBefore\": $elementsBefore, \"irElementsAfter\": $elementsAfter" else "") +
+                    "}}"
+    }
+
+    companion object {
+        private fun Long.toMillis(): Long = TimeUnit.NANOSECONDS.toMillis(this)
+
+        private fun String.quoted(): String = "\"" + replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\""
+    }
+}
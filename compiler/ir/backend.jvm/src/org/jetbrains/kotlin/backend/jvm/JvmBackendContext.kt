@@ -36,6 +36,7 @@ import org.jetbrains.kotlin.ir.types.IrType
 import org.jetbrains.kotlin.ir.symbols.IrSimpleFunctionSymbol
 import org.jetbrains.kotlin.ir.util.ReferenceSymbolTable
 import org.jetbrains.kotlin.ir.util.SymbolTable
+import org.jetbrains.kotlin.ir.util.SynchronizedReferenceSymbolTable
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.name.Name
 import org.jetbrains.kotlin.psi2ir.PsiSourceManager
@@ -62,7 +63,12 @@ class JvmBackendContext(
     override val declarationFactory: JvmDeclarationFactory = JvmDeclarationFactory(methodSignatureMapper)
     override val sharedVariablesManager = JvmSharedVariablesManager(state.module, builtIns, irBuiltIns)
 
-    private val symbolTable = symbolTable.lazyWrapper
+    private val symbolTable = symbolTable.lazyWrapper.let {
+        if (phaseConfig.fileLoweringThreads > 1) {
+            symbolTable.useThreadLocalScopes()
+            SynchronizedReferenceSymbolTable(it, symbolTable)
+        } else it
+    }
     override val ir = JvmIr(irModuleFragment, this.symbolTable)
 
     val irIntrinsics = IrIntrinsicMethods(irBuiltIns, ir.symbols)
@@ -263,13 +263,39 @@ private val jvmFilePhases =
         removeDeclarationsThatWouldBeInlined then
         makePatchParentsPhase(3)
 
+// These phases update state shared between files: caches and maps of the context, or declarations from other files.
+// performByIrFile checks that all of them belong to jvmFilePhases, see also ParallelCodegenTest
+private val jvmSequentialFilePhases: Set<AnyNamedPhase> = setOf(
+    inventNamesForLocalClassesPhase,
+    lateinitPhase,
+    moveOrCopyCompanionObjectFieldsPhase,
+    propertyReferencePhase,
+    jvmInlineClassPhase,
+    singletonReferencesPhase,
+    jvmStringConcatenationLowering,
+    defaultArgumentStubPhase,
+    defaultArgumentInjectorPhase,
+    interfacePhase,
+    interfaceDelegationPhase,
+    interfaceSuperCallsPhase,
+    interfaceDefaultCallsPhase,
+    addContinuationPhase,
+    innerClassesPhase,
+    innerClassConstructorCallsPhase,
+    enumClassPhase,
+    objectClassPhase,
+    jvmStaticAnnotationPhase,
+    staticDefaultFunctionPhase,
+    syntheticAccessorPhase
+)
+
 val jvmPhases = namedIrModulePhase(
     name = "IrLowering",
     description = "IR lowering",
     lower = validateIrBeforeLowering then
             expectDeclarationsRemovingPhase then
             fileClassPhase then
-            performByIrFile(lower = jvmFilePhases) then
+            performByIrFile(sequentialPhases = jvmSequentialFilePhases, lower = jvmFilePhases) then
             generateMultifileFacadesPhase then
             validateIrAfterLowering
 )
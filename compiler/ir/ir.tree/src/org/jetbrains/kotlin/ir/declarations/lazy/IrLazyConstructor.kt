@@ -58,7 +58,7 @@ class IrLazyConstructor(
         typeTranslator = TypeTranslator
     )
 
-    override val typeParameters: MutableList<IrTypeParameter> by lazy {
+    override val typeParameters: MutableList<IrTypeParameter> by lazy(stubGenerator.lock) {
         typeTranslator.buildWithScope(this) {
             stubGenerator.symbolTable.withScope(descriptor) {
                 val classTypeParametersCount = descriptor.constructedClass.original.declaredTypeParameters.size
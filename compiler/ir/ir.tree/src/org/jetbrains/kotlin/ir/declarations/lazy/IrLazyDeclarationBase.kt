@@ -43,11 +43,11 @@ abstract class IrLazyDeclarationBase(
     private fun generateMemberStub(descriptor: DeclarationDescriptor): IrDeclaration =
         stubGenerator.generateMemberStub(descriptor)
 
-    override var parent: IrDeclarationParent by lazyVar {
+    override var parent: IrDeclarationParent by lazyVar(stubGenerator.lock) {
         createLazyParent()!!
     }
 
-    override val annotations: MutableList<IrConstructorCall> by lazy {
+    override val annotations: MutableList<IrConstructorCall> by lazy(stubGenerator.lock) {
         descriptor.annotations.mapNotNull(typeTranslator.constantValueGenerator::generateAnnotationConstructorCall).toMutableList()
     }
 
@@ -63,7 +63,7 @@ class IrLazyField(
         symbol.bind(this)
     }
 
-    override val annotations: MutableList<IrConstructorCall> by lazy {
+    override val annotations: MutableList<IrConstructorCall> by lazy(stubGenerator.lock) {
         descriptor.backingField?.annotations
             ?.mapNotNullTo(mutableListOf(), typeTranslator.constantValueGenerator::generateAnnotationConstructorCall)
             ?: mutableListOf()
@@ -71,17 +71,17 @@ class IrLazyField(
 
     override val descriptor: PropertyDescriptor = symbol.descriptor
 
-    override val overriddenSymbols: MutableList<IrFieldSymbol> by lazy {
+    override val overriddenSymbols: MutableList<IrFieldSymbol> by lazy(stubGenerator.lock) {
         symbol.descriptor.overriddenDescriptors.map {
             stubGenerator.generateFieldStub(it.original).symbol
         }.toMutableList()
     }
 
-    override var type: IrType by lazyVar {
+    override var type: IrType by lazyVar(stubGenerator.lock) {
         descriptor.type.toIrType()
     }
 
-    override var initializer: IrExpressionBody? by lazyVar {
+    override var initializer: IrExpressionBody? by lazyVar(stubGenerator.lock) {
         descriptor.compileTimeInitializer?.let {
             IrExpressionBodyImpl(
                 typeTranslator.constantValueGenerator.generateConstantValueAsExpression(UNDEFINED_OFFSET, UNDEFINED_OFFSET, it)
@@ -96,7 +96,7 @@ class IrLazyField(
             correspondingPropertySymbol = value?.symbol
         }
 
-    override var correspondingPropertySymbol: IrPropertySymbol? by lazyVar {
+    override var correspondingPropertySymbol: IrPropertySymbol? by lazyVar(stubGenerator.lock) {
         stubGenerator.generatePropertyStub(descriptor).symbol
     }
 
@@ -33,22 +33,22 @@ abstract class IrLazyFunctionBase(
     IrLazyDeclarationBase(startOffset, endOffset, origin, stubGenerator, typeTranslator),
     IrFunction {
 
-    val initialSignatureFunction: IrFunction? by lazyVar {
+    val initialSignatureFunction: IrFunction? by lazyVar(stubGenerator.lock) {
         descriptor.initialSignatureDescriptor?.takeIf { it != descriptor }?.original?.let(stubGenerator::generateFunctionStub)
     }
 
-    override var dispatchReceiverParameter: IrValueParameter? by lazyVar {
+    override var dispatchReceiverParameter: IrValueParameter? by lazyVar(stubGenerator.lock) {
         typeTranslator.buildWithScope(this) {
             descriptor.dispatchReceiverParameter?.generateReceiverParameterStub()?.also { it.parent = this@IrLazyFunctionBase }
         }
     }
-    override var extensionReceiverParameter: IrValueParameter? by lazyVar {
+    override var extensionReceiverParameter: IrValueParameter? by lazyVar(stubGenerator.lock) {
         typeTranslator.buildWithScope(this) {
             descriptor.extensionReceiverParameter?.generateReceiverParameterStub()?.also { it.parent = this@IrLazyFunctionBase }
         }
     }
 
-    override val valueParameters: MutableList<IrValueParameter> by lazy {
+    override val valueParameters: MutableList<IrValueParameter> by lazy(stubGenerator.lock) {
         typeTranslator.buildWithScope(this) {
             descriptor.valueParameters.mapTo(arrayListOf()) {
                 stubGenerator.generateValueParameterStub(it).apply { parent = this@IrLazyFunctionBase }
@@ -58,7 +58,7 @@ abstract class IrLazyFunctionBase(
 
     final override var body: IrBody? = null
 
-    final override var returnType: IrType by lazyVar {
+    final override var returnType: IrType by lazyVar(stubGenerator.lock) {
         typeTranslator.buildWithScope(this) {
             descriptor.returnType!!.toIrType()
         }
@@ -75,19 +75,19 @@ class IrLazyProperty(
     override val descriptor: PropertyDescriptor
         get() = symbol.descriptor
 
-    override var backingField: IrField? by lazyVar {
+    override var backingField: IrField? by lazyVar(stubGenerator.lock) {
         if (descriptor.hasBackingField(bindingContext)) {
             stubGenerator.generateFieldStub(descriptor).apply {
                 correspondingPropertySymbol = this@IrLazyProperty.symbol
             }
         } else null
     }
-    override var getter: IrSimpleFunction? by lazyVar {
+    override var getter: IrSimpleFunction? by lazyVar(stubGenerator.lock) {
         descriptor.getter?.let { stubGenerator.generateFunctionStub(it, createPropertyIfNeeded = false) }?.apply {
             correspondingPropertySymbol = this@IrLazyProperty.symbol
         }
     }
-    override var setter: IrSimpleFunction? by lazyVar {
+    override var setter: IrSimpleFunction? by lazyVar(stubGenerator.lock) {
         descriptor.setter?.let { stubGenerator.generateFunctionStub(it, createPropertyIfNeeded = false) }?.apply {
             correspondingPropertySymbol = this@IrLazyProperty.symbol
         }
@@ -40,13 +40,13 @@ class IrLazyTypeAlias(
     override val descriptor: TypeAliasDescriptor
         get() = symbol.descriptor
 
-    override val typeParameters: MutableList<IrTypeParameter> by lazy {
+    override val typeParameters: MutableList<IrTypeParameter> by lazy(stubGenerator.lock) {
         descriptor.declaredTypeParameters.mapTo(arrayListOf()) {
             stubGenerator.generateOrGetTypeParameterStub(it)
         }
     }
 
-    override val expandedType: IrType by lazy {
+    override val expandedType: IrType by lazy(stubGenerator.lock) {
         typeTranslator.buildWithScope(this) {
             descriptor.expandedType.toIrType()
         }
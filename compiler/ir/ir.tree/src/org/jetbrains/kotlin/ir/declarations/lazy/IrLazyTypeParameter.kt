@@ -56,7 +56,7 @@ class IrLazyTypeParameter(
         symbol.bind(this)
     }
 
-    override val superTypes: MutableList<IrType> by lazy {
+    override val superTypes: MutableList<IrType> by lazy(stubGenerator.lock) {
         typeTranslator.buildWithScope(this.parent as IrTypeParametersContainer) {
             val descriptor = symbol.descriptor
             descriptor.upperBounds.mapTo(arrayListOf()) { it.toIrType() }
@@ -7,19 +7,26 @@ package org.jetbrains.kotlin.ir.declarations.lazy
 
 import kotlin.reflect.KProperty
 
-internal fun <T> lazyVar(initializer: () -> T): UnsafeLazyVar<T> = UnsafeLazyVar(initializer)
+internal fun <T> lazyVar(lock: Any, initializer: () -> T): SynchronizedLazyVar<T> = SynchronizedLazyVar(lock, initializer)
 
-internal class UnsafeLazyVar<T>(initializer: () -> T) {
-    private var isInitialized = false;
+// Like `lazy(lock)`, but the value may be reassigned. Lazy declarations share the lock of their stub generator, see
+// DeclarationStubGenerator.lock
+internal class SynchronizedLazyVar<T>(private val lock: Any, initializer: () -> T) {
+    @Volatile
+    private var isInitialized = false
     private var initializer: (() -> T)? = initializer
     private var _value: Any? = null
 
     private val value: T
         get() {
             if (!isInitialized) {
-                _value = initializer!!()
-                isInitialized = true
-                initializer = null
+                synchronized(lock) {
+                    if (!isInitialized) {
+                        _value = initializer!!()
+                        isInitialized = true
+                        initializer = null
+                    }
+                }
             }
             @Suppress("UNCHECKED_CAST")
             return _value as T
@@ -30,7 +37,10 @@ internal class UnsafeLazyVar<T>(initializer: () -> T) {
     operator fun getValue(thisRef: Any?, property: KProperty<*>): T = value
 
     operator fun setValue(thisRef: Any?, property: KProperty<*>, value: T) {
-        this._value = value
-        isInitialized = true
+        synchronized(lock) {
+            this._value = value
+            isInitialized = true
+            initializer = null
+        }
     }
-}
\ No newline at end of file
+}
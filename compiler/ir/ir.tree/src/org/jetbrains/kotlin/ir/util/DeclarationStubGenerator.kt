@@ -42,6 +42,11 @@ class DeclarationStubGenerator(
 ) {
     private val lazyTable = symbolTable.lazyWrapper
 
+    // Lazy declarations generate stubs when their members are first accessed, which may happen on several threads at once,
+    // e.g. when files are lowered in parallel. They are initialized while holding this lock, which is also held by
+    // SynchronizedReferenceSymbolTable when it generates stubs for unbound symbols.
+    val lock: Any get() = symbolTable
+
     internal var unboundSymbolGeneration: Boolean
         get() = lazyTable.stubGenerator != null
         set(value) {
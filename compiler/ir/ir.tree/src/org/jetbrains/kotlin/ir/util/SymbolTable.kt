@@ -66,7 +66,7 @@ open class SymbolTable : ReferenceSymbolTable {
     val lazyWrapper = IrLazySymbolTable(this)
 
     private abstract class SymbolTableBase<D : DeclarationDescriptor, B : IrSymbolOwner, S : IrBindableSymbol<D, B>> {
-        val unboundSymbols = linkedSetOf<S>()
+        open val unboundSymbols: MutableSet<S> = linkedSetOf()
 
         abstract fun get(d: D): S?
         abstract fun set(d: D, s: S)
@@ -146,7 +146,35 @@ open class SymbolTable : ReferenceSymbolTable {
             fun dump(): String = dumpTo(StringBuilder()).toString()
         }
 
-        private var currentScope: Scope? = null
+        private inner class ScopeState {
+            var currentScope: Scope? = null
+            val unboundSymbols = linkedSetOf<S>()
+        }
+
+        private val sharedState = ScopeState()
+
+        // See SymbolTable.useThreadLocalScopes
+        @Volatile
+        private var threadLocalStates: ThreadLocal<ScopeState>? = null
+
+        private val state: ScopeState
+            get() = threadLocalStates?.get() ?: sharedState
+
+        private var currentScope: Scope?
+            get() = state.currentScope
+            set(value) {
+                state.currentScope = value
+            }
+
+        override val unboundSymbols: MutableSet<S>
+            get() = state.unboundSymbols
+
+        fun useThreadLocalScopes() {
+            assert(sharedState.currentScope == null) { "Scopes can't be made thread-local inside of a scope: ${dump()}" }
+            threadLocalStates = object : ThreadLocal<ScopeState>() {
+                override fun initialValue() = ScopeState()
+            }
+        }
 
         override fun get(d: D): S? {
             val scope = currentScope ?: return null
@@ -518,6 +546,14 @@ open class SymbolTable : ReferenceSymbolTable {
             throw AssertionError("Undefined local delegated property referenced: $descriptor")
         }
 
+    /**
+     * Makes each thread enter and leave its own scopes, so that local declarations can be declared and referenced on several threads
+     * at once, e.g. when files are lowered in parallel. Should be called outside of any scope.
+     */
+    fun useThreadLocalScopes() {
+        scopedSymbolTables.forEach { it.useThreadLocalScopes() }
+    }
+
     override fun enterScope(owner: DeclarationDescriptor) {
         scopedSymbolTables.forEach { it.enterScope(owner) }
     }
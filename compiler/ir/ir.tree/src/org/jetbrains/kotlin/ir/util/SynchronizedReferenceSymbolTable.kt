@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.ir.util
+
+import org.jetbrains.kotlin.descriptors.*
+import org.jetbrains.kotlin.ir.declarations.IrProperty
+import org.jetbrains.kotlin.ir.symbols.*
+
+/**
+ * Makes references to [delegate] from several threads safe, e.g. when files are lowered in parallel.
+ * All calls hold the monitor of [lock], which should be the symbol table that [delegate] updates, so that stubs of lazy declarations
+ * are generated under the same lock (see DeclarationStubGenerator.lock). Scopes of the symbol table should be thread-local,
+ * see [SymbolTable.useThreadLocalScopes].
+ */
+class SynchronizedReferenceSymbolTable(private val delegate: ReferenceSymbolTable, private val lock: Any) : ReferenceSymbolTable {
+    override fun referenceClass(descriptor: ClassDescriptor): IrClassSymbol =
+        synchronized(lock) { delegate.referenceClass(descriptor) }
+
+    override fun referenceConstructor(descriptor: ClassConstructorDescriptor): IrConstructorSymbol =
+        synchronized(lock) { delegate.referenceConstructor(descriptor) }
+
+    override fun referenceEnumEntry(descriptor: ClassDescriptor): IrEnumEntrySymbol =
+        synchronized(lock) { delegate.referenceEnumEntry(descriptor) }
+
+    override fun referenceField(descriptor: PropertyDescriptor): IrFieldSymbol =
+        synchronized(lock) { delegate.referenceField(descriptor) }
+
+    override fun referenceProperty(descriptor: PropertyDescriptor, generate: () -> IrProperty): IrProperty =
+        synchronized(lock) { delegate.referenceProperty(descriptor, generate) }
+
+    override fun referenceSimpleFunction(descriptor: FunctionDescriptor): IrSimpleFunctionSymbol =
+        synchronized(lock) { delegate.referenceSimpleFunction(descriptor) }
+
+    override fun referenceDeclaredFunction(descriptor: FunctionDescriptor): IrSimpleFunctionSymbol =
+        synchronized(lock) { delegate.referenceDeclaredFunction(descriptor) }
+
+    override fun referenceValueParameter(descriptor: ParameterDescriptor): IrValueParameterSymbol =
+        synchronized(lock) { delegate.referenceValueParameter(descriptor) }
+
+    override fun referenceTypeParameter(classifier: TypeParameterDescriptor): IrTypeParameterSymbol =
+        synchronized(lock) { delegate.referenceTypeParameter(classifier) }
+
+    override fun referenceVariable(descriptor: VariableDescriptor): IrVariableSymbol =
+        synchronized(lock) { delegate.referenceVariable(descriptor) }
+
+    override fun referenceTypeAlias(descriptor: TypeAliasDescriptor): IrTypeAliasSymbol =
+        synchronized(lock) { delegate.referenceTypeAlias(descriptor) }
+
+    override fun enterScope(owner: DeclarationDescriptor) {
+        synchronized(lock) { delegate.enterScope(owner) }
+    }
+
+    override fun leaveScope(owner: DeclarationDescriptor) {
+        synchronized(lock) { delegate.leaveScope(owner) }
+    }
+}
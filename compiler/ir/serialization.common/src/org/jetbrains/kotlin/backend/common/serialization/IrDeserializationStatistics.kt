@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.backend.common.serialization
+
+import org.jetbrains.kotlin.descriptors.ModuleDescriptor
+
+/**
+ * Counts top level declarations, types and bodies deserialized by [KotlinIrLinker] for each module.
+ * Top level declarations are also counted for their root: the declaration which was requested from the linker, or the lazy
+ * body which was accessed, when the transitive deserialization that pulled them in started.
+ */
+class IrDeserializationStatistics {
+    class ModuleStatistics {
+        var topLevelDeclarations = 0
+            internal set
+        var types = 0
+            internal set
+        var bodies = 0
+            internal set
+        // Bodies created lazily, each of them is counted in [bodies] once its statements are deserialized
+        var deferredBodies = 0
+            internal set
+    }
+
+    private val modules = LinkedHashMap<ModuleDescriptor, ModuleStatistics>()
+    private val roots = LinkedHashMap<String, Int>()
+
+    fun forModule(module: ModuleDescriptor): ModuleStatistics? = modules[module]
+
+    fun topLevelDeclarationsByRoot(): Map<String, Int> = LinkedHashMap(roots)
+
+    private var currentRoot: String? = null
+
+    // Nested roots are attributed to the outermost one
+    internal fun <R> withRoot(root: String, block: () -> R): R {
+        if (currentRoot != null) return block()
+
+        currentRoot = root
+        try {
+            return block()
+        } finally {
+            currentRoot = null
+        }
+    }
+
+    private fun statistics(module: ModuleDescriptor) = modules.getOrPut(module) { ModuleStatistics() }
+
+    internal fun topLevelDeclarationDeserialized(module: ModuleDescriptor) {
+        statistics(module).topLevelDeclarations++
+        val root = currentRoot ?: NO_ROOT
+        roots[root] = (roots[root] ?: 0) + 1
+    }
+
+    internal fun typeDeserialized(module: ModuleDescriptor) {
+        statistics(module).types++
+    }
+
+    internal fun bodyDeserialized(module: ModuleDescriptor) {
+        statistics(module).bodies++
+    }
+
+    internal fun bodyDeferred(module: ModuleDescriptor) {
+        statistics(module).deferredBodies++
+    }
+
+    fun render(maxRoots: Int = 20): String = buildString {
+        appendln("IR deserialization by module:")
+        for ((module, statistics) in modules) {
+            append("  ${module.name}: ${statistics.topLevelDeclarations} top level declarations, ${statistics.types} types, ")
+            appendln("${statistics.bodies} bodies (${statistics.deferredBodies} deferred)")
+        }
+        appendln("Top level declarations deserialized by root:")
+        for ((root, count) in roots.entries.sortedByDescending { it.value }.take(maxRoots)) {
+            appendln("  $root: $count")
+        }
+        if (roots.size > maxRoots) {
+            append("  ... and ${roots.size - maxRoots} more roots")
+        }
+    }.trimEnd()
+
+    override fun toString() = render()
+
+    companion object {
+        // Declarations deserialized without a request, e.g. exported ones of the module headers
+        private const val NO_ROOT = "<none>"
+    }
+}
@@ -301,6 +301,24 @@ abstract class IrFileDeserializer(
         return element
     }
 
+    // Statements of a block body are deserialized on the first access through `deserialize`, which is given the parent
+    // of the body and the actual deserialization. Other bodies are deserialized right away.
+    protected fun deserializeStatementBodyLazily(
+        proto: ProtoStatement,
+        deserialize: (IrDeclarationParent, () -> List<IrStatement>) -> List<IrStatement>
+    ): IrElement {
+        if (proto.statementCase != StatementCase.BLOCK_BODY) return deserializeStatement(proto)
+
+        val parent = parentsStack.peek()!!
+        return IrLazyBlockBody(proto.coordinates.startOffset, proto.coordinates.endOffset) {
+            deserialize(parent) {
+                usingParent(parent) {
+                    proto.blockBody.statementList.map { deserializeStatement(it) as IrStatement }
+                }
+            }
+        }
+    }
+
     private fun deserializeBlock(proto: ProtoBlock, start: Int, end: Int, type: IrType): IrBlock {
         val statements = mutableListOf<IrStatement>()
         val statementProtos = proto.statementList
@@ -10,8 +10,11 @@ import org.jetbrains.kotlin.backend.common.descriptors.*
 import org.jetbrains.kotlin.descriptors.*
 import org.jetbrains.kotlin.descriptors.impl.EmptyPackageFragmentDescriptor
 import org.jetbrains.kotlin.ir.IrElement
+import org.jetbrains.kotlin.ir.IrStatement
 import org.jetbrains.kotlin.ir.UNDEFINED_OFFSET
 import org.jetbrains.kotlin.ir.declarations.IrDeclaration
+import org.jetbrains.kotlin.ir.declarations.IrDeclarationParent
+import org.jetbrains.kotlin.ir.declarations.IrDeclarationWithName
 import org.jetbrains.kotlin.ir.declarations.IrFile
 import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
 import org.jetbrains.kotlin.ir.declarations.impl.IrClassImpl
@@ -30,7 +33,9 @@ import org.jetbrains.kotlin.ir.types.impl.IrErrorTypeImpl
 import org.jetbrains.kotlin.ir.util.IrDeserializer
 import org.jetbrains.kotlin.ir.util.NaiveSourceBasedFileEntryImpl
 import org.jetbrains.kotlin.ir.util.SymbolTable
+import org.jetbrains.kotlin.ir.util.fqNameWhenAvailable
 import org.jetbrains.kotlin.protobuf.ExtensionRegistryLite.newInstance
+import org.jetbrains.kotlin.resolve.descriptorUtil.fqNameSafe
 import org.jetbrains.kotlin.resolve.descriptorUtil.module
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedCallableMemberDescriptor
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedClassDescriptor
@@ -51,7 +56,12 @@ abstract class KotlinIrLinker(
     val symbolTable: SymbolTable,
     private val exportedDependencies: List<ModuleDescriptor>,
     private val forwardModuleDescriptor: ModuleDescriptor?,
-    private val firstKnownBuiltinsIndex: Long
+    private val firstKnownBuiltinsIndex: Long,
+    val deserializationStatistics: IrDeserializationStatistics? = null,
+    // Statements of function bodies are deserialized on the first access, together with the declarations they reference.
+    // Declarations are added to the files they belong to at that time, so traversals of library files should not rely on
+    // their declaration lists staying the same.
+    private val lazyBodies: Boolean = false
 ) : DescriptorUniqIdAware, IrDeserializer {
 
 
@@ -161,6 +171,7 @@ abstract class KotlinIrLinker(
             val fileLocalDeserializationState = DeserializationState.SimpleDeserializationState()
 
             fun deserializeDeclaration(key: UniqId): IrDeclaration {
+                deserializationStatistics?.topLevelDeclarationDeserialized(moduleDescriptor)
                 return deserializeDeclaration(loadTopLevelDeclarationProto(key), file)
             }
 
@@ -353,6 +364,7 @@ abstract class KotlinIrLinker(
             }
 
             override fun deserializeIrType(index: Int): IrType {
+                deserializationStatistics?.typeDeserialized(moduleDescriptor)
                 val typeData = loadTypeProto(index)
                 return deserializeIrTypeData(typeData)
             }
@@ -365,6 +377,7 @@ abstract class KotlinIrLinker(
 
             override fun deserializeExpressionBody(index: Int): IrExpression {
                 if (deserializeBodies) {
+                    deserializationStatistics?.bodyDeserialized(moduleDescriptor)
                     val bodyData = loadExpressionBodyProto(index)
                     return deserializeExpression(bodyData)
                 } else {
@@ -376,6 +389,13 @@ abstract class KotlinIrLinker(
             override fun deserializeStatementBody(index: Int): IrElement {
                 if (deserializeBodies) {
                     val bodyData = loadStatementBodyProto(index)
+                    if (lazyBodies) {
+                        deserializationStatistics?.bodyDeferred(moduleDescriptor)
+                        return deserializeStatementBodyLazily(bodyData) { parent, deserializeStatements ->
+                            deserializeLazyBody(moduleDescriptor, parent, deserializeStatements)
+                        }
+                    }
+                    deserializationStatistics?.bodyDeserialized(moduleDescriptor)
                     return deserializeStatement(bodyData)
                 } else {
                     val errorType = IrErrorTypeImpl(null, emptyList(), Variance.INVARIANT)
@@ -507,12 +527,29 @@ abstract class KotlinIrLinker(
     }
 
     private fun deserializeAllReachableTopLevels() {
-        do {
+        while (modulesWithReachableTopLevels.isNotEmpty()) {
             val moduleDeserializer = modulesWithReachableTopLevels.first()
             modulesWithReachableTopLevels.remove(moduleDeserializer)
 
             moduleDeserializer.deserializeAllModuleReachableTopLevels()
-        } while (modulesWithReachableTopLevels.isNotEmpty())
+        }
+    }
+
+    private fun <R> withDeserializationRoot(root: () -> String, block: () -> R): R {
+        val statistics = deserializationStatistics ?: return block()
+        return statistics.withRoot(root(), block)
+    }
+
+    // Symbols referenced from the body should be bound when it is accessed, so the declarations it pulls in are deserialized too
+    private fun deserializeLazyBody(
+        moduleDescriptor: ModuleDescriptor,
+        parent: IrDeclarationParent,
+        deserializeStatements: () -> List<IrStatement>
+    ): List<IrStatement> = withDeserializationRoot({ "body of ${(parent as? IrDeclarationWithName)?.fqNameWhenAvailable ?: parent}" }) {
+        deserializationStatistics?.bodyDeserialized(moduleDescriptor)
+        deserializeStatements().also {
+            deserializeAllReachableTopLevels()
+        }
     }
 
     private fun findDeserializedDeclarationForDescriptor(descriptor: DeclarationDescriptor): DeclarationDescriptor? {
@@ -539,7 +576,9 @@ abstract class KotlinIrLinker(
 
         moduleDeserializer.addModuleReachableTopLevel(topLevelKey)
 
-        deserializeAllReachableTopLevels()
+        withDeserializationRoot({ topLevelDescriptor.fqNameSafe.asString() }) {
+            deserializeAllReachableTopLevels()
+        }
         return topLevelDescriptor
     }
 
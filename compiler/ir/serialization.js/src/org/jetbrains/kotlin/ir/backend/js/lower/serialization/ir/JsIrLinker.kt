@@ -21,8 +21,10 @@ class JsIrLinker(
     mangler: KotlinMangler,
     logger: LoggingContext,
     builtIns: IrBuiltIns,
-    symbolTable: SymbolTable
-) : KotlinIrLinker(logger, builtIns, symbolTable, emptyList(), null, PUBLIC_LOCAL_UNIQ_ID_EDGE),
+    symbolTable: SymbolTable,
+    deserializationStatistics: IrDeserializationStatistics? = null,
+    lazyBodies: Boolean = false
+) : KotlinIrLinker(logger, builtIns, symbolTable, emptyList(), null, PUBLIC_LOCAL_UNIQ_ID_EDGE, deserializationStatistics, lazyBodies),
     DescriptorUniqIdAware by DeserializedDescriptorUniqIdAware {
 
     override val descriptorReferenceDeserializer =
@@ -550,6 +550,11 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/jvm/pluginSimple.args");
         }
 
+        @TestMetadata("profileLazyComputationsWithoutPerf.args")
+        public void testProfileLazyComputationsWithoutPerf() throws Exception {
+            runTest("compiler/testData/cli/jvm/profileLazyComputationsWithoutPerf.args");
+        }
+
         @TestMetadata("progressiveModeOff.args")
         public void testProgressiveModeOff() throws Exception {
             runTest("compiler/testData/cli/jvm/progressiveModeOff.args");
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import com.intellij.util.io.URLUtil
+import org.jetbrains.kotlin.cli.jvm.index.ClasspathPackageIndex
+import org.jetbrains.kotlin.cli.jvm.index.JavaRoot
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.util.jar.JarOutputStream
+import java.util.zip.ZipEntry
+
+class ClasspathPackageIndexTest : TestCaseWithTmpdir() {
+    private val indexFile get() = File(tmpdir, "index/packages.bin")
+
+    fun testSaveAndLoad() {
+        val jar = createJar("lib.jar", "a/b/C.class", "x/Y.class")
+        val index = ClasspathPackageIndex.loadOrUpdate(indexFile, listOf(root(jar)))
+        assertEquals(setOf("a", "a.b", "x"), index.packagesIn(root(jar)))
+
+        val saved = indexFile.readBytes()
+        assertEquals(listOf(indexFile.name), indexFile.parentFile.list()!!.toList())
+
+        // the saved index covers the jar, so it is loaded and not written again
+        indexFile.setLastModified(0)
+        val loaded = ClasspathPackageIndex.loadOrUpdate(indexFile, listOf(root(jar)))
+        assertEquals(setOf("a", "a.b", "x"), loaded.packagesIn(root(jar)))
+        assertEquals(0, indexFile.lastModified())
+        assertTrue(saved.contentEquals(indexFile.readBytes()))
+    }
+
+    fun testModifiedJar() {
+        val jar = createJar("lib.jar", "a/C.class")
+        ClasspathPackageIndex.loadOrUpdate(indexFile, listOf(root(jar)))
+
+        createJar("lib.jar", "a/C.class", "other/D.class")
+        jar.setLastModified(jar.lastModified() + 2000)
+        val index = ClasspathPackageIndex.loadOrUpdate(indexFile, listOf(root(jar)))
+        assertEquals(setOf("a", "other"), index.packagesIn(root(jar)))
+    }
+
+    fun testTruncatedIndex() {
+        val jar = createJar("lib.jar", "a/C.class")
+        ClasspathPackageIndex.loadOrUpdate(indexFile, listOf(root(jar)))
+        val bytes = indexFile.readBytes()
+        for (length in 0 until bytes.size) {
+            indexFile.writeBytes(bytes.copyOf(length))
+            checkRebuilt(jar)
+        }
+    }
+
+    fun testGarbageIndex() {
+        val jar = createJar("lib.jar", "a/C.class")
+        indexFile.parentFile.mkdirs()
+        indexFile.writeBytes(ByteArray(1000) { (it * 31).toByte() })
+        checkRebuilt(jar)
+    }
+
+    fun testInvalidCounts() {
+        val jar = createJar("lib.jar", "a/C.class")
+        val jarFile = File(root(jar).file.path.substringBefore(URLUtil.JAR_SEPARATOR))
+
+        writeIndex { writeInt(Int.MAX_VALUE) }
+        checkRebuilt(jar)
+
+        writeIndex { writeInt(-1) }
+        checkRebuilt(jar)
+
+        // a package in a jar which is not in the index
+        writeIndex {
+            writeInt(1)
+            writeUTF(jarFile.path)
+            writeLong(jarFile.lastModified())
+            writeLong(jarFile.length())
+            writeInt(1)
+            writeUTF("a")
+            writeInt(1)
+            writeLong(1L shl 5)
+        }
+        checkRebuilt(jar)
+    }
+
+    private fun writeIndex(writeContents: DataOutputStream.() -> Unit) {
+        indexFile.parentFile.mkdirs()
+        DataOutputStream(FileOutputStream(indexFile)).use { output ->
+            // version of the format
+            output.writeInt(1)
+            output.writeContents()
+        }
+    }
+
+    private fun checkRebuilt(jar: File) {
+        val index = ClasspathPackageIndex.loadOrUpdate(indexFile, listOf(root(jar)))
+        assertEquals(setOf("a"), index.packagesIn(root(jar)))
+        assertEquals(setOf("a"), ClasspathPackageIndex.loadOrUpdate(indexFile, listOf(root(jar))).packagesIn(root(jar)))
+    }
+
+    private fun createJar(name: String, vararg entries: String): File {
+        val jar = File(tmpdir, name)
+        JarOutputStream(FileOutputStream(jar)).use { output ->
+            for (entry in entries) {
+                output.putNextEntry(ZipEntry(entry))
+                output.closeEntry()
+            }
+        }
+        return jar
+    }
+
+    // A new file system each time, so that the contents of a rewritten jar are not cached
+    private fun root(jar: File): JavaRoot {
+        val file = CoreJarFileSystem().findFileByPath(jar.path + URLUtil.JAR_SEPARATOR) ?: error("Cannot open $jar")
+        return JavaRoot(file, JavaRoot.RootType.BINARY)
+    }
+}
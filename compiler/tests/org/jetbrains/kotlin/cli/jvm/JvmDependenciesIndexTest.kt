@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import com.intellij.util.io.URLUtil
+import org.jetbrains.kotlin.cli.jvm.index.JavaRoot
+import org.jetbrains.kotlin.cli.jvm.index.JvmDependenciesIndexImpl
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.io.FileOutputStream
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.jar.JarOutputStream
+import java.util.zip.ZipEntry
+
+class JvmDependenciesIndexTest : TestCaseWithTmpdir() {
+    private lateinit var roots: List<JavaRoot>
+
+    private val queries = ArrayList<(JvmDependenciesIndexImpl) -> String>()
+
+    override fun setUp() {
+        super.setUp()
+        val fileSystem = CoreJarFileSystem()
+        roots = (0 until ROOTS).map { i ->
+            // packages are split between roots, so that most of them are found in several roots, but not in all of them
+            val entries = (0 until PACKAGES).filter { (it + i) % 3 != 0 }.flatMap { j ->
+                listOf("p$j/C$i.class", "p$j/Common.class", "p$j/q/D$i.class")
+            }
+            val jar = createJar("root$i.jar", entries)
+            JavaRoot(fileSystem.findFileByPath(jar.path + URLUtil.JAR_SEPARATOR)!!, JavaRoot.RootType.BINARY)
+        }
+
+        for (j in 0 until PACKAGES + 1) {
+            for (packageName in listOf("p$j", "p$j.q", "p$j.absent")) {
+                queries.add { index -> "traverse $packageName: " + traverse(index, FqName(packageName)) }
+                for (className in (0 until ROOTS).map { "C$it" } + listOf("Common", "Absent")) {
+                    val classId = ClassId(FqName(packageName), Name.identifier(className))
+                    queries.add { index -> "find $classId: " + find(index, classId) }
+                }
+            }
+        }
+    }
+
+    fun testConcurrentLookups() {
+        val expected = queries.map { it(JvmDependenciesIndexImpl(roots)) }
+        // sanity check that the queries are not trivial
+        assertTrue(expected.any { it.startsWith("find p1/C0: ") && "root0.jar" in it })
+        assertTrue(expected.any { it.startsWith("find p1/Common: ") && "root0.jar" in it })
+        assertTrue(expected.any { it.startsWith("find p1/C2: null") })
+        assertTrue(expected.any { it.startsWith("traverse p1: ") && "root1.jar" in it && "root2.jar" !in it })
+
+        val executor = Executors.newFixedThreadPool(THREADS)
+        try {
+            repeat(10) { iteration ->
+                val index = JvmDependenciesIndexImpl(roots)
+                val tasks = (0 until THREADS).map { thread ->
+                    Callable {
+                        // each thread asks for the same packages and classes in a different order
+                        val order = queries.indices.shuffled(Random(iteration * THREADS + thread.toLong()))
+                        val results = arrayOfNulls<String>(queries.size)
+                        for (i in order) {
+                            results[i] = queries[i](index)
+                        }
+                        results.toList()
+                    }
+                }
+                for (future in executor.invokeAll(tasks)) {
+                    assertEquals(expected, future.get())
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private fun traverse(index: JvmDependenciesIndexImpl, packageFqName: FqName): List<String> {
+        val result = ArrayList<String>()
+        index.traverseDirectoriesInPackage(packageFqName, JavaRoot.OnlyBinary) { dir, _ ->
+            result.add(dir.path)
+            true
+        }
+        return result
+    }
+
+    private fun find(index: JvmDependenciesIndexImpl, classId: ClassId): String? =
+        index.findClass(classId, JavaRoot.OnlyBinary) { dir, _ ->
+            dir.findChild(classId.relativeClassName.asString() + ".class")?.path
+        }
+
+    private fun createJar(name: String, entries: List<String>): File {
+        val jar = File(tmpdir, name)
+        JarOutputStream(FileOutputStream(jar)).use { output ->
+            for (entry in entries) {
+                output.putNextEntry(ZipEntry(entry))
+                output.closeEntry()
+            }
+        }
+        return jar
+    }
+
+    companion object {
+        private const val ROOTS = 6
+        private const val PACKAGES = 8
+        private const val THREADS = 8
+    }
+}
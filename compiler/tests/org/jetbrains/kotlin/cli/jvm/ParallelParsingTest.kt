@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.openapi.util.Disposer
+import com.intellij.psi.impl.DebugUtil
+import org.jetbrains.kotlin.cli.common.config.addKotlinSourceRoot
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.compiler.parseSourceFilesInParallel
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import org.jetbrains.kotlin.test.TestJdkKind
+import java.io.File
+
+class ParallelParsingTest : TestCaseWithTmpdir() {
+    override fun setUp() {
+        super.setUp()
+        for (i in 0 until FILES) {
+            File(tmpdir, "file$i.kt").writeText(
+                """
+                    package test$i
+
+                    class A$i(val x: Int) {
+                        fun foo(list: List<Int>) = list.map { it * x }.filter { y -> y > $i }
+
+                        val bar: String
+                            get() {
+                                val s = StringBuilder()
+                                for (j in 0 until x) s.append(j)
+                                return s.toString()
+                            }
+                    }
+
+                    fun top$i(a: A$i) = when (a.x) {
+                        0 -> a.foo(listOf(1, 2, 3)).size
+                        else -> run { a.bar.length }
+                    }
+                """.trimIndent()
+            )
+        }
+    }
+
+    fun testSameAsSequential() {
+        val expected = withSourceFiles(threads = 1) { ktFiles -> ktFiles.map(::render) }
+        val actual = withSourceFiles(threads = 4) { ktFiles -> ktFiles.map(::render) }
+        assertEquals(FILES, expected.size)
+        assertEquals(expected, actual)
+    }
+
+    fun testParseSourceFilesInParallel() {
+        val expected = withSourceFiles(threads = 1) { ktFiles -> ktFiles.map(::render) }
+        // Files of a sequential environment are not parsed until they're accessed
+        val actual = withSourceFiles(threads = 1) { ktFiles ->
+            parseSourceFilesInParallel(ktFiles, threads = 8)
+            ktFiles.map(::render)
+        }
+        assertEquals(expected, actual)
+    }
+
+    private fun <T> withSourceFiles(threads: Int, block: (List<KtFile>) -> T): T {
+        val configuration = KotlinTestUtils.newConfiguration(ConfigurationKind.JDK_ONLY, TestJdkKind.MOCK_JDK)
+        configuration.addKotlinSourceRoot(tmpdir.path)
+        configuration.put(JVMConfigurationKeys.PARALLEL_PARSING_THREADS, threads)
+
+        val disposable = Disposer.newDisposable()
+        try {
+            val environment = KotlinCoreEnvironment.createForTests(disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES)
+            return block(environment.getSourceFiles().sortedBy { it.name })
+        } finally {
+            Disposer.dispose(disposable)
+        }
+    }
+
+    private fun render(ktFile: KtFile): String =
+        ktFile.name + "\n" + DebugUtil.psiToString(ktFile, false, true)
+
+    companion object {
+        private const val FILES = 40
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.backend.jvm.jvmPhases
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
+import org.jetbrains.kotlin.cli.jvm.compiler.NoScopeRecordCliBindingTrace
+import org.jetbrains.kotlin.codegen.CodegenTestCase.TestFile
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.config.JVMConfigurationKeys
+import org.jetbrains.kotlin.test.ConfigurationKind
+
+class ParallelCodegenTest : CodegenTestCase() {
+    override fun setUp() {
+        super.setUp()
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.ALL)
+    }
+
+    fun testInlineFunctionsInSeveralPackages() {
+        loadMultiFiles(inlineHeavyFiles())
+
+        val sequential = generate { }
+        val parallel = generate { put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 4) }
+        assertEquals(sequential, parallel)
+    }
+
+    fun testMethodOptimizationInBackground() {
+        loadMultiFiles(inlineHeavyFiles() + TestFile(
+            "inlineClasses.kt",
+            """
+                package inlineClasses
+
+                inline class Meters(val value: Int)
+
+                fun sum(list: List<Meters>): Meters {
+                    var result: Meters? = Meters(0)
+                    for (m in list) {
+                        val boxed: Any = m
+                        result = Meters(result!!.value + (boxed as Meters).value)
+                    }
+                    return result!!
+                }
+
+                fun boxing(): Int {
+                    var x: Int? = 0
+                    for (i in 0..100) {
+                        val y: Any = i
+                        x = x!! + y as Int
+                    }
+                    return x!!
+                }
+            """.trimIndent()
+        ))
+
+        val sequential = generate { }
+        val background = generate { put(JVMConfigurationKeys.METHOD_OPTIMIZATION_THREADS, 4) }
+        val backgroundAndParallel = generate {
+            put(JVMConfigurationKeys.METHOD_OPTIMIZATION_THREADS, 4)
+            put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 4)
+        }
+        assertEquals(sequential, background)
+        assertEquals(sequential, backgroundAndParallel)
+    }
+
+    fun testIrLoweringOnSeveralThreads() {
+        loadMultiFiles((1..6).map { i ->
+            TestFile(
+                "file$i.kt",
+                """
+                    package p$i
+
+                    class C$i(val x: Int = $i) {
+                        lateinit var name: String
+
+                        companion object {
+                            const val ID = "c$i"
+                            val instance = C$i()
+                        }
+
+                        inner class Inner {
+                            fun sum(y: Int = 1) = x + y
+                        }
+                    }
+
+                    enum class E$i { A, B }
+
+                    fun local$i(list: List<Int>): Int {
+                        class Local(val v: Int)
+                        val ref = C$i::x
+                        return list.map { Local(it + ref(C$i.instance)) }.sumBy { it.v } + C$i().Inner().sum() + E$i.B.ordinal
+                    }
+                """.trimIndent()
+            )
+        })
+
+        val sequential = generate { put(JVMConfigurationKeys.IR, true) }
+        val parallel = generate {
+            put(JVMConfigurationKeys.IR, true)
+            put(CLIConfigurationKeys.PHASE_CONFIG, PhaseConfig(jvmPhases, fileLoweringThreads = 4))
+        }
+        assertEquals(sequential, parallel)
+    }
+
+    private fun generate(configure: CompilerConfiguration.() -> Unit): String {
+        val configuration = myEnvironment.configuration.copy().apply(configure)
+        val trace = NoScopeRecordCliBindingTrace()
+        if (configuration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1) > 1 ||
+            configuration.get(JVMConfigurationKeys.METHOD_OPTIMIZATION_THREADS, 0) > 0
+        ) {
+            trace.makeThreadSafe()
+        }
+        val state = GenerationUtils.compileFiles(
+            myFiles.psiFiles, configuration, ClassBuilderFactories.TEST, myEnvironment::createPackagePartProvider, trace
+        )
+        return state.factory.createText()
+    }
+
+    companion object {
+        // Every package is generated on its own thread; inline functions call each other across packages
+        // and regenerate anonymous objects and lambdas at call sites
+        fun inlineHeavyFiles(): List<TestFile> {
+            val library = TestFile(
+                "lib.kt",
+                """
+                    package lib
+
+                    var elapsed = 0L
+
+                    inline fun <T> measure(block: () -> T): T {
+                        val start = System.nanoTime()
+                        try {
+                            return block()
+                        } finally {
+                            elapsed += System.nanoTime() - start
+                        }
+                    }
+
+                    inline fun <reified T> Any?.castOrNull(): T? = this as? T
+
+                    inline fun repeatTwice(crossinline action: (Int) -> Unit): Runnable =
+                        object : Runnable {
+                            override fun run() {
+                                action(0)
+                                action(1)
+                            }
+                        }
+
+                    inline fun <T, R> T.transform(crossinline f: (T) -> R): () -> R = { measure { f(this) } }
+                """.trimIndent()
+            )
+            val users = (1..6).map { i ->
+                TestFile(
+                    "user$i.kt",
+                    """
+                        @file:JvmMultifileClass
+                        @file:JvmName("Users")
+                        package user$i
+
+                        import lib.*
+
+                        inline fun local$i(x: Int): Int = measure { x * $i }
+
+                        fun test$i(): String {
+                            var result = 0
+                            repeatTwice { result += local$i(it) }.run()
+                            val s = "$i".castOrNull<String>() ?: "fail"
+                            return measure { s + result + 42.transform { it + $i }() }
+                        }
+
+                        fun nested$i(): Runnable = repeatTwice { repeatTwice { measure { test$i() } }.run() }
+                    """.trimIndent()
+                )
+            }
+            return listOf(library) + users
+        }
+    }
+}
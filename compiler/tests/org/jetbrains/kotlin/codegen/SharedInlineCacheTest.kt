@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.inline.*
+import org.jetbrains.org.objectweb.asm.commons.Method
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+class SharedInlineCacheTest : TestCase() {
+    override fun tearDown() {
+        SharedInlineCache.clear()
+        super.tearDown()
+    }
+
+    fun testChangedContentsWithSameLength() {
+        // class files of a library rebuilt within the time stamp granularity differ only in their contents
+        val before = byteArrayOf(1, 2, 3, 4)
+        val after = byteArrayOf(1, 2, 3, 5)
+
+        val first = get(before)
+        assertSame(first, get(before))
+        assertSame(first, get(before.copyOf()))
+
+        val changed = get(after)
+        assertNotSame(first, changed)
+        assertSame(changed, get(after))
+    }
+
+    fun testSizeIsBounded() {
+        for (i in 0 until 10) {
+            get(byteArrayOf(i.toByte()), maxSize = 5)
+        }
+        assertEquals(5, SharedInlineCache.size)
+
+        // a compilation with a smaller limit doesn't evict entries of other compilations
+        get(byteArrayOf(42), maxSize = 2)
+        assertEquals(5, SharedInlineCache.size)
+        assertNotNull(SharedInlineCache.getOrPut(SharedInlineCache.contentHash(byteArrayOf(42)), METHOD_ID, maxSize = 2) { null })
+
+        get(byteArrayOf(43), maxSize = 7)
+        get(byteArrayOf(44), maxSize = 7)
+        get(byteArrayOf(45), maxSize = 2)
+        assertEquals(7, SharedInlineCache.size)
+
+        for (i in 0 until SharedInlineCache.MAX_SIZE + 10) {
+            get(byteArrayOf((i shr 8).toByte(), i.toByte()), maxSize = Int.MAX_VALUE)
+        }
+        assertEquals(SharedInlineCache.MAX_SIZE, SharedInlineCache.size)
+    }
+
+    private fun get(classBytes: ByteArray, maxSize: Int = 10): SMAPAndMethodNode? =
+        SharedInlineCache.getOrPut(SharedInlineCache.contentHash(classBytes), METHOD_ID, maxSize) {
+            SMAPAndMethodNode(MethodNode(), SMAP(listOf(FileMapping.SKIP)))
+        }
+
+    companion object {
+        private val METHOD_ID = MethodId("test/A", Method("f", "()V"))
+    }
+}
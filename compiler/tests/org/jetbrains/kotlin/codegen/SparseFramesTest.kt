@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.codegen.optimization.common.MethodAnalyzer
+import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter
+import org.jetbrains.kotlin.codegen.optimization.common.SparseFramesMethodAnalyzer
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.Opcodes.*
+import org.jetbrains.org.objectweb.asm.tree.MethodNode
+
+// Sparse frames are the same as the ones computed by MethodAnalyzer for every instruction
+class SparseFramesTest : TestCase() {
+    fun testLoop() {
+        checkFrames(method("(I)Ljava/lang/Object;") {
+            val loop = Label()
+            val even = Label()
+            val next = Label()
+            val end = Label()
+            visitInsn(ACONST_NULL)
+            visitVarInsn(ASTORE, 1)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 2)
+            visitLabel(loop)
+            visitVarInsn(ILOAD, 2)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IF_ICMPGE, end)
+            visitVarInsn(ILOAD, 2)
+            visitInsn(ICONST_2)
+            visitInsn(IREM)
+            visitJumpInsn(IFEQ, even)
+            visitLdcInsn("odd")
+            visitVarInsn(ASTORE, 1)
+            visitJumpInsn(GOTO, next)
+            visitLabel(even)
+            visitVarInsn(ILOAD, 2)
+            boxInt()
+            visitVarInsn(ASTORE, 1)
+            visitLabel(next)
+            visitIincInsn(2, 1)
+            visitJumpInsn(GOTO, loop)
+            visitLabel(end)
+            visitVarInsn(ALOAD, 1)
+            visitInsn(ARETURN)
+            visitMaxs(2, 3)
+        })
+    }
+
+    fun testExceptionHandlers() {
+        checkFrames(method("(I)Ljava/lang/Object;") {
+            val start = Label()
+            val throwException = Label()
+            val endOfTry = Label()
+            val handler = Label()
+            val finallyHandler = Label()
+            visitTryCatchBlock(start, endOfTry, handler, "java/lang/RuntimeException")
+            visitTryCatchBlock(start, endOfTry, finallyHandler, null)
+            visitLabel(start)
+            visitLdcInsn("a")
+            visitVarInsn(ASTORE, 1)
+            visitVarInsn(ILOAD, 0)
+            visitJumpInsn(IFEQ, throwException)
+            visitInsn(ICONST_1)
+            boxInt()
+            visitVarInsn(ASTORE, 1)
+            visitJumpInsn(GOTO, endOfTry)
+            visitLabel(throwException)
+            visitTypeInsn(NEW, "java/lang/RuntimeException")
+            visitInsn(DUP)
+            visitMethodInsn(INVOKESPECIAL, "java/lang/RuntimeException", "<init>", "()V", false)
+            visitInsn(ATHROW)
+            visitLabel(endOfTry)
+            visitVarInsn(ALOAD, 1)
+            visitInsn(ARETURN)
+            visitLabel(handler)
+            visitVarInsn(ASTORE, 2)
+            visitVarInsn(ALOAD, 2)
+            visitInsn(ARETURN)
+            visitLabel(finallyHandler)
+            visitInsn(ATHROW)
+            // unreachable
+            visitInsn(ACONST_NULL)
+            visitInsn(ARETURN)
+            visitMaxs(2, 3)
+        })
+    }
+
+    fun testLargeMethod() {
+        checkFrames(method("(I)I") {
+            visitInsn(ACONST_NULL)
+            visitVarInsn(ASTORE, 1)
+            visitInsn(ICONST_0)
+            visitVarInsn(ISTORE, 2)
+            for (i in 0 until 3000) {
+                val isZero = Label()
+                val next = Label()
+                visitVarInsn(ILOAD, 0)
+                visitJumpInsn(IFEQ, isZero)
+                visitLdcInsn("s$i")
+                visitVarInsn(ASTORE, 1)
+                visitJumpInsn(GOTO, next)
+                visitLabel(isZero)
+                visitVarInsn(ILOAD, 2)
+                boxInt()
+                visitVarInsn(ASTORE, 1)
+                visitLabel(next)
+                visitVarInsn(ILOAD, 2)
+                visitVarInsn(ALOAD, 1)
+                visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I", false)
+                visitInsn(IADD)
+                visitVarInsn(ISTORE, 2)
+            }
+            visitVarInsn(ILOAD, 2)
+            visitInsn(IRETURN)
+            visitMaxs(2, 3)
+        })
+    }
+
+    private fun method(desc: String, body: MethodNode.() -> Unit): MethodNode =
+        MethodNode(API_VERSION, ACC_PUBLIC or ACC_STATIC, "test", desc, null, null).apply(body)
+
+    private fun MethodNode.boxInt() {
+        visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false)
+    }
+
+    private fun checkFrames(node: MethodNode) {
+        val dense = MethodAnalyzer("Test", node, OptimizationBasicInterpreter()).analyze()
+        val sparse = SparseFramesMethodAnalyzer("Test", node, OptimizationBasicInterpreter()).analyze()
+
+        assertEquals(dense.size, sparse.size)
+        for (i in dense.indices) {
+            assertEquals("Instruction #$i", dense[i]?.toString(), sparse[i]?.toString())
+            assertEquals("Instruction #$i", dense[i] != null, sparse.isReachable(i))
+        }
+        // frames are recomputed from the beginning of the block when accessed backwards
+        for (i in dense.indices.reversed()) {
+            assertEquals("Instruction #$i", dense[i]?.toString(), sparse[i]?.toString())
+        }
+    }
+}
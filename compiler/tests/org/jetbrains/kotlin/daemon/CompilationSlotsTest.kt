@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.logging.Logger
+import kotlin.concurrent.thread
+
+class CompilationSlotsTest : TestCase() {
+    private val log = Logger.getLogger("CompilationSlotsTest")
+
+    fun testCompilationsOverLimitAreQueued() {
+        val slots = CompilationSlots(limit = 2, metrics = DaemonMetricsCollector(), log = log)
+        val running = AtomicInteger(0)
+        val maxRunning = AtomicInteger(0)
+        val finished = AtomicInteger(0)
+        val canFinish = CountDownLatch(1)
+
+        val compilations = (0 until 6).map {
+            thread {
+                slots.withSlot {
+                    maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+                    canFinish.await()
+                    running.decrementAndGet()
+                    finished.incrementAndGet()
+                }
+            }
+        }
+
+        waitUntil { slots.running == 2 && slots.queueLength == 4 }
+        assertEquals(0, finished.get())
+
+        canFinish.countDown()
+        compilations.forEach { it.join(TIMEOUT_MS) }
+        assertEquals(6, finished.get())
+        assertEquals(2, maxRunning.get())
+        assertEquals(0, slots.running)
+        assertEquals(0, slots.queueLength)
+    }
+
+    fun testSlotIsReleasedOnFailure() {
+        val slots = CompilationSlots(limit = 1, metrics = DaemonMetricsCollector(), log = log)
+        repeat(3) {
+            try {
+                slots.withSlot { throw IllegalStateException("compilation failed") }
+            } catch (e: IllegalStateException) {
+                // expected
+            }
+        }
+        assertEquals(0, slots.running)
+
+        // the next compilation isn't blocked by the failed ones
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            assertEquals("done", executor.submit<String> { slots.withSlot { "done" } }.get(TIMEOUT_MS, TimeUnit.MILLISECONDS))
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    fun testActionsAreRunWhenIdle() {
+        val slots = CompilationSlots(limit = 0, metrics = DaemonMetricsCollector(), log = log)
+        val cleared = AtomicInteger(0)
+
+        slots.runWhenIdle("clear") { cleared.incrementAndGet() }
+        assertEquals(1, cleared.get())
+
+        slots.acquire()
+        slots.acquire()
+        slots.runWhenIdle("clear") { cleared.incrementAndGet() }
+        slots.runWhenIdle("clear") { cleared.incrementAndGet() }
+        slots.release()
+        assertEquals(1, cleared.get())
+
+        // the action requested several times during the compilations is run once, after the last one is finished
+        slots.release()
+        assertEquals(2, cleared.get())
+    }
+
+    private fun waitUntil(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + TIMEOUT_MS
+        while (!condition()) {
+            assertTrue("Timed out waiting for the compilations", System.currentTimeMillis() < deadline)
+            Thread.sleep(10)
+        }
+    }
+
+    companion object {
+        private const val TIMEOUT_MS = 10000L
+    }
+}
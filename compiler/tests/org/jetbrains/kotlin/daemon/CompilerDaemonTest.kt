@@ -284,6 +284,36 @@ class CompilerDaemonTest : KotlinIntegrationTestBase() {
         }
     }
 
+    fun testDaemonMetrics() {
+        withFlagFile(getTestName(true), ".alive") { flagFile ->
+            val metricsFile = File(testTempDir, "daemon-metrics.json")
+            val daemonOptions = makeTestDaemonOptions(getTestName(true)).apply { this.metricsFile = metricsFile.absolutePath }
+            val daemonJVMOptions = makeTestDaemonJvmOptions()
+
+            val jar = testTempDir.absolutePath + File.separator + "hello.jar"
+            // the compiler instance is reused by the daemon, the phases of each compilation should be recorded once
+            repeat(2) {
+                val res = compileOnDaemon(flagFile, compilerId, daemonJVMOptions, daemonOptions, "-include-runtime", File(getHelloAppBaseDir(), "hello.kt").absolutePath, "-d", jar)
+                assertEquals("compilation failed:\n${res.out}", 0, res.resultCode)
+            }
+
+            val daemon = KotlinCompilerClient.connectToCompileService(compilerId, flagFile, daemonJVMOptions, daemonOptions, DaemonReportingTargets(out = System.err), autostart = false)
+            assertNotNull("failed to connect daemon", daemon)
+            val metrics = daemon!!.getDaemonMetrics().get()
+            assertEquals(2L, metrics.compilations.count)
+            assertEquals(0L, metrics.compilationExceptions)
+            // phase times are recorded without perf reporting
+            assertEquals("expecting initialization time in $metrics", 2L, metrics.compilerPhases["INIT"]?.count)
+            assertEquals("expecting analysis time in $metrics", 2L, metrics.compilerPhases["ANALYZE"]?.count)
+            assertTrue("expecting used heap in $metrics", metrics.heap.usedBytes > 0)
+
+            KotlinCompilerClient.shutdownCompileService(compilerId, daemonOptions)
+            Thread.sleep(100)
+
+            assertTrue("expecting metrics in '${metricsFile.absolutePath}'", metricsFile.readText().contains("\"compilations\": {\"count\": 2,"))
+        }
+    }
+
     fun testDaemonRunError() {
         withFlagFile(getTestName(true), ".alive") { flagFile ->
             val daemonOptions = DaemonOptions(shutdownDelayMilliseconds = 1, verbose = true, runFilesPath = File(testTempDir, getTestName(true)).absolutePath)
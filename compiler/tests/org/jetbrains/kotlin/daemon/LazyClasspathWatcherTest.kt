@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import com.intellij.openapi.util.io.FileUtil
+import junit.framework.TestCase
+import java.io.File
+
+class LazyClasspathWatcherTest : TestCase() {
+    private lateinit var workingDir: File
+
+    override fun setUp() {
+        super.setUp()
+        workingDir = FileUtil.createTempDirectory("classpathWatcher", null)
+    }
+
+    override fun tearDown() {
+        FileUtil.delete(workingDir)
+        super.tearDown()
+    }
+
+    fun testChangeWithWatchService() {
+        doTestChange(useWatchService = true)
+    }
+
+    fun testChangeWithPolling() {
+        doTestChange(useWatchService = false)
+    }
+
+    fun testTouchedFileIsDigestedOnce() {
+        val jar = File(workingDir, "lib.jar").apply { writeText("a") }
+        val watcher = createWatcher(useWatchService = false)
+        assertFalse(watcher.isChanged)
+
+        jar.setLastModified(jar.lastModified() + 2000)
+        assertFalse(watcher.isChanged)
+        assertFalse(watcher.isChanged)
+        assertEquals(1, watcher.computedDigests.get())
+    }
+
+    fun testChangeStaysReported() {
+        val jar = File(workingDir, "lib.jar").apply { writeText("a") }
+        val watcher = createWatcher(useWatchService = true)
+        assertFalse(watcher.isChanged)
+
+        jar.writeText("c")
+        jar.setLastModified(jar.lastModified() + 2000)
+        assertTrue(waitForChange(watcher))
+        // the events of the watch service are consumed by the first check
+        repeat(5) {
+            assertTrue(watcher.isChanged)
+        }
+    }
+
+    fun testPeriodicDigestCheckWithWatchService() {
+        val jar = File(workingDir, "lib.jar").apply { writeText("a") }
+        val watcher = LazyClasspathWatcher(listOf(workingDir.path), checkPeriod = 0, digestCheckPeriod = 0, useWatchService = true)
+        assertFalse(watcher.isChanged)
+
+        // the change is not reported by the watch service after it is closed, but is found by the digest check
+        watcher.close()
+        val lastModified = jar.lastModified()
+        jar.writeText("b")
+        jar.setLastModified(lastModified)
+        Thread.sleep(10)
+        assertTrue(watcher.isChanged)
+        assertTrue(watcher.isChanged)
+    }
+
+    fun testPeriodicCheckWithWatchServiceUsesTimestamps() {
+        File(workingDir, "lib.jar").writeText("a")
+        File(workingDir, "other.jar").writeText("b")
+        val watcher = LazyClasspathWatcher(listOf(workingDir.path), checkPeriod = 0, digestCheckPeriod = 0, useWatchService = true)
+        assertFalse(watcher.isChanged)
+        if (!watcher.isWatchingForEvents) return
+
+        val skippedBefore = watcher.skippedDigests.get()
+        repeat(3) {
+            Thread.sleep(10)
+            assertFalse(watcher.isChanged)
+        }
+        assertEquals(0, watcher.computedDigests.get())
+        // both files are skipped once per periodic check
+        assertEquals(skippedBefore + 2 * 3, watcher.skippedDigests.get())
+    }
+
+    fun testDigestsAreNotSkippedBetweenPeriodicChecks() {
+        File(workingDir, "lib.jar").writeText("a")
+        File(workingDir, "other.jar").writeText("b")
+        val watcher = createWatcher(useWatchService = true)
+        repeat(5) {
+            assertFalse(watcher.isChanged)
+        }
+        assertEquals(0, watcher.skippedDigests.get())
+    }
+
+    fun testClose() {
+        File(workingDir, "lib.jar").writeText("a")
+        val watcher = createWatcher(useWatchService = true)
+        assertFalse(watcher.isChanged)
+        watcher.close()
+        assertFalse(watcher.isWatchingForEvents)
+        assertFalse(watcher.isChanged)
+    }
+
+    private fun doTestChange(useWatchService: Boolean) {
+        val jar = File(workingDir, "lib.jar").apply { writeText("a") }
+        File(workingDir, "other.jar").writeText("b")
+        val watcher = createWatcher(useWatchService)
+        assertFalse(watcher.isChanged)
+
+        jar.writeText("c")
+        jar.setLastModified(jar.lastModified() + 2000)
+        assertTrue(waitForChange(watcher))
+    }
+
+    private fun createWatcher(useWatchService: Boolean) =
+        LazyClasspathWatcher(
+            listOf(workingDir.path), checkPeriod = 0, digestCheckPeriod = Long.MAX_VALUE, useWatchService = useWatchService
+        )
+
+    // Events of the watch service are delivered asynchronously
+    private fun waitForChange(watcher: LazyClasspathWatcher): Boolean {
+        repeat(50) {
+            if (watcher.isChanged) return true
+            Thread.sleep(100)
+        }
+        return false
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.ir
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.backend.common.CommonBackendContext
+import org.jetbrains.kotlin.backend.common.phaser.PhaseProfiler
+import org.jetbrains.kotlin.backend.common.phaser.namedOpUnitPhase
+import org.jetbrains.kotlin.ir.expressions.impl.IrBlockBodyImpl
+
+class PhaseProfilerTest : TestCase() {
+    private val outer = namedOpUnitPhase<CommonBackendContext>("Outer", "Outer phase", emptySet()) {}
+    private val inner = namedOpUnitPhase<CommonBackendContext>("Inner", "Inner \"quoted\" phase", emptySet()) {}
+    private val notInvoked = namedOpUnitPhase<CommonBackendContext>("NotInvoked", "Phase which is not invoked", emptySet()) {}
+
+    private val phases = listOf(0 to outer, 1 to inner, 1 to notInvoked)
+
+    fun testJson() {
+        val profiler = profile(countIrElements = false)
+        assertEquals(
+            """
+                {"phases": [
+                  {"name": "Outer", "description": "Outer phase", "depth": 0, "invocations": 1, "wallMillis": N, "maxWallMillis": N, "cpuMillis": N, "allocatedBytes": N},
+                  {"name": "Inner", "description": "Inner \"quoted\" phase", "depth": 1, "invocations": 2, "wallMillis": N, "maxWallMillis": N, "cpuMillis": N, "allocatedBytes": N}
+                ]}
+            """.trimIndent() + "\n",
+            profiler.toJson(phases).normalize()
+        )
+    }
+
+    fun testJsonWithIrElements() {
+        val profiler = profile(countIrElements = true)
+        assertEquals(
+            """
+                {"phases": [
+                  {"name": "Outer", "description": "Outer phase", "depth": 0, "invocations": 1, "wallMillis": N, "maxWallMillis": N, "cpuMillis": N, "allocatedBytes": N, "irElementsBefore": 1, "irElementsAfter": 1},
+                  {"name": "Inner", "description": "Inner \"quoted\" phase", "depth": 1, "invocations": 2, "wallMillis": N, "maxWallMillis": N, "cpuMillis": N, "allocatedBytes": N, "irElementsBefore": 2, "irElementsAfter": 0}
+                ]}
+            """.trimIndent() + "\n",
+            profiler.toJson(phases).normalize()
+        )
+    }
+
+    fun testTrace() {
+        val profiler = profile(countIrElements = false)
+        assertEquals(
+            """
+                {"displayTimeUnit": "ms", "traceEvents": [
+                  {"name": "Outer", "cat": "phase", "ph": "X", "pid": 1, "tid": N, "ts": N, "dur": N, "args": {"cpuMillis": N, "allocatedBytes": N}},
+                  {"name": "Inner", "cat": "phase", "ph": "X", "pid": 1, "tid": N, "ts": N, "dur": N, "args": {"cpuMillis": N, "allocatedBytes": N}},
+                  {"name": "Inner", "cat": "phase", "ph": "X", "pid": 1, "tid": N, "ts": N, "dur": N, "args": {"cpuMillis": N, "allocatedBytes": N}}
+                ]}
+            """.trimIndent() + "\n",
+            profiler.toTrace().normalize()
+        )
+    }
+
+    fun testTraceWithIrElements() {
+        val profiler = profile(countIrElements = true)
+        assertEquals(
+            """
+                {"displayTimeUnit": "ms", "traceEvents": [
+                  {"name": "Outer", "cat": "phase", "ph": "X", "pid": 1, "tid": N, "ts": N, "dur": N, "args": {"cpuMillis": N, "allocatedBytes": N, "irElementsBefore": 1, "irElementsAfter": 1}},
+                  {"name": "Inner", "cat": "phase", "ph": "X", "pid": 1, "tid": N, "ts": N, "dur": N, "args": {"cpuMillis": N, "allocatedBytes": N, "irElementsBefore": 1, "irElementsAfter": -1}},
+                  {"name": "Inner", "cat": "phase", "ph": "X", "pid": 1, "tid": N, "ts": N, "dur": N, "args": {"cpuMillis": N, "allocatedBytes": N, "irElementsBefore": 1, "irElementsAfter": -1}}
+                ]}
+            """.trimIndent() + "\n",
+            profiler.toTrace().normalize()
+        )
+    }
+
+    // The inner phase is invoked twice on IR and returns data which is not IR, which is not counted (-1 in the trace)
+    private fun profile(countIrElements: Boolean): PhaseProfiler {
+        val profiler = PhaseProfiler(printPhases = false, countIrElements = countIrElements)
+        val body = IrBlockBodyImpl(0, 0)
+        profiler.profile(outer, 0, body) {
+            repeat(2) {
+                profiler.profile(inner, 1, body) { Thread.sleep(1) }
+            }
+            body
+        }
+        return profiler
+    }
+
+    // Measurements differ between runs
+    private fun String.normalize(): String =
+        replace(Regex("(\"(wallMillis|maxWallMillis|cpuMillis|allocatedBytes|tid|ts|dur)\": )\\d+"), "$1N")
+}
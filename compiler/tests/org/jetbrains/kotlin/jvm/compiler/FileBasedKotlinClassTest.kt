@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.jvm.compiler
+
+import org.jetbrains.kotlin.codegen.CodegenTestCase
+import org.jetbrains.kotlin.descriptors.SourceElement
+import org.jetbrains.kotlin.load.kotlin.FileBasedKotlinClass
+import org.jetbrains.kotlin.load.kotlin.KotlinJvmBinaryClass
+import org.jetbrains.kotlin.load.kotlin.KotlinJvmBinaryClass.*
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.constants.ClassLiteralValue
+import org.jetbrains.kotlin.test.ConfigurationKind
+import java.util.*
+
+// Annotations and constants recorded by FileBasedKotlinClass.create are the same as the ones read from the class file
+class FileBasedKotlinClassTest : CodegenTestCase() {
+    fun testRecordedAnnotationsAndConstants() {
+        createEnvironmentWithMockJdkAndIdeaAnnotations(ConfigurationKind.ALL)
+        loadText(
+            """
+                package test
+
+                import kotlin.reflect.KClass
+
+                enum class Color { RED, GREEN }
+
+                annotation class Nested(val value: String)
+
+                annotation class Rich(
+                    val i: Int, val s: String, val color: Color, val nested: Nested, val strings: Array<String>, val ints: IntArray,
+                    val klass: KClass<*>, val classes: Array<KClass<*>>, val colors: Array<Color>, val nestedArray: Array<Nested>
+                )
+
+                @Rich(
+                    1, "a", Color.RED, Nested("n"), ["x", "y"], [1, 2], String::class, [IntArray::class, Array<String>::class, A.Inner::class],
+                    [Color.GREEN], [Nested("1"), Nested("2")]
+                )
+                class A @Nested("constructor") constructor(@Nested("property") val p: Int) {
+                    @field:Nested("field")
+                    val f = 1
+
+                    val notAnnotated = ""
+
+                    @Nested("method")
+                    fun m(@Nested("first") x: String, y: Int, @Nested("last") vararg z: Long) {}
+
+                    inner class Inner(@Nested("inner") val q: Int)
+
+                    companion object {
+                        const val C = "const"
+                        const val L = 42L
+                        @JvmStatic
+                        fun s(@Nested("static") a: Any) {}
+                    }
+                }
+
+                const val TOP = 3.0
+
+                @Deprecated("d")
+                fun top(@Nested("lambda") f: (Int) -> Unit) {}
+            """.trimIndent()
+        )
+
+        val classFiles = generateClassesInFile().asList().filter { it.relativePath.endsWith(".class") }
+        assertTrue(classFiles.size > 5)
+        for (classFile in classFiles) {
+            val bytes = classFile.asByteArray()
+            var read: KotlinJvmBinaryClass? = null
+            val recorded = FileBasedKotlinClass.create(bytes) { classId, classVersion, header, innerClasses ->
+                read = TestKotlinClass(bytes, classId, classVersion, header, innerClasses)
+                TestKotlinClass(bytes, classId, classVersion, header, innerClasses)
+            } ?: continue
+
+            val expected = render(read!!)
+            assertEquals(classFile.relativePath, expected, render(recorded))
+            // the recorded data is dropped after it is replayed, and the class file is read again
+            assertEquals(classFile.relativePath, expected, render(recorded))
+        }
+    }
+
+    private class TestKotlinClass(
+        private val bytes: ByteArray,
+        classId: ClassId,
+        classVersion: Int,
+        header: KotlinClassHeader,
+        innerClasses: InnerClassesInfo
+    ) : FileBasedKotlinClass(classId, classVersion, header, innerClasses) {
+        override fun getFileContents(): ByteArray = bytes
+
+        override val location: String get() = classId.asString()
+
+        override fun hashCode(): Int = classId.hashCode()
+
+        override fun equals(other: Any?): Boolean = other is TestKotlinClass && other.classId == classId
+
+        override fun toString(): String = location
+    }
+
+    private fun render(kotlinClass: KotlinJvmBinaryClass): String = buildString {
+        kotlinClass.loadClassAnnotations(AnnotationRenderer(this, "class"), null)
+        kotlinClass.visitMembers(object : MemberVisitor {
+            // Members without annotations and constant initializers are not visited in the recorded data, and are not rendered
+            override fun visitField(name: Name, desc: String, initializer: Any?): AnnotationVisitor =
+                AnnotationRenderer(this@buildString, "field $name $desc = $initializer", isEmpty = initializer == null)
+
+            override fun visitMethod(name: Name, desc: String): MethodAnnotationVisitor =
+                AnnotationRenderer(this@buildString, "method $name$desc")
+        }, null)
+    }
+
+    private class AnnotationRenderer(
+        private val output: StringBuilder,
+        private val header: String,
+        private var isEmpty: Boolean = true
+    ) : MethodAnnotationVisitor {
+        private val member = StringBuilder()
+
+        override fun visitAnnotation(classId: ClassId, source: SourceElement): AnnotationArgumentVisitor? =
+            ArgumentRenderer(member, "  @$classId")
+
+        override fun visitParameterAnnotation(index: Int, classId: ClassId, source: SourceElement): AnnotationArgumentVisitor? =
+            ArgumentRenderer(member, "  parameter $index @$classId")
+
+        override fun visitEnd() {
+            if (member.isNotEmpty()) isEmpty = false
+            if (!isEmpty) {
+                output.append(header).append("\n").append(member)
+            }
+        }
+    }
+
+    private class ArgumentRenderer(private val output: StringBuilder, header: String) : AnnotationArgumentVisitor {
+        init {
+            output.append(header).append("\n")
+        }
+
+        private val indent = header.takeWhile { it == ' ' } + "  "
+
+        override fun visit(name: Name?, value: Any?) {
+            output.append(indent).append("$name = ").append(Arrays.deepToString(arrayOf(value))).append("\n")
+        }
+
+        override fun visitClassLiteral(name: Name, value: ClassLiteralValue) {
+            output.append(indent).append("$name = $value::class\n")
+        }
+
+        override fun visitEnum(name: Name, enumClassId: ClassId, enumEntryName: Name) {
+            output.append(indent).append("$name = $enumClassId.$enumEntryName\n")
+        }
+
+        override fun visitAnnotation(name: Name, classId: ClassId): AnnotationArgumentVisitor? =
+            ArgumentRenderer(output, "$indent$name = @$classId")
+
+        override fun visitArray(name: Name): AnnotationArrayArgumentVisitor? {
+            output.append(indent).append("$name = [\n")
+            return object : AnnotationArrayArgumentVisitor {
+                override fun visit(value: Any?) {
+                    output.append(indent).append("  ").append(Arrays.deepToString(arrayOf(value))).append("\n")
+                }
+
+                override fun visitEnum(enumClassId: ClassId, enumEntryName: Name) {
+                    output.append(indent).append("  $enumClassId.$enumEntryName\n")
+                }
+
+                override fun visitClassLiteral(value: ClassLiteralValue) {
+                    output.append(indent).append("  $value::class\n")
+                }
+
+                override fun visitEnd() {
+                    output.append(indent).append("]\n")
+                }
+            }
+        }
+
+        override fun visitEnd() {}
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.library.impl
+
+import org.jetbrains.kotlin.library.TopLevelDeclaration
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import org.jetbrains.kotlin.konan.file.File as KFile
+
+class IrFileReadersTest : TestCaseWithTmpdir() {
+    // contents of the entries differ in size and bytes, so that misplaced reads are noticed
+    private fun entry(row: Int, column: Int): ByteArray = ByteArray((row * 7 + column * 3) % 50) { (row * 31 + column * 17 + it).toByte() }
+
+    fun testArrayReader() {
+        val path = tmpdir.resolve("array.knd").path
+        IrArrayWriter((0 until ROWS).map { entry(it, 0) }).writeIntoFile(path)
+        val reader = IrArrayReader(KFile(path))
+
+        assertEquals(ROWS, reader.entryCount())
+        readConcurrently { row, _ -> assertBytes(entry(row, 0), reader.tableItemBytes(row)) }
+    }
+
+    fun testMultiArrayReader() {
+        val path = tmpdir.resolve("multiArray.knd").path
+        IrArrayWriter((0 until ROWS).map { row ->
+            IrMemoryArrayWriter((0 until COLUMNS).map { entry(row, it) }).writeIntoMemory()
+        }).writeIntoFile(path)
+        val reader = IrMultiArrayReader(KFile(path))
+
+        readConcurrently { row, column -> assertBytes(entry(row, column), reader.tableItemBytes(row, column)) }
+        // a row is available as a whole as well
+        assertBytes(IrMemoryArrayWriter((0 until COLUMNS).map { entry(1, it) }).writeIntoMemory(), reader.tableItemBytes(1))
+    }
+
+    fun testMultiTableReader() {
+        val path = tmpdir.resolve("multiTable.knd").path
+        IrArrayWriter((0 until ROWS).map { row ->
+            val declarations = (0 until COLUMNS).map { TopLevelDeclaration(declarationId(row, it), false, "d$it", entry(row, it)) }
+            IrMemoryDeclarationWriter(declarations).writeIntoMemory()
+        }).writeIntoFile(path)
+        val reader = DeclarationIrMultiTableReader(KFile(path))
+
+        readConcurrently { row, column ->
+            assertBytes(entry(row, column), reader.tableItemBytes(row, DeclarationId(declarationId(row, column))))
+        }
+    }
+
+    private fun declarationId(row: Int, column: Int): Long = row.toLong() shl 32 or column.toLong()
+
+    // every thread reads all entries in its own order, so that the lazily read row indices are read by several threads at once
+    private fun readConcurrently(read: (row: Int, column: Int) -> Unit) {
+        val executor = Executors.newFixedThreadPool(THREADS)
+        try {
+            val tasks = (0 until THREADS).map { thread ->
+                Callable {
+                    repeat(ROWS * COLUMNS) {
+                        val index = (it * (2 * thread + 1) + thread) % (ROWS * COLUMNS)
+                        read(index / COLUMNS, index % COLUMNS)
+                    }
+                }
+            }
+            executor.invokeAll(tasks, 1, TimeUnit.MINUTES).forEach { it.get() }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun assertBytes(expected: ByteArray, actual: ByteArray) {
+        assertEquals(expected.toList(), actual.toList())
+    }
+
+    companion object {
+        private const val ROWS = 100
+        private const val COLUMNS = 10
+        private const val THREADS = 8
+    }
+}
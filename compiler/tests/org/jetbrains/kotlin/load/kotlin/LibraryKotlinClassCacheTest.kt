@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.load.kotlin
+
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.impl.jar.CoreJarFileSystem
+import com.intellij.util.io.URLUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.io.FileOutputStream
+import java.lang.reflect.Proxy
+import java.util.jar.JarOutputStream
+import java.util.zip.ZipEntry
+
+class LibraryKotlinClassCacheTest : TestCaseWithTmpdir() {
+    private val fileSystem = CoreJarFileSystem()
+    private var computed = 0
+
+    override fun setUp() {
+        super.setUp()
+        LibraryKotlinClassCache.disable()
+    }
+
+    override fun tearDown() {
+        LibraryKotlinClassCache.disable()
+        super.tearDown()
+    }
+
+    fun testHitsAndMisses() {
+        LibraryKotlinClassCache.enable(100)
+        val file = classFile(createJar("lib.jar"), "a/A.class")
+
+        val result = get(file)
+        assertSame(result, get(file))
+        assertEquals(1, computed)
+        assertStatistics(hits = 1, misses = 1, jars = 1, classes = 1)
+    }
+
+    fun testNonKotlinClassesAreNotCounted() {
+        LibraryKotlinClassCache.enable(100)
+        val jar = createJar("lib.jar")
+        val javaClass = classFile(jar, "a/A.class")
+        val notClass = classFile(jar, "a/B.class")
+
+        repeat(2) {
+            LibraryKotlinClassCache.getOrCompute(javaClass) { computed++; KotlinClassFinder.Result.ClassFileContent(ByteArray(0)) }
+            LibraryKotlinClassCache.getOrCompute(notClass) { computed++; null }
+        }
+
+        // the results are computed each time, and not counted as misses
+        assertEquals(4, computed)
+        assertStatistics(hits = 0, misses = 0, jars = 1, classes = 0)
+    }
+
+    fun testLeastRecentlyUsedJarIsEvicted() {
+        LibraryKotlinClassCache.enable(3)
+        val files = (1..4).map { classFile(createJar("lib$it.jar"), "a/A.class") }
+
+        val firstResult = get(files[0])
+        get(files[1])
+        get(files[2])
+        // the first jar becomes the most recently used one
+        assertSame(firstResult, get(files[0]))
+
+        get(files[3])
+        assertStatistics(hits = 1, misses = 4, evictions = 1, jars = 3, classes = 3)
+
+        computed = 0
+        assertSame(firstResult, get(files[0]))
+        assertEquals(0, computed)
+        get(files[1])
+        assertEquals(1, computed)
+    }
+
+    fun testChangedJarIsReloadedInNextCompilation() {
+        LibraryKotlinClassCache.enable(100)
+        val jar = createJar("lib.jar")
+        val file = classFile(jar, "a/A.class")
+
+        LibraryKotlinClassCache.compilationStarted()
+        val result = get(file)
+
+        createJar("lib.jar", "a/A.class", "a/B.class")
+        jar.setLastModified(jar.lastModified() + 2000)
+
+        // jars are checked once per compilation
+        assertSame(result, get(file))
+
+        LibraryKotlinClassCache.compilationStarted()
+        assertNotSame(result, get(file))
+        assertEquals(2, computed)
+
+        // an unchanged jar is kept in the next compilation
+        LibraryKotlinClassCache.compilationStarted()
+        get(file)
+        assertEquals(2, computed)
+        assertStatistics(hits = 2, misses = 2, jars = 1, classes = 1)
+    }
+
+    fun testClear() {
+        LibraryKotlinClassCache.enable(100)
+        val file = classFile(createJar("lib.jar"), "a/A.class")
+
+        val result = get(file)
+        LibraryKotlinClassCache.clear()
+        assertStatistics(hits = 0, misses = 1, jars = 0, classes = 0)
+
+        assertNotSame(result, get(file))
+        assertEquals(2, computed)
+    }
+
+    fun testDisabled() {
+        val file = classFile(createJar("lib.jar"), "a/A.class")
+        get(file)
+        get(file)
+        assertEquals(2, computed)
+        assertStatistics(hits = 0, misses = 0, jars = 0, classes = 0)
+    }
+
+    private fun get(file: VirtualFile): KotlinClassFinder.Result? =
+        LibraryKotlinClassCache.getOrCompute(file) {
+            computed++
+            KotlinClassFinder.Result.KotlinClass(createBinaryClass())
+        }
+
+    private fun assertStatistics(hits: Long, misses: Long, evictions: Long = 0, jars: Int, classes: Int) {
+        val statistics = LibraryKotlinClassCache.statistics
+        assertEquals(
+            "hits=$hits misses=$misses evictions=$evictions jars=$jars classes=$classes",
+            "hits=${statistics.hits} misses=${statistics.misses} evictions=${statistics.evictions} " +
+                    "jars=${statistics.jars} classes=${statistics.classes}"
+        )
+    }
+
+    private fun createBinaryClass(): KotlinJvmBinaryClass =
+        Proxy.newProxyInstance(javaClass.classLoader, arrayOf(KotlinJvmBinaryClass::class.java)) { proxy, method, args ->
+            when (method.name) {
+                "equals" -> proxy === args[0]
+                "hashCode" -> System.identityHashCode(proxy)
+                "toString" -> "KotlinJvmBinaryClass@" + System.identityHashCode(proxy)
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as KotlinJvmBinaryClass
+
+    private fun classFile(jar: File, entry: String): VirtualFile =
+        fileSystem.findFileByPath(jar.path + URLUtil.JAR_SEPARATOR + entry)!!
+
+    private fun createJar(name: String, vararg entries: String = arrayOf("a/A.class", "a/B.class")): File {
+        val jar = File(tmpdir, name)
+        JarOutputStream(FileOutputStream(jar)).use { output ->
+            for (entry in entries) {
+                output.putNextEntry(ZipEntry(entry))
+                output.closeEntry()
+            }
+        }
+        return jar
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.serialization
+
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.descriptors.ModuleDescriptor
+import org.jetbrains.kotlin.descriptors.findClassAcrossModuleDependencies
+import org.jetbrains.kotlin.incremental.components.NoLookupLocation
+import org.jetbrains.kotlin.jvm.compiler.LoadDescriptorUtil
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.resolve.lazy.JvmResolveUtil
+import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedClassDescriptor
+import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedMemberScope
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import org.jetbrains.kotlin.test.TestJdkKind
+import java.io.File
+
+class DeserializedMemberScopeTest : TestCaseWithTmpdir() {
+    private lateinit var scope: MemberScope
+
+    override fun setUp() {
+        super.setUp()
+        // "Aa" and "BB", as well as "AaAa", "AaBB", "BBAa" and "BBBB", have the same hash codes
+        val source = """
+            package test
+
+            class Foo {
+                fun Aa() {}
+                fun Aa(x: Int) {}
+                fun BB() {}
+                fun AaAa() {}
+                fun BBBB(x: String) {}
+                val BBBB: Int get() = 0
+                val zeta: Int = 0
+                var alpha: String = ""
+                ${(0 until FUNCTIONS).joinToString("\n") { "fun f$it() {}" }}
+            }
+        """.trimIndent()
+        val sourceFile = File(tmpdir, "foo.kt").apply { writeText(source) }
+        val outputDir = File(tmpdir, "out")
+        LoadDescriptorUtil.compileKotlinToDirAndGetModule(listOf(sourceFile), outputDir, createEnvironment(outputDir))
+
+        val module = loadModule(outputDir)
+        val foo = module.findClassAcrossModuleDependencies(ClassId(FqName("test"), Name.identifier("Foo")))
+        assertTrue(foo is DeserializedClassDescriptor)
+        scope = foo!!.unsubstitutedMemberScope
+        assertTrue(scope is DeserializedMemberScope)
+    }
+
+    fun testCollidingHashes() {
+        assertEquals(Name.identifier("Aa").hashCode(), Name.identifier("BB").hashCode())
+        assertEquals(Name.identifier("AaAa").hashCode(), Name.identifier("AaBB").hashCode())
+
+        assertEquals(listOf("Aa()", "Aa(Int)"), functions("Aa"))
+        assertEquals(listOf("BB()"), functions("BB"))
+        assertEquals(listOf("AaAa()"), functions("AaAa"))
+        assertEquals(listOf("BBBB(String)"), functions("BBBB"))
+        assertEquals(1, scope.getContributedVariables(Name.identifier("BBBB"), NoLookupLocation.FROM_TEST).size)
+
+        // names with the hash codes of declared members, which are not declared
+        for (absent in listOf("AaBB", "BBAa")) {
+            assertFalse(Name.identifier(absent) in scope.getFunctionNames())
+            assertEquals(emptyList<String>(), functions(absent))
+        }
+        assertTrue(scope.getContributedVariables(Name.identifier("AaAa"), NoLookupLocation.FROM_TEST).isEmpty())
+    }
+
+    fun testNames() {
+        val functionNames = scope.getFunctionNames().map { it.asString() }
+        assertTrue(functionNames.containsAll(listOf("Aa", "BB", "AaAa", "BBBB", "f0", "f${FUNCTIONS - 1}")))
+        // functions of supertypes are included
+        assertTrue("toString" in functionNames)
+        assertFalse("zeta" in functionNames)
+
+        assertEquals(setOf("BBBB", "zeta", "alpha"), scope.getVariableNames().map { it.asString() }.toSet())
+        assertEquals(listOf("alpha"), scope.getContributedVariables(Name.identifier("alpha"), NoLookupLocation.FROM_TEST).map { it.name.asString() })
+        assertTrue(functions("absent").isEmpty())
+    }
+
+    fun testNoFalseNegativesInNameFilter() {
+        for (name in scope.getFunctionNames() + scope.getVariableNames()) {
+            assertFalse("$name is filtered out", scope.definitelyDoesNotContainName(name))
+            assertFalse("$name is not found", scope.getContributedFunctions(name, NoLookupLocation.FROM_TEST).isEmpty() &&
+                    scope.getContributedVariables(name, NoLookupLocation.FROM_TEST).isEmpty())
+        }
+
+        val falsePositives = (0 until 10000).count { !scope.definitelyDoesNotContainName(Name.identifier("g$it")) }
+        assertTrue("$falsePositives false positives out of 10000", falsePositives < 1000)
+    }
+
+    private fun functions(name: String): List<String> =
+        scope.getContributedFunctions(Name.identifier(name), NoLookupLocation.FROM_TEST).map { function ->
+            function.name.asString() + function.valueParameters.joinToString(prefix = "(", postfix = ")") { it.type.toString() }
+        }.sorted()
+
+    private fun createEnvironment(classpath: File): KotlinCoreEnvironment =
+        KotlinCoreEnvironment.createForTests(
+            testRootDisposable,
+            KotlinTestUtils.newConfiguration(ConfigurationKind.ALL, TestJdkKind.MOCK_JDK, classpath),
+            EnvironmentConfigFiles.JVM_CONFIG_FILES
+        )
+
+    private fun loadModule(directory: File): ModuleDescriptor = JvmResolveUtil.analyze(createEnvironment(directory)).moduleDescriptor
+
+    companion object {
+        private const val FUNCTIONS = 200
+    }
+}
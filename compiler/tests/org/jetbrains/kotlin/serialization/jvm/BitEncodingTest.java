@@ -19,10 +19,13 @@ package org.jetbrains.kotlin.serialization.jvm;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.test.testFramework.KtUsefulTestCase;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import static org.jetbrains.kotlin.metadata.jvm.deserialization.BitEncoding.decodeBytes;
+import static org.jetbrains.kotlin.metadata.jvm.deserialization.BitEncoding.decodeUtf8BytesTo;
 import static org.jetbrains.kotlin.metadata.jvm.deserialization.BitEncoding.encodeBytes;
+import static org.jetbrains.kotlin.metadata.jvm.deserialization.BitEncoding.getUtf8DecodedLength;
 import static org.junit.Assert.assertArrayEquals;
 
 public class BitEncodingTest extends KtUsefulTestCase {
@@ -48,6 +51,14 @@ public class BitEncodingTest extends KtUsefulTestCase {
         byte[] e = decodeBytes(d);
         assertArrayEquals(message, a, e);
 
+        int decodedLength = getUtf8DecodedLength(b);
+        if (decodedLength >= 0) {
+            assertEquals(message, length, decodedLength);
+            // The buffer may be larger than the decoded data
+            byte[] buffer = new byte[decodedLength + 1];
+            decodeUtf8BytesTo(b, buffer);
+            assertArrayEquals(message, a, Arrays.copyOf(buffer, decodedLength));
+        }
     }
 
     private static void assertStringConformsToJVMS(@NotNull String string) {
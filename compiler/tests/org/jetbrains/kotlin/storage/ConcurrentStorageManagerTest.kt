@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ConcurrentStorageManagerTest : StorageManagerTest() {
+    override fun createStorageManager(): StorageManager = ConcurrentStorageManager("ConcurrentStorageManagerTest")
+
+    fun testConcurrentFunctionComputesOnce() {
+        val storageManager = createStorageManager()
+        val computations = AtomicInteger()
+        val function = storageManager.createMemoizedFunction { key: Int ->
+            computations.incrementAndGet()
+            Thread.sleep(1)
+            key.toString()
+        }
+
+        val executor = Executors.newFixedThreadPool(THREADS)
+        try {
+            val results = (0 until THREADS).map {
+                executor.submit<List<String>> { (0 until KEYS).map(function) }
+            }
+            for (result in results) {
+                assertEquals((0 until KEYS).map(Int::toString), result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+
+        assertEquals(KEYS, computations.get())
+    }
+
+    fun testConcurrentLazyValueComputesOnce() {
+        val storageManager = createStorageManager()
+        val computations = AtomicInteger()
+        val value = storageManager.createLazyValue {
+            computations.incrementAndGet()
+            Thread.sleep(10)
+            "value"
+        }
+
+        val executor = Executors.newFixedThreadPool(THREADS)
+        try {
+            val results = (0 until THREADS).map { executor.submit<String> { value() } }
+            for (result in results) {
+                assertEquals("value", result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+
+        assertEquals(1, computations.get())
+    }
+
+    fun testRecursionAcrossThreads() {
+        val storageManager = createStorageManager()
+        val bothStarted = CountDownLatch(2)
+
+        lateinit var b: NotNullLazyValue<String>
+        val a = storageManager.createLazyValue {
+            bothStarted.countDown()
+            bothStarted.await()
+            b()
+        }
+        b = storageManager.createLazyValue {
+            bothStarted.countDown()
+            bothStarted.await()
+            a()
+        }
+
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val results = listOf(executor.submit<String> { a() }, executor.submit<String> { b() })
+            for (result in results) {
+                try {
+                    result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    fail("Recursion should be detected")
+                } catch (e: ExecutionException) {
+                    assertTrue("Wrong exception: ${e.cause}", e.cause is IllegalStateException)
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    companion object {
+        private const val THREADS = 8
+        private const val KEYS = 100
+        private const val TIMEOUT_SECONDS = 30L
+    }
+}
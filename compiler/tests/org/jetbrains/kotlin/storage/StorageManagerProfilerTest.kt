@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage
+
+import junit.framework.TestCase
+
+class StorageManagerProfilerTest : TestCase() {
+    private val profiler = StorageManagerProfiler()
+
+    private val profiledStorageManager =
+        LockBasedStorageManager.createWithExceptionHandling("profiled", LockBasedStorageManager.ExceptionHandlingStrategy.THROW, profiler)
+
+    fun testOnlyStorageManagersWithProfilerAreProfiled() {
+        val profiledComputation = { "profiled" }
+        val otherComputation = { "other" }
+        val profiled = profiledStorageManager.createLazyValue(profiledComputation)
+        val other = LockBasedStorageManager("other").createLazyValue(otherComputation)
+        profiled()
+        profiled()
+        other()
+
+        assertEquals(
+            listOf("Lazy computation ${profiledComputation.javaClass.name}: 1 computations, self N ms, total N ms, lock wait N ms, recursion fallbacks 0"),
+            report()
+        )
+    }
+
+    fun testDerivedStorageManagerIsProfiled() {
+        val computation = { key: Int -> key.toString() }
+        val function = profiledStorageManager
+            .replaceExceptionHandling("derived", LockBasedStorageManager.ExceptionHandlingStrategy.THROW)
+            .createMemoizedFunction(computation)
+        for (key in listOf(1, 2, 3, 1)) {
+            function(key)
+        }
+
+        assertEquals(
+            listOf("Lazy computation ${computation.javaClass.name}: 3 computations, self N ms, total N ms, lock wait N ms, recursion fallbacks 0"),
+            report()
+        )
+    }
+
+    fun testSelfTimeExcludesNestedComputations() {
+        val innerComputation = { Thread.sleep(50) }
+        val inner = profiledStorageManager.createLazyValue(innerComputation)
+        val outerComputation = { inner() }
+        val outer = profiledStorageManager.createLazyValue(outerComputation)
+        outer()
+
+        val times = HashMap<String, Pair<Long, Long>>()
+        profiler.report(Int.MAX_VALUE) { line ->
+            val (name, self, total) = REPORT_LINE.matchEntire(line)!!.destructured
+            times[name] = self.toLong() to total.toLong()
+        }
+        val (innerSelf, innerTotal) = times.getValue(innerComputation.javaClass.name)
+        val (outerSelf, outerTotal) = times.getValue(outerComputation.javaClass.name)
+        assertTrue(innerSelf >= 50 && innerTotal == innerSelf)
+        assertTrue(outerTotal >= 50 && outerSelf < 50)
+    }
+
+    // Times differ between runs
+    private fun report(): List<String> {
+        val lines = ArrayList<String>()
+        profiler.report(Int.MAX_VALUE) { lines += it.replace(Regex("\\d+ ms"), "N ms") }
+        return lines
+    }
+
+    companion object {
+        private val REPORT_LINE = Regex("Lazy computation (.*): \\d+ computations, self (\\d+) ms, total (\\d+) ms, .*")
+    }
+}
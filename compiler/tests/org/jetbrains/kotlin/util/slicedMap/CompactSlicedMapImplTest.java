@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class CompactSlicedMapImplTest extends TestCase {
+    private final List<String> rewrites = new ArrayList<>();
+
+    // Keeps the old value if the new one is different, and records each rewrite to check that both maps process rewrites in the same way
+    private final RewritePolicy keepOldValue = new RewritePolicy() {
+        @Override
+        public <K> boolean rewriteProcessingNeeded(K key) {
+            return true;
+        }
+
+        @Override
+        public <K, V> boolean processRewrite(WritableSlice<K, V> slice, K key, V oldValue, V newValue) {
+            rewrites.add(slice + " " + key + ": " + oldValue + " -> " + newValue);
+            return oldValue.equals(newValue);
+        }
+    };
+
+    private final WritableSlice<String, Integer> dedicated = slice("DEDICATED", keepOldValue);
+    private final WritableSlice<String, Integer> otherDedicated = slice("OTHER_DEDICATED", RewritePolicy.DO_NOTHING);
+    private final WritableSlice<String, Integer> unusedDedicated = slice("UNUSED_DEDICATED", RewritePolicy.DO_NOTHING);
+    @SuppressWarnings("unchecked")
+    private final WritableSlice<String, Integer> dedicatedWithFurtherLookup =
+            Slices.<String, Integer>sliceBuilder().setFurtherLookupSlices(otherDedicated).setDebugName("DEDICATED_WITH_FURTHER_LOOKUP").build();
+    private final WritableSlice<String, Integer> regular = slice("REGULAR", keepOldValue);
+    private final WritableSlice<String, Boolean> collective = collectiveSlice("COLLECTIVE");
+
+    private final List<WritableSlice<String, ?>> allSlices =
+            Arrays.asList(dedicated, otherDedicated, unusedDedicated, dedicatedWithFurtherLookup, regular, collective);
+
+    private final List<String> keys = Arrays.asList("a", "b", "c", "d", "absent");
+
+    private SlicedMapImpl expected;
+    private CompactSlicedMapImpl actual;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        createMaps(false);
+    }
+
+    public void testPutAndGet() {
+        fill();
+        assertSameContents();
+        assertEquals(Integer.valueOf(1), actual.get(dedicated, "a"));
+        assertEquals(Integer.valueOf(20), actual.get(otherDedicated, "b"));
+        assertNull(actual.get(unusedDedicated, "a"));
+        assertEquals(Integer.valueOf(20), actual.get(dedicatedWithFurtherLookup, "b"));
+        assertEquals(Integer.valueOf(30), actual.get(dedicatedWithFurtherLookup, "c"));
+    }
+
+    public void testRewritePolicy() {
+        fill();
+        rewrites.clear();
+
+        put(dedicated, "a", 1);
+        put(dedicated, "a", 100);
+        put(regular, "a", 100);
+        put(otherDedicated, "b", 200);
+        assertSameContents();
+        assertEquals(Integer.valueOf(1), actual.get(dedicated, "a"));
+        assertEquals(Integer.valueOf(200), actual.get(otherDedicated, "b"));
+
+        // each rewrite is processed once by each of the maps, in the same order
+        assertEquals(
+                Arrays.asList(
+                        "DEDICATED a: 1 -> 1", "DEDICATED a: 1 -> 1",
+                        "DEDICATED a: 1 -> 100", "DEDICATED a: 1 -> 100",
+                        "REGULAR a: 10 -> 100", "REGULAR a: 10 -> 100"
+                ),
+                rewrites
+        );
+    }
+
+    public void testAlwaysAllowRewrite() {
+        createMaps(true);
+        fill();
+        rewrites.clear();
+
+        put(dedicated, "a", 100);
+        put(regular, "a", 100);
+        assertSameContents();
+        assertEquals(Integer.valueOf(100), actual.get(dedicated, "a"));
+        assertEquals(Collections.emptyList(), rewrites);
+    }
+
+    public void testForEachAndSliceContents() {
+        fill();
+        assertSameContents();
+        assertEquals(9, entries(actual).size());
+        assertEquals(3, actual.getSliceContents(dedicated).size());
+        assertTrue(actual.getSliceContents(unusedDedicated).isEmpty());
+    }
+
+    public void testClear() {
+        fill();
+        expected.clear();
+        actual.clear();
+        assertSameContents();
+        assertTrue(entries(actual).isEmpty());
+        assertNull(actual.get(dedicated, "a"));
+        assertTrue(actual.getSliceContents(dedicated).isEmpty());
+
+        // the map can be filled again after clearing, with no rewrites of the cleared values
+        rewrites.clear();
+        fill();
+        assertSameContents();
+        assertEquals(Collections.emptyList(), rewrites);
+    }
+
+    private void createMaps(boolean alwaysAllowRewrite) {
+        expected = new SlicedMapImpl(alwaysAllowRewrite);
+        actual = new CompactSlicedMapImpl(
+                alwaysAllowRewrite, Arrays.asList(dedicated, otherDedicated, unusedDedicated, dedicatedWithFurtherLookup)
+        );
+    }
+
+    private void fill() {
+        put(dedicated, "a", 1);
+        put(dedicated, "b", 2);
+        put(dedicated, "c", 3);
+        put(regular, "a", 10);
+        put(otherDedicated, "b", 20);
+        put(dedicatedWithFurtherLookup, "c", 30);
+        put(collective, "a", true);
+        put(collective, "d", true);
+        put(regular, "d", 40);
+    }
+
+    private <V> void put(WritableSlice<String, V> slice, String key, V value) {
+        expected.put(slice, key, value);
+        actual.put(slice, key, value);
+    }
+
+    private void assertSameContents() {
+        for (WritableSlice<String, ?> slice : allSlices) {
+            assertEquals(slice.toString(), expected.getSliceContents(slice), actual.getSliceContents(slice));
+            for (String key : keys) {
+                assertEquals(slice + " " + key, expected.get(slice, key), actual.get(slice, key));
+            }
+        }
+        assertEquals(expected.getKeys(collective), actual.getKeys(collective));
+        assertEquals(entries(expected), entries(actual));
+    }
+
+    private static Set<String> entries(MutableSlicedMap map) {
+        Set<String> result = new HashSet<>();
+        map.forEach((slice, key, value) -> {
+            assertTrue("duplicate entry " + slice + " " + key, result.add(slice + " " + key + " = " + value));
+            return null;
+        });
+        return result;
+    }
+
+    private static <K, V> WritableSlice<K, V> slice(String debugName, RewritePolicy rewritePolicy) {
+        BasicWritableSlice<K, V> slice = new BasicWritableSlice<>(rewritePolicy);
+        slice.setDebugName(debugName);
+        return slice;
+    }
+
+    private static <K> WritableSlice<K, Boolean> collectiveSlice(String debugName) {
+        SetSlice<K> slice = new SetSlice<>(RewritePolicy.DO_NOTHING, true);
+        slice.setDebugName(debugName);
+        return slice;
+    }
+}
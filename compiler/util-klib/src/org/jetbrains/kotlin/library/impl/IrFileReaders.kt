@@ -8,114 +8,60 @@ package org.jetbrains.kotlin.library.impl
 import org.jetbrains.kotlin.konan.file.File
 import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+// The readers only use absolute reads of the mapped buffer, so they can be used from several threads.
 
 class IrArrayReader(file: File) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
+    private val buffer = file.map(FileChannel.MapMode.READ_ONLY).asReadOnlyBuffer()
+    private val indexToOffset = buffer.readOffsets(0)
 
     fun entryCount() = indexToOffset.size - 1
 
-    init {
-        val count = buffer.int
-        indexToOffset = IntArray(count + 1)
-        indexToOffset[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            indexToOffset[i + 1] = indexToOffset[i] + size
-        }
-    }
-
     fun tableItemBytes(id: Int): ByteArray {
         val offset = indexToOffset[id]
-        val size = indexToOffset[id + 1] - offset
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.bytesAt(offset, indexToOffset[id + 1] - offset)
     }
 }
 
 class IrMultiArrayReader(file: File) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
-    private val indexIndexToOffset = mutableMapOf<Int, IntArray>()
-
-    private fun readOffsets(position: Int): IntArray {
-        buffer.position(position)
-        val count = buffer.int
-        val result = IntArray(count + 1)
-        result[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            result[i + 1] = result[i] + size
-        }
-
-        return result
-    }
-
-    init {
-        indexToOffset = readOffsets(0)
-    }
+    private val buffer = file.map(FileChannel.MapMode.READ_ONLY).asReadOnlyBuffer()
+    private val indexToOffset = buffer.readOffsets(0)
+    // Column offsets of the rows, read on the first access to a row
+    private val indexIndexToOffset = AtomicReferenceArray<IntArray>(indexToOffset.size - 1)
 
     fun tableItemBytes(id: Int): ByteArray {
         val offset = indexToOffset[id]
-        val size = indexToOffset[id + 1] - offset
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.bytesAt(offset, indexToOffset[id + 1] - offset)
     }
 
     fun tableItemBytes(row: Int, column: Int): ByteArray {
         val rowOffset = indexToOffset[row]
 
-        val collumnOffsets = indexIndexToOffset.getOrPut(row) {
-            readOffsets(rowOffset)
+        val columnOffsets = indexIndexToOffset.get(row) ?: buffer.readOffsets(rowOffset).also {
+            indexIndexToOffset.set(row, it)
         }
 
-        val dataOffset = collumnOffsets[column]
-        val dataSize = collumnOffsets[column + 1] - dataOffset
-        val result = ByteArray(dataSize)
-
-        buffer.position(rowOffset + dataOffset)
-        buffer.get(result, 0, dataSize)
-
-        return result
+        val dataOffset = columnOffsets[column]
+        return buffer.bytesAt(rowOffset + dataOffset, columnOffsets[column + 1] - dataOffset)
     }
 }
 
 abstract class IrMultiTableReader<K>(file: File, private val keyReader: ByteBuffer.() -> K) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
-    private val indexToIndexMap = mutableMapOf<Int, Map<K, Pair<Int, Int>>>()
-
-    private fun readOffsets(position: Int): IntArray {
-        buffer.position(position)
-        val count = buffer.int
-        val result = IntArray(count + 1)
-        result[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            result[i + 1] = result[i] + size
-        }
-
-        return result
-    }
-
-    init {
-        indexToOffset = readOffsets(0)
-    }
+    private val buffer = file.map(FileChannel.MapMode.READ_ONLY).asReadOnlyBuffer()
+    private val indexToOffset = buffer.readOffsets(0)
+    private val indexToIndexMap = AtomicReferenceArray<Map<K, Pair<Int, Int>>>(indexToOffset.size - 1)
 
     private fun readIndexMap(position: Int): Map<K, Pair<Int, Int>> {
-        buffer.position(position)
+        val input = buffer.duplicate().also { it.position(position) }
         val result = mutableMapOf<K, Pair<Int, Int>>()
 
-        val count = buffer.int
+        val count = input.int
 
         for (i in 0 until count) {
-            val key = keyReader(buffer)
-            val offset = buffer.int
-            val size = buffer.int
+            val key = keyReader(input)
+            val offset = input.int
+            val size = input.int
 
             result[key] = offset to size
         }
@@ -124,33 +70,28 @@ abstract class IrMultiTableReader<K>(file: File, private val keyReader: ByteBuff
     }
 
     fun tableItemBytes(row: Int, id: K): ByteArray {
-
         val rowOffset = indexToOffset[row]
 
-        val indexToMap = indexToIndexMap.getOrPut(row) {
-            readIndexMap(rowOffset)
+        val indexToMap = indexToIndexMap.get(row) ?: readIndexMap(rowOffset).also {
+            indexToIndexMap.set(row, it)
         }
 
         val coordinates = indexToMap[id] ?: error("No coordinates found for $id")
-        val offset = coordinates.first
-        val size = coordinates.second
-        val result = ByteArray(size)
-        buffer.position(rowOffset + offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.bytesAt(rowOffset + coordinates.first, coordinates.second)
     }
 }
 
 abstract class IrTableReader<K>(file: File, keyReader: ByteBuffer.() -> K) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
+    private val buffer = file.map(FileChannel.MapMode.READ_ONLY).asReadOnlyBuffer()
     private val indexToOffset = mutableMapOf<K, Pair<Int, Int>>()
 
     init {
-        val count = buffer.int
+        val input = buffer.duplicate()
+        val count = input.int
         for (i in 0 until count) {
-            val key = keyReader(buffer)
-            val offset = buffer.int
-            val size = buffer.int
+            val key = keyReader(input)
+            val offset = input.int
+            val size = input.int
 
             indexToOffset[key] = offset to size
         }
@@ -158,15 +99,29 @@ abstract class IrTableReader<K>(file: File, keyReader: ByteBuffer.() -> K) {
 
     fun tableItemBytes(id: K): ByteArray {
         val coordinates = indexToOffset[id] ?: error("No coordinates found for $id")
-        val offset = coordinates.first
-        val size = coordinates.second
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.bytesAt(coordinates.first, coordinates.second)
     }
 }
 
+private fun ByteBuffer.readOffsets(position: Int): IntArray {
+    val count = getInt(position)
+    val result = IntArray(count + 1)
+    result[0] = 4 * (count + 1)
+    for (i in 0 until count) {
+        val size = getInt(position + 4 * (i + 1))
+        result[i + 1] = result[i] + size
+    }
+
+    return result
+}
+
+private fun ByteBuffer.bytesAt(offset: Int, size: Int): ByteArray {
+    val result = ByteArray(size)
+    // the position of a duplicate is independent of the shared buffer
+    duplicate().also { it.position(offset) }.get(result, 0, size)
+    return result
+}
+
 class IndexIrTableReader(file: File) : IrTableReader<Long>(file, { long })
 
 data class DeclarationId(val id: Long)
@@ -20,6 +20,7 @@ import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.library.*
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.loadProperties
+import java.util.concurrent.ConcurrentHashMap
 
 open class BaseKotlinLibraryImpl(
     val access: BaseLibraryAccess<KotlinLibraryLayout>,
@@ -144,7 +145,7 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
         }
     }
 
-    private val fileToDeclarationMap = mutableMapOf<Int, DeclarationIrTableReader>()
+    private val fileToDeclarationMap = ConcurrentHashMap<Int, DeclarationIrTableReader>()
     override fun irDeclaration(index: Long, fileIndex: Int): ByteArray {
         val dataReader = fileToDeclarationMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
@@ -155,7 +156,7 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
         return dataReader.tableItemBytes(DeclarationId(index))
     }
 
-    private val fileToSymbolMap = mutableMapOf<Int, IrArrayReader>()
+    private val fileToSymbolMap = ConcurrentHashMap<Int, IrArrayReader>()
     override fun symbol(index: Int, fileIndex: Int): ByteArray {
         val dataReader = fileToSymbolMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
@@ -166,7 +167,7 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
         return dataReader.tableItemBytes(index)
     }
 
-    private val fileToTypeMap = mutableMapOf<Int, IrArrayReader>()
+    private val fileToTypeMap = ConcurrentHashMap<Int, IrArrayReader>()
     override fun type(index: Int, fileIndex: Int): ByteArray {
         val dataReader = fileToTypeMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
@@ -177,7 +178,7 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
         return dataReader.tableItemBytes(index)
     }
 
-    private val fileToStringMap = mutableMapOf<Int, IrArrayReader>()
+    private val fileToStringMap = ConcurrentHashMap<Int, IrArrayReader>()
     override fun string(index: Int, fileIndex: Int): ByteArray {
         val dataReader = fileToStringMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
@@ -188,7 +189,7 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
         return dataReader.tableItemBytes(index)
     }
 
-    private val fileToBodyMap = mutableMapOf<Int, IrArrayReader>()
+    private val fileToBodyMap = ConcurrentHashMap<Int, IrArrayReader>()
     override fun body(index: Int, fileIndex: Int): ByteArray {
         val dataReader = fileToBodyMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
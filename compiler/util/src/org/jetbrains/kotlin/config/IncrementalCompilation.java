@@ -16,6 +16,8 @@
 
 package org.jetbrains.kotlin.config;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.List;
@@ -24,12 +26,49 @@ public class IncrementalCompilation {
     public static final String INCREMENTAL_COMPILATION_JVM_PROPERTY = "kotlin.incremental.compilation";
     public static final String INCREMENTAL_COMPILATION_JS_PROPERTY = "kotlin.incremental.compilation.js";
 
+    // Override the system properties in the current thread and in the threads started by it,
+    // so that compilations running in parallel in the same process (e.g. in the daemon) don't change the settings of each other
+    private static final InheritableThreadLocal<Boolean> isEnabledForJvmInThread = new InheritableThreadLocal<Boolean>();
+    private static final InheritableThreadLocal<Boolean> isEnabledForJsInThread = new InheritableThreadLocal<Boolean>();
+
     public static boolean isEnabledForJvm() {
-        return "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JVM_PROPERTY));
+        Boolean value = isEnabledForJvmInThread.get();
+        return value != null ? value : "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JVM_PROPERTY));
     }
 
     public static boolean isEnabledForJs() {
-        return "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JS_PROPERTY));
+        Boolean value = isEnabledForJsInThread.get();
+        return value != null ? value : "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JS_PROPERTY));
+    }
+
+    /**
+     * Sets the value for the current thread, null resets it to the value of the system property.
+     * @return the previous value for the current thread
+     */
+    @Nullable
+    public static Boolean setIsEnabledForJvmInCurrentThread(@Nullable Boolean value) {
+        return set(isEnabledForJvmInThread, value);
+    }
+
+    /**
+     * Sets the value for the current thread, null resets it to the value of the system property.
+     * @return the previous value for the current thread
+     */
+    @Nullable
+    public static Boolean setIsEnabledForJsInCurrentThread(@Nullable Boolean value) {
+        return set(isEnabledForJsInThread, value);
+    }
+
+    @Nullable
+    private static Boolean set(@NotNull ThreadLocal<Boolean> threadLocal, @Nullable Boolean value) {
+        Boolean previous = threadLocal.get();
+        if (value == null) {
+            threadLocal.remove();
+        }
+        else {
+            threadLocal.set(value);
+        }
+        return previous;
     }
 
     @TestOnly
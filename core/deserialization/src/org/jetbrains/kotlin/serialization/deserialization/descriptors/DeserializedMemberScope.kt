@@ -21,7 +21,6 @@ import org.jetbrains.kotlin.incremental.components.LookupLocation
 import org.jetbrains.kotlin.metadata.ProtoBuf
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.Name
-import org.jetbrains.kotlin.protobuf.AbstractMessageLite
 import org.jetbrains.kotlin.protobuf.MessageLite
 import org.jetbrains.kotlin.protobuf.Parser
 import org.jetbrains.kotlin.resolve.MemberComparator
@@ -33,8 +32,6 @@ import org.jetbrains.kotlin.storage.getValue
 import org.jetbrains.kotlin.utils.Printer
 import org.jetbrains.kotlin.utils.addIfNotNull
 import org.jetbrains.kotlin.utils.compact
-import java.io.ByteArrayInputStream
-import java.io.ByteArrayOutputStream
 import java.util.*
 
 abstract class DeserializedMemberScope protected constructor(
@@ -45,22 +42,14 @@ abstract class DeserializedMemberScope protected constructor(
     classNames: () -> Collection<Name>
 ) : MemberScopeImpl() {
 
-    private val functionProtosBytes = functionList.groupByName { it.name }.packToByteArray()
+    private val functionProtos = SerializedMembersIndex.create(functionList.groupByName { it.name })
 
-    private val propertyProtosBytes = propertyList.groupByName { it.name }.packToByteArray()
+    private val propertyProtos = SerializedMembersIndex.create(propertyList.groupByName { it.name })
 
-    private val typeAliasBytes =
-        if (c.components.configuration.typeAliasesAllowed)
-            typeAliasList.groupByName { it.name }.packToByteArray()
-        else
-            emptyMap()
-
-    private fun Map<Name, Collection<AbstractMessageLite>>.packToByteArray(): Map<Name, ByteArray> =
-        mapValues { entry ->
-            val byteArrayOutputStream = ByteArrayOutputStream()
-            entry.value.map { proto -> proto.writeDelimitedTo(byteArrayOutputStream) }
-            byteArrayOutputStream.toByteArray()
-        }
+    private val typeAliasProtos =
+        SerializedMembersIndex.create(
+            if (c.components.configuration.typeAliasesAllowed) typeAliasList.groupByName { it.name } else emptyMap()
+        )
 
     private val functions =
         c.storageManager.createMemoizedFunction<Name, Collection<SimpleFunctionDescriptor>> { computeFunctions(it) }
@@ -70,23 +59,30 @@ abstract class DeserializedMemberScope protected constructor(
         c.storageManager.createMemoizedFunctionWithNullableValues<Name, TypeAliasDescriptor> { createTypeAlias(it) }
 
     private val functionNamesLazy by c.storageManager.createLazyValue {
-        functionProtosBytes.keys + getNonDeclaredFunctionNames()
+        functionProtos.nameSet.plusNonDeclared(getNonDeclaredFunctionNames())
     }
 
     private val variableNamesLazy by c.storageManager.createLazyValue {
-        propertyProtosBytes.keys + getNonDeclaredVariableNames()
+        propertyProtos.nameSet.plusNonDeclared(getNonDeclaredVariableNames())
     }
 
-    private val typeAliasNames: Set<Name> get() = typeAliasBytes.keys
+    private val typeAliasNames: Set<Name> get() = typeAliasProtos.nameSet
 
     internal val classNames by c.storageManager.createLazyValue { classNames().toSet() }
 
+    private val allNamesFilter by c.storageManager.createLazyValue {
+        NameBloomFilter(listOf(functionNamesLazy, variableNamesLazy, classNames, typeAliasNames))
+    }
+
+    private fun Set<Name>.plusNonDeclared(nonDeclaredNames: Set<Name>): Set<Name> =
+        if (nonDeclaredNames.isEmpty()) this else this + nonDeclaredNames
+
     override fun getFunctionNames() = functionNamesLazy
     override fun getVariableNames() = variableNamesLazy
     override fun getClassifierNames(): Set<Name>? = classNames + typeAliasNames
 
     override fun definitelyDoesNotContainName(name: Name): Boolean {
-        return name !in functionNamesLazy && name !in variableNamesLazy && name !in classNames && name !in typeAliasNames
+        return !allNamesFilter.mightContain(name)
     }
 
     private inline fun <M : MessageLite> Collection<M>.groupByName(
@@ -96,7 +92,7 @@ abstract class DeserializedMemberScope protected constructor(
     private fun computeFunctions(name: Name) =
         computeDescriptors(
             name,
-            functionProtosBytes,
+            functionProtos,
             ProtoBuf.Function.PARSER,
             { c.memberDeserializer.loadFunction(it) },
             { computeNonDeclaredFunctions(name, it) }
@@ -104,18 +100,13 @@ abstract class DeserializedMemberScope protected constructor(
 
     private inline fun <M : MessageLite, D : DeclarationDescriptor> computeDescriptors(
         name: Name,
-        bytesByName: Map<Name, ByteArray>,
+        protosByName: SerializedMembersIndex,
         parser: Parser<M>,
         factory: (M) -> D,
         computeNonDeclared: (MutableCollection<D>) -> Unit
     ): Collection<D> =
         computeDescriptors(
-            bytesByName[name]?.let {
-                val inputStream = ByteArrayInputStream(it)
-                generateSequence {
-                    parser.parseDelimitedFrom(inputStream, c.components.extensionRegistryLite)
-                }.toList()
-            } ?: emptyList(),
+            protosByName.parseProtos(name, parser, c.components.extensionRegistryLite),
             factory,
             computeNonDeclared
         )
@@ -142,7 +133,7 @@ abstract class DeserializedMemberScope protected constructor(
     private fun computeProperties(name: Name) =
         computeDescriptors(
             name,
-            propertyProtosBytes,
+            propertyProtos,
             ProtoBuf.Property.PARSER,
             { c.memberDeserializer.loadProperty(it) },
             { computeNonDeclaredProperties(name, it) }
@@ -152,11 +143,8 @@ abstract class DeserializedMemberScope protected constructor(
     }
 
     private fun createTypeAlias(name: Name): TypeAliasDescriptor? {
-        val byteArray = typeAliasBytes[name] ?: return null
-        val proto =
-            ProtoBuf.TypeAlias.parseDelimitedFrom(
-                ByteArrayInputStream(byteArray), c.components.extensionRegistryLite
-            ) ?: return null
+        val proto = typeAliasProtos.parseProtos(name, ProtoBuf.TypeAlias.PARSER, c.components.extensionRegistryLite).firstOrNull()
+            ?: return null
         return c.memberDeserializer.loadTypeAlias(proto)
     }
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.serialization.deserialization.descriptors
+
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.protobuf.AbstractMessageLite
+import org.jetbrains.kotlin.protobuf.ExtensionRegistryLite
+import org.jetbrains.kotlin.protobuf.MessageLite
+import org.jetbrains.kotlin.protobuf.Parser
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.Arrays
+
+/**
+ * Immutable map from names to serialized protos of the members with these names.
+ *
+ * Protos of all members are written to a single byte array, grouped by name in the order of [names]. Names are looked up
+ * with a binary search over their sorted hash codes, which takes much less memory than a hash map of byte arrays.
+ */
+internal class SerializedMembersIndex private constructor(
+    private val names: Array<Name>,
+    // offsets[i] is the start of protos of names[i] in bytes, offsets[names.size] is the end of the data
+    private val offsets: IntArray,
+    private val bytes: ByteArray,
+    private val sortedHashes: IntArray,
+    // sortedIndices[i] is the index in names of the name with hash code sortedHashes[i]
+    private val sortedIndices: IntArray
+) {
+    /**
+     * Names in the order they were first encountered in the list of members.
+     */
+    val nameSet: Set<Name> = object : AbstractSet<Name>() {
+        override val size: Int
+            get() = names.size
+
+        override fun iterator(): Iterator<Name> = names.iterator()
+
+        override fun contains(element: Name): Boolean = indexOf(element) >= 0
+    }
+
+    fun <M : MessageLite> parseProtos(name: Name, parser: Parser<M>, extensionRegistry: ExtensionRegistryLite): List<M> {
+        val index = indexOf(name)
+        if (index < 0) return emptyList()
+
+        val inputStream = ByteArrayInputStream(bytes, offsets[index], offsets[index + 1] - offsets[index])
+        return generateSequence {
+            parser.parseDelimitedFrom(inputStream, extensionRegistry)
+        }.toList()
+    }
+
+    private fun indexOf(name: Name): Int {
+        val hash = name.hashCode()
+        var i = Arrays.binarySearch(sortedHashes, hash)
+        if (i < 0) return -1
+
+        while (i > 0 && sortedHashes[i - 1] == hash) i--
+        while (i < sortedHashes.size && sortedHashes[i] == hash) {
+            val index = sortedIndices[i]
+            if (names[index] == name) return index
+            i++
+        }
+        return -1
+    }
+
+    companion object {
+        private val EMPTY = SerializedMembersIndex(emptyArray(), IntArray(1), ByteArray(0), IntArray(0), IntArray(0))
+
+        fun create(protosByName: Map<Name, Collection<AbstractMessageLite>>): SerializedMembersIndex {
+            if (protosByName.isEmpty()) return EMPTY
+
+            val names = protosByName.keys.toTypedArray()
+            val offsets = IntArray(names.size + 1)
+            val output = ByteArrayOutputStream()
+            for ((index, protos) in protosByName.values.withIndex()) {
+                offsets[index] = output.size()
+                for (proto in protos) {
+                    proto.writeDelimitedTo(output)
+                }
+            }
+            offsets[names.size] = output.size()
+
+            val sortedIndices = names.indices.sortedBy { names[it].hashCode() }.toIntArray()
+            val sortedHashes = IntArray(names.size) { names[sortedIndices[it]].hashCode() }
+
+            return SerializedMembersIndex(names, offsets, output.toByteArray(), sortedHashes, sortedIndices)
+        }
+    }
+}
+
+/**
+ * Bloom filter of names, used to quickly check that a scope doesn't contain a name.
+ */
+internal class NameBloomFilter(nameSets: List<Set<Name>>) {
+    private val bits: LongArray
+    private val bitCount: Int
+
+    init {
+        val nameCount = nameSets.sumBy { it.size }
+        bits = LongArray(maxOf(1, (nameCount * BITS_PER_NAME + 63) / 64))
+        bitCount = bits.size * 64
+        for (names in nameSets) {
+            for (name in names) {
+                val hash = name.hashCode()
+                val secondHash = secondHash(hash)
+                for (i in 0 until HASH_FUNCTIONS) {
+                    val bit = bitIndex(hash + i * secondHash)
+                    bits[bit ushr 6] = bits[bit ushr 6] or (1L shl bit)
+                }
+            }
+        }
+    }
+
+    fun mightContain(name: Name): Boolean {
+        val hash = name.hashCode()
+        val secondHash = secondHash(hash)
+        for (i in 0 until HASH_FUNCTIONS) {
+            val bit = bitIndex(hash + i * secondHash)
+            if (bits[bit ushr 6] and (1L shl bit) == 0L) return false
+        }
+        return true
+    }
+
+    private fun bitIndex(hash: Int): Int = (hash and Int.MAX_VALUE) % bitCount
+
+    private fun secondHash(hash: Int): Int = (hash * -0x61c88647).let { it xor (it ushr 16) } or 1
+
+    private companion object {
+        // About 3% of false positives
+        const val BITS_PER_NAME = 8
+        const val HASH_FUNCTIONS = 3
+    }
+}
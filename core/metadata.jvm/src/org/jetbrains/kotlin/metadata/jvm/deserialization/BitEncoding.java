@@ -192,6 +192,39 @@ public class BitEncoding {
         return decode7to8(bytes);
     }
 
+    /**
+     * Returns the length of the byte array which {@link BitEncoding#decodeBytes(String[])} would return for the given data, if it's
+     * encoded in the UTF-8 mode (which is used by default), or -1 otherwise.
+     */
+    public static int getUtf8DecodedLength(@NotNull String[] data) {
+        if (data.length == 0 || data[0].isEmpty() || data[0].charAt(0) != UtfEncodingKt.UTF8_MODE_MARKER) return -1;
+
+        int result = -1; // The marker is not decoded
+        for (String s : data) {
+            result += s.length();
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the data encoded in the UTF-8 mode to the beginning of {@code buffer}, which should be at least
+     * {@link BitEncoding#getUtf8DecodedLength(String[])} bytes long. Unlike {@link BitEncoding#decodeBytes(String[])}, this doesn't copy
+     * the strings and doesn't allocate the resulting array, so that the buffer can be reused for decoding of other data.
+     */
+    @SuppressWarnings("deprecation")
+    public static void decodeUtf8BytesTo(@NotNull String[] data, @NotNull byte[] buffer) {
+        int p = 0;
+        for (int i = 0; i < data.length; i++) {
+            String s = data[i];
+            // Skip the mode marker
+            int start = i == 0 ? 1 : 0;
+            // Each char of an UTF-8 encoded string is in the range 0x0..0xff, and this method copies exactly the low-order 8 bits of each
+            // char, which is what stringsToBytes does, but without decoding chars one by one
+            s.getBytes(start, s.length(), buffer, p);
+            p += s.length() - start;
+        }
+    }
+
     @NotNull
     private static String[] dropMarker(@NotNull String[] data) {
         // Clone because the clients should be able to use the passed array for their own purposes.
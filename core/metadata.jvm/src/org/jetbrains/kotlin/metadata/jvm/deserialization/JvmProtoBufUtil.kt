@@ -9,11 +9,10 @@ import org.jetbrains.kotlin.metadata.ProtoBuf
 import org.jetbrains.kotlin.metadata.deserialization.*
 import org.jetbrains.kotlin.metadata.jvm.JvmProtoBuf
 import org.jetbrains.kotlin.metadata.jvm.serialization.JvmStringTable
+import org.jetbrains.kotlin.protobuf.CodedInputStream
 import org.jetbrains.kotlin.protobuf.ExtensionRegistryLite
 import org.jetbrains.kotlin.protobuf.MessageLite
-import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
-import java.io.InputStream
 
 object JvmProtoBufUtil {
     val EXTENSION_REGISTRY: ExtensionRegistryLite = ExtensionRegistryLite.newInstance().apply(JvmProtoBuf::registerAllExtensions)
@@ -22,34 +21,57 @@ object JvmProtoBufUtil {
 
     const val DEFAULT_MODULE_NAME = "main"
 
+    // Metadata is decoded to a per-thread buffer which is reused by subsequent reads. This is safe because parsed messages copy
+    // all the data they need from the input and never reference the buffer.
+    // Only small buffers are retained, so that long-lived threads (e.g. in the daemon) don't keep the metadata of the largest class
+    private val decodingBuffer = ThreadLocal<ByteArray>()
+
+    private const val MAX_RETAINED_BUFFER_SIZE = 64 * 1024
+
     @JvmStatic
     fun readClassDataFrom(data: Array<String>, strings: Array<String>): Pair<JvmNameResolver, ProtoBuf.Class> =
-        readClassDataFrom(BitEncoding.decodeBytes(data), strings)
+        readDecoded(data) { input -> Pair(input.readNameResolver(strings), ProtoBuf.Class.parseFrom(input, EXTENSION_REGISTRY)) }
 
     @JvmStatic
     fun readClassDataFrom(bytes: ByteArray, strings: Array<String>): Pair<JvmNameResolver, ProtoBuf.Class> {
-        val input = ByteArrayInputStream(bytes)
+        val input = CodedInputStream.newInstance(bytes)
         return Pair(input.readNameResolver(strings), ProtoBuf.Class.parseFrom(input, EXTENSION_REGISTRY))
     }
 
     @JvmStatic
     fun readPackageDataFrom(data: Array<String>, strings: Array<String>): Pair<JvmNameResolver, ProtoBuf.Package> =
-        readPackageDataFrom(BitEncoding.decodeBytes(data), strings)
+        readDecoded(data) { input -> Pair(input.readNameResolver(strings), ProtoBuf.Package.parseFrom(input, EXTENSION_REGISTRY)) }
 
     @JvmStatic
     fun readPackageDataFrom(bytes: ByteArray, strings: Array<String>): Pair<JvmNameResolver, ProtoBuf.Package> {
-        val input = ByteArrayInputStream(bytes)
+        val input = CodedInputStream.newInstance(bytes)
         return Pair(input.readNameResolver(strings), ProtoBuf.Package.parseFrom(input, EXTENSION_REGISTRY))
     }
 
     @JvmStatic
-    fun readFunctionDataFrom(data: Array<String>, strings: Array<String>): Pair<JvmNameResolver, ProtoBuf.Function> {
-        val input = ByteArrayInputStream(BitEncoding.decodeBytes(data))
-        return Pair(input.readNameResolver(strings), ProtoBuf.Function.parseFrom(input, EXTENSION_REGISTRY))
+    fun readFunctionDataFrom(data: Array<String>, strings: Array<String>): Pair<JvmNameResolver, ProtoBuf.Function> =
+        readDecoded(data) { input -> Pair(input.readNameResolver(strings), ProtoBuf.Function.parseFrom(input, EXTENSION_REGISTRY)) }
+
+    private inline fun <T> readDecoded(data: Array<String>, read: (CodedInputStream) -> T): T {
+        val length = BitEncoding.getUtf8DecodedLength(data)
+        if (length < 0) {
+            // Metadata in the legacy 8-to-7 encoding
+            return read(CodedInputStream.newInstance(BitEncoding.decodeBytes(data)))
+        }
+
+        val buffer = decodingBuffer.get()?.takeIf { it.size >= length } ?: ByteArray(length).also {
+            if (length <= MAX_RETAINED_BUFFER_SIZE) decodingBuffer.set(it)
+        }
+        BitEncoding.decodeUtf8BytesTo(data, buffer)
+        return read(CodedInputStream.newInstance(buffer, 0, length))
     }
 
-    private fun InputStream.readNameResolver(strings: Array<String>): JvmNameResolver =
-        JvmNameResolver(JvmProtoBuf.StringTableTypes.parseDelimitedFrom(this, EXTENSION_REGISTRY), strings)
+    private fun CodedInputStream.readNameResolver(strings: Array<String>): JvmNameResolver {
+        val oldLimit = pushLimit(readRawVarint32())
+        val types = JvmProtoBuf.StringTableTypes.PARSER.parseFrom(this, EXTENSION_REGISTRY)
+        popLimit(oldLimit)
+        return JvmNameResolver(types, strings)
+    }
 
     /**
      * Serializes [message] and [stringTable] into a string array which must be further written to [Metadata.data1]
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage
+
+import org.jetbrains.kotlin.utils.WrappedValues
+import org.jetbrains.kotlin.utils.isProcessCanceledException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * A [StorageManager] which, unlike [LockBasedStorageManager], doesn't serialize all computations with a single lock.
+ * Each key of a memoized function and each lazy value is still computed at most once: a thread which requests a value being computed
+ * by another thread waits for that particular computation only.
+ *
+ * Recursion is detected both when a computation requests its own value on the same thread and when computations on several threads
+ * wait for each other, because the same computations performed on a single thread would request their own values.
+ *
+ * Blocks passed to [compute] are executed under a lock, but this lock is not taken by memoized functions and lazy values.
+ */
+class ConcurrentStorageManager(
+    private val debugText: String,
+    private val exceptionHandlingStrategy: LockBasedStorageManager.ExceptionHandlingStrategy =
+        LockBasedStorageManager.ExceptionHandlingStrategy.THROW
+) : StorageManager {
+    private val computeLock = ReentrantLock()
+
+    // A computation each thread is currently waiting for, used to detect recursion spanning several threads
+    private val waitingFor = ConcurrentHashMap<Thread, Computation>()
+
+    override fun toString(): String = "${javaClass.simpleName}@${Integer.toHexString(hashCode())} ($debugText)"
+
+    override fun <K, V : Any> createMemoizedFunction(compute: (K) -> V): MemoizedFunctionToNotNull<K, V> =
+        createMemoizedFunction(compute, createConcurrentHashMap())
+
+    override fun <K, V : Any> createMemoizedFunction(compute: (K) -> V, map: ConcurrentMap<K, Any>): MemoizedFunctionToNotNull<K, V> =
+        NotNullMemoizedFunction(this, map, compute)
+
+    override fun <K, V : Any> createMemoizedFunctionWithNullableValues(compute: (K) -> V?): MemoizedFunctionToNullable<K, V> =
+        NullableMemoizedFunction(this, createConcurrentHashMap(), compute)
+
+    override fun <K, V : Any> createMemoizedFunctionWithNullableValues(
+        compute: (K) -> V,
+        map: ConcurrentMap<K, Any>
+    ): MemoizedFunctionToNullable<K, V> =
+        NullableMemoizedFunction(this, map, compute)
+
+    override fun <K, V : Any> createCacheWithNullableValues(): CacheWithNullableValues<K, V> {
+        val function = NullableMemoizedFunction<KeyWithComputation<K, V?>, V>(this, createConcurrentHashMap()) { it.computation() }
+        return object : CacheWithNullableValues<K, V> {
+            override fun computeIfAbsent(key: K, computation: () -> V?): V? = function(KeyWithComputation(key, computation))
+        }
+    }
+
+    override fun <K, V : Any> createCacheWithNotNullValues(): CacheWithNotNullValues<K, V> {
+        val function = NotNullMemoizedFunction<KeyWithComputation<K, V>, V>(this, createConcurrentHashMap()) { it.computation() }
+        return object : CacheWithNotNullValues<K, V> {
+            override fun computeIfAbsent(key: K, computation: () -> V): V = function(KeyWithComputation(key, computation))
+        }
+    }
+
+    override fun <T : Any> createLazyValue(computable: () -> T): NotNullLazyValue<T> =
+        NotNullLazyValueImpl(this, computable, onRecursiveCall = null, postCompute = null)
+
+    override fun <T : Any> createLazyValue(computable: () -> T, onRecursiveCall: (Boolean) -> T): NotNullLazyValue<T> =
+        NotNullLazyValueImpl(this, computable, onRecursiveCall, postCompute = null)
+
+    override fun <T : Any> createRecursionTolerantLazyValue(computable: () -> T, onRecursiveCall: T): NotNullLazyValue<T> =
+        NotNullLazyValueImpl(this, computable, { onRecursiveCall }, postCompute = null)
+
+    override fun <T : Any> createLazyValueWithPostCompute(
+        computable: () -> T,
+        onRecursiveCall: ((Boolean) -> T)?,
+        postCompute: (T) -> Unit
+    ): NotNullLazyValue<T> =
+        @Suppress("UNCHECKED_CAST")
+        NotNullLazyValueImpl(this, computable, onRecursiveCall, postCompute as (T?) -> Unit)
+
+    override fun <T : Any> createNullableLazyValue(computable: () -> T?): NullableLazyValue<T> =
+        NullableLazyValueImpl(this, computable, onRecursiveCall = null, postCompute = null)
+
+    override fun <T : Any> createRecursionTolerantNullableLazyValue(computable: () -> T?, onRecursiveCall: T?): NullableLazyValue<T> =
+        NullableLazyValueImpl(this, computable, { onRecursiveCall }, postCompute = null)
+
+    override fun <T : Any> createNullableLazyValueWithPostCompute(computable: () -> T?, postCompute: (T?) -> Unit): NullableLazyValue<T> =
+        NullableLazyValueImpl(this, computable, onRecursiveCall = null, postCompute = postCompute)
+
+    override fun <T> compute(computable: () -> T): T {
+        computeLock.lock()
+        try {
+            return computable()
+        } catch (throwable: Throwable) {
+            throw exceptionHandlingStrategy.handleException(throwable)
+        } finally {
+            computeLock.unlock()
+        }
+    }
+
+    private fun handleException(throwable: Throwable): Throwable {
+        if (throwable.isProcessCanceledException()) return throwable
+        return exceptionHandlingStrategy.handleException(throwable)
+    }
+
+    /**
+     * A value being computed by [owner]. Other threads wait for the computation to complete and then read the computed value.
+     */
+    private class Computation(private val storageManager: ConcurrentStorageManager) {
+        val owner: Thread = Thread.currentThread()
+
+        private val completed = CountDownLatch(1)
+
+        @Volatile
+        var recursionDetected: Boolean = false
+
+        // The computed value, visible only to the owner while a post-compute callback is running
+        @Volatile
+        var earlyValue: Any? = NO_EARLY_VALUE
+
+        fun complete() {
+            completed.countDown()
+        }
+
+        /**
+         * Waits until the computation is completed by its owner.
+         * Returns `false` if it will never happen because the owner (transitively) waits for the current thread.
+         */
+        fun await(): Boolean {
+            val currentThread = Thread.currentThread()
+            storageManager.waitingFor[currentThread] = this
+            try {
+                while (true) {
+                    if (isOwnedOrAwaitedBy(currentThread)) return false
+                    if (completed.await(DEADLOCK_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) return true
+                }
+            } finally {
+                storageManager.waitingFor.remove(currentThread)
+            }
+        }
+
+        private fun isOwnedOrAwaitedBy(thread: Thread): Boolean {
+            var computation: Computation? = this
+            // Threads not involving the current one may wait for each other too, so the number of steps is limited
+            var steps = storageManager.waitingFor.size + 1
+            while (computation != null && steps-- > 0) {
+                if (computation.owner == thread) return true
+                computation = storageManager.waitingFor[computation.owner]
+            }
+            return false
+        }
+    }
+
+    private abstract class MapBasedMemoizedFunction<K, V : Any>(
+        protected val storageManager: ConcurrentStorageManager,
+        private val cache: ConcurrentMap<K, Any>,
+        private val compute: (K) -> V?
+    ) {
+        protected fun doInvoke(input: K): V? {
+            while (true) {
+                val value = cache[input]
+                when (value) {
+                    null -> {
+                        val computation = Computation(storageManager)
+                        if (cache.putIfAbsent(input, computation) == null) {
+                            return computeAndStore(input, computation)
+                        }
+                    }
+                    is Computation -> {
+                        if (value.owner == Thread.currentThread() || !value.await()) {
+                            throw AssertionError("Recursion detected on input: $input under $storageManager")
+                        }
+                    }
+                    else -> return WrappedValues.unescapeExceptionOrNull(value)
+                }
+            }
+        }
+
+        private fun computeAndStore(input: K, computation: Computation): V? {
+            try {
+                val value = compute(input)
+                cache[input] = WrappedValues.escapeNull(value)
+                return value
+            } catch (throwable: Throwable) {
+                if (throwable.isProcessCanceledException()) {
+                    cache.remove(input, computation)
+                } else {
+                    cache[input] = WrappedValues.escapeThrowable(throwable)
+                }
+                throw storageManager.handleException(throwable)
+            } finally {
+                computation.complete()
+            }
+        }
+
+        fun isComputed(key: K): Boolean {
+            val value = cache[key]
+            return value != null && value !is Computation
+        }
+    }
+
+    private class NullableMemoizedFunction<K, V : Any>(
+        storageManager: ConcurrentStorageManager,
+        cache: ConcurrentMap<K, Any>,
+        compute: (K) -> V?
+    ) : MapBasedMemoizedFunction<K, V>(storageManager, cache, compute), MemoizedFunctionToNullable<K, V> {
+        override fun invoke(input: K): V? = doInvoke(input)
+    }
+
+    private class NotNullMemoizedFunction<K, V : Any>(
+        storageManager: ConcurrentStorageManager,
+        cache: ConcurrentMap<K, Any>,
+        compute: (K) -> V
+    ) : MapBasedMemoizedFunction<K, V>(storageManager, cache, compute), MemoizedFunctionToNotNull<K, V> {
+        override fun invoke(input: K): V =
+            doInvoke(input) ?: throw AssertionError("compute() returned null under $storageManager")
+    }
+
+    private abstract class LazyValue<T : Any>(
+        protected val storageManager: ConcurrentStorageManager,
+        private val computable: () -> T?,
+        private val onRecursiveCall: ((Boolean) -> T?)?,
+        private val postCompute: ((T?) -> Unit)?
+    ) {
+        // NOT_COMPUTED, RECURSION_WAS_DETECTED, a Computation, or the computed value possibly wrapped by WrappedValues
+        @Volatile
+        private var value: Any? = NOT_COMPUTED
+
+        fun isComputed(): Boolean {
+            val current = value
+            return current !== NOT_COMPUTED && current !is Computation
+        }
+
+        fun isComputing(): Boolean = value is Computation
+
+        protected fun doInvoke(): T? {
+            while (true) {
+                val current = value
+                when {
+                    current === NOT_COMPUTED -> {
+                        val computation = Computation(storageManager)
+                        if (VALUE_UPDATER.compareAndSet(this, NOT_COMPUTED, computation)) {
+                            return computeAndPublish(computation)
+                        }
+                    }
+                    current is Computation -> {
+                        if (current.owner == Thread.currentThread()) {
+                            val earlyValue = current.earlyValue
+                            @Suppress("UNCHECKED_CAST")
+                            if (earlyValue !== NO_EARLY_VALUE) return earlyValue as T?
+                            return recursionDetected(current)
+                        }
+                        if (!current.await()) return recursionDetected(current)
+                    }
+                    current === RECURSION_WAS_DETECTED -> {
+                        if (onRecursiveCall == null) throw recursionError()
+                        return onRecursiveCall.invoke(false)
+                    }
+                    else -> return WrappedValues.unescapeThrowable<T>(current)
+                }
+            }
+        }
+
+        private fun recursionDetected(computation: Computation): T? {
+            val firstTime = !computation.recursionDetected
+            computation.recursionDetected = true
+            if (onRecursiveCall == null) throw recursionError()
+            return onRecursiveCall.invoke(firstTime)
+        }
+
+        private fun recursionError(): IllegalStateException =
+            IllegalStateException("Recursive call in a lazy value under $storageManager")
+
+        private fun computeAndPublish(computation: Computation): T? {
+            try {
+                val result = computable()
+
+                if (postCompute != null) {
+                    // Don't publish computed value to other threads till post compute is finished
+                    computation.earlyValue = result
+                    postCompute.invoke(result)
+                }
+
+                value = result
+                return result
+            } catch (throwable: Throwable) {
+                // Exceptions thrown through recursionDetected() are not genuine results, so they are not stored
+                value = when {
+                    throwable.isProcessCanceledException() -> NOT_COMPUTED
+                    computation.recursionDetected -> RECURSION_WAS_DETECTED
+                    else -> WrappedValues.escapeThrowable(throwable)
+                }
+                throw storageManager.handleException(throwable)
+            } finally {
+                computation.complete()
+            }
+        }
+
+        companion object {
+            private val VALUE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(LazyValue::class.java, Any::class.java, "value")
+        }
+    }
+
+    private class NullableLazyValueImpl<T : Any>(
+        storageManager: ConcurrentStorageManager,
+        computable: () -> T?,
+        onRecursiveCall: ((Boolean) -> T?)?,
+        postCompute: ((T?) -> Unit)?
+    ) : LazyValue<T>(storageManager, computable, onRecursiveCall, postCompute), NullableLazyValue<T> {
+        override fun invoke(): T? = doInvoke()
+    }
+
+    private class NotNullLazyValueImpl<T : Any>(
+        storageManager: ConcurrentStorageManager,
+        computable: () -> T,
+        onRecursiveCall: ((Boolean) -> T)?,
+        postCompute: ((T?) -> Unit)?
+    ) : LazyValue<T>(storageManager, computable, onRecursiveCall, postCompute), NotNullLazyValue<T> {
+        override fun invoke(): T =
+            doInvoke() ?: throw AssertionError("compute() returned null under $storageManager")
+
+        override fun renderDebugInformation(): String = "${javaClass.name}, storageManager=$storageManager"
+    }
+
+    // equals and hashCode use only key
+    private class KeyWithComputation<out K, out V>(val key: K, val computation: () -> V) {
+        override fun equals(other: Any?): Boolean = other is KeyWithComputation<*, *> && key == other.key
+
+        override fun hashCode(): Int = key?.hashCode() ?: 0
+    }
+
+    private companion object {
+        private val NOT_COMPUTED = Any()
+
+        private val RECURSION_WAS_DETECTED = Any()
+
+        private val NO_EARLY_VALUE = Any()
+
+        private const val DEADLOCK_CHECK_INTERVAL_MS = 10L
+
+        // memory optimization: fewer segments and entries stored
+        private fun <K> createConcurrentHashMap(): ConcurrentMap<K, Any> = ConcurrentHashMap(3, 1f, 2)
+    }
+}
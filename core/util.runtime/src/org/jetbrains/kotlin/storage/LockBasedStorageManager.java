@@ -55,7 +55,7 @@ public class LockBasedStorageManager implements StorageManager {
         RuntimeException handleException(@NotNull Throwable throwable);
     }
 
-    public static final StorageManager NO_LOCKS = new LockBasedStorageManager("NO_LOCKS", ExceptionHandlingStrategy.THROW, NoLock.INSTANCE) {
+    public static final StorageManager NO_LOCKS = new LockBasedStorageManager("NO_LOCKS", ExceptionHandlingStrategy.THROW, NoLock.INSTANCE, null) {
         @NotNull
         @Override
         protected <T> RecursionDetectedResult<T> recursionDetectedDefault() {
@@ -65,25 +65,38 @@ public class LockBasedStorageManager implements StorageManager {
 
     @NotNull
     public static LockBasedStorageManager createWithExceptionHandling(@NotNull String debugText, @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy) {
-        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, new ReentrantLock());
+        return createWithExceptionHandling(debugText, exceptionHandlingStrategy, null);
+    }
+
+    @NotNull
+    public static LockBasedStorageManager createWithExceptionHandling(
+            @NotNull String debugText,
+            @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
+            @Nullable StorageManagerProfiler profiler
+    ) {
+        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, new ReentrantLock(), profiler);
     }
 
     protected final Lock lock;
     private final ExceptionHandlingStrategy exceptionHandlingStrategy;
     private final String debugText;
+    @Nullable
+    private final StorageManagerProfiler profiler;
 
     private LockBasedStorageManager(
             @NotNull String debugText,
             @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
-            @NotNull Lock lock
+            @NotNull Lock lock,
+            @Nullable StorageManagerProfiler profiler
     ) {
         this.lock = lock;
         this.exceptionHandlingStrategy = exceptionHandlingStrategy;
         this.debugText = debugText;
+        this.profiler = profiler;
     }
 
     public LockBasedStorageManager(String debugText) {
-        this(debugText, ExceptionHandlingStrategy.THROW, new ReentrantLock());
+        this(debugText, ExceptionHandlingStrategy.THROW, new ReentrantLock(), null);
     }
 
     @Override
@@ -94,7 +107,7 @@ public class LockBasedStorageManager implements StorageManager {
     public LockBasedStorageManager replaceExceptionHandling(
             @NotNull String debugText, @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy
     ) {
-        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, lock);
+        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, lock, profiler);
     }
 
     @NotNull
@@ -330,13 +343,17 @@ public class LockBasedStorageManager implements StorageManager {
             Object _value = value;
             if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
+            StorageManagerProfiler profiler = storageManager.profiler;
+            long lockWaitStart = profiler != null ? System.nanoTime() : 0;
             storageManager.lock.lock();
+            if (profiler != null) profiler.lockAcquired(computable, lockWaitStart);
             try {
                 _value = value;
                 if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
                 if (_value == NotValue.COMPUTING) {
                     value = NotValue.RECURSION_WAS_DETECTED;
+                    if (profiler != null) profiler.recursionDetected(computable);
                     RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ true);
                     if (!result.isFallThrough()) {
                         return result.getValue();
@@ -344,6 +361,7 @@ public class LockBasedStorageManager implements StorageManager {
                 }
 
                 if (_value == NotValue.RECURSION_WAS_DETECTED) {
+                    if (profiler != null) profiler.recursionDetected(computable);
                     RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ false);
                     if (!result.isFallThrough()) {
                         return result.getValue();
@@ -351,6 +369,7 @@ public class LockBasedStorageManager implements StorageManager {
                 }
 
                 value = NotValue.COMPUTING;
+                long computationStart = profiler != null ? profiler.computationStarted() : 0;
                 try {
                     T typedValue = computable.invoke();
 
@@ -374,6 +393,9 @@ public class LockBasedStorageManager implements StorageManager {
                     }
                     throw storageManager.exceptionHandlingStrategy.handleException(throwable);
                 }
+                finally {
+                    if (profiler != null) profiler.computationFinished(computable, computationStart);
+                }
             }
             finally {
                 storageManager.lock.unlock();
@@ -498,15 +520,20 @@ public class LockBasedStorageManager implements StorageManager {
             Object value = cache.get(input);
             if (value != null && value != NotValue.COMPUTING) return WrappedValues.unescapeExceptionOrNull(value);
 
+            StorageManagerProfiler profiler = storageManager.profiler;
+            long lockWaitStart = profiler != null ? System.nanoTime() : 0;
             storageManager.lock.lock();
+            if (profiler != null) profiler.lockAcquired(compute, lockWaitStart);
             try {
                 value = cache.get(input);
                 if (value == NotValue.COMPUTING) {
+                    if (profiler != null) profiler.recursionDetected(compute);
                     throw recursionDetected(input);
                 }
                 if (value != null) return WrappedValues.unescapeExceptionOrNull(value);
 
                 AssertionError error = null;
+                long computationStart = profiler != null ? profiler.computationStarted() : 0;
                 try {
                     cache.put(input, NotValue.COMPUTING);
                     V typedValue = compute.invoke(input);
@@ -540,6 +567,9 @@ public class LockBasedStorageManager implements StorageManager {
 
                     throw storageManager.exceptionHandlingStrategy.handleException(throwable);
                 }
+                finally {
+                    if (profiler != null) profiler.computationFinished(compute, computationStart);
+                }
             }
             finally {
                 storageManager.lock.unlock();
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collects statistics of lazy values and memoized functions created by [LockBasedStorageManager]s, grouped by the class of the computation
+ * (which identifies the lambda, and hence the call site creating the lazy value or the memoized function).
+ *
+ * A profiler is passed to the storage managers of one compilation when they are created, see
+ * [LockBasedStorageManager.createWithExceptionHandling]. Time of a computation is reported both including and excluding
+ * the time of the nested computations ("self" time).
+ */
+class StorageManagerProfiler {
+    private class Statistics {
+        var computations: Long = 0
+        var totalNanos: Long = 0
+        var selfNanos: Long = 0
+        var lockWaitNanos: Long = 0
+        var recursionFallbacks: Long = 0
+    }
+
+    // Time of the nested computations, for each computation currently running on the thread
+    private class NestedTime {
+        var stack = LongArray(16)
+        var depth = 0
+    }
+
+    private val statistics = ConcurrentHashMap<String, Statistics>()
+
+    private val nestedTime = object : ThreadLocal<NestedTime>() {
+        override fun initialValue(): NestedTime = NestedTime()
+    }
+
+    private fun statisticsFor(callSite: Any): Statistics {
+        val name = callSite.javaClass.name
+        statistics[name]?.let { return it }
+        val newStatistics = Statistics()
+        return statistics.putIfAbsent(name, newStatistics) ?: newStatistics
+    }
+
+    fun lockAcquired(callSite: Any, waitStartNanos: Long) {
+        val waitTime = System.nanoTime() - waitStartNanos
+        val statistics = statisticsFor(callSite)
+        synchronized(statistics) {
+            statistics.lockWaitNanos += waitTime
+        }
+    }
+
+    /**
+     * Returns the start time to be passed to [computationFinished].
+     */
+    fun computationStarted(): Long {
+        val nested = nestedTime.get()!!
+        if (nested.depth == nested.stack.size) {
+            nested.stack = nested.stack.copyOf(nested.depth * 2)
+        }
+        nested.stack[nested.depth++] = 0
+        return System.nanoTime()
+    }
+
+    fun computationFinished(callSite: Any, startNanos: Long) {
+        val time = System.nanoTime() - startNanos
+        val nested = nestedTime.get()!!
+        val nestedNanos = nested.stack[--nested.depth]
+        if (nested.depth > 0) {
+            nested.stack[nested.depth - 1] += time
+        }
+
+        val statistics = statisticsFor(callSite)
+        synchronized(statistics) {
+            statistics.computations++
+            statistics.totalNanos += time
+            statistics.selfNanos += time - nestedNanos
+        }
+    }
+
+    fun recursionDetected(callSite: Any) {
+        val statistics = statisticsFor(callSite)
+        synchronized(statistics) {
+            statistics.recursionFallbacks++
+        }
+    }
+
+    /**
+     * Reports at most [limit] call sites with the largest self time.
+     */
+    fun report(limit: Int, consumer: (String) -> Unit) {
+        val sorted = statistics.entries.map { (name, statistics) -> name to synchronized(statistics) { statistics.copy() } }
+            .sortedByDescending { (_, statistics) -> statistics.selfNanos }
+
+        for ((name, s) in sorted.take(limit)) {
+            consumer(
+                "Lazy computation $name: ${s.computations} computations, " +
+                        "self ${s.selfNanos.toMillis()} ms, total ${s.totalNanos.toMillis()} ms, " +
+                        "lock wait ${s.lockWaitNanos.toMillis()} ms, recursion fallbacks ${s.recursionFallbacks}"
+            )
+        }
+    }
+
+    private fun Statistics.copy(): Statistics = Statistics().also {
+        it.computations = computations
+        it.totalNanos = totalNanos
+        it.selfNanos = selfNanos
+        it.lockWaitNanos = lockWaitNanos
+        it.recursionFallbacks = recursionFallbacks
+    }
+
+    private fun Long.toMillis(): Long = TimeUnit.NANOSECONDS.toMillis(this)
+}
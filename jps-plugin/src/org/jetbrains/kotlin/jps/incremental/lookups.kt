@@ -5,13 +5,15 @@
 
 package org.jetbrains.kotlin.jps.incremental
 
+import org.jetbrains.kotlin.incremental.LookupStorage
 import java.io.File
 
 private val DATA_CONTAINER_VERSION_FILE_NAME = "data-container-format-version.txt"
-private val DATA_CONTAINER_VERSION = 5
+private val DATA_CONTAINER_VERSION = 6
 
 fun lookupsCacheVersionManager(dataRoot: File, isEnabled: Boolean) =
     CacheVersionManager(
         File(dataRoot, DATA_CONTAINER_VERSION_FILE_NAME),
-        if (isEnabled) DATA_CONTAINER_VERSION else null
+        // lookups are rebuilt when their storage format is changed
+        if (isEnabled) DATA_CONTAINER_VERSION * 10 + LookupStorage.FORMAT_VERSION else null
     )
\ No newline at end of file
@@ -27,16 +27,17 @@ import org.jetbrains.kotlin.js.dce.Context.Node
 import org.jetbrains.kotlin.js.facade.SourceMapBuilderConsumer
 import org.jetbrains.kotlin.js.inline.util.collectDefinedNames
 import org.jetbrains.kotlin.js.inline.util.fixForwardNameReferences
-import org.jetbrains.kotlin.js.parser.parse
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapError
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapLocationRemapper
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapParser
-import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapSuccess
+import org.jetbrains.kotlin.js.parser.JsSyntaxTree
+import org.jetbrains.kotlin.js.parser.parseSyntax
+import org.jetbrains.kotlin.js.parser.sourcemaps.*
 import org.jetbrains.kotlin.js.sourceMap.SourceFilePathResolver
 import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
 import org.jetbrains.kotlin.js.util.TextOutputImpl
 import java.io.File
 import java.io.InputStreamReader
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 
 class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit) {
     val moduleMapping = mutableMapOf<JsBlock, String>()
@@ -75,73 +76,126 @@ class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit
         fun run(
                 inputFiles: Collection<InputFile>,
                 rootReachableNames: Set<String>,
-                logConsumer: (DCELogLevel, String) -> Unit
+                logConsumer: (DCELogLevel, String) -> Unit,
+                threads: Int = 1
+        ): DeadCodeEliminationResult {
+            val pool = if (threads > 1) ForkJoinPool(threads) else null
+            try {
+                return eliminate(inputFiles.toList(), rootReachableNames, logConsumer, pool)
+            }
+            finally {
+                pool?.shutdownNow()
+            }
+        }
+
+        private fun eliminate(
+                inputFiles: List<InputFile>,
+                rootReachableNames: Set<String>,
+                logConsumer: (DCELogLevel, String) -> Unit,
+                pool: ForkJoinPool?
         ): DeadCodeEliminationResult {
             val program = JsProgram()
             val dce = DeadCodeElimination(logConsumer)
 
+            // Files are parsed without a scope in parallel, their names are declared in the program scope one by one
+            // in the order of files, as the AST mapper isn't thread-safe
+            val parsedFiles = inputFiles.mapInParallel(pool) { parseFile(it) }
+
             var hasErrors = false
-            val blocks = inputFiles.map { file ->
+            val blocks = inputFiles.zip(parsedFiles).map { (file, parsedFile) ->
+                parsedFile.messages.forEach { (level, message) -> logConsumer(level, message) }
                 val block = JsGlobalBlock()
-                val code = file.resource.reader().let { InputStreamReader(it, "UTF-8") }.use { it.readText() }
-                val statements = parse(code, Reporter(file.resource.name, logConsumer), program.scope, file.resource.name) ?: run {
+                val syntaxTree = parsedFile.syntaxTree ?: run {
                     hasErrors = true
                     return@map block
                 }
-                val sourceMapParse = file.sourceMapResource
-                        ?.let { SourceMapParser.parse(InputStreamReader(it.reader(), "UTF-8").readText()) }
-                when (sourceMapParse) {
-                    is SourceMapError -> {
-                        logConsumer(
-                                DCELogLevel.WARN,
-                                "Error parsing source map file ${file.sourceMapResource}: ${sourceMapParse.message}")
-                    }
-                    is SourceMapSuccess -> {
-                        val sourceMap = sourceMapParse.value
-                        val remapper = SourceMapLocationRemapper(sourceMap)
-                        statements.forEach { remapper.remap(it) }
-                    }
-                }
-                block.statements += statements
+                block.statements += syntaxTree.toJsAst(program.scope)
                 file.moduleName?.let { dce.moduleMapping[block] = it }
                 block
             }
 
             if (hasErrors) return DeadCodeEliminationResult(emptySet(), DeadCodeEliminationStatus.FAILED)
 
+            parsedFiles.zip(blocks).mapInParallel(pool) { (parsedFile, block) ->
+                parsedFile.sourceMap?.let { sourceMap ->
+                    val remapper = SourceMapLocationRemapper(sourceMap)
+                    block.statements.forEach { remapper.remap(it) }
+                }
+            }
+
             program.globalBlock.statements += blocks
             program.globalBlock.fixForwardNameReferences()
 
             dce.reachableNames += rootReachableNames
             dce.apply(program.globalBlock)
 
-            for ((file, block) in inputFiles.zip(blocks)) {
-                val sourceMapFile = File(file.outputPath + ".map")
-                val textOutput = TextOutputImpl()
-                val sourceMapBuilder = SourceMap3Builder(File(file.outputPath), textOutput, "")
+            inputFiles.zip(blocks).mapInParallel(pool) { (file, block) -> print(file, block) }
 
-                val inputFile = File(file.resource.name)
-                val sourceBaseDir = if (inputFile.exists()) inputFile.parentFile else File(".")
-
-                val sourcePathResolver = SourceFilePathResolver(emptyList(), File(file.outputPath).parentFile)
-                val consumer = SourceMapBuilderConsumer(sourceBaseDir, sourceMapBuilder, sourcePathResolver, true, true)
-                block.accept(JsToStringGenerationVisitor(textOutput, consumer))
-                val sourceMapContent = sourceMapBuilder.build()
-                sourceMapBuilder.addLink()
+            return DeadCodeEliminationResult(dce.reachableNodes, DeadCodeEliminationStatus.OK)
+        }
 
-                with(File(file.outputPath)) {
-                    parentFile.mkdirs()
-                    writeText(textOutput.toString())
+        // Messages are reported by the caller, so that they are in the order of files even when files are parsed in parallel
+        private fun parseFile(file: InputFile): ParsedFile {
+            val messages = mutableListOf<Pair<DCELogLevel, String>>()
+            val logConsumer = { level: DCELogLevel, message: String -> messages += level to message }
+
+            val code = file.resource.reader().let { InputStreamReader(it, "UTF-8") }.use { it.readText() }
+            val syntaxTree = parseSyntax(code, Reporter(file.resource.name, logConsumer), file.resource.name)
+                    ?: return ParsedFile(null, null, messages)
+
+            val sourceMapParse = file.sourceMapResource
+                    ?.let { SourceMapParser.parse(InputStreamReader(it.reader(), "UTF-8").readText()) }
+            val sourceMap = when (sourceMapParse) {
+                is SourceMapError -> {
+                    logConsumer(
+                            DCELogLevel.WARN,
+                            "Error parsing source map file ${file.sourceMapResource}: ${sourceMapParse.message}")
+                    null
                 }
+                is SourceMapSuccess -> sourceMapParse.value
+                null -> null
+            }
+            return ParsedFile(syntaxTree, sourceMap, messages)
+        }
 
-                if (file.sourceMapResource != null) {
-                    sourceMapFile.writeText(sourceMapContent)
-                }
+        private fun print(file: InputFile, block: JsGlobalBlock) {
+            val sourceMapFile = File(file.outputPath + ".map")
+            val textOutput = TextOutputImpl()
+            val sourceMapBuilder = SourceMap3Builder(File(file.outputPath), textOutput, "")
+
+            val inputFile = File(file.resource.name)
+            val sourceBaseDir = if (inputFile.exists()) inputFile.parentFile else File(".")
+
+            val sourcePathResolver = SourceFilePathResolver(emptyList(), File(file.outputPath).parentFile)
+            val consumer = SourceMapBuilderConsumer(sourceBaseDir, sourceMapBuilder, sourcePathResolver, true, true)
+            block.accept(JsToStringGenerationVisitor(textOutput, consumer))
+            val sourceMapContent = sourceMapBuilder.build()
+            sourceMapBuilder.addLink()
+
+            with(File(file.outputPath)) {
+                parentFile.mkdirs()
+                writeText(textOutput.toString())
             }
 
-            return DeadCodeEliminationResult(dce.reachableNodes, DeadCodeEliminationStatus.OK)
+            if (file.sourceMapResource != null) {
+                sourceMapFile.writeText(sourceMapContent)
+            }
         }
 
+        private fun <T, R> List<T>.mapInParallel(pool: ForkJoinPool?, transform: (T) -> R): List<R> {
+            if (pool == null) return map(transform)
+            return pool.invokeAll(map { Callable { transform(it) } }).map { future ->
+                try {
+                    future.get()
+                }
+                catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        }
+
+        private class ParsedFile(val syntaxTree: JsSyntaxTree?, val sourceMap: SourceMap?, val messages: List<Pair<DCELogLevel, String>>)
+
         private class Reporter(private val fileName: String, private val logConsumer: (DCELogLevel, String) -> Unit) : ErrorReporter {
             override fun warning(message: String, startPosition: CodePosition, endPosition: CodePosition) {
                 logConsumer(DCELogLevel.WARN, "at $fileName (${startPosition.line + 1}, ${startPosition.offset + 1}): $message")
@@ -152,4 +206,4 @@ class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit
             }
         }
     }
-}
\ No newline at end of file
+}
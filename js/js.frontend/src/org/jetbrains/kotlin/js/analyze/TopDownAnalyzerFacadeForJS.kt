@@ -65,7 +65,7 @@ object TopDownAnalyzerFacadeForJS {
 
         val moduleName = configuration[CommonConfigurationKeys.MODULE_NAME]!!
         val context = ContextForNewModule(
-            ProjectContext(project, "TopDownAnalyzer for JS"),
+            ProjectContext(project, "TopDownAnalyzer for JS", configuration.get(CommonConfigurationKeys.STORAGE_MANAGER_PROFILER)),
             Name.special("<$moduleName>"),
             builtIns,
             platform = JsPlatforms.defaultJsPlatform
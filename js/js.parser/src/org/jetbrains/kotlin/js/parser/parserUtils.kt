@@ -22,10 +22,20 @@ import org.jetbrains.kotlin.js.backend.ast.*
 import java.io.Reader
 import java.io.StringReader
 
-fun parse(code: String, reporter: ErrorReporter, scope: JsScope, fileName: String): List<JsStatement>? {
-    val insideFunction = scope is JsFunctionScope
+fun parse(code: String, reporter: ErrorReporter, scope: JsScope, fileName: String): List<JsStatement>? =
+    parseSyntax(code, reporter, fileName, insideFunction = scope is JsFunctionScope)?.toJsAst(scope)
+
+/**
+ * Parses [code] without binding it to a scope, so unlike [parse] it can be called for several files in parallel.
+ * Names are declared in a scope by [JsSyntaxTree.toJsAst], which is not thread-safe.
+ */
+fun parseSyntax(code: String, reporter: ErrorReporter, fileName: String, insideFunction: Boolean = false): JsSyntaxTree? {
     val node = parse(code, CodePosition(0, 0), 0, reporter, insideFunction, Parser::parse)
-    return node?.toJsAst(scope, fileName) {
+    return node?.let { JsSyntaxTree(it, fileName) }
+}
+
+class JsSyntaxTree internal constructor(private val node: Node, private val fileName: String) {
+    fun toJsAst(scope: JsScope): List<JsStatement> = node.toJsAst(scope, fileName) {
         mapStatements(it)
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import org.jetbrains.kotlin.js.dce.DeadCodeElimination
+import org.jetbrains.kotlin.js.dce.DeadCodeEliminationStatus
+import org.jetbrains.kotlin.js.dce.InputFile
+import org.jetbrains.kotlin.js.dce.InputResource
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+
+class ParallelDceTest : TestCaseWithTmpdir() {
+    private val inputDir by lazy { File(tmpdir, "input") }
+
+    override fun setUp() {
+        super.setUp()
+        inputDir.mkdirs()
+        for (i in 0 until FILES) {
+            val previous = if (i > 0) "used${i - 1}(x)" else "0"
+            val lines = listOf(
+                "function used$i(x) {",
+                "    var y = x * $i;",
+                "    return y + $previous;",
+                "}",
+                "function unused$i() {",
+                "    return used$i(1) + 'unused';",
+                "}"
+            )
+            File(inputDir, "file$i.js").writeText(lines.joinToString("\n") + "\n")
+            // each line of the JS file is mapped to the same line of the Kotlin source
+            val mappings = "AAAA" + ";AACA".repeat(lines.size - 1)
+            File(inputDir, "file$i.js.map").writeText(
+                """{"version": 3, "file": "file$i.js", "sources": ["file$i.kt"], "names": [], "mappings": "$mappings"}"""
+            )
+        }
+    }
+
+    fun testSameAsSequential() {
+        val expected = eliminate(threads = 1, outputDir = "sequential")
+        assertEquals(FILES * 2 + 1, expected.size)
+        repeat(3) { run ->
+            assertEquals(expected, eliminate(threads = 4, outputDir = "parallel$run"))
+        }
+    }
+
+    // Returns the reachable nodes and the contents of the output files by their paths relative to the output directory
+    private fun eliminate(threads: Int, outputDir: String): Map<String, String> {
+        val output = File(tmpdir, outputDir)
+        val inputFiles = (0 until FILES).map { i ->
+            val js = File(inputDir, "file$i.js").path
+            InputFile(InputResource.file(js), InputResource.file("$js.map"), File(output, "file$i.js").path, "module$i")
+        }
+        val messages = mutableListOf<String>()
+        val result = DeadCodeElimination.run(inputFiles, setOf("used${FILES - 1}"), { level, message -> messages += "$level: $message" }, threads)
+        assertEquals(DeadCodeEliminationStatus.OK, result.status)
+        assertEquals(emptyList<String>(), messages)
+        val reachableNodes = result.reachableNodes.map { it.toString().removePrefix("<unknown>.") }.toSortedSet()
+        for (i in 0 until FILES) {
+            assertTrue("used$i is not reached", "used$i" in reachableNodes)
+            assertFalse("unused$i is reached", "unused$i" in reachableNodes)
+        }
+
+        val outputFiles = output.walkTopDown().filter { it.isFile }.sorted().associate { it.toRelativeString(output) to it.readText() }
+        return outputFiles + ("<reachable nodes>" to reachableNodes.joinToString("\n"))
+    }
+
+    companion object {
+        private const val FILES = 20
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010-2019 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test.ir
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.psi.PsiManager
+import org.jetbrains.kotlin.backend.common.serialization.IrDeserializationStatistics
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import org.jetbrains.kotlin.cli.js.messageCollectorLogger
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.config.CommonConfigurationKeys
+import org.jetbrains.kotlin.config.CompilerConfiguration
+import org.jetbrains.kotlin.incremental.components.NoLookupLocation
+import org.jetbrains.kotlin.ir.backend.js.IrModuleInfo
+import org.jetbrains.kotlin.ir.backend.js.generateKLib
+import org.jetbrains.kotlin.ir.backend.js.jsResolveLibraries
+import org.jetbrains.kotlin.ir.backend.js.loadIr
+import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
+import org.jetbrains.kotlin.ir.declarations.IrSimpleFunction
+import org.jetbrains.kotlin.ir.expressions.IrBlockBody
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+import java.io.File
+
+class JsIrLinkerTest : KotlinTestWithEnvironment() {
+    private lateinit var workingDir: File
+    private lateinit var libraryKlib: String
+
+    override fun createEnvironment() =
+        KotlinCoreEnvironment.createForTests(testRootDisposable, CompilerConfiguration(), EnvironmentConfigFiles.JS_CONFIG_FILES)
+
+    override fun setUp() {
+        super.setUp()
+        workingDir = KotlinTestUtils.tmpDirForTest(this)
+
+        libraryKlib = File(workingDir, "lib").absolutePath
+        generateKLib(
+            project = project,
+            files = listOf(createFile("lib.kt", LIBRARY_SOURCE)),
+            configuration = createConfiguration("lib"),
+            allDependencies = jsResolveLibraries(listOf(runtimeKlib), messageCollectorLogger(MessageCollector.NONE)),
+            friendDependencies = emptyList(),
+            outputKlibPath = libraryKlib,
+            nopack = true
+        )
+    }
+
+    fun testBodiesAreDeserializedWithDeclarations() {
+        val statistics = IrDeserializationStatistics()
+        val info = loadMainModule(statistics, lazyBodies = false)
+        val library = info.libraryModule()
+
+        assertTrue(info.isBound(library, "bar"))
+        val libraryStatistics = statistics.forModule(library.descriptor)!!
+        assertEquals(2, libraryStatistics.topLevelDeclarations)
+        assertEquals(2, libraryStatistics.bodies)
+        assertEquals(0, libraryStatistics.deferredBodies)
+        // bar is pulled in by the body of foo, which is requested by the main module
+        assertEquals(2, statistics.topLevelDeclarationsByRoot()["lib.foo"])
+    }
+
+    fun testLazyBodyIsDeserializedOnFirstAccess() {
+        val statistics = IrDeserializationStatistics()
+        val info = loadMainModule(statistics, lazyBodies = true)
+        val library = info.libraryModule()
+        val libraryStatistics = statistics.forModule(library.descriptor)!!
+
+        assertFalse(info.isBound(library, "bar"))
+        assertEquals(1, libraryStatistics.topLevelDeclarations)
+        assertEquals(0, libraryStatistics.bodies)
+        assertEquals(1, libraryStatistics.deferredBodies)
+
+        val foo = library.files.flatMap { it.declarations }.filterIsInstance<IrSimpleFunction>().single { it.name.asString() == "foo" }
+        assertEquals(1, (foo.body as IrBlockBody).statements.size)
+
+        // the symbols referenced from the body are bound on the first access
+        assertTrue(info.isBound(library, "bar"))
+        assertEquals(2, libraryStatistics.topLevelDeclarations)
+        assertEquals(1, libraryStatistics.bodies)
+        assertEquals(2, libraryStatistics.deferredBodies)
+        assertEquals(1, statistics.topLevelDeclarationsByRoot()["body of lib.foo"])
+
+        (foo.body as IrBlockBody).statements
+        assertEquals(1, libraryStatistics.bodies)
+    }
+
+    private fun loadMainModule(statistics: IrDeserializationStatistics, lazyBodies: Boolean): IrModuleInfo =
+        loadIr(
+            project = project,
+            files = listOf(createFile("main.kt", MAIN_SOURCE)),
+            configuration = createConfiguration("main"),
+            allDependencies = jsResolveLibraries(listOf(runtimeKlib, libraryKlib), messageCollectorLogger(MessageCollector.NONE)),
+            friendDependencies = emptyList(),
+            deserializationStatistics = statistics,
+            lazyBodies = lazyBodies
+        )
+
+    private fun IrModuleInfo.libraryModule(): IrModuleFragment = allDependencies.single { it.name == Name.special("<lib>") }
+
+    private fun IrModuleInfo.isBound(library: IrModuleFragment, functionName: String): Boolean {
+        val function = library.descriptor.getPackage(FqName("lib")).memberScope
+            .getContributedFunctions(Name.identifier(functionName), NoLookupLocation.FROM_TEST).single()
+        return symbolTable.referenceSimpleFunction(function).isBound
+    }
+
+    private fun createConfiguration(moduleName: String): CompilerConfiguration =
+        environment.configuration.copy().apply {
+            put(CommonConfigurationKeys.MODULE_NAME, moduleName)
+        }
+
+    // the klib serializer needs the source files on disk
+    private fun createFile(name: String, text: String): KtFile {
+        val file = File(workingDir, name).apply { writeText(text) }
+        val fileSystem = VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.FILE_PROTOCOL)
+        val virtualFile = fileSystem.refreshAndFindFileByPath(file.canonicalPath) ?: error("File not found: $file")
+        return PsiManager.getInstance(project).findFile(virtualFile) as KtFile
+    }
+
+    companion object {
+        private val runtimeKlib = File("compiler/ir/serialization.js/build/reducedRuntime/klib").absolutePath
+
+        private val LIBRARY_SOURCE = """
+            package lib
+
+            fun foo(): Int {
+                return bar() + 1
+            }
+
+            fun bar(): Int {
+                return 42
+            }
+
+            class Unused
+        """.trimIndent()
+
+        private val MAIN_SOURCE = """
+            package main
+
+            fun box(): String = if (lib.foo() == 43) "OK" else "fail"
+        """.trimIndent()
+    }
+}